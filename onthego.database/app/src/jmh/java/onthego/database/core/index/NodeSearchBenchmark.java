@@ -0,0 +1,195 @@
+package onthego.database.core.index;
+
+import onthego.database.core.serializer.IntegerSerializer;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * NodeSearchBenchmark - compares the linear scan of the keys of a node, which BTreeIndex used to do,
+ * with the binary search of BTreeIndex and the branch-free search of LongBTreeIndex, both within a
+ * full node and over whole trees, for several thresholds.
+ *
+ * ./gradlew jmh
+ */
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NodeSearchBenchmark {
+
+	private static final int PROBE_COUNT = 1024;
+
+	private static final int TREE_KEY_COUNT = 100_000;
+
+	@State(Scope.Benchmark)
+	public static class FullNode {
+
+		@Param({"16", "64", "128", "256"})
+		int threshold;
+
+		Integer[] keys;
+
+		long[] longKeys;
+
+		Integer[] probes;
+
+		long[] longProbes;
+
+		final Comparator<Integer> comparator = Comparator.naturalOrder();
+
+		@Setup
+		public void setUp() {
+			int n = 2*threshold - 1;
+			keys = new Integer[n];
+			longKeys = new long[n];
+			for (int i = 0; i < n; ++i) {
+				keys[i] = 2 * i;
+				longKeys[i] = 2 * i;
+			}
+
+			//both present and absent keys in a random order, so that branches cannot be predicted
+			Random random = new Random(17);
+			probes = new Integer[PROBE_COUNT];
+			longProbes = new long[PROBE_COUNT];
+			for (int i = 0; i < PROBE_COUNT; ++i) {
+				probes[i] = random.nextInt(2 * n);
+				longProbes[i] = probes[i];
+			}
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Tree {
+
+		@Param({"16", "64", "128", "256"})
+		int threshold;
+
+		Path tsPath;
+
+		TablespaceManager tsManager;
+
+		TablespaceManager longTsManager;
+
+		BTreeIndex<Integer> btree;
+
+		LongBTreeIndex longBtree;
+
+		int[] probes;
+
+		@Setup(Level.Trial)
+		public void setUp() throws IOException {
+			tsPath = Files.createTempFile("node_search", ".db");
+			Files.delete(tsPath);
+			tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+			btree = new BTreeIndex<>(threshold, new IntegerSerializer(), tsManager);
+
+			Path longTsPath = Path.of(tsPath + ".long");
+			longTsManager = StandardTablespaceManager.create(longTsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+			longBtree = new LongBTreeIndex(threshold, longTsManager);
+
+			for (int key = 0; key < TREE_KEY_COUNT; ++key) {
+				btree.insert(2 * key, key);
+				longBtree.insert(2 * key, key);
+			}
+
+			Random random = new Random(17);
+			probes = new int[PROBE_COUNT];
+			for (int i = 0; i < PROBE_COUNT; ++i) {
+				probes[i] = random.nextInt(2 * TREE_KEY_COUNT);
+			}
+		}
+
+		@TearDown(Level.Trial)
+		public void tearDown() throws IOException {
+			btree.close();
+			longBtree.close();
+			tsManager.close();
+			longTsManager.close();
+			Files.deleteIfExists(tsPath);
+			Files.deleteIfExists(Path.of(tsPath + ".long"));
+		}
+	}
+
+	//the search of BTreeIndex before the binary search
+	private static <T> int linearScan(T[] keys, int n, T key, Comparator<? super T> comparator) {
+		int i = 0;
+		while (i < n && comparator.compare(key, keys[i]) > 0) {
+			++i;
+		}
+		return i;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PROBE_COUNT)
+	public int nodeLinearScan(FullNode node) {
+		int sum = 0;
+		for (Integer probe : node.probes) {
+			sum += linearScan(node.keys, node.keys.length, probe, node.comparator);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PROBE_COUNT)
+	public int nodeBinarySearch(FullNode node) {
+		int sum = 0;
+		for (Integer probe : node.probes) {
+			sum += BTreeIndex.lowerBound(node.keys, node.keys.length, probe, node.comparator);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PROBE_COUNT)
+	public int nodeBranchFreeSearch(FullNode node) {
+		int sum = 0;
+		for (long probe : node.longProbes) {
+			sum += LongBTreeIndex.lowerBound(node.longKeys, node.longKeys.length, probe);
+		}
+		return sum;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PROBE_COUNT)
+	public int treeContains(Tree tree) {
+		int count = 0;
+		for (int probe : tree.probes) {
+			count += tree.btree.contains(probe) ? 1 : 0;
+		}
+		return count;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(PROBE_COUNT)
+	public int longTreeContains(Tree tree) {
+		int count = 0;
+		for (int probe : tree.probes) {
+			count += tree.longBtree.contains(probe) ? 1 : 0;
+		}
+		return count;
+	}
+}
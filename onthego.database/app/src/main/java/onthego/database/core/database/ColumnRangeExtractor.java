@@ -0,0 +1,167 @@
+package onthego.database.core.database;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import onthego.database.core.sqlprocessor.expression.AtomicExpression;
+import onthego.database.core.sqlprocessor.expression.Expression;
+import onthego.database.core.sqlprocessor.expression.Expression.RelationalOperator;
+import onthego.database.core.sqlprocessor.expression.LogicalExpression;
+import onthego.database.core.sqlprocessor.expression.RelationalExpression;
+import onthego.database.core.sqlprocessor.value.IdValue;
+import onthego.database.core.sqlprocessor.value.Value;
+import onthego.database.core.table.ColumnRange;
+import onthego.database.core.table.Table;
+import onthego.database.core.table.meta.ColumnMeta;
+import onthego.database.core.table.meta.TypeConstants;
+
+/*
+ * ColumnRangeExtractor - collects the ranges of columns which a where condition restricts.
+ * Only the comparisons of a column with a constant joined by AND are taken, so every record
+ * matching the condition falls in all the ranges. The others are left to the condition itself.
+ */
+
+final class ColumnRangeExtractor {
+
+	private final Table table;
+
+	private final Map<String,ColumnRange> ranges = new LinkedHashMap<>();
+
+	private ColumnRangeExtractor(Table table) {
+		this.table = table;
+	}
+
+	static List<ColumnRange> extract(Expression where, Table table) {
+		ColumnRangeExtractor extractor = new ColumnRangeExtractor(table);
+		extractor.visit(where);
+		return new ArrayList<>(extractor.ranges.values());
+	}
+
+	private void visit(Expression expression) {
+		if (expression instanceof LogicalExpression) {
+			LogicalExpression logical = (LogicalExpression)expression;
+			if (logical.getOperator() == Expression.AND) {
+				visit(logical.getLeft());
+				visit(logical.getRight());
+			}
+		} else if (expression instanceof RelationalExpression) {
+			visitComparison((RelationalExpression)expression);
+		}
+	}
+
+	private void visitComparison(RelationalExpression comparison) {
+		Value left = valueOf(comparison.getLeft());
+		Value right = valueOf(comparison.getRight());
+		if (left == null || right == null) {
+			return;
+		}
+
+		RelationalOperator op = comparison.getOperator();
+		if (left.getType() != Value.Type.ID) {
+			//a constant on the left compares the other way round
+			Value swapped = left;
+			left = right;
+			right = swapped;
+			op = reverse(op);
+		}
+		if (left.getType() != Value.Type.ID || right.getType() == Value.Type.ID || right.getType() == Value.Type.NULL) {
+			return;
+		}
+
+		IdValue id = (IdValue)left;
+		ColumnMeta column = findColumn(id);
+		if (column == null) {
+			return;
+		}
+
+		TypeConstants type = column.getType().getTypeConstant();
+		boolean numeric = type == TypeConstants.INTEGER || type == TypeConstants.NUMERIC;
+		boolean string = type == TypeConstants.CHAR || type == TypeConstants.VARCHAR;
+		if ((numeric && right.getType() != Value.Type.NUMBER) || (string && right.getType() != Value.Type.STRING) || !(numeric || string)) {
+			return;
+		}
+
+		String value = right.toString();
+		ColumnRange range;
+		if (op == Expression.EQ) {
+			range = ColumnRange.equalTo(column.getName(), value);
+		} else if (!numeric) {
+			return;
+		} else if (op == Expression.LT || op == Expression.LTE) {
+			range = new ColumnRange(column.getName(), null, false, value, op == Expression.LTE);
+		} else if (op == Expression.GT || op == Expression.GTE) {
+			range = new ColumnRange(column.getName(), value, op == Expression.GTE, null, false);
+		} else {
+			return;
+		}
+
+		String key = column.getName().toLowerCase();
+		ColumnRange previous = ranges.get(key);
+		ranges.put(key, previous == null ? range : intersect(previous, range, numeric));
+	}
+
+	private static Value valueOf(Expression expression) {
+		if (expression instanceof AtomicExpression) {
+			return ((AtomicExpression)expression).getValue();
+		}
+		return null;
+	}
+
+	private static RelationalOperator reverse(RelationalOperator op) {
+		if (op == Expression.LT) {
+			return Expression.GT;
+		} else if (op == Expression.GT) {
+			return Expression.LT;
+		} else if (op == Expression.LTE) {
+			return Expression.GTE;
+		} else if (op == Expression.GTE) {
+			return Expression.LTE;
+		}
+		return op;
+	}
+
+	private ColumnMeta findColumn(IdValue id) {
+		if (id.getTableName() != null && !id.getTableName().equalsIgnoreCase(table.getTableName())) {
+			return null;
+		}
+
+		for (ColumnMeta column : table.getColumnList()) {
+			if (column.getName().equalsIgnoreCase(id.getColumnName())) {
+				return column;
+			}
+		}
+		return null;
+	}
+
+	//an equality narrows the most, otherwise the tighter bound of each side is kept
+	private static ColumnRange intersect(ColumnRange lhs, ColumnRange rhs, boolean numeric) {
+		if (lhs.isEquality() || !numeric) {
+			return lhs;
+		} else if (rhs.isEquality()) {
+			return rhs;
+		}
+
+		String lower = lhs.getLower();
+		boolean lowerInclusive = lhs.isLowerInclusive();
+		if (rhs.getLower() != null) {
+			int result = (lower == null) ? -1 : Double.compare(Double.parseDouble(lower), Double.parseDouble(rhs.getLower()));
+			if (result < 0 || (result == 0 && !rhs.isLowerInclusive())) {
+				lower = rhs.getLower();
+				lowerInclusive = rhs.isLowerInclusive();
+			}
+		}
+
+		String upper = lhs.getUpper();
+		boolean upperInclusive = lhs.isUpperInclusive();
+		if (rhs.getUpper() != null) {
+			int result = (upper == null) ? 1 : Double.compare(Double.parseDouble(upper), Double.parseDouble(rhs.getUpper()));
+			if (result > 0 || (result == 0 && !rhs.isUpperInclusive())) {
+				upper = rhs.getUpper();
+				upperInclusive = rhs.isUpperInclusive();
+			}
+		}
+		return new ColumnRange(lhs.getColumnName(), lower, lowerInclusive, upper, upperInclusive);
+	}
+}
@@ -1,16 +1,19 @@
 package onthego.database.core.database;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.stream.Collectors;
 
+import onthego.database.core.index.NodeCache;
 import onthego.database.core.sqlprocessor.SQLProcessor;
 import onthego.database.core.sqlprocessor.SQLProcessorException;
 import onthego.database.core.sqlprocessor.SQLResult;
@@ -18,13 +21,18 @@ import onthego.database.core.sqlprocessor.expression.Expression;
 import onthego.database.core.sqlprocessor.expression.ExpressionEvaluationException;
 import onthego.database.core.sqlprocessor.value.BooleanValue;
 import onthego.database.core.sqlprocessor.value.Value;
+import onthego.database.core.table.ColumnRange;
 import onthego.database.core.table.Cursor;
-import onthego.database.core.table.Filtration;
 import onthego.database.core.table.Filtration.DefaultFilter;
+import onthego.database.core.table.SortKey;
+import onthego.database.core.table.SortOrder;
 import onthego.database.core.table.StandardTable;
+import onthego.database.core.table.StandardTableException;
 import onthego.database.core.table.Table;
 import onthego.database.core.table.meta.ColumnMeta;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
 import onthego.database.core.tablespace.meta.TableMetaInfo;
+import onthego.database.core.tablespace.wal.WriteAheadLog;
 
 public final class Database {
 
@@ -36,7 +44,26 @@ public final class Database {
 	
 	private final Map<String,Table> tables = new HashMap<>();
 	
+	//the index nodes of all the tables share the budget of one cache
+	private final NodeCache nodeCache;
+	
+	private final long sortMemorySize;
+	
+	//the tables of a database commit through the write-ahead log of its directory
+	private final TablespaceConfig tablespaceConfig;
+	
 	public Database(String path) throws DatabaseException {
+		this(path, DatabaseConfig.DEFAULT);
+	}
+	
+	public Database(String path, DatabaseConfig config) throws DatabaseException {
+		this.nodeCache = new NodeCache(config.getNodeCacheSize());
+		this.sortMemorySize = config.getSortMemorySize();
+		this.tablespaceConfig = TablespaceConfig.builder()
+									.writeAheadLogged(true)
+									.groupCommitWindowMicros(config.getGroupCommitWindowMicros())
+									.groupCommitSize(config.getGroupCommitSize())
+									.build();
 		open(Paths.get(path));
 	}
 	
@@ -45,12 +72,17 @@ public final class Database {
 		
 		this.location = path;
 		try {
+			WriteAheadLog.recover(path);
 			loadTables();
 		} catch (Exception e) {
 			throw new DatabaseException(e);
 		}
 	}
 	
+	public NodeCache getNodeCache() {
+		return nodeCache;
+	}
+	
 	public void close() {
 		for (Table table : tables.values()) {
 			table.close();
@@ -68,7 +100,7 @@ public final class Database {
 		.map(fileName -> fileName.substring(0, fileName.lastIndexOf(".")))
 		.forEach(tableName -> {
 			try {
-				Table table = StandardTable.load(location.toString(), tableName);
+				Table table = StandardTable.load(location.toString(), tableName, tablespaceConfig, nodeCache);
 				tables.put(tableName, table);
 			} catch (IOException e) {
 				throw new RuntimeException(e);
@@ -87,7 +119,7 @@ public final class Database {
 	public void createTable(String tableName, List<ColumnMeta> columns) throws DatabaseException {
 		try {
 			TableMetaInfo tableMetaInfo = new TableMetaInfo(tableName, columns);
-			Table table = StandardTable.create(location.toString(), tableName, tableMetaInfo);
+			Table table = StandardTable.create(location.toString(), tableName, tableMetaInfo, tablespaceConfig, nodeCache);
 			tables.put(tableName, table);
 			
 			for (int i = 0; i < transactionLevel; ++i) {
@@ -115,6 +147,13 @@ public final class Database {
 			if (!Files.deleteIfExists(location.resolve(tableName + ".db"))) {
 				throw new DatabaseException("'" + tableName + ".db' table is not in the database directory.");
 			}
+			
+			//the indexes of the table including the ones of its constraints
+			try (DirectoryStream<Path> indexPaths = Files.newDirectoryStream(location, tableName + ".*.idx")) {
+				for (Path indexPath : indexPaths) {
+					Files.delete(indexPath);
+				}
+			}
 		} catch (IOException e) {
 			throw new DatabaseException(e);
 		}
@@ -136,9 +175,8 @@ public final class Database {
 			throw new DatabaseException("There is no transaction.");
 		}
 		
-		for (Table table : tables.values()) {
-			table.commit(false);
-		}
+		//the tables are logged as one record, so a crash keeps either all of them or none
+		WriteAheadLog.commitAtomically(() -> tables.values().forEach(table -> table.commit(false)));
 		--transactionLevel;
 	}
 	
@@ -154,18 +192,26 @@ public final class Database {
 	}
 	
 	public Table select(String tableName, List<ColumnMeta> columns, Expression where) throws DatabaseException {
+		return select(tableName, columns, where, 0, Table.NO_LIMIT);
+	}
+	
+	public Table select(String tableName, List<ColumnMeta> columns, Expression where, long offset, long limit) throws DatabaseException {
+		return select(tableName, columns, where, Collections.emptyList(), offset, limit);
+	}
+	
+	public Table select(String tableName, List<ColumnMeta> columns, Expression where, List<SortKey> orderBy, long offset, long limit) throws DatabaseException {
 		if (!tables.containsKey(tableName)) {
 			throw new DatabaseException("'" + tableName + "' table is not in the database.");
 		}
 		
 		Table table = tables.get(tableName);
-		Table resultTable = table.select(mapToRealTableColumn(columns, table), new DefaultFilter() {
-			@Override
-			public boolean filter(Cursor[] cursor) throws DatabaseException {
-				BooleanValue result = (BooleanValue)where.evaluate(cursor);
-				return result.getValue();
+		for (SortKey sortKey : orderBy) {
+			if (table.getColumnList().stream().noneMatch(column -> column.getName().equalsIgnoreCase(sortKey.getColumnName()))) {
+				throw new DatabaseException("'" + sortKey.getColumnName() + "' column is not in '" + tableName + "' table.");
 			}
-		});
+		}
+		
+		Table resultTable = table.select(mapToRealTableColumn(columns, table), new WhereFilter(where, table), new SortOrder(orderBy, sortMemorySize), offset, limit);
 		return resultTable;
 	}
 	
@@ -194,7 +240,15 @@ public final class Database {
 			tableColumns = mapToRealTableColumn(columns, table);
 		}
 		
-		table.insert(createRecordDataMap(tableColumns, values, table.getCursor()));
+		final List<ColumnMeta> insertColumns = tableColumns;
+		try {
+			autoCommit(table, () -> {
+				table.insert(createRecordDataMap(insertColumns, values, table.getCursor()));
+				return 1;
+			});
+		} catch (StandardTableException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		}
 		return (affectedRowCount = 1);
 	}
 
@@ -229,19 +283,17 @@ public final class Database {
 			throw new DatabaseException("The number of columns is not consistent with that of values");
 		}
 		
-		affectedRowCount = table.update(new DefaultFilter() {
-			@Override
-			public boolean filter(Cursor[] cursor) throws DatabaseException {
-				BooleanValue result = (BooleanValue)where.evaluate(cursor);
-				return result.getValue();
-			}
-
-			@Override
-			public void update(Cursor cursor) throws DatabaseException {
-				cursor.update(columns.get(0).getName(), 
-							  Value.evaluate(values.get(0), new Cursor[]{cursor}));
-			}
-		});
+		try {
+			affectedRowCount = autoCommit(table, () -> table.update(new WhereFilter(where, table) {
+				@Override
+				public void update(Cursor cursor) throws DatabaseException {
+					cursor.update(columns.get(0).getName(), 
+								  Value.evaluate(values.get(0), new Cursor[]{cursor}));
+				}
+			}));
+		} catch (StandardTableException e) {
+			throw new DatabaseException(e.getMessage(), e);
+		}
 		
 		return affectedRowCount;
 	}
@@ -252,18 +304,97 @@ public final class Database {
 		}
 		
 		Table table = tables.get(tableName);
-		affectedRowCount = table.delete(new Filtration.DefaultFilter() {
-			@Override
-			public boolean filter(Cursor[] cursor) throws DatabaseException {
-				BooleanValue result = (BooleanValue)where.evaluate(cursor);
-				return result.getValue();
-			}
-		});
+		affectedRowCount = autoCommit(table, () -> table.delete(new WhereFilter(where, table)));
 		
 		return affectedRowCount;
 	} 
 	
+	@FunctionalInterface
+	private interface Statement {
+		int execute() throws DatabaseException;
+	}
+	
+	//a statement outside of a transaction commits through the log on its own, and is undone as a whole if it fails
+	private int autoCommit(Table table, Statement statement) throws DatabaseException {
+		if (hasTransaction()) {
+			return statement.execute();
+		}
+		
+		int affectedRowCount;
+		table.begin();
+		try {
+			affectedRowCount = statement.execute();
+		} catch (DatabaseException | RuntimeException e) {
+			table.rollback(false);
+			throw e;
+		}
+		table.commit(false);
+		return affectedRowCount;
+	}
+	
+	public void createIndex(String indexName, String tableName, String columnName) throws DatabaseException {
+		createIndex(indexName, tableName, columnName, Table.IndexType.BTREE);
+	}
+	
+	public void createIndex(String indexName, String tableName, String columnName, Table.IndexType indexType) throws DatabaseException {
+		if (!tables.containsKey(tableName)) {
+			throw new DatabaseException("'" + tableName + "' table is not in the database.");
+		}
+		
+		try {
+			tables.get(tableName).createIndex(indexName, columnName, indexType);
+		} catch (RuntimeException e) {
+			throw new DatabaseException(e);
+		}
+	}
+	
+	public void dropIndex(String indexName, String tableName) throws DatabaseException {
+		if (tableName != null && !tables.containsKey(tableName)) {
+			throw new DatabaseException("'" + tableName + "' table is not in the database.");
+		}
+		
+		try {
+			for (Table table : tables.values()) {
+				if ((tableName == null || table.getTableName().equals(tableName)) && table.dropIndex(indexName)) {
+					return;
+				}
+			}
+		} catch (RuntimeException e) {
+			throw new DatabaseException(e);
+		}
+		throw new DatabaseException("'" + indexName + "' index is not in the database.");
+	}
+	
+	//a where condition which also tells the ranges of the columns it restricts to the table
+	private static class WhereFilter extends DefaultFilter {
+		
+		private final Expression where;
+		
+		private final Table table;
+		
+		WhereFilter(Expression where, Table table) {
+			this.where = where;
+			this.table = table;
+		}
+		
+		@Override
+		public boolean filter(Cursor[] cursor) throws DatabaseException {
+			BooleanValue result = (BooleanValue)where.evaluate(cursor);
+			return result.getValue();
+		}
+		
+		@Override
+		public List<ColumnRange> getColumnRanges() {
+			return ColumnRangeExtractor.extract(where, table);
+		}
+	}
+	
 	public Table execute(String query) throws DatabaseException {
+		return execute(query, Table.NO_LIMIT);
+	}
+	
+	//the rows of a select are limited by maxRows as well as its own limit
+	public Table execute(String query, long maxRows) throws DatabaseException {
 		SQLProcessor processor = new SQLProcessor(query);
 		SQLResult result = processor.process();
 
@@ -277,6 +408,12 @@ public final class Database {
 		case DROP_TABLE:
 			doDropTable(result);
 			break;
+		case CREATE_INDEX:
+			createIndex(result.getIndex(), result.getTable(), result.getColumns().get(0).getName(), result.getIndexType());
+			break;
+		case DROP_INDEX:
+			dropIndex(result.getIndex(), result.getTable());
+			break;
 		case USE_DATABASE:
 			doUseTable(result);
 			break;
@@ -290,7 +427,7 @@ public final class Database {
 			rollback();
 			break;
 		case SELECT:
-			return doSelect(result);
+			return doSelect(result, maxRows);
 		case INSERT:
 			doInsert(result);
 			break;
@@ -319,8 +456,12 @@ public final class Database {
 		affectedRowCount = insert(result.getTable(), result.getColumns(), result.getValues());
 	}
 
-	private Table doSelect(SQLResult result) throws DatabaseException {
-		return select(result.getTable(), result.getColumns(), result.getWhere());
+	private Table doSelect(SQLResult result, long maxRows) throws DatabaseException {
+		long limit = result.getLimit();
+		if (maxRows != Table.NO_LIMIT && (limit == Table.NO_LIMIT || maxRows < limit)) {
+			limit = maxRows;
+		}
+		return select(result.getTable(), result.getColumns(), result.getWhere(), result.getOrderBy(), result.getOffset(), limit);
 	}
 
 	private void doUseTable(SQLResult result) throws DatabaseException {
@@ -0,0 +1,96 @@
+package onthego.database.core.database;
+
+import onthego.database.core.index.NodeCache;
+import onthego.database.core.table.SortOrder;
+
+public class DatabaseConfig {
+
+	public static final DatabaseConfig DEFAULT = new Builder().build();
+
+	//the bytes of index nodes cached in memory for all the tables of a database
+	private final long nodeCacheSize;
+
+	//the bytes of records a sort keeps in memory before spilling sorted runs to the database directory
+	private final long sortMemorySize;
+
+	//commits within the window share a force of the log of the database unless they log more than the size first
+	private final long groupCommitWindowMicros;
+
+	private final long groupCommitSize;
+
+	public static class Builder {
+
+		private long nodeCacheSize = NodeCache.DEFAULT_CAPACITY;
+
+		private long sortMemorySize = SortOrder.DEFAULT_MEMORY_SIZE;
+
+		private long groupCommitWindowMicros = 0;
+
+		private long groupCommitSize = 1024 * 1024;
+
+		public Builder() {}
+
+		public Builder nodeCacheSize(long nodeCacheSize) {
+			this.nodeCacheSize = nodeCacheSize;
+			return this;
+		}
+
+		public Builder sortMemorySize(long sortMemorySize) {
+			this.sortMemorySize = sortMemorySize;
+			return this;
+		}
+
+		public Builder groupCommitWindowMicros(long groupCommitWindowMicros) {
+			this.groupCommitWindowMicros = groupCommitWindowMicros;
+			return this;
+		}
+
+		public Builder groupCommitSize(long groupCommitSize) {
+			this.groupCommitSize = groupCommitSize;
+			return this;
+		}
+
+		public DatabaseConfig build() {
+			return new DatabaseConfig(this);
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	private DatabaseConfig(Builder builder) {
+		if (builder.nodeCacheSize < 1) {
+			throw new IllegalArgumentException("The node cache size(" + builder.nodeCacheSize + ") must be positive.");
+		}
+
+		if (builder.sortMemorySize < 1) {
+			throw new IllegalArgumentException("The sort memory size(" + builder.sortMemorySize + ") must be positive.");
+		}
+
+		if (builder.groupCommitWindowMicros < 0 || builder.groupCommitSize < 1) {
+			throw new IllegalArgumentException("The group commit window(" + builder.groupCommitWindowMicros + ") must not be negative and the group commit size(" + builder.groupCommitSize + ") must be positive.");
+		}
+
+		this.nodeCacheSize = builder.nodeCacheSize;
+		this.sortMemorySize = builder.sortMemorySize;
+		this.groupCommitWindowMicros = builder.groupCommitWindowMicros;
+		this.groupCommitSize = builder.groupCommitSize;
+	}
+
+	public long getNodeCacheSize() {
+		return nodeCacheSize;
+	}
+
+	public long getSortMemorySize() {
+		return sortMemorySize;
+	}
+
+	public long getGroupCommitWindowMicros() {
+		return groupCommitWindowMicros;
+	}
+
+	public long getGroupCommitSize() {
+		return groupCommitSize;
+	}
+}
@@ -0,0 +1,687 @@
+package onthego.database.core.index;
+
+import onthego.database.core.exception.InsufficientPayloadSpaceException;
+import onthego.database.core.serializer.Serializer;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import static onthego.database.util.IOUtils.*;
+
+/*
+ * BPlusTreeIndex - a B+tree index whose keys and record positions live only in the leaves.
+ * Internal nodes hold separators, where every key of the i-th child is not less than the
+ * (i-1)-th separator and less than the i-th one. Each leaf links to the next leaf, so seek()
+ * and range() find the first leaf once and then walk the leaves without going back up the tree.
+ */
+
+public class BPlusTreeIndex<T extends Comparable<? super T>> {
+
+	static class Node<T> {
+		boolean isLeaf;
+		int n;
+		long pos;
+
+		//the block holding the node, which differs from pos once the node has outgrown its first block
+		long blockPos;
+
+		T[] key;
+
+		//the record positions of a leaf
+		long[] recordPos;
+
+		//the children of an internal node
+		long[] childPos;
+
+		//the next leaf in the key order, 0 for the last leaf
+		long nextLeafPos;
+
+		@SuppressWarnings("unchecked")
+		Node(int threshold, boolean isLeaf, long pos) {
+			this.isLeaf = isLeaf;
+			this.n = 0;
+			this.key = (T[])new Comparable[2*threshold - 1];
+			if (isLeaf) {
+				this.recordPos = new long[2*threshold - 1];
+			} else {
+				this.childPos = new long[2*threshold];
+			}
+			this.pos = pos;
+			this.blockPos = pos;
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(Arrays.copyOf(key, n));
+		}
+	}
+
+	//walks the keys of the leaves in order up to an exclusive upper bound
+	//the current leaf stays pinned in the node cache until the iterator moves to the next one
+	public final class RangeIterator implements Iterator<T>, AutoCloseable {
+
+		private Node<T> leaf;
+
+		private int index;
+
+		private final T to;
+
+		private long recordPos = -1;
+
+		private RangeIterator(Node<T> leaf, int index, T to) {
+			this.leaf = leaf;
+			this.index = index;
+			this.to = to;
+			skipCompletedLeaves();
+		}
+
+		private void skipCompletedLeaves() {
+			while (leaf != null && index >= leaf.n) {
+				long nextLeafPos = leaf.nextLeafPos;
+				nodeCache.unpin(nodeWriter, leaf.pos);
+				leaf = nextLeafPos == 0 ? null : getNode(nextLeafPos, true);
+				index = 0;
+			}
+
+			if (leaf != null && to != null && comparator.compare(leaf.key[index], to) >= 0) {
+				close();
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return leaf != null;
+		}
+
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			T key = leaf.key[index];
+			recordPos = leaf.recordPos[index];
+			++index;
+			skipCompletedLeaves();
+			return key;
+		}
+
+		//the record position of the key returned last
+		public long getRecordPos() {
+			return recordPos;
+		}
+
+		//an iterator abandoned before its end releases its leaf
+		@Override
+		public void close() {
+			if (leaf != null) {
+				nodeCache.unpin(nodeWriter, leaf.pos);
+				leaf = null;
+			}
+		}
+	}
+
+	//the first byte of a block whose node has moved to another block
+	private static final byte FORWARDING_MARK = 2;
+
+	private static final int FORWARDING_STUB_SIZE = 1 + Long.BYTES;
+
+	//the first byte of a node of a B+tree
+	private static final byte NODE_FORMAT_MARK = 5;
+
+	//the mark, the leaf flag and the number of keys
+	private static final int NODE_HEADER_SIZE = 2 + 2;
+
+	//the expected bytes of a position delta until full nodes have been written
+	private static final int INITIAL_DELTA_SIZE = 2;
+
+	private final int threshold;
+
+	private final Comparator<? super T> comparator;
+
+	private final Serializer<T> serializer;
+
+	private final TablespaceManager tsManager;
+
+	private final NodeCache nodeCache;
+
+	//the nodes of this index are cached under this writer
+	private final NodeCache.NodeWriter<Node<T>> nodeWriter = this::writeNode;
+
+	//the root node stays pinned in the node cache
+	private Node<T> root;
+
+	//the bytes of a block allocated for a node, which is estimated for a full node
+	private int estimatedNodeSize;
+
+	//the bytes of a node in the node cache
+	private final int nodeMemorySize;
+
+	//the nodes pinned by the running insertion or deletion
+	@SuppressWarnings("unchecked")
+	private Node<T>[] pinnedNodes = new Node[16];
+
+	private int pinnedNodeCount = -1;
+
+	public BPlusTreeIndex(int threshold, Serializer<T> serializer, TablespaceManager tsManager) {
+		this(threshold, serializer, Comparator.naturalOrder(), tsManager, new NodeCache());
+	}
+
+	public BPlusTreeIndex(int threshold, Serializer<T> serializer, TablespaceManager tsManager, NodeCache nodeCache) {
+		this(threshold, serializer, Comparator.naturalOrder(), tsManager, nodeCache);
+	}
+
+	public BPlusTreeIndex(int threshold, Serializer<T> serializer, Comparator<? super T> comparator, TablespaceManager tsManager, NodeCache nodeCache) {
+		if (threshold < 2) {
+			throw new IllegalArgumentException("The threshold(" + threshold + ") of a B+tree must be at least 2.");
+		}
+
+		this.threshold = threshold;
+		this.serializer = serializer;
+		this.comparator = comparator;
+		this.tsManager = tsManager;
+		this.nodeCache = nodeCache;
+
+		int keySize = (int)serializer.estimateSize(null);
+		this.estimatedNodeSize = NODE_HEADER_SIZE + (2*threshold - 1) * (keySize + INITIAL_DELTA_SIZE) + 2*threshold * INITIAL_DELTA_SIZE;
+		this.nodeMemorySize = (2*threshold - 1) * (keySize + Long.BYTES) + 2*threshold * Long.BYTES;
+		initialize();
+	}
+
+	private void initialize() {
+		beginOperation();
+		try {
+			if (tsManager.getRootPos() == 0) {
+				changeRoot(allocateNode(true));
+				tsManager.saveRootPos(root.pos);
+				saveNode(root);
+			} else {
+				changeRoot(getNode(tsManager.getRootPos(), true));
+			}
+		} finally {
+			endOperation();
+		}
+	}
+
+	private void changeRoot(Node<T> newRoot) {
+		nodeCache.pin(nodeWriter, newRoot.pos);
+		if (root != null) {
+			nodeCache.unpin(nodeWriter, root.pos);
+		}
+		this.root = newRoot;
+	}
+
+	private void beginOperation() {
+		this.pinnedNodeCount = 0;
+	}
+
+	private void endOperation() {
+		for (int i = 0; i < pinnedNodeCount; ++i) {
+			nodeCache.unpin(nodeWriter, pinnedNodes[i].pos);
+			pinnedNodes[i] = null;
+		}
+		this.pinnedNodeCount = -1;
+	}
+
+	private void addPinnedNode(Node<T> node) {
+		if (pinnedNodeCount == pinnedNodes.length) {
+			pinnedNodes = Arrays.copyOf(pinnedNodes, 2 * pinnedNodes.length);
+		}
+		pinnedNodes[pinnedNodeCount++] = node;
+	}
+
+	//<mark><is_leaf><n><key>*n(<record_pos_delta>*n<next_leaf_pos> | <child_pos_delta>*(n+1))
+	private byte[] generatePayload(Node<T> node) {
+		try (ByteArrayOutputStream bout = new ByteArrayOutputStream(); DataOutputStream out = new DataOutputStream(bout)) {
+			out.writeByte(NODE_FORMAT_MARK);
+			out.writeBoolean(node.isLeaf);
+			writeVarLong(out, node.n);
+
+			for (int i = 0; i < node.n; ++i) {
+				serializer.write(out, node.key[i]);
+			}
+
+			if (node.isLeaf) {
+				writeDeltas(out, node.recordPos, node.n);
+				writeVarLong(out, node.nextLeafPos);
+			} else {
+				writeDeltas(out, node.childPos, node.n + 1);
+			}
+
+			out.flush();
+			return bout.toByteArray();
+		} catch (IOException ioe) {
+			throw new BTreeIndexException(ioe);
+		}
+	}
+
+	private static void writeDeltas(DataOutputStream out, long[] values, int count) throws IOException {
+		long prev = 0;
+		for (int i = 0; i < count; ++i) {
+			writeSignedVarLong(out, values[i] - prev);
+			prev = values[i];
+		}
+	}
+
+	private static void readDeltas(DataInputStream in, long[] values, int count) throws IOException {
+		long prev = 0;
+		for (int i = 0; i < count; ++i) {
+			values[i] = prev + readSignedVarLong(in);
+			prev = values[i];
+		}
+	}
+
+	//a node over half full tells how large a full node will be, so a new block has room for its growth
+	private void adjustEstimatedNodeSize(Node<T> node, int payloadSize) {
+		if (node.n >= threshold - 1) {
+			long fullNodeSize = NODE_HEADER_SIZE + (long)(payloadSize - NODE_HEADER_SIZE) * (2*threshold - 1) / node.n;
+			this.estimatedNodeSize = (int)Math.max(estimatedNodeSize, fullNodeSize);
+		}
+	}
+
+	//a modified node is written back when it is evicted from the node cache or flushed
+	private void saveNode(Node<T> node) {
+		nodeCache.markDirty(nodeWriter, node.pos, node, nodeMemorySize);
+	}
+
+	private void writeNode(Node<T> node) {
+		byte[] payload = generatePayload(node);
+		adjustEstimatedNodeSize(node, payload.length);
+		try {
+			tsManager.writeBlock(node.blockPos, payload);
+		} catch (InsufficientPayloadSpaceException e) {
+			relocateNode(node, payload);
+		}
+	}
+
+	//the parent keeps the position of the node, so the first block forwards to the new one
+	private void relocateNode(Node<T> node, byte[] payload) {
+		try {
+			if (node.blockPos != node.pos) {
+				tsManager.free(node.blockPos);
+			}
+			node.blockPos = tsManager.allocate(Math.max(payload.length, estimatedNodeSize));
+			tsManager.writeBlock(node.blockPos, payload);
+			tsManager.writeBlock(node.pos, ByteBuffer.allocate(FORWARDING_STUB_SIZE).put(FORWARDING_MARK).putLong(node.blockPos).array());
+		} catch (InsufficientPayloadSpaceException e) {
+			throw new BTreeIndexException("it's impossible to save a payload into a tablespace");
+		}
+	}
+
+	private Node<T> loadNode(long pos) {
+		long blockPos = pos;
+		byte[] payload = tsManager.readBlock(pos);
+		if (payload[0] == FORWARDING_MARK) {
+			blockPos = ByteBuffer.wrap(payload, 1, Long.BYTES).getLong();
+			payload = tsManager.readBlock(blockPos);
+		}
+
+		if (payload[0] != NODE_FORMAT_MARK) {
+			throw new BTreeIndexException("The block(" + blockPos + ") does not hold a node of a B+tree.");
+		}
+
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload, 1, payload.length - 1))) {
+			Node<T> node = new Node<>(threshold, in.readBoolean(), pos);
+			node.blockPos = blockPos;
+			node.n = (int)readVarLong(in);
+
+			for (int i = 0; i < node.n; ++i) {
+				node.key[i] = serializer.read(in);
+			}
+
+			if (node.isLeaf) {
+				readDeltas(in, node.recordPos, node.n);
+				node.nextLeafPos = readVarLong(in);
+			} else {
+				readDeltas(in, node.childPos, node.n + 1);
+			}
+			return node;
+		} catch (IOException ioe) {
+			throw new BTreeIndexException(ioe);
+		}
+	}
+
+	private Node<T> allocateNode(boolean isLeaf) {
+		long pos = tsManager.allocate(estimatedNodeSize);
+		Node<T> node = new Node<>(threshold, isLeaf, pos);
+		nodeCache.put(nodeWriter, pos, node, nodeMemorySize, pinnedNodeCount >= 0);
+		if (pinnedNodeCount >= 0) {
+			addPinnedNode(node);
+		}
+		return node;
+	}
+
+	private void freeNode(Node<T> node) {
+		nodeCache.remove(nodeWriter, node.pos);
+		if (node.blockPos != node.pos) {
+			tsManager.free(node.blockPos);
+		}
+		tsManager.free(node.pos);
+	}
+
+	private Node<T> getNode(long pos, boolean pinned) {
+		Node<T> node = nodeCache.get(nodeWriter, pos, pinned);
+		if (node == null) {
+			node = nodeCache.put(nodeWriter, pos, loadNode(pos), nodeMemorySize, pinned);
+		}
+		return node;
+	}
+
+	//a node modified by an insertion or a deletion must not be evicted before the operation ends
+	private Node<T> pinChild(Node<T> parent, int index) {
+		Node<T> node = getNode(parent.childPos[index], true);
+		addPinnedNode(node);
+		return node;
+	}
+
+	//the index of the first key not less than the key
+	private int lowerBound(Node<T> node, T key) {
+		return BTreeIndex.lowerBound(node.key, node.n, key, comparator);
+	}
+
+	//the index of the child whose keys may include the key, which is the number of separators not greater than it
+	private int childIndex(Node<T> node, T key) {
+		int low = 0;
+		int high = node.n;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(node.key[mid], key) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	private Node<T> findLeaf(T key, boolean pinned) {
+		Node<T> node = root;
+		while (!node.isLeaf) {
+			node = getNode(node.childPos[childIndex(node, key)], false);
+		}
+
+		if (pinned) {
+			nodeCache.pin(nodeWriter, node.pos);
+		}
+		return node;
+	}
+
+	private Node<T> findFirstLeaf() {
+		Node<T> node = root;
+		while (!node.isLeaf) {
+			node = getNode(node.childPos[0], false);
+		}
+		return node;
+	}
+
+	private Node<T> findLastLeaf() {
+		Node<T> node = root;
+		while (!node.isLeaf) {
+			node = getNode(node.childPos[node.n], false);
+		}
+		return node;
+	}
+
+	//returns -1 if there is no the key in this index
+	public long search(T key) {
+		Node<T> leaf = findLeaf(key, false);
+		int index = lowerBound(leaf, key);
+		if (index < leaf.n && comparator.compare(leaf.key[index], key) == 0) {
+			return leaf.recordPos[index];
+		}
+		return -1;
+	}
+
+	public boolean contains(T key) {
+		return search(key) != -1;
+	}
+
+	//the keys from the first one not less than the key to the last one
+	public RangeIterator seek(T key) {
+		return range(key, null);
+	}
+
+	//the keys not less than from and less than to, where a null bound leaves the range open
+	public RangeIterator range(T from, T to) {
+		if (from == null) {
+			Node<T> leaf = findFirstLeaf();
+			nodeCache.pin(nodeWriter, leaf.pos);
+			return new RangeIterator(leaf, 0, to);
+		}
+
+		Node<T> leaf = findLeaf(from, true);
+		return new RangeIterator(leaf, lowerBound(leaf, from), to);
+	}
+
+	public RangeIterator iterator() {
+		return range(null, null);
+	}
+
+	public T first() {
+		Node<T> leaf = findFirstLeaf();
+		return leaf.n == 0 ? null : leaf.key[0];
+	}
+
+	public T last() {
+		Node<T> leaf = findLastLeaf();
+		return leaf.n == 0 ? null : leaf.key[leaf.n - 1];
+	}
+
+	//split the full child of the parent, the first key of a right leaf is copied up as the separator
+	private void splitChild(Node<T> parent, int index) {
+		Node<T> child = pinChild(parent, index);
+		Node<T> sibling = allocateNode(child.isLeaf);
+
+		T separator;
+		if (child.isLeaf) {
+			sibling.n = threshold;
+			System.arraycopy(child.key, threshold - 1, sibling.key, 0, threshold);
+			System.arraycopy(child.recordPos, threshold - 1, sibling.recordPos, 0, threshold);
+			sibling.nextLeafPos = child.nextLeafPos;
+			child.nextLeafPos = sibling.pos;
+			separator = sibling.key[0];
+		} else {
+			sibling.n = threshold - 1;
+			System.arraycopy(child.key, threshold, sibling.key, 0, threshold - 1);
+			System.arraycopy(child.childPos, threshold, sibling.childPos, 0, threshold);
+			separator = child.key[threshold - 1];
+		}
+		Arrays.fill(child.key, threshold - 1, child.n, null);
+		child.n = threshold - 1;
+
+		System.arraycopy(parent.key, index, parent.key, index + 1, parent.n - index);
+		System.arraycopy(parent.childPos, index + 1, parent.childPos, index + 2, parent.n - index);
+		parent.key[index] = separator;
+		parent.childPos[index + 1] = sibling.pos;
+		parent.n++;
+
+		saveNode(parent);
+		saveNode(child);
+		saveNode(sibling);
+	}
+
+	public void insert(T key, long recordPos) {
+		//check if the input key has already been inserted into this index tree
+		if (contains(key)) {
+			throw new BTreeIndexException("duplicate key");
+		}
+
+		beginOperation();
+		try {
+			//in case that root node is full
+			if (root.n == 2*threshold - 1) {
+				Node<T> newRoot = allocateNode(false);
+				newRoot.childPos[0] = root.pos;
+				saveNode(newRoot);
+
+				changeRoot(newRoot);
+				tsManager.saveRootPos(newRoot.pos);
+
+				splitChild(root, 0);
+			}
+
+			Node<T> node = root;
+			while (!node.isLeaf) {
+				int index = childIndex(node, key);
+				Node<T> child = pinChild(node, index);
+				if (child.n == 2*threshold - 1) {
+					splitChild(node, index);
+					if (comparator.compare(key, node.key[index]) >= 0) {
+						child = pinChild(node, index + 1);
+					}
+				}
+				node = child;
+			}
+
+			int index = lowerBound(node, key);
+			System.arraycopy(node.key, index, node.key, index + 1, node.n - index);
+			System.arraycopy(node.recordPos, index, node.recordPos, index + 1, node.n - index);
+			node.key[index] = key;
+			node.recordPos[index] = recordPos;
+			node.n++;
+			saveNode(node);
+		} finally {
+			endOperation();
+		}
+	}
+
+	private void borrowFromLeft(Node<T> parent, int index, Node<T> left, Node<T> child) {
+		System.arraycopy(child.key, 0, child.key, 1, child.n);
+		if (child.isLeaf) {
+			System.arraycopy(child.recordPos, 0, child.recordPos, 1, child.n);
+			child.key[0] = left.key[left.n - 1];
+			child.recordPos[0] = left.recordPos[left.n - 1];
+			parent.key[index - 1] = child.key[0];
+		} else {
+			System.arraycopy(child.childPos, 0, child.childPos, 1, child.n + 1);
+			child.key[0] = parent.key[index - 1];
+			child.childPos[0] = left.childPos[left.n];
+			parent.key[index - 1] = left.key[left.n - 1];
+		}
+		left.key[--left.n] = null;
+		child.n++;
+
+		saveNode(parent);
+		saveNode(left);
+		saveNode(child);
+	}
+
+	private void borrowFromRight(Node<T> parent, int index, Node<T> child, Node<T> right) {
+		if (child.isLeaf) {
+			child.key[child.n] = right.key[0];
+			child.recordPos[child.n] = right.recordPos[0];
+			System.arraycopy(right.recordPos, 1, right.recordPos, 0, right.n - 1);
+			System.arraycopy(right.key, 1, right.key, 0, right.n - 1);
+			parent.key[index] = right.key[0];
+		} else {
+			child.key[child.n] = parent.key[index];
+			child.childPos[child.n + 1] = right.childPos[0];
+			parent.key[index] = right.key[0];
+			System.arraycopy(right.key, 1, right.key, 0, right.n - 1);
+			System.arraycopy(right.childPos, 1, right.childPos, 0, right.n);
+		}
+		right.key[--right.n] = null;
+		child.n++;
+
+		saveNode(parent);
+		saveNode(child);
+		saveNode(right);
+	}
+
+	//merge the right node into the left one around the separator of the parent
+	private Node<T> merge(Node<T> parent, int separator, Node<T> left, Node<T> right) {
+		if (left.isLeaf) {
+			System.arraycopy(right.key, 0, left.key, left.n, right.n);
+			System.arraycopy(right.recordPos, 0, left.recordPos, left.n, right.n);
+			left.n += right.n;
+			left.nextLeafPos = right.nextLeafPos;
+		} else {
+			left.key[left.n] = parent.key[separator];
+			System.arraycopy(right.key, 0, left.key, left.n + 1, right.n);
+			System.arraycopy(right.childPos, 0, left.childPos, left.n + 1, right.n + 1);
+			left.n += right.n + 1;
+		}
+
+		System.arraycopy(parent.key, separator + 1, parent.key, separator, parent.n - separator - 1);
+		System.arraycopy(parent.childPos, separator + 2, parent.childPos, separator + 1, parent.n - separator - 1);
+		parent.key[--parent.n] = null;
+
+		//in case that the parent node becomes an empty root node
+		if (parent == root && parent.n == 0) {
+			changeRoot(left);
+			tsManager.saveRootPos(left.pos);
+			freeNode(parent);
+		} else {
+			saveNode(parent);
+		}
+
+		saveNode(left);
+		freeNode(right);
+		return left;
+	}
+
+	//a child with the fewest keys takes a key from a sibling or merges with it before the descent
+	private Node<T> fillChild(Node<T> parent, int index, Node<T> child) {
+		Node<T> left = (index > 0) ? pinChild(parent, index - 1) : null;
+		Node<T> right = (index < parent.n) ? pinChild(parent, index + 1) : null;
+
+		if (left != null && left.n >= threshold) {
+			borrowFromLeft(parent, index, left, child);
+			return child;
+		} else if (right != null && right.n >= threshold) {
+			borrowFromRight(parent, index, child, right);
+			return child;
+		} else if (right != null) {
+			return merge(parent, index, child, right);
+		} else {
+			return merge(parent, index - 1, left, child);
+		}
+	}
+
+	public boolean delete(T key) {
+		beginOperation();
+		try {
+			Node<T> node = root;
+			while (!node.isLeaf) {
+				int index = childIndex(node, key);
+				Node<T> child = pinChild(node, index);
+				if (child.n < threshold) {
+					child = fillChild(node, index, child);
+				}
+				node = child;
+			}
+
+			int index = lowerBound(node, key);
+			if (index == node.n || comparator.compare(node.key[index], key) != 0) {
+				return false;
+			}
+
+			System.arraycopy(node.key, index + 1, node.key, index, node.n - index - 1);
+			System.arraycopy(node.recordPos, index + 1, node.recordPos, index, node.n - index - 1);
+			node.key[--node.n] = null;
+			saveNode(node);
+			return true;
+		} finally {
+			endOperation();
+		}
+	}
+
+	//write the modified nodes of this index into the tablespace
+	public void flush() {
+		nodeCache.flush(nodeWriter);
+	}
+
+	public void close() {
+		flush();
+		nodeCache.invalidate(nodeWriter);
+	}
+}
@@ -1,6 +1,7 @@
 package onthego.database.core.index;
 
 import onthego.database.core.exception.InsufficientPayloadSpaceException;
+import onthego.database.core.serializer.FrontCodingSerializer;
 import onthego.database.core.serializer.Serializer;
 import onthego.database.core.tablespace.manager.TablespaceManager;
 
@@ -9,18 +10,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Comparator;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Queue;
-import java.util.Stack;
 
 import static java.util.stream.Collectors.joining;
+import static onthego.database.util.IOUtils.*;
 
 public class BTreeIndex<T extends Comparable<? super T>> {
 	
@@ -29,10 +31,12 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 		int n;
 		long pos;
 		
+		//the block holding the node, which differs from pos once the node has outgrown its first block
+		long blockPos;
+		
 		T[] key;
 		long[] recordPos;
 		
-		Node<T>[] child;
 		long[] childPos;
 		
 		Node(int threshold, long pos) {
@@ -41,8 +45,8 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 			this.key = (T[])new Comparable[2*threshold - 1];
 			this.recordPos = new long[2*threshold - 1];
 			this.pos = pos;
+			this.blockPos = pos;
 			
-			this.child = new Node[2*threshold];
 			this.childPos = new long[2*threshold];
 		}
 		
@@ -68,78 +72,118 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 		}
 	}
 	
-	class BTreeIterator implements Iterator<T> {
+	//walks the keys in order with a stack of nodes and the index of the next key in each of them
+	//the nodes on the stack stay pinned in the node cache until their scan is completed
+	public final class BTreeIterator implements Iterator<T>, AutoCloseable {
 		
-		static final int INDEX_TYPE_CHILD = 0;
+		private Node<T>[] nodes = newNodeArray(INITIAL_ITERATOR_DEPTH);
 		
-		static final int INDEX_TYPE_KEY = 1;
+		private int[] indexes = new int[INITIAL_ITERATOR_DEPTH];
 		
-		Map<Node<T>,Pair<Integer,Integer>> map;
+		private int top = -1;
 		
-		Stack<Node<T>> stack;
+		//starts from the smallest key
+		private BTreeIterator() {
+			nodeCache.pin(nodeWriter, root.pos);
+			push(root, 0);
+			descend();
+			popCompleted();
+		}
 		
-		BTreeIterator() {
-			if (root != null && root.n > 0) {
-				this.map = new HashMap<>();
-				this.stack = new Stack<>();
-				stack.push(root);
-				map.put(root, new Pair<>(INDEX_TYPE_CHILD, 0));
+		//starts from the first key not less than the key
+		private BTreeIterator(T key) {
+			Node<T> node = root;
+			nodeCache.pin(nodeWriter, node.pos);
+			while (true) {
+				int index = lowerBound(node, key);
+				push(node, index);
+				if (node.isLeaf || (index < node.n && comparator.compare(node.key[index], key) == 0)) {
+					break;
+				}
+				node = loadChild(node, index, true);
+			}
+			popCompleted();
+		}
+		
+		private void push(Node<T> node, int index) {
+			if (++top == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+				indexes = Arrays.copyOf(indexes, 2 * indexes.length);
+			}
+			nodes[top] = node;
+			indexes[top] = index;
+		}
+		
+		//walk down to the leftmost leaf under the key index of the top node
+		private void descend() {
+			Node<T> node = nodes[top];
+			while (!node.isLeaf) {
+				node = loadChild(node, indexes[top], true);
+				push(node, 0);
+			}
+		}
+		
+		private void popCompleted() {
+			while (top >= 0 && indexes[top] >= nodes[top].n) {
+				nodeCache.unpin(nodeWriter, nodes[top].pos);
+				nodes[top--] = null;
 			}
 		}
 
 		@Override
 		public boolean hasNext() {
-			return (stack != null && !stack.isEmpty());
+			return top >= 0;
 		}
 
 		@Override
 		public T next() {
 			if (!hasNext()) {
-				return null;
+				throw new NoSuchElementException();
 			}
 			
-			Node<T> currentNode = stack.peek();
-			int indexType = map.get(currentNode).first;
-			int currentIndex = map.get(currentNode).second;
-			
-			
-			if (currentNode.isLeaf) {
-				if (currentIndex >= currentNode.n - 1) {
-					stack.pop();
-					map.remove(currentNode);
-				} else {
-					map.put(currentNode, new Pair<>(INDEX_TYPE_KEY,currentIndex + 1));
-				}
-			} else if (indexType == INDEX_TYPE_KEY && currentIndex < currentNode.n) {
-				map.put(currentNode, new Pair<>(INDEX_TYPE_CHILD,currentIndex + 1));
-			} else if (indexType == INDEX_TYPE_CHILD && currentIndex <= currentNode.n) {
-				while (!currentNode.isLeaf) {
-					if (currentIndex < currentNode.n) {
-						//A key of current node is scheduled to be accessed next time
-						map.put(currentNode, new Pair<>(INDEX_TYPE_KEY, currentIndex));
-					} else {
-						//the scan of current node is completed
-						stack.pop();
-						map.remove(currentNode);
-					}
-					
-					//a newly found internal node
-					//currentNode = currentNode.child[currentIndex];
-					currentNode = loadChild(currentNode, currentIndex);
-					currentIndex = 0;
-					stack.push(currentNode);
-					//map.put(currentNode, new Pair<>(INDEX_TYPE_KEY, 0));
-				}
-					
-				//in case of reaching to a leaf node
-				map.put(currentNode, new Pair<>(INDEX_TYPE_KEY, 1));
-				//currentIndex = 0;
+			Node<T> node = nodes[top];
+			T key = node.key[indexes[top]++];
+			if (!node.isLeaf) {
+				descend();
+			}
+			popCompleted();
+			return key;
+		}
+		
+		//an iterator abandoned before its end releases the nodes on its stack
+		@Override
+		public void close() {
+			while (top >= 0) {
+				nodeCache.unpin(nodeWriter, nodes[top].pos);
+				nodes[top--] = null;
 			}
-			
-			return currentNode.key[currentIndex];
 		}
 	}
 	
+	@SuppressWarnings("unchecked")
+	private static <T> Node<T>[] newNodeArray(int length) {
+		return new Node[length];
+	}
+	
+	//the first byte of a block whose node has moved to another block, unlike the leaf flag of a node
+	private static final byte FORWARDING_MARK = 2;
+	
+	private static final int FORWARDING_STUB_SIZE = 1 + Long.BYTES;
+	
+	//the first byte of a node which holds only its live entries, unlike the fixed format of full nodes
+	private static final byte COMPACT_FORMAT_MARK = 3;
+	
+	//the compact format whose keys of a node are front coded, for a serializer able to do it
+	private static final byte FRONT_CODED_FORMAT_MARK = 4;
+	
+	//the mark, the leaf flag and the number of keys
+	private static final int COMPACT_HEADER_SIZE = 2 + 2;
+	
+	//the expected bytes of a position delta until full nodes have been written
+	private static final int INITIAL_DELTA_SIZE = 2;
+	
+	private static final int INITIAL_ITERATOR_DEPTH = 8;
+	
 	private final int threshold;
 	
 	private Comparator<T> comparator;
@@ -148,83 +192,108 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 	
 	private final TablespaceManager tsManager;
 	
+	private final NodeCache nodeCache;
+	
+	//the nodes of this index are cached under this writer
+	private final NodeCache.NodeWriter<Node<T>> nodeWriter = this::writeNode;
+	
+	//the root node stays pinned in the node cache
 	private Node<T> root;
 	
+	//the bytes of a block allocated for a node, which is estimated for a full node
 	private int estimatedNodeSize;
+	
+	//the bytes of a node in the node cache
+	private final int nodeMemorySize;
+	
+	//the nodes pinned by the running insertion or deletion
+	private List<Node<T>> pinnedNodes;
 
 	public BTreeIndex(int threshold, Serializer<T> serializer, TablespaceManager tsManager) {
 		this(threshold, serializer, Comparator.naturalOrder(), tsManager);
-		initialize();
+	}
+	
+	public BTreeIndex(int threshold, Serializer<T> serializer, TablespaceManager tsManager, NodeCache nodeCache) {
+		this(threshold, serializer, Comparator.naturalOrder(), tsManager, nodeCache);
 	}
 	
 	public BTreeIndex(int threshold, Serializer<T> serializer, Comparator<T> comparator, TablespaceManager tsManager) {
+		this(threshold, serializer, comparator, tsManager, new NodeCache());
+	}
+	
+	public BTreeIndex(int threshold, Serializer<T> serializer, Comparator<T> comparator, TablespaceManager tsManager, NodeCache nodeCache) {
         this.threshold = threshold;
         this.serializer = serializer;
         this.comparator = comparator;
         this.tsManager = tsManager;
+        this.nodeCache = nodeCache;
         this.estimatedNodeSize = estimateNodeSize();
+        this.nodeMemorySize = estimateNodeMemorySize();
         initialize();
 	}
 	
 	private void initialize() {
-		if (tsManager.getRootPos() == 0) {
-			this.root = allocateNode(true);
-			tsManager.saveRootPos(root.pos);
-			saveNode(root);
-		} else  {
-			this.root = loadNode(tsManager.getRootPos());
-		}
-	}
-	
-//	private byte[] generatePayload(Node<T> node) {
-//		try (ByteArrayOutputStream bout = new ByteArrayOutputStream();
-//			 ObjectOutputStream out = new ObjectOutputStream(bout)) {
-//			out.writeBoolean(node.isLeaf);
-//			out.writeInt(node.n);
-//
-//			for (int i = 0; i < node.key.length; ++i) {
-//				try {
-//					out.writeObject(node.key[i]);
-//				} catch (Exception e) {
-//					throw new BTreeIndexException(e);
-//				}
-//			}
-//
-//			for (int i = 0; i < node.recordPos.length; ++i) {
-//				out.writeLong(node.recordPos[i]);
-//			}
-//
-//			for (int i = 0; i < node.childPos.length; ++i) {
-//				out.writeLong(node.childPos[i]);
-//			}
-//
-//			out.flush();
-//			return bout.toByteArray();
-//		} catch(IOException ioe) {
-//			throw new BTreeIndexException(ioe);
-//		}
-//	}
-
+		beginOperation();
+		try {
+			if (tsManager.getRootPos() == 0) {
+				changeRoot(allocateNode(true));
+				tsManager.saveRootPos(root.pos);
+				saveNode(root);
+			} else  {
+				changeRoot(getNode(tsManager.getRootPos(), true));
+			}
+		} finally {
+			endOperation();
+		}
+	}
+	
+	private void changeRoot(Node<T> newRoot) {
+		nodeCache.pin(nodeWriter, newRoot.pos);
+		if (root != null) {
+			nodeCache.unpin(nodeWriter, root.pos);
+		}
+		this.root = newRoot;
+	}
+	
+	private void beginOperation() {
+		this.pinnedNodes = new ArrayList<>();
+	}
+	
+	private void endOperation() {
+		List<Node<T>> nodes = pinnedNodes;
+		this.pinnedNodes = null;
+		nodes.forEach(node -> nodeCache.unpin(nodeWriter, node.pos));
+	}
+	
+	//<mark><is_leaf><n><key>*n<record_pos_delta>*n(<child_pos_delta>*(n+1))
+	//positions are written as the zigzag varints of the differences from the previous ones
     private byte[] generatePayload(Node<T> node) {
         try (ByteArrayOutputStream bout = new ByteArrayOutputStream(); DataOutputStream out = new DataOutputStream(bout)) {
+            boolean frontCoded = serializer instanceof FrontCodingSerializer;
+            out.writeByte(frontCoded ? FRONT_CODED_FORMAT_MARK : COMPACT_FORMAT_MARK);
             out.writeBoolean(node.isLeaf);
-            out.writeInt(node.n);
+            writeVarLong(out, node.n);
 
-            for (int i = 0; i < node.key.length; ++i) {
-//                try {
+            if (frontCoded) {
+                writeFrontCodedKeys(out, node);
+            } else {
+                for (int i = 0; i < node.n; ++i) {
                     serializer.write(out, node.key[i]);
-//                    out.writeObject(node.key[i]);
-//                } catch (Exception e) {
-//                    throw new BTreeIndexException(e);
-//                }
+                }
             }
 
-            for (int i = 0; i < node.recordPos.length; ++i) {
-                out.writeLong(node.recordPos[i]);
+            long prevPos = 0;
+            for (int i = 0; i < node.n; ++i) {
+                writeSignedVarLong(out, node.recordPos[i] - prevPos);
+                prevPos = node.recordPos[i];
             }
 
-            for (int i = 0; i < node.childPos.length; ++i) {
-                out.writeLong(node.childPos[i]);
+            if (!node.isLeaf) {
+                prevPos = 0;
+                for (int i = 0; i <= node.n; ++i) {
+                    writeSignedVarLong(out, node.childPos[i] - prevPos);
+                    prevPos = node.childPos[i];
+                }
             }
 
             out.flush();
@@ -234,52 +303,118 @@ public class BTreeIndex<T extends Comparable<? super T>> {
         }
     }
 	
+	//<prefix_length><prefix>(<suffix_length><suffix>)*n in place of the keys
+	private void writeFrontCodedKeys(DataOutputStream out, Node<T> node) throws IOException {
+		FrontCodingSerializer<T> frontCoding = (FrontCodingSerializer<T>)serializer;
+		byte[][] forms = new byte[node.n][];
+		ByteArrayOutputStream formOut = new ByteArrayOutputStream();
+		DataOutputStream formData = new DataOutputStream(formOut);
+		for (int i = 0; i < node.n; ++i) {
+			formOut.reset();
+			frontCoding.writeFrontCoded(formData, node.key[i]);
+			formData.flush();
+			forms[i] = formOut.toByteArray();
+		}
+		
+		int prefixLength = (node.n == 0) ? 0 : forms[0].length;
+		for (int i = 1; i < node.n && prefixLength > 0; ++i) {
+			int mismatch = Arrays.mismatch(forms[0], 0, prefixLength, forms[i], 0, Math.min(prefixLength, forms[i].length));
+			if (mismatch >= 0) {
+				prefixLength = mismatch;
+			}
+		}
+		
+		writeVarLong(out, prefixLength);
+		if (prefixLength > 0) {
+			out.write(forms[0], 0, prefixLength);
+		}
+		for (byte[] form : forms) {
+			writeVarLong(out, form.length - prefixLength);
+			out.write(form, prefixLength, form.length - prefixLength);
+		}
+	}
+	
+	private void readFrontCodedKeys(DataInputStream in, Node<T> node) throws IOException {
+		FrontCodingSerializer<T> frontCoding = (FrontCodingSerializer<T>)serializer;
+		int prefixLength = (int)readVarLong(in);
+		byte[] form = new byte[prefixLength + 64];
+		in.readFully(form, 0, prefixLength);
+		
+		//the prefix stays at the front of the buffer while every suffix is read after it
+		for (int i = 0; i < node.n; ++i) {
+			int suffixLength = (int)readVarLong(in);
+			if (prefixLength + suffixLength > form.length) {
+				form = Arrays.copyOf(form, 2 * (prefixLength + suffixLength));
+			}
+			in.readFully(form, prefixLength, suffixLength);
+			node.key[i] = frontCoding.readFrontCoded(form, 0, prefixLength + suffixLength);
+		}
+	}
+	
 	private int estimateNodeSize() {
-		return generatePayload(new Node<T>(threshold, 0)).length;
+		int keySize = (int)serializer.estimateSize(null);
+		return COMPACT_HEADER_SIZE + (2*threshold - 1) * (keySize + INITIAL_DELTA_SIZE) + 2*threshold * INITIAL_DELTA_SIZE;
+	}
+	
+	//the arrays of a node are allocated for a full node in memory
+	private int estimateNodeMemorySize() {
+		return (int)((2*threshold - 1) * (serializer.estimateSize(null) + Long.BYTES) + 2*threshold * Long.BYTES);
 	}
 	
+	//a node over half full tells how large a full node will be, so a new block has room for its growth
+	private void adjustEstimatedNodeSize(Node<T> node, int payloadSize) {
+		if (node.n >= threshold - 1) {
+			long fullNodeSize = COMPACT_HEADER_SIZE + (long)(payloadSize - COMPACT_HEADER_SIZE) * (2*threshold - 1) / node.n;
+			this.estimatedNodeSize = (int)Math.max(estimatedNodeSize, fullNodeSize);
+		}
+	}
+	
+	//a modified node is written back when it is evicted from the node cache or flushed
 	private void saveNode(Node<T> node) {
+		nodeCache.markDirty(nodeWriter, node.pos, node, nodeMemorySize);
+	}
+	
+	private void writeNode(Node<T> node) {
 		byte[] payload = generatePayload(node);
+		adjustEstimatedNodeSize(node, payload.length);
 		try {
-			tsManager.writeBlock(node.pos, payload);
+			tsManager.writeBlock(node.blockPos, payload);
 		} catch (InsufficientPayloadSpaceException e) {
 			retrySaveWithAdjustedSize(node, payload);
 		}
 	}
 
+	//the parent keeps the position of the node, so the first block forwards to the new one
 	private void retrySaveWithAdjustedSize(Node<T> node, byte[] payload) {
 		try {
-			freeNode(node);
-			this.estimatedNodeSize = payload.length;
-			node.pos = tsManager.allocate(payload.length);
-			if (node == root) {
-				tsManager.saveRootPos(node.pos);
+			if (node.blockPos != node.pos) {
+				tsManager.free(node.blockPos);
 			}
-			tsManager.writeBlock(node.pos, payload);
+			node.blockPos = tsManager.allocate(Math.max(payload.length, estimatedNodeSize));
+			tsManager.writeBlock(node.blockPos, payload);
+			tsManager.writeBlock(node.pos, ByteBuffer.allocate(FORWARDING_STUB_SIZE).put(FORWARDING_MARK).putLong(node.blockPos).array());
 		} catch (InsufficientPayloadSpaceException e) {
 			throw new BTreeIndexException("it's impossible to save a payload into a tablespace");
 		}
 	}
 	
 	private Node<T> loadNode(long pos) {
-		try (ByteArrayInputStream bin = new ByteArrayInputStream(tsManager.readBlock(pos));
+		long blockPos = pos;
+		byte[] payload = tsManager.readBlock(pos);
+		if (payload[0] == FORWARDING_MARK) {
+			blockPos = ByteBuffer.wrap(payload, 1, Long.BYTES).getLong();
+			payload = tsManager.readBlock(blockPos);
+		}
+		
+		try (ByteArrayInputStream bin = new ByteArrayInputStream(payload);
 			 DataInputStream in = new DataInputStream(bin)) {
 			Node<T> node = new Node<T>(threshold, pos);
-			node.isLeaf = in.readBoolean();
-			node.n = in.readInt();
-			
-			for (int i = 0; i < node.key.length; ++i) {
-				node.key[i] = serializer.read(in);
-			}
-			
-			for (int i = 0; i < node.recordPos.length; ++i) {
-				node.recordPos[i] = in.readLong();
-			}
-			
-			for (int i = 0; i < node.childPos.length; ++i) {
-				node.childPos[i] = in.readLong();
+			node.blockPos = blockPos;
+			if (payload[0] == COMPACT_FORMAT_MARK || payload[0] == FRONT_CODED_FORMAT_MARK) {
+				readCompactNode(in, node);
+			} else {
+				readFixedNode(in, node);
 			}
-			
 			return node;
 		} catch(Exception e) {
             e.printStackTrace();
@@ -287,20 +422,111 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 		}
 	}
 	
+	private void readCompactNode(DataInputStream in, Node<T> node) throws IOException {
+		byte mark = in.readByte();
+		node.isLeaf = in.readBoolean();
+		node.n = (int)readVarLong(in);
+		
+		if (mark == FRONT_CODED_FORMAT_MARK) {
+			readFrontCodedKeys(in, node);
+		} else {
+			for (int i = 0; i < node.n; ++i) {
+				node.key[i] = serializer.read(in);
+			}
+		}
+		
+		long prevPos = 0;
+		for (int i = 0; i < node.n; ++i) {
+			node.recordPos[i] = prevPos + readSignedVarLong(in);
+			prevPos = node.recordPos[i];
+		}
+		
+		if (!node.isLeaf) {
+			prevPos = 0;
+			for (int i = 0; i <= node.n; ++i) {
+				node.childPos[i] = prevPos + readSignedVarLong(in);
+				prevPos = node.childPos[i];
+			}
+		}
+	}
+	
+	//nodes written before the compact format hold every slot of a full node
+	private void readFixedNode(DataInputStream in, Node<T> node) throws IOException {
+		node.isLeaf = in.readBoolean();
+		node.n = in.readInt();
+		
+		for (int i = 0; i < node.key.length; ++i) {
+			node.key[i] = serializer.read(in);
+		}
+		
+		for (int i = 0; i < node.recordPos.length; ++i) {
+			node.recordPos[i] = in.readLong();
+		}
+		
+		for (int i = 0; i < node.childPos.length; ++i) {
+			node.childPos[i] = in.readLong();
+		}
+	}
+	
 	private Node<T> allocateNode(boolean isLeaf) {
 		long pos = tsManager.allocate(this.estimatedNodeSize);
-		return new Node<T>(threshold, isLeaf, pos);
+		Node<T> node = new Node<T>(threshold, isLeaf, pos);
+		nodeCache.put(nodeWriter, pos, node, nodeMemorySize, pinnedNodes != null);
+		if (pinnedNodes != null) {
+			pinnedNodes.add(node);
+		}
+		return node;
 	}
 	
 	private void freeNode(Node<T> node) {
+		nodeCache.remove(nodeWriter, node.pos);
+		if (node.blockPos != node.pos) {
+			tsManager.free(node.blockPos);
+		}
 		tsManager.free(node.pos);
 	}
 	
+	//concurrent cursors may load the same node at once, and the node cache keeps only one of them
+	private Node<T> getNode(long pos, boolean pinned) {
+		Node<T> node = nodeCache.get(nodeWriter, pos, pinned);
+		if (node == null) {
+			node = nodeCache.put(nodeWriter, pos, loadNode(pos), nodeMemorySize, pinned);
+		}
+		return node;
+	}
+	
+	private Node<T> loadChild(Node<T> parent, int index, boolean pinned) {
+		return getNode(parent.childPos[index], pinned);
+	}
+	
 	private Node<T> loadChild(Node<T> parent, int index) {
-		if (parent.child[index] == null) {
-			parent.child[index] = loadNode(parent.childPos[index]);
+		return loadChild(parent, index, false);
+	}
+	
+	//a node modified by an insertion or a deletion must not be evicted before the operation ends
+	private Node<T> pinChild(Node<T> parent, int index) {
+		Node<T> node = loadChild(parent, index, true);
+		pinnedNodes.add(node);
+		return node;
+	}
+	
+	//the index of the first key not less than the key among the first n keys
+	static <T> int lowerBound(T[] keys, int n, T key, Comparator<? super T> comparator) {
+		int low = 0;
+		int high = n;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparator.compare(keys[mid], key) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
 		}
-		return parent.child[index];
+		return low;
+	}
+	
+	private int lowerBound(Node<T> node, T key) {
+		return lowerBound(node.key, node.n, key, comparator);
 	}
 	
 	private long search(Node<T> node, T key) {
@@ -308,10 +534,7 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 			return -1;
 		}
 		
-		int i = 0;
-		while (i < node.n && comparator.compare(key, node.key[i]) > 0) {
-			++i;
-		}
+		int i = lowerBound(node, key);
 		
 		if (i < node.n && comparator.compare(key, node.key[i]) == 0) { //equal to the key
 			return node.recordPos[i];
@@ -331,8 +554,7 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 		node.recordPos[index] = recordPos;
 	}
 	
-	private void assignChildValue(Node<T> node, int index, Node<T> child, long childPos) {
-		node.child[index] = child;
+	private void assignChildValue(Node<T> node, int index, long childPos) {
 		node.childPos[index] = childPos;
 	}
 	
@@ -342,7 +564,6 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 	}
 	
 	private void assignChild(Node<T> dest, int destIndex, Node<T> src, int srcIndex) {
-		dest.child[destIndex] = src.child[srcIndex];
 		dest.childPos[destIndex] = src.childPos[srcIndex];
 	}
 	
@@ -384,7 +605,7 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 	
 	//split successor node(node.child[index]) 
 	private void splitChild(Node<T> parent, int index) {
-		Node<T> successor = loadChild(parent, index);
+		Node<T> successor = pinChild(parent, index);
 		Node<T> sibling = allocateNode(successor.isLeaf);
 		
 		sibling.n = threshold - 1;
@@ -397,7 +618,7 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 		moveBackChild(parent, index + 1);
 		parent.n++;
 		
-		assignChildValue(parent, index + 1, sibling, sibling.pos);
+		assignChildValue(parent, index + 1, sibling.pos);
 		assignKey(parent, index, successor, threshold - 1);
 		successor.n = threshold - 1;
 		
@@ -409,28 +630,19 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 	
 	
 	private void insert(Node<T> node, T key, long recordPos) {
+		int index = lowerBound(node, key);
 		if (node.isLeaf) {
-			int index = node.n - 1;
-			while (index >= 0 && comparator.compare(key, node.key[index]) <= 0) {
-				assignKey(node, index + 1, node, index);
-				--index;
-			}
-			
-			assignKeyValue(node, index + 1, key, recordPos);
+			moveBackKey(node, index);
+			assignKeyValue(node, index, key, recordPos);
 			node.n++;
 			saveNode(node);
 		} else {
-			int index = node.n - 1;
-			while (index >= 0 && comparator.compare(key, node.key[index]) <= 0) {
-				--index;
-			}
-			++index;
 			
-			Node<T> successor = loadChild(node, index);
+			Node<T> successor = pinChild(node, index);
 			if (successor.n == 2*threshold - 1) {
 				splitChild(node, index); 
 				if (comparator.compare(key, node.key[index]) > 0) {
-					successor = loadChild(node, index + 1);
+					successor = pinChild(node, index + 1);
 				}
 			}
 			
@@ -444,21 +656,155 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 			throw new BTreeIndexException("duplicate key");
 		}
 		
-		//in case that root node is full
-		if (root.n == 2*threshold - 1) {
-			Node<T> newRoot = allocateNode(false);
-			assignChildValue(newRoot, 0, root, root.pos);
-			saveNode(newRoot);
-			
-			root = newRoot;
-			tsManager.saveRootPos(newRoot.pos);
+		beginOperation();
+		try {
+			//in case that root node is full
+			if (root.n == 2*threshold - 1) {
+				Node<T> newRoot = allocateNode(false);
+				assignChildValue(newRoot, 0, root.pos);
+				saveNode(newRoot);
+				
+				changeRoot(newRoot);
+				tsManager.saveRootPos(newRoot.pos);
+				
+				splitChild(root, 0);
+			}
 			
-			splitChild(root, 0);
+			insert(root, key, recordPos);
+		} finally {
+			endOperation();
 		}
-		
-		insert(root, key, recordPos);
 	}
-	
+
+	//builds full nodes level by level from sorted entries, one node under construction per level
+	//a finished node is written at once, so the nodes take up the tablespace in the order they are built
+	private class BulkLoader {
+
+		private final List<Node<T>> levels = new ArrayList<>();
+
+		private T lastKey;
+
+		void add(T key, long recordPos) {
+			if (lastKey != null && comparator.compare(lastKey, key) >= 0) {
+				throw new BTreeIndexException("The keys(" + lastKey + ", " + key + ") of a bulk load are not in ascending order.");
+			}
+			lastKey = key;
+			addKey(0, key, recordPos);
+		}
+
+		//a key arriving at a full node becomes the separator between the node and the next one in the parent level
+		private void addKey(int level, T key, long recordPos) {
+			Node<T> node = getLevel(level);
+			if (node.n < 2*threshold - 1) {
+				assignKeyValue(node, node.n++, key, recordPos);
+				return;
+			}
+
+			addChild(level + 1, writeBuiltNode(node));
+			levels.set(level, new Node<T>(threshold, level == 0, 0));
+			addKey(level + 1, key, recordPos);
+		}
+
+		private void addChild(int level, long childPos) {
+			Node<T> node = getLevel(level);
+			assignChildValue(node, node.n, childPos);
+		}
+
+		private Node<T> getLevel(int level) {
+			if (level == levels.size()) {
+				levels.add(new Node<T>(threshold, level == 0, 0));
+			}
+			return levels.get(level);
+		}
+
+		private long writeBuiltNode(Node<T> node) {
+			byte[] payload = generatePayload(node);
+			adjustEstimatedNodeSize(node, payload.length);
+			node.pos = tsManager.allocate(Math.max(payload.length, estimatedNodeSize));
+			node.blockPos = node.pos;
+			try {
+				tsManager.writeBlock(node.pos, payload);
+			} catch (InsufficientPayloadSpaceException e) {
+				throw new BTreeIndexException("it's impossible to save a payload into a tablespace");
+			}
+			return node.pos;
+		}
+
+		//the nodes under construction form the rightmost path, and the top one becomes the root
+		long finish() {
+			int top = levels.size() - 1;
+			for (int level = 0; level < top; ++level) {
+				addChild(level + 1, writeBuiltNode(levels.get(level)));
+			}
+			return writeBuiltNode(levels.get(top));
+		}
+	}
+
+	//only the rightmost path may hold fewer keys than a node must hold after a bulk load
+	//such a node takes keys from its full left sibling through the separator in the parent
+	private void fillRightmostPath() {
+		beginOperation();
+		try {
+			Node<T> node = root;
+			while (!node.isLeaf) {
+				Node<T> successor = pinChild(node, node.n);
+				if (successor.n < threshold - 1) {
+					Node<T> leftSibling = pinChild(node, node.n - 1);
+					int count = threshold - 1 - successor.n;
+
+					for (int index = successor.n - 1; index >= 0; --index) {
+						assignKey(successor, index + count, successor, index);
+					}
+					if (!successor.isLeaf) {
+						for (int index = successor.n; index >= 0; --index) {
+							assignChild(successor, index + count, successor, index);
+						}
+						transplantChild(successor, 0, leftSibling, leftSibling.n - count + 1, count);
+					}
+
+					//transplant : parent -> successor, left sibling -> successor and parent
+					assignKey(successor, count - 1, node, node.n - 1);
+					transplantKey(successor, 0, leftSibling, leftSibling.n - count + 1, count - 1);
+					assignKey(node, node.n - 1, leftSibling, leftSibling.n - count);
+					leftSibling.n -= count;
+					successor.n += count;
+
+					saveNode(node);
+					saveNode(leftSibling);
+					saveNode(successor);
+				}
+				node = successor;
+			}
+		} finally {
+			endOperation();
+		}
+	}
+
+	//load the entries sorted by key into an empty index, which is much cheaper than inserting them one by one
+	public void bulkLoad(Iterator<? extends Map.Entry<T,Long>> entries) {
+		if (root.n > 0) {
+			throw new BTreeIndexException("only an empty index can be bulk loaded");
+		}
+
+		if (!entries.hasNext()) {
+			return;
+		}
+
+		BulkLoader loader = new BulkLoader();
+		while (entries.hasNext()) {
+			Map.Entry<T,Long> entry = entries.next();
+			loader.add(entry.getKey(), entry.getValue());
+		}
+		long rootPos = loader.finish();
+
+		Node<T> emptyRoot = root;
+		changeRoot(getNode(rootPos, true));
+		tsManager.saveRootPos(rootPos);
+		freeNode(emptyRoot);
+
+		fillRightmostPath();
+	}
+
 	private Node<T> merge(Node<T> parent, int index, Node<T> successor, Node<T> sibling) {
 		assignKey(successor, successor.n, parent, index);
 		successor.n++;
@@ -475,7 +821,7 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 		
 		//in case that the parent node becomes an empty root node
 		if (parent == root && parent.n == 0) {
-			this.root = successor;
+			changeRoot(successor);
 			tsManager.saveRootPos(successor.pos);
 		} else {
 			saveNode(parent);
@@ -501,10 +847,7 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 	}
 	
 	private boolean delete(Node<T> node, T key) {
-		int i = 0;
-		while (i < node.n && comparator.compare(key, node.key[i]) > 0) {
-			++i;
-		}
+		int i = lowerBound(node, key);
 				
 		// in case of reaching to leaf node
 		if (node.isLeaf) {
@@ -522,8 +865,8 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 		
 		// in case that the matched key is in an internal node
 		if (i < node.n && comparator.compare(key, node.key[i]) == 0) {
-			Node<T> leftChild = loadChild(node, i);
-			Node<T> rightChild = loadChild(node, i + 1);
+			Node<T> leftChild = pinChild(node, i);
+			Node<T> rightChild = pinChild(node, i + 1);
 	
 			if (leftChild.n >= threshold) {
 				Pair<T,Long> predKey = findMaxKey(leftChild);
@@ -540,11 +883,11 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 				return delete(successor, key);
 			}
 		} else { //(i < node.n && comparator.compare(key, node.key[i]) < 0) || (i == node.n)
-			Node<T> successor = loadChild(node, i);
+			Node<T> successor = pinChild(node, i);
 
 			if (successor.n < threshold) {
-				Node<T> rightSibling = (i < node.n) ? loadChild(node, i + 1) : null;
-				Node<T> leftSibling = (i > 0) ? loadChild(node, i - 1) : null;
+				Node<T> rightSibling = (i < node.n) ? pinChild(node, i + 1) : null;
+				Node<T> leftSibling = (i > 0) ? pinChild(node, i - 1) : null;
 				
 				if (rightSibling != null && rightSibling.n >= threshold) {
 					//transplant : parent -> successor
@@ -581,7 +924,7 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 					//transplant : left sibling -> parent
 					assignKey(node, i - 1, leftSibling, leftSibling.n - 1);
 					if (!leftSibling.isLeaf) {
-						assignChild(node, 0, leftSibling, leftSibling.n);
+						assignChild(successor, 0, leftSibling, leftSibling.n);
 					}
 					leftSibling.n--;
 					
@@ -602,13 +945,59 @@ public class BTreeIndex<T extends Comparable<? super T>> {
 	}
 
 	public boolean delete(T key) {
-		return delete(root, key);
+		beginOperation();
+		try {
+			return delete(root, key);
+		} finally {
+			endOperation();
+		}
 	}
 	
-	public Iterator<T> iterator() {
+	//the smallest key, found along the leftmost path
+	public T first() {
+		if (root == null || root.n == 0) {
+			return null;
+		}
+
+		Node<T> node = root;
+		while (!node.isLeaf) {
+			node = loadChild(node, 0);
+		}
+		return node.key[0];
+	}
+	
+	//the largest key, found along the rightmost path
+	public T last() {
+		if (root == null || root.n == 0) {
+			return null;
+		}
+
+		Node<T> node = root;
+		while (!node.isLeaf) {
+			node = loadChild(node, node.n);
+		}
+		return node.key[node.n - 1];
+	}
+
+	public BTreeIterator iterator() {
 		return new BTreeIterator();
 	}
 	
+	//the keys from the first one not less than the key to the largest one
+	public BTreeIterator seek(T key) {
+		return new BTreeIterator(key);
+	}
+	
+	//write the modified nodes of this index into the tablespace
+	public void flush() {
+		nodeCache.flush(nodeWriter);
+	}
+	
+	public void close() {
+		flush();
+		nodeCache.invalidate(nodeWriter);
+	}
+	
 	public void printLevelOrder() {
 		if (root == null) {
 			return;
@@ -0,0 +1,345 @@
+package onthego.database.core.index;
+
+import onthego.database.core.exception.InsufficientPayloadSpaceException;
+import onthego.database.core.serializer.Serializer;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * HashIndex - an extendible hash index whose buckets are blocks of a tablespace.
+ * The directory of 2^globalDepth bucket positions lives in memory and in the root block,
+ * so a lookup reads only the bucket which the hash of its key selects, however many keys
+ * there are. A full bucket splits in two by the next bit of the hash, and the directory
+ * doubles when the bucket is already as deep as the directory. A key may map to several
+ * record positions, and a bucket whose keys all share one hash grows instead of splitting.
+ */
+
+public class HashIndex<T> {
+
+	static class Bucket<T> {
+		long pos;
+		int localDepth;
+		int n;
+		Object[] key;
+		long[] recordPos;
+
+		Bucket(long pos, int localDepth, int capacity) {
+			this.pos = pos;
+			this.localDepth = localDepth;
+			this.key = new Object[capacity];
+			this.recordPos = new long[capacity];
+		}
+
+		@SuppressWarnings("unchecked")
+		T getKey(int i) {
+			return (T)key[i];
+		}
+
+		void add(T newKey, long newRecordPos) {
+			if (n == key.length) {
+				key = Arrays.copyOf(key, 2 * n);
+				recordPos = Arrays.copyOf(recordPos, 2 * n);
+			}
+			key[n] = newKey;
+			recordPos[n] = newRecordPos;
+			++n;
+		}
+
+		void remove(int i) {
+			--n;
+			key[i] = key[n];
+			recordPos[i] = recordPos[n];
+			key[n] = null;
+		}
+	}
+
+	//<directory_mark><global_depth><bucket_pos,...>
+	private static final byte DIRECTORY_MARK = 'H';
+
+	//<bucket_mark><local_depth><key_count><(key,record_pos),...>
+	private static final byte BUCKET_MARK = 'B';
+
+	private static final int DIRECTORY_HEADER_SIZE = 1 + Integer.BYTES;
+
+	private static final int BUCKET_HEADER_SIZE = 1 + 2 * Integer.BYTES;
+
+	//a bucket stops splitting at this depth, which bounds the directory to 2^MAX_DEPTH bucket positions
+	private static final int MAX_DEPTH = 24;
+
+	public static final int DEFAULT_BUCKET_CAPACITY = 64;
+
+	private final int bucketCapacity;
+
+	private final Serializer<T> serializer;
+
+	private final TablespaceManager tsManager;
+
+	private final int estimatedBucketSize;
+
+	private int globalDepth;
+
+	private long[] directory;
+
+	private long directoryPos;
+
+	//the directory changed in memory but not yet written into its block
+	private boolean directoryDirty;
+
+	public HashIndex(Serializer<T> serializer, TablespaceManager tsManager) {
+		this(DEFAULT_BUCKET_CAPACITY, serializer, tsManager);
+	}
+
+	public HashIndex(int bucketCapacity, Serializer<T> serializer, TablespaceManager tsManager) {
+		if (bucketCapacity < 1) {
+			throw new HashIndexException("the capacity of a bucket must be positive");
+		}
+
+		this.bucketCapacity = bucketCapacity;
+		this.serializer = serializer;
+		this.tsManager = tsManager;
+		this.estimatedBucketSize = BUCKET_HEADER_SIZE + bucketCapacity * (int)(serializer.estimateSize(null) + Long.BYTES);
+
+		this.directoryPos = tsManager.getRootPos();
+		if (directoryPos == 0) {
+			Bucket<T> bucket = new Bucket<>(tsManager.allocate(estimatedBucketSize), 0, bucketCapacity);
+			writeBucket(bucket);
+			this.globalDepth = 0;
+			this.directory = new long[]{bucket.pos};
+			this.directoryDirty = true;
+			flush();
+		} else {
+			loadDirectory();
+		}
+	}
+
+	//tells a tablespace holding a hash index from one holding another kind of index
+	public static boolean isHashIndex(TablespaceManager tsManager) {
+		long rootPos = tsManager.getRootPos();
+		return rootPos != 0 && tsManager.readBlock(rootPos)[0] == DIRECTORY_MARK;
+	}
+
+	private void loadDirectory() {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(tsManager.readBlock(directoryPos)))) {
+			if (in.readByte() != DIRECTORY_MARK) {
+				throw new HashIndexException("the root block is not the directory of a hash index");
+			}
+
+			globalDepth = in.readInt();
+			directory = new long[1 << globalDepth];
+			for (int i = 0; i < directory.length; ++i) {
+				directory[i] = in.readLong();
+			}
+		} catch (IOException e) {
+			throw new HashIndexException(e);
+		}
+	}
+
+	public void flush() {
+		if (!directoryDirty) {
+			return;
+		}
+
+		ByteBuffer payload = ByteBuffer.allocate(DIRECTORY_HEADER_SIZE + directory.length * Long.BYTES);
+		payload.put(DIRECTORY_MARK).putInt(globalDepth);
+		for (long bucketPos : directory) {
+			payload.putLong(bucketPos);
+		}
+		directoryDirty = false;
+
+		if (directoryPos != 0) {
+			try {
+				tsManager.writeBlock(directoryPos, payload.array());
+				return;
+			} catch (InsufficientPayloadSpaceException e) {
+				//the doubled directory moves to a block of its new size
+				tsManager.free(directoryPos);
+			}
+		}
+		directoryPos = tsManager.allocate(payload.capacity());
+		writeBlock(directoryPos, payload.array());
+		tsManager.saveRootPos(directoryPos);
+	}
+
+	public void close() {
+		flush();
+	}
+
+	//mixes the higher bits of the hash code into the lower ones which select the bucket
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		h ^= (h >>> 16);
+		h *= 0x85ebca6b;
+		h ^= (h >>> 13);
+		return h;
+	}
+
+	private int directoryIndex(int hash) {
+		return hash & ((1 << globalDepth) - 1);
+	}
+
+	private Bucket<T> getBucket(T key) {
+		return readBucket(directory[directoryIndex(hash(key))]);
+	}
+
+	public void insert(T key, long recordPos) {
+		int hash = hash(key);
+		while (true) {
+			Bucket<T> bucket = readBucket(directory[directoryIndex(hash)]);
+			if (bucket.n < bucketCapacity || bucket.localDepth == MAX_DEPTH || sharesHash(bucket, hash)) {
+				bucket.add(key, recordPos);
+				writeBucket(bucket);
+				return;
+			}
+			split(bucket);
+		}
+	}
+
+	private boolean sharesHash(Bucket<T> bucket, int hash) {
+		for (int i = 0; i < bucket.n; ++i) {
+			if (hash(bucket.key[i]) != hash) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void split(Bucket<T> bucket) {
+		if (bucket.localDepth == globalDepth) {
+			directory = Arrays.copyOf(directory, 2 * directory.length);
+			System.arraycopy(directory, 0, directory, directory.length / 2, directory.length / 2);
+			++globalDepth;
+		}
+
+		//the keys whose next bit of the hash is set move into the new bucket
+		int splitBit = 1 << bucket.localDepth;
+		Bucket<T> sibling = new Bucket<>(tsManager.allocate(estimatedBucketSize), bucket.localDepth + 1, bucketCapacity);
+		++bucket.localDepth;
+		for (int i = bucket.n - 1; i >= 0; --i) {
+			if ((hash(bucket.key[i]) & splitBit) != 0) {
+				sibling.add(bucket.getKey(i), bucket.recordPos[i]);
+				bucket.remove(i);
+			}
+		}
+
+		for (int i = 0; i < directory.length; ++i) {
+			if (directory[i] == bucket.pos && (i & splitBit) != 0) {
+				directory[i] = sibling.pos;
+			}
+		}
+		directoryDirty = true;
+
+		writeBucket(bucket);
+		writeBucket(sibling);
+	}
+
+	//a bucket emptied by deletions stays in the directory, so an index never shrinks
+	public boolean delete(T key, long recordPos) {
+		Bucket<T> bucket = getBucket(key);
+		for (int i = 0; i < bucket.n; ++i) {
+			if (bucket.recordPos[i] == recordPos && key.equals(bucket.key[i])) {
+				bucket.remove(i);
+				writeBucket(bucket);
+				return true;
+			}
+		}
+		return false;
+	}
+
+	//the record positions of the key in no particular order
+	public long[] search(T key) {
+		Bucket<T> bucket = getBucket(key);
+		long[] recordPositions = new long[bucket.n];
+		int count = 0;
+		for (int i = 0; i < bucket.n; ++i) {
+			if (key.equals(bucket.key[i])) {
+				recordPositions[count++] = bucket.recordPos[i];
+			}
+		}
+		return Arrays.copyOf(recordPositions, count);
+	}
+
+	public boolean contains(T key) {
+		Bucket<T> bucket = getBucket(key);
+		for (int i = 0; i < bucket.n; ++i) {
+			if (key.equals(bucket.key[i])) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getGlobalDepth() {
+		return globalDepth;
+	}
+
+	private Bucket<T> readBucket(long pos) {
+		try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(tsManager.readBlock(pos)))) {
+			if (in.readByte() != BUCKET_MARK) {
+				throw new HashIndexException("the block at " + pos + " is not a bucket of a hash index");
+			}
+
+			int localDepth = in.readInt();
+			int n = in.readInt();
+			Bucket<T> bucket = new Bucket<>(pos, localDepth, Math.max(n, bucketCapacity));
+			for (int i = 0; i < n; ++i) {
+				T key = serializer.read(in);
+				bucket.add(key, in.readLong());
+			}
+			return bucket;
+		} catch (IOException e) {
+			throw new HashIndexException(e);
+		}
+	}
+
+	//a bucket outgrowing its block moves to a larger one, and the directory follows it
+	private void writeBucket(Bucket<T> bucket) {
+		byte[] payload;
+		try (ByteArrayOutputStream bout = new ByteArrayOutputStream(estimatedBucketSize);
+			 DataOutputStream out = new DataOutputStream(bout)) {
+			out.writeByte(BUCKET_MARK);
+			out.writeInt(bucket.localDepth);
+			out.writeInt(bucket.n);
+			for (int i = 0; i < bucket.n; ++i) {
+				serializer.write(out, bucket.getKey(i));
+				out.writeLong(bucket.recordPos[i]);
+			}
+			out.flush();
+			payload = bout.toByteArray();
+		} catch (IOException e) {
+			throw new HashIndexException(e);
+		}
+
+		try {
+			tsManager.writeBlock(bucket.pos, payload);
+		} catch (InsufficientPayloadSpaceException e) {
+			long oldPos = bucket.pos;
+			bucket.pos = tsManager.allocate(Math.max(2 * payload.length, estimatedBucketSize));
+			writeBlock(bucket.pos, payload);
+			tsManager.free(oldPos);
+
+			if (directory != null) {
+				for (int i = 0; i < directory.length; ++i) {
+					if (directory[i] == oldPos) {
+						directory[i] = bucket.pos;
+					}
+				}
+				directoryDirty = true;
+			}
+		}
+	}
+
+	private void writeBlock(long pos, byte[] payload) {
+		try {
+			tsManager.writeBlock(pos, payload);
+		} catch (InsufficientPayloadSpaceException e) {
+			throw new HashIndexException("it's impossible to save a payload into a tablespace");
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package onthego.database.core.index;
+
+public class HashIndexException extends RuntimeException {
+
+	public HashIndexException() {}
+
+	public HashIndexException(String message) {
+		super(message);
+	}
+
+	public HashIndexException(Throwable cause) {
+		super(cause);
+	}
+
+	public HashIndexException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public HashIndexException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+}
@@ -0,0 +1,651 @@
+package onthego.database.core.index;
+
+import onthego.database.core.exception.InsufficientPayloadSpaceException;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.OptionalLong;
+import java.util.PrimitiveIterator;
+
+import static onthego.database.util.IOUtils.*;
+
+/*
+ * LongBTreeIndex - a B-tree index of primitive long keys, used as the clustered index of record ids.
+ * Keys are kept in long arrays and compared inline, so searching, inserting and scanning do not box
+ * keys. Nodes share the node cache and the node formats of BTreeIndex, so the clustered index of a
+ * table written by a BTreeIndex of Long keys is read as it is.
+ */
+
+public class LongBTreeIndex {
+
+	static class Node {
+		boolean isLeaf;
+		int n;
+		long pos;
+
+		//the block holding the node, which differs from pos once the node has outgrown its first block
+		long blockPos;
+
+		long[] key;
+		long[] recordPos;
+
+		long[] childPos;
+
+		Node(int threshold, boolean isLeaf, long pos) {
+			this.isLeaf = isLeaf;
+			this.n = 0;
+			this.key = new long[2*threshold - 1];
+			this.recordPos = new long[2*threshold - 1];
+			this.childPos = new long[2*threshold];
+			this.pos = pos;
+			this.blockPos = pos;
+		}
+
+		@Override
+		public String toString() {
+			return Arrays.toString(Arrays.copyOf(key, n));
+		}
+	}
+
+	//visits the keys in order with a stack of nodes and the next key index of each of them
+	private final class LongBTreeIterator implements PrimitiveIterator.OfLong {
+
+		private Node[] nodes = new Node[INITIAL_ITERATOR_DEPTH];
+
+		private int[] indexes = new int[INITIAL_ITERATOR_DEPTH];
+
+		private int top = -1;
+
+		private LongBTreeIterator() {
+			nodeCache.pin(nodeWriter, root.pos);
+			push(root);
+			descend();
+			popCompleted();
+		}
+
+		//the nodes on the stack stay pinned in the node cache until their scan is completed
+		private void push(Node node) {
+			if (++top == nodes.length) {
+				nodes = Arrays.copyOf(nodes, 2 * nodes.length);
+				indexes = Arrays.copyOf(indexes, 2 * indexes.length);
+			}
+			nodes[top] = node;
+			indexes[top] = 0;
+		}
+
+		//walk down to the leftmost leaf under the key index of the top node
+		private void descend() {
+			Node node = nodes[top];
+			while (!node.isLeaf) {
+				node = loadChild(node, indexes[top], true);
+				push(node);
+			}
+		}
+
+		private void popCompleted() {
+			while (top >= 0 && indexes[top] >= nodes[top].n) {
+				nodeCache.unpin(nodeWriter, nodes[top].pos);
+				nodes[top--] = null;
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return top >= 0;
+		}
+
+		@Override
+		public long nextLong() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			Node node = nodes[top];
+			long key = node.key[indexes[top]++];
+			if (!node.isLeaf) {
+				descend();
+			}
+			popCompleted();
+			return key;
+		}
+	}
+
+	//the first byte of a block whose node has moved to another block, unlike the leaf flag of a node
+	private static final byte FORWARDING_MARK = 2;
+
+	private static final int FORWARDING_STUB_SIZE = 1 + Long.BYTES;
+
+	//the compact format of BTreeIndex, whose keys are written as they are
+	private static final byte COMPACT_FORMAT_MARK = 3;
+
+	//the compact format whose keys are written as deltas like the positions
+	private static final byte DELTA_FORMAT_MARK = 4;
+
+	//the mark, the leaf flag and the number of keys
+	private static final int COMPACT_HEADER_SIZE = 2 + 2;
+
+	private static final int MAX_VAR_LONG_SIZE = 10;
+
+	//the expected bytes of a delta until full nodes have been written
+	private static final int INITIAL_DELTA_SIZE = 2;
+
+	private static final int INITIAL_ITERATOR_DEPTH = 8;
+
+	private final int threshold;
+
+	private final TablespaceManager tsManager;
+
+	private final NodeCache nodeCache;
+
+	//the nodes of this index are cached under this writer
+	private final NodeCache.NodeWriter<Node> nodeWriter = this::writeNode;
+
+	//the root node stays pinned in the node cache
+	private Node root;
+
+	//the bytes of a block allocated for a node, which is estimated for a full node
+	private int estimatedNodeSize;
+
+	//the bytes of a node in the node cache
+	private final int nodeMemorySize;
+
+	//a node is encoded into this buffer, which is large enough for any node
+	private final ByteBuffer encodingBuffer;
+
+	//the nodes pinned by the running insertion or deletion, reused by every operation
+	private Node[] pinnedNodes = new Node[16];
+
+	private int pinnedNodeCount = -1;
+
+	public LongBTreeIndex(int threshold, TablespaceManager tsManager) {
+		this(threshold, tsManager, new NodeCache());
+	}
+
+	public LongBTreeIndex(int threshold, TablespaceManager tsManager, NodeCache nodeCache) {
+		this.threshold = threshold;
+		this.tsManager = tsManager;
+		this.nodeCache = nodeCache;
+		this.estimatedNodeSize = COMPACT_HEADER_SIZE + (2*threshold - 1) * 2 * INITIAL_DELTA_SIZE + 2*threshold * INITIAL_DELTA_SIZE;
+		this.nodeMemorySize = (2*threshold - 1) * 2 * Long.BYTES + 2*threshold * Long.BYTES;
+		this.encodingBuffer = ByteBuffer.allocate(COMPACT_HEADER_SIZE + MAX_VAR_LONG_SIZE + (4*threshold - 2) * MAX_VAR_LONG_SIZE + 2*threshold * MAX_VAR_LONG_SIZE);
+		initialize();
+	}
+
+	private void initialize() {
+		beginOperation();
+		try {
+			if (tsManager.getRootPos() == 0) {
+				changeRoot(allocateNode(true));
+				tsManager.saveRootPos(root.pos);
+				saveNode(root);
+			} else {
+				changeRoot(getNode(tsManager.getRootPos(), true));
+			}
+		} finally {
+			endOperation();
+		}
+	}
+
+	private void changeRoot(Node newRoot) {
+		nodeCache.pin(nodeWriter, newRoot.pos);
+		if (root != null) {
+			nodeCache.unpin(nodeWriter, root.pos);
+		}
+		this.root = newRoot;
+	}
+
+	private void beginOperation() {
+		this.pinnedNodeCount = 0;
+	}
+
+	private void endOperation() {
+		for (int i = 0; i < pinnedNodeCount; ++i) {
+			nodeCache.unpin(nodeWriter, pinnedNodes[i].pos);
+			pinnedNodes[i] = null;
+		}
+		this.pinnedNodeCount = -1;
+	}
+
+	private void addPinnedNode(Node node) {
+		if (pinnedNodeCount == pinnedNodes.length) {
+			pinnedNodes = Arrays.copyOf(pinnedNodes, 2 * pinnedNodes.length);
+		}
+		pinnedNodes[pinnedNodeCount++] = node;
+	}
+
+	//<mark><is_leaf><n><key_delta>*n<record_pos_delta>*n(<child_pos_delta>*(n+1))
+	private byte[] generatePayload(Node node) {
+		ByteBuffer buffer = encodingBuffer;
+		buffer.clear();
+		buffer.put(DELTA_FORMAT_MARK);
+		buffer.put((byte)(node.isLeaf ? 1 : 0));
+		putVarLong(buffer, node.n);
+		putDeltas(buffer, node.key, node.n);
+		putDeltas(buffer, node.recordPos, node.n);
+		if (!node.isLeaf) {
+			putDeltas(buffer, node.childPos, node.n + 1);
+		}
+		return Arrays.copyOf(buffer.array(), buffer.position());
+	}
+
+	private static void putDeltas(ByteBuffer buffer, long[] values, int count) {
+		long prev = 0;
+		for (int i = 0; i < count; ++i) {
+			putSignedVarLong(buffer, values[i] - prev);
+			prev = values[i];
+		}
+	}
+
+	private static void getDeltas(ByteBuffer buffer, long[] values, int count) {
+		long prev = 0;
+		for (int i = 0; i < count; ++i) {
+			values[i] = prev + getSignedVarLong(buffer);
+			prev = values[i];
+		}
+	}
+
+	//a node over half full tells how large a full node will be, so a new block has room for its growth
+	private void adjustEstimatedNodeSize(Node node, int payloadSize) {
+		if (node.n >= threshold - 1) {
+			long fullNodeSize = COMPACT_HEADER_SIZE + (long)(payloadSize - COMPACT_HEADER_SIZE) * (2*threshold - 1) / node.n;
+			this.estimatedNodeSize = (int)Math.max(estimatedNodeSize, fullNodeSize);
+		}
+	}
+
+	//a modified node is written back when it is evicted from the node cache or flushed
+	private void saveNode(Node node) {
+		nodeCache.markDirty(nodeWriter, node.pos, node, nodeMemorySize);
+	}
+
+	private void writeNode(Node node) {
+		byte[] payload = generatePayload(node);
+		adjustEstimatedNodeSize(node, payload.length);
+		try {
+			tsManager.writeBlock(node.blockPos, payload);
+		} catch (InsufficientPayloadSpaceException e) {
+			relocateNode(node, payload);
+		}
+	}
+
+	//the parent keeps the position of the node, so the first block forwards to the new one
+	private void relocateNode(Node node, byte[] payload) {
+		try {
+			if (node.blockPos != node.pos) {
+				tsManager.free(node.blockPos);
+			}
+			node.blockPos = tsManager.allocate(Math.max(payload.length, estimatedNodeSize));
+			tsManager.writeBlock(node.blockPos, payload);
+			tsManager.writeBlock(node.pos, ByteBuffer.allocate(FORWARDING_STUB_SIZE).put(FORWARDING_MARK).putLong(node.blockPos).array());
+		} catch (InsufficientPayloadSpaceException e) {
+			throw new BTreeIndexException("it's impossible to save a payload into a tablespace");
+		}
+	}
+
+	private Node loadNode(long pos) {
+		long blockPos = pos;
+		ByteBuffer buffer = ByteBuffer.wrap(tsManager.readBlock(pos));
+		if (buffer.get(0) == FORWARDING_MARK) {
+			blockPos = buffer.getLong(1);
+			buffer = ByteBuffer.wrap(tsManager.readBlock(blockPos));
+		}
+
+		try {
+			Node node;
+			byte mark = buffer.get();
+			if (mark == DELTA_FORMAT_MARK || mark == COMPACT_FORMAT_MARK) {
+				node = new Node(threshold, buffer.get() != 0, pos);
+				node.n = (int)getVarLong(buffer);
+				if (mark == DELTA_FORMAT_MARK) {
+					getDeltas(buffer, node.key, node.n);
+				} else {
+					for (int i = 0; i < node.n; ++i) {
+						node.key[i] = buffer.getLong();
+					}
+				}
+				getDeltas(buffer, node.recordPos, node.n);
+				if (!node.isLeaf) {
+					getDeltas(buffer, node.childPos, node.n + 1);
+				}
+			} else {
+				//the fixed format holds every slot of a full node
+				node = new Node(threshold, mark != 0, pos);
+				node.n = buffer.getInt();
+				buffer.asLongBuffer().get(node.key).get(node.recordPos).get(node.childPos);
+			}
+			node.blockPos = blockPos;
+			return node;
+		} catch (RuntimeException e) {
+			throw new BTreeIndexException(e);
+		}
+	}
+
+	private Node allocateNode(boolean isLeaf) {
+		long pos = tsManager.allocate(estimatedNodeSize);
+		Node node = new Node(threshold, isLeaf, pos);
+		nodeCache.put(nodeWriter, pos, node, nodeMemorySize, pinnedNodeCount >= 0);
+		if (pinnedNodeCount >= 0) {
+			addPinnedNode(node);
+		}
+		return node;
+	}
+
+	private void freeNode(Node node) {
+		nodeCache.remove(nodeWriter, node.pos);
+		if (node.blockPos != node.pos) {
+			tsManager.free(node.blockPos);
+		}
+		tsManager.free(node.pos);
+	}
+
+	private Node getNode(long pos, boolean pinned) {
+		Node node = nodeCache.get(nodeWriter, pos, pinned);
+		if (node == null) {
+			node = nodeCache.put(nodeWriter, pos, loadNode(pos), nodeMemorySize, pinned);
+		}
+		return node;
+	}
+
+	private Node loadChild(Node parent, int index, boolean pinned) {
+		return getNode(parent.childPos[index], pinned);
+	}
+
+	//a node modified by an insertion or a deletion must not be evicted before the operation ends
+	private Node pinChild(Node parent, int index) {
+		Node node = loadChild(parent, index, true);
+		addPinnedNode(node);
+		return node;
+	}
+
+	//the index of the first key not less than the key among the first n keys
+	//the range is halved by a conditional move instead of a branch, which the key order cannot predict
+	static int lowerBound(long[] keys, int n, long key) {
+		if (n == 0) {
+			return 0;
+		}
+
+		int base = 0;
+		int length = n;
+		while (length > 1) {
+			int half = length >>> 1;
+			base = (keys[base + half] < key) ? base + half : base;
+			length -= half;
+		}
+		return base + (keys[base] < key ? 1 : 0);
+	}
+
+	private static int lowerBound(Node node, long key) {
+		return lowerBound(node.key, node.n, key);
+	}
+
+	//returns -1 if there is no the key in this index
+	public long search(long key) {
+		Node node = root;
+		while (true) {
+			int i = lowerBound(node, key);
+			if (i < node.n && node.key[i] == key) {
+				return node.recordPos[i];
+			} else if (node.isLeaf) {
+				return -1;
+			}
+			node = loadChild(node, i, false);
+		}
+	}
+
+	public boolean contains(long key) {
+		return search(key) != -1;
+	}
+
+	private static void moveKeys(Node dest, int destIndex, Node src, int srcIndex, int count) {
+		System.arraycopy(src.key, srcIndex, dest.key, destIndex, count);
+		System.arraycopy(src.recordPos, srcIndex, dest.recordPos, destIndex, count);
+	}
+
+	private static void moveChildren(Node dest, int destIndex, Node src, int srcIndex, int count) {
+		System.arraycopy(src.childPos, srcIndex, dest.childPos, destIndex, count);
+	}
+
+	private static void assignKey(Node dest, int destIndex, Node src, int srcIndex) {
+		dest.key[destIndex] = src.key[srcIndex];
+		dest.recordPos[destIndex] = src.recordPos[srcIndex];
+	}
+
+	//split successor node(node.childPos[index])
+	private void splitChild(Node parent, int index) {
+		Node successor = pinChild(parent, index);
+		Node sibling = allocateNode(successor.isLeaf);
+
+		sibling.n = threshold - 1;
+		moveKeys(sibling, 0, successor, threshold, threshold - 1);
+		if (!sibling.isLeaf) {
+			moveChildren(sibling, 0, successor, threshold, threshold);
+		}
+
+		moveKeys(parent, index + 1, parent, index, parent.n - index);
+		moveChildren(parent, index + 2, parent, index + 1, parent.n - index);
+		parent.n++;
+
+		parent.childPos[index + 1] = sibling.pos;
+		assignKey(parent, index, successor, threshold - 1);
+		successor.n = threshold - 1;
+
+		saveNode(parent);
+		saveNode(successor);
+		saveNode(sibling);
+	}
+
+	private void insert(Node node, long key, long recordPos) {
+		while (!node.isLeaf) {
+			int index = lowerBound(node, key);
+			Node successor = pinChild(node, index);
+			if (successor.n == 2*threshold - 1) {
+				splitChild(node, index);
+				if (key > node.key[index]) {
+					successor = pinChild(node, index + 1);
+				}
+			}
+			node = successor;
+		}
+
+		int index = lowerBound(node, key);
+		moveKeys(node, index + 1, node, index, node.n - index);
+		node.key[index] = key;
+		node.recordPos[index] = recordPos;
+		node.n++;
+		saveNode(node);
+	}
+
+	public void insert(long key, long recordPos) {
+		//check if the input key has already been inserted into this index tree
+		if (contains(key)) {
+			throw new BTreeIndexException("duplicate key");
+		}
+
+		beginOperation();
+		try {
+			//in case that root node is full
+			if (root.n == 2*threshold - 1) {
+				Node newRoot = allocateNode(false);
+				newRoot.childPos[0] = root.pos;
+				saveNode(newRoot);
+
+				changeRoot(newRoot);
+				tsManager.saveRootPos(newRoot.pos);
+
+				splitChild(root, 0);
+			}
+
+			insert(root, key, recordPos);
+		} finally {
+			endOperation();
+		}
+	}
+
+	private Node merge(Node parent, int index, Node successor, Node sibling) {
+		assignKey(successor, successor.n, parent, index);
+		successor.n++;
+
+		moveKeys(successor, successor.n, sibling, 0, sibling.n);
+		if (!sibling.isLeaf) {
+			moveChildren(successor, successor.n, sibling, 0, sibling.n + 1);
+		}
+		successor.n += sibling.n;
+
+		moveKeys(parent, index, parent, index + 1, parent.n - index - 1);
+		moveChildren(parent, index + 1, parent, index + 2, parent.n - index - 1);
+		parent.n--;
+
+		//in case that the parent node becomes an empty root node
+		if (parent == root && parent.n == 0) {
+			changeRoot(successor);
+			tsManager.saveRootPos(successor.pos);
+		} else {
+			saveNode(parent);
+		}
+
+		saveNode(successor);
+		freeNode(sibling);
+		return successor;
+	}
+
+	private Node findMaxLeaf(Node node) {
+		while (!node.isLeaf) {
+			node = loadChild(node, node.n, false);
+		}
+		return node;
+	}
+
+	private Node findMinLeaf(Node node) {
+		while (!node.isLeaf) {
+			node = loadChild(node, 0, false);
+		}
+		return node;
+	}
+
+	private boolean delete(Node node, long key) {
+		while (true) {
+			int i = lowerBound(node, key);
+			boolean found = i < node.n && node.key[i] == key;
+
+			// in case of reaching to leaf node
+			if (node.isLeaf) {
+				if (!found) {
+					return false;
+				}
+				moveKeys(node, i, node, i + 1, node.n - i - 1);
+				node.n--;
+				saveNode(node);
+				return true;
+			}
+
+			// in case that the matched key is in an internal node
+			if (found) {
+				Node leftChild = pinChild(node, i);
+				Node rightChild = pinChild(node, i + 1);
+
+				if (leftChild.n >= threshold) {
+					Node leaf = findMaxLeaf(leftChild);
+					key = leaf.key[leaf.n - 1];
+					node.key[i] = key;
+					node.recordPos[i] = leaf.recordPos[leaf.n - 1];
+					saveNode(node);
+					node = leftChild;
+				} else if (rightChild.n >= threshold) {
+					Node leaf = findMinLeaf(rightChild);
+					key = leaf.key[0];
+					node.key[i] = key;
+					node.recordPos[i] = leaf.recordPos[0];
+					saveNode(node);
+					node = rightChild;
+				} else {
+					node = merge(node, i, leftChild, rightChild);
+				}
+				continue;
+			}
+
+			Node successor = pinChild(node, i);
+			if (successor.n < threshold) {
+				Node rightSibling = (i < node.n) ? pinChild(node, i + 1) : null;
+				Node leftSibling = (i > 0) ? pinChild(node, i - 1) : null;
+
+				if (rightSibling != null && rightSibling.n >= threshold) {
+					//transplant : parent -> successor, sibling -> parent
+					assignKey(successor, successor.n, node, i);
+					successor.n++;
+					assignKey(node, i, rightSibling, 0);
+					if (!rightSibling.isLeaf) {
+						successor.childPos[successor.n] = rightSibling.childPos[0];
+						moveChildren(rightSibling, 0, rightSibling, 1, rightSibling.n);
+					}
+					moveKeys(rightSibling, 0, rightSibling, 1, rightSibling.n - 1);
+					rightSibling.n--;
+
+					saveNode(node);
+					saveNode(successor);
+					saveNode(rightSibling);
+				} else if (leftSibling != null && leftSibling.n >= threshold) {
+					//transplant : parent -> successor, left sibling -> parent
+					moveKeys(successor, 1, successor, 0, successor.n);
+					if (!successor.isLeaf) {
+						moveChildren(successor, 1, successor, 0, successor.n + 1);
+						successor.childPos[0] = leftSibling.childPos[leftSibling.n];
+					}
+					successor.n++;
+					assignKey(successor, 0, node, i - 1);
+					assignKey(node, i - 1, leftSibling, leftSibling.n - 1);
+					leftSibling.n--;
+
+					saveNode(node);
+					saveNode(successor);
+					saveNode(leftSibling);
+				} else if (rightSibling != null) {
+					successor = merge(node, i, successor, rightSibling);
+				} else if (leftSibling != null) {
+					successor = merge(node, i - 1, leftSibling, successor);
+				}
+			}
+			node = successor;
+		}
+	}
+
+	public boolean delete(long key) {
+		beginOperation();
+		try {
+			return delete(root, key);
+		} finally {
+			endOperation();
+		}
+	}
+
+	//the smallest key, found along the leftmost path
+	public OptionalLong first() {
+		if (root.n == 0) {
+			return OptionalLong.empty();
+		}
+		return OptionalLong.of(findMinLeaf(root).key[0]);
+	}
+
+	//the largest key, found along the rightmost path
+	public OptionalLong last() {
+		if (root.n == 0) {
+			return OptionalLong.empty();
+		}
+		Node leaf = findMaxLeaf(root);
+		return OptionalLong.of(leaf.key[leaf.n - 1]);
+	}
+
+	public PrimitiveIterator.OfLong iterator() {
+		return new LongBTreeIterator();
+	}
+
+	//write the modified nodes of this index into the tablespace
+	public void flush() {
+		nodeCache.flush(nodeWriter);
+	}
+
+	public void close() {
+		flush();
+		nodeCache.invalidate(nodeWriter);
+	}
+}
@@ -0,0 +1,240 @@
+package onthego.database.core.index;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * NodeCache - a least recently used cache of the nodes of B-tree indexes within a size budget.
+ * One cache may be shared by the indexes of many tables. A node modified in memory is marked
+ * dirty and written back by its index when it is evicted or flushed. Pinned nodes are in use
+ * by an iteration or a structural change of their tree, so they are never evicted.
+ */
+
+public class NodeCache {
+
+	public static final long DEFAULT_CAPACITY = 32 * 1024 * 1024;
+
+	//an index identifies its nodes in the cache by the writer of them
+	interface NodeWriter<N> {
+		void writeNode(N node);
+	}
+
+	private static final class NodeKey {
+		private final NodeWriter<?> owner;
+
+		private final long pos;
+
+		private NodeKey(NodeWriter<?> owner, long pos) {
+			this.owner = owner;
+			this.pos = pos;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof NodeKey)) {
+				return false;
+			}
+
+			NodeKey other = (NodeKey)obj;
+			return owner == other.owner && pos == other.pos;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(owner) + Long.hashCode(pos);
+		}
+	}
+
+	private static final class Entry {
+		private final NodeWriter<?> owner;
+
+		private final long pos;
+
+		private Object node;
+
+		private final int size;
+
+		private int pinCount;
+
+		private boolean dirty;
+
+		private Entry(NodeWriter<?> owner, long pos, Object node, int size) {
+			this.owner = owner;
+			this.pos = pos;
+			this.node = node;
+			this.size = size;
+		}
+	}
+
+	private final long capacity;
+
+	//in the access order, so the eldest entry is the least recently used one
+	private final LinkedHashMap<NodeKey,Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+	private long size = 0;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	private long evictionCount = 0;
+
+	public NodeCache() {
+		this(DEFAULT_CAPACITY);
+	}
+
+	public NodeCache(long capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity(" + capacity + ") of a node cache must be positive.");
+		}
+		this.capacity = capacity;
+	}
+
+	@SuppressWarnings("unchecked")
+	synchronized <N> N get(NodeWriter<N> owner, long pos, boolean pinned) {
+		Entry entry = entries.get(new NodeKey(owner, pos));
+		if (entry == null) {
+			++missCount;
+			return null;
+		}
+
+		++hitCount;
+		if (pinned) {
+			entry.pinCount++;
+		}
+		return (N)entry.node;
+	}
+
+	//the node already cached at the same position wins, so that every caller shares one instance
+	@SuppressWarnings("unchecked")
+	synchronized <N> N put(NodeWriter<N> owner, long pos, N node, int size, boolean pinned) {
+		NodeKey key = new NodeKey(owner, pos);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry(owner, pos, node, size);
+			entries.put(key, entry);
+			this.size += size;
+		}
+
+		if (pinned) {
+			entry.pinCount++;
+		}
+		evict();
+		return (N)entry.node;
+	}
+
+	synchronized void pin(NodeWriter<?> owner, long pos) {
+		Entry entry = entries.get(new NodeKey(owner, pos));
+		if (entry != null) {
+			entry.pinCount++;
+		}
+	}
+
+	//a node removed while it was pinned is not in the cache anymore
+	synchronized void unpin(NodeWriter<?> owner, long pos) {
+		Entry entry = entries.get(new NodeKey(owner, pos));
+		if (entry != null && entry.pinCount > 0) {
+			entry.pinCount--;
+		}
+		evict();
+	}
+
+	//a modified node replaces a stale copy of it which was reloaded after an eviction
+	synchronized <N> void markDirty(NodeWriter<N> owner, long pos, N node, int size) {
+		NodeKey key = new NodeKey(owner, pos);
+		Entry entry = entries.get(key);
+		if (entry == null) {
+			entry = new Entry(owner, pos, node, size);
+			entries.put(key, entry);
+			this.size += size;
+		}
+
+		entry.node = node;
+		entry.dirty = true;
+		evict();
+	}
+
+	synchronized void remove(NodeWriter<?> owner, long pos) {
+		Entry entry = entries.remove(new NodeKey(owner, pos));
+		if (entry != null) {
+			size -= entry.size;
+		}
+	}
+
+	private void evict() {
+		Iterator<Entry> iterator = entries.values().iterator();
+		while (size > capacity && iterator.hasNext()) {
+			Entry entry = iterator.next();
+			if (entry.pinCount > 0) {
+				continue;
+			}
+
+			if (entry.dirty) {
+				writeBack(entry);
+			}
+			iterator.remove();
+			size -= entry.size;
+			++evictionCount;
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private void writeBack(Entry entry) {
+		((NodeWriter<Object>)entry.owner).writeNode(entry.node);
+	}
+
+	//write back the dirty nodes of an index in the order of their positions
+	synchronized void flush(NodeWriter<?> owner) {
+		List<Entry> dirtyEntries = new ArrayList<>();
+		for (Entry entry : entries.values()) {
+			if (entry.owner == owner && entry.dirty) {
+				dirtyEntries.add(entry);
+			}
+		}
+
+		dirtyEntries.sort((e1, e2) -> Long.compare(e1.pos, e2.pos));
+		for (Entry entry : dirtyEntries) {
+			writeBack(entry);
+			entry.dirty = false;
+		}
+	}
+
+	//drop every node of an index which is closed
+	synchronized void invalidate(NodeWriter<?> owner) {
+		Iterator<Map.Entry<NodeKey,Entry>> iterator = entries.entrySet().iterator();
+		while (iterator.hasNext()) {
+			Map.Entry<NodeKey,Entry> entry = iterator.next();
+			if (entry.getKey().owner == owner) {
+				size -= entry.getValue().size;
+				iterator.remove();
+			}
+		}
+	}
+
+	public long getCapacity() {
+		return capacity;
+	}
+
+	public synchronized long getSize() {
+		return size;
+	}
+
+	public synchronized int getNodeCount() {
+		return entries.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+}
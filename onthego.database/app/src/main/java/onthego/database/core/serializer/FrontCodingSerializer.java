@@ -0,0 +1,15 @@
+package onthego.database.core.serializer;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/*
+ * FrontCodingSerializer - a serializer whose keys sharing a leading part also share the leading bytes of their forms.
+ * A node of such keys stores the common bytes once and the rest of each key after them, which pays off
+ * for long string keys such as URLs and paths. The form carries no length of its own, since a node keeps it.
+ */
+
+public interface FrontCodingSerializer<T> extends Serializer<T> {
+	void writeFrontCoded(DataOutputStream out, T obj) throws IOException;
+	T readFrontCoded(byte[] form, int offset, int length) throws IOException;
+}
@@ -6,6 +6,8 @@ import java.util.List;
 
 import onthego.database.core.sqlprocessor.expression.Expression;
 import onthego.database.core.sqlprocessor.scanner.TokenManager;
+import onthego.database.core.table.SortKey;
+import onthego.database.core.table.Table;
 import onthego.database.core.table.meta.ColumnMeta;
 import onthego.database.core.table.meta.IntegerType;
 import onthego.database.core.table.meta.NullType;
@@ -109,6 +111,40 @@ public class SQLProcessor {
 								.command(SQLResult.CommandType.CREATE_DATABASE)
 								.database(database).build();
 										
+			} else if (scanner.matchKeyword("INDEX")) {
+				scanner.next();
+				if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
+					throw new SQLProcessorException("An index name is required.");
+				}
+				String index = scanner.getCurrentLexeme();
+				scanner.next();
+				
+				scanner.nextKeyword("ON");
+				if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
+					throw new SQLProcessorException("A table name is required.");
+				}
+				String table = scanner.getCurrentLexeme();
+				scanner.next();
+				
+				//the method of the index may come either before or after the column
+				Table.IndexType indexType = indexMethod(Table.IndexType.BTREE);
+				
+				scanner.next(TokenManager.getToken("LP"));
+				if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
+					throw new SQLProcessorException("A column name is required.");
+				}
+				ColumnMeta column = new ColumnMeta(scanner.getCurrentLexeme(), new NullType());
+				scanner.next();
+				scanner.next(TokenManager.getToken("RP"));
+				
+				indexType = indexMethod(indexType);
+				
+				return SQLResult.builder()
+								.command(SQLResult.CommandType.CREATE_INDEX)
+								.index(index)
+								.indexType(indexType)
+								.table(table)
+								.columns(Collections.singletonList(column)).build();
 			} else {
 				scanner.next(TokenManager.getToken("TABLE"));
 				if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
@@ -130,6 +166,31 @@ public class SQLProcessor {
 		} else if (scanner.match(TokenManager.getToken("DROP"))) {
 			scanner.next();
 			
+			if (scanner.matchKeyword("INDEX")) {
+				scanner.next();
+				if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
+					throw new SQLProcessorException("An index name is required.");
+				}
+				String index = scanner.getCurrentLexeme();
+				scanner.next();
+				
+				//the table of the index is looked up if it is omitted
+				String table = null;
+				if (scanner.matchKeyword("ON")) {
+					scanner.next();
+					if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
+						throw new SQLProcessorException("A table name is required.");
+					}
+					table = scanner.getCurrentLexeme();
+					scanner.next();
+				}
+				
+				return SQLResult.builder()
+								.command(SQLResult.CommandType.DROP_INDEX)
+								.index(index)
+								.table(table).build();
+			}
+			
 			scanner.next(TokenManager.getToken("TABLE"));
 			if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
 				throw new SQLProcessorException("A table name is required.");
@@ -188,12 +249,34 @@ public class SQLProcessor {
 				where = new SQLParser(scanner).parse();
 			}
 			
+			List<SortKey> orderBy = Collections.emptyList();
+			if (scanner.matchKeyword("ORDER")) {
+				scanner.next();
+				scanner.nextKeyword("BY");
+				orderBy = sortKeyList();
+			}
+			
+			long limit = Table.NO_LIMIT;
+			long offset = 0;
+			if (scanner.matchKeyword("LIMIT")) {
+				scanner.next();
+				limit = rowCount();
+				
+				if (scanner.matchKeyword("OFFSET")) {
+					scanner.next();
+					offset = rowCount();
+				}
+			}
+			
 //			return new SQLResult(SQLResult.CommandType.SELECT, table, columns, Collections.emptyList(), expressions);
 			return SQLResult.builder()
 							.command(SQLResult.CommandType.SELECT)
 							.table(table)
 							.columns(columns)
 							.where(where)
+							.orderBy(orderBy)
+							.limit(limit)
+							.offset(offset)
 							.build();
 		} else if (scanner.match(TokenManager.getToken("INSERT"))) {
 			scanner.next();
@@ -285,6 +368,22 @@ public class SQLProcessor {
 		throw new SQLProcessorException("An unrecognizable query => " + this.query);
 	}
 	
+	private Table.IndexType indexMethod(Table.IndexType defaultType) throws SQLProcessorException {
+		if (!scanner.matchKeyword("USING")) {
+			return defaultType;
+		}
+		scanner.next();
+		
+		if (scanner.matchKeyword("HASH")) {
+			scanner.next();
+			return Table.IndexType.HASH;
+		} else if (scanner.matchKeyword("BTREE")) {
+			scanner.next();
+			return Table.IndexType.BTREE;
+		}
+		throw new SQLProcessorException(scanner.getCurrentLexeme() + " is not a valid index method.");
+	}
+
 	private Expression parse() throws SQLParserException {
 		return new SQLParser(scanner).parse();
 	}
@@ -320,6 +419,49 @@ public class SQLProcessor {
 		return columns;
 	}
 
+	private List<SortKey> sortKeyList() throws SQLProcessorException {
+		List<SortKey> sortKeyList = new ArrayList<>();
+		
+		while (true) {
+			if (!scanner.match(TokenManager.getToken("IDENTIFIER"))) {
+				throw new SQLProcessorException("A column name is required.");
+			}
+			String columnName = scanner.getCurrentLexeme();
+			scanner.next();
+			
+			boolean descending = false;
+			if (scanner.matchKeyword("ASC")) {
+				scanner.next();
+			} else if (scanner.matchKeyword("DESC")) {
+				scanner.next();
+				descending = true;
+			}
+			sortKeyList.add(new SortKey(columnName, descending));
+			
+			if (!scanner.match(TokenManager.getToken("COMMA"))) {
+				break;
+			}
+			scanner.next();
+		}
+		
+		return sortKeyList;
+	}
+	
+	private long rowCount() throws SQLProcessorException {
+		if (!scanner.match(TokenManager.getToken("NUMBER"))) {
+			throw new SQLProcessorException("A row count is required.");
+		}
+		
+		long rowCount;
+		try {
+			rowCount = Long.parseLong(scanner.getCurrentLexeme());
+		} catch (NumberFormatException e) {
+			throw new SQLProcessorException("'" + scanner.getCurrentLexeme() + "' is not a valid row count.");
+		}
+		scanner.next();
+		return rowCount;
+	}
+	
 	private List<ColumnMeta> columnTypeList() throws SQLProcessorException {
 		List<ColumnMeta> columnTypeList = new ArrayList<>();
 		
@@ -391,6 +533,10 @@ public class SQLProcessor {
 				throw new SQLProcessorException(scanner.getCurrentLexeme() + " is not a valid type.");
 			}
 			
+			columnConstraint(columnType);
+			if (columnType.isKey() && columnTypeList.stream().anyMatch(ColumnMeta::isKey)) {
+				throw new SQLProcessorException("A table can have only one primary key.");
+			}
 			columnTypeList.add(columnType);
 			
 			if (!scanner.match(TokenManager.getToken("COMMA"))) {
@@ -401,4 +547,15 @@ public class SQLProcessor {
 		
 		return columnTypeList;
 	}
+
+	private void columnConstraint(ColumnMeta columnType) throws SQLProcessorException {
+		if (scanner.match(TokenManager.getToken("PRIMARY"))) {
+			scanner.next();
+			scanner.next(TokenManager.getToken("KEY"));
+			columnType.setKey(true);
+		} else if (scanner.matchKeyword("UNIQUE")) {
+			scanner.next();
+			columnType.setUnique(true);
+		}
+	}
 }
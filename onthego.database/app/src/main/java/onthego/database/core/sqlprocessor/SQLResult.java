@@ -4,11 +4,13 @@ import java.util.Collections;
 import java.util.List;
 
 import onthego.database.core.sqlprocessor.expression.Expression;
+import onthego.database.core.table.SortKey;
+import onthego.database.core.table.Table;
 import onthego.database.core.table.meta.ColumnMeta;
 
 public class SQLResult {
 	
-	public enum CommandType { CREATE_DATABASE, CREATE_TABLE, DROP_TABLE, USE_DATABASE, BEGIN_TRANSACTION, COMMIT, ROLLBACK, SELECT, INSERT, UPDATE, DELETE }
+	public enum CommandType { CREATE_DATABASE, CREATE_TABLE, DROP_TABLE, CREATE_INDEX, DROP_INDEX, USE_DATABASE, BEGIN_TRANSACTION, COMMIT, ROLLBACK, SELECT, INSERT, UPDATE, DELETE }
 
     private final CommandType command;
 	
@@ -16,12 +18,22 @@ public class SQLResult {
 	
 	private final String table;
 	
+	private final String index;
+	
+	private final Table.IndexType indexType;
+	
 	private final List<ColumnMeta> columns;
 	
 	private final List<Expression> values;
 	
 	private final Expression where;
 	
+	private final List<SortKey> orderBy;
+	
+	private final long limit;
+	
+	private final long offset;
+	
 	public static class SQLResultBuilder {
 		
 		private CommandType command;
@@ -30,12 +42,22 @@ public class SQLResult {
 		
 		private String table;
 		
+		private String index;
+		
+		private Table.IndexType indexType = Table.IndexType.BTREE;
+		
 		private List<ColumnMeta> columns = Collections.emptyList();
 		
 		private List<Expression> values = Collections.emptyList();
 		
 		private Expression where = Expression.NULL_EXPRESSION;
 		
+		private List<SortKey> orderBy = Collections.emptyList();
+		
+		private long limit = Table.NO_LIMIT;
+		
+		private long offset = 0;
+		
 		public SQLResultBuilder() {}
 
 		public SQLResultBuilder command(CommandType command) {
@@ -53,6 +75,16 @@ public class SQLResult {
 			return this;
 		}
 
+		public SQLResultBuilder index(String index) {
+			this.index = index;
+			return this;
+		}
+
+		public SQLResultBuilder indexType(Table.IndexType indexType) {
+			this.indexType = indexType;
+			return this;
+		}
+
 		public SQLResultBuilder columns(List<ColumnMeta> columns) {
 			this.columns = columns;
 			return this;
@@ -67,6 +99,21 @@ public class SQLResult {
 			this.where = where;
 			return this;
 		}
+
+		public SQLResultBuilder orderBy(List<SortKey> orderBy) {
+			this.orderBy = orderBy;
+			return this;
+		}
+
+		public SQLResultBuilder limit(long limit) {
+			this.limit = limit;
+			return this;
+		}
+
+		public SQLResultBuilder offset(long offset) {
+			this.offset = offset;
+			return this;
+		}
 		
 		public SQLResult build() {
 			return new SQLResult(this);
@@ -81,9 +128,14 @@ public class SQLResult {
 		this.command = builder.command;
 		this.database = builder.database;
 		this.table = builder.table;
+		this.index = builder.index;
+		this.indexType = builder.indexType;
 		this.columns = builder.columns;
 		this.values = builder.values;
 		this.where = builder.where;
+		this.orderBy = builder.orderBy;
+		this.limit = builder.limit;
+		this.offset = builder.offset;
 	}
 
 	public CommandType getCommand() {
@@ -98,6 +150,14 @@ public class SQLResult {
 		return table;
 	}
 
+	public String getIndex() {
+		return index;
+	}
+
+	public Table.IndexType getIndexType() {
+		return indexType;
+	}
+
 	public List<ColumnMeta> getColumns() {
 		return columns;
 	}
@@ -108,5 +168,17 @@ public class SQLResult {
 
 	public Expression getWhere() {
 		return where;
-	}	
+	}
+
+	public List<SortKey> getOrderBy() {
+		return orderBy;
+	}
+
+	public long getLimit() {
+		return limit;
+	}
+
+	public long getOffset() {
+		return offset;
+	}
 }
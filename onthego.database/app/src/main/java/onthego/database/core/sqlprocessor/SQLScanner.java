@@ -81,6 +81,18 @@ public class SQLScanner {
 		return currentToken == token;
 	}
 	
+	//a keyword which is not reserved is scanned as an identifier, so that it still names tables and columns
+	public boolean matchKeyword(String keyword) {
+		return match(TokenManager.getToken("IDENTIFIER")) && getCurrentLexeme().equalsIgnoreCase(keyword);
+	}
+	
+	public Token nextKeyword(String keyword) throws SQLScannerException {
+		if (!matchKeyword(keyword)) {
+			throw new SQLScannerException("The keyword(" + keyword + ") is required.\n" + getFailInfo());
+		}
+		return next();
+	}
+	
 	public Token getCurrentToken() {
 		return this.currentToken;
 	}
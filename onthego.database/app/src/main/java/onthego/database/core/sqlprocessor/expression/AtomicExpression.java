@@ -14,6 +14,10 @@ public class AtomicExpression implements Expression {
 		this.value = value;
 	}
 
+	public Value getValue() {
+		return value;
+	}
+
 	@Override
 	public Value evaluate(Cursor[] cursor) throws ExpressionEvaluationException {
 		if (value.getType() == Value.Type.ID) {
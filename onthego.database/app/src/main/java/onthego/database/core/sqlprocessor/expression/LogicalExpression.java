@@ -18,6 +18,18 @@ public class LogicalExpression implements Expression {
 		this.rhs = rhs;
 	}
 
+	public LogicalOperator getOperator() {
+		return op;
+	}
+
+	public Expression getLeft() {
+		return lhs;
+	}
+
+	public Expression getRight() {
+		return rhs;
+	}
+
 	@Override
 	public Value evaluate(Cursor[] cursor) throws ExpressionEvaluationException {
 		Value lValue = lhs.evaluate(cursor);
@@ -1,10 +1,12 @@
 package onthego.database.core.sqlprocessor.expression;
 
 import onthego.database.core.sqlprocessor.value.BooleanValue;
+import onthego.database.core.sqlprocessor.value.IdValue;
 import onthego.database.core.sqlprocessor.value.NumberValue;
 import onthego.database.core.sqlprocessor.value.StringValue;
 import onthego.database.core.sqlprocessor.value.Value;
 import onthego.database.core.table.Cursor;
+import onthego.database.core.table.meta.TypeConstants;
 
 public class RelationalExpression implements Expression {
 	
@@ -20,8 +22,27 @@ public class RelationalExpression implements Expression {
 		this.rhs = rhs;
 	}
 
+	public RelationalOperator getOperator() {
+		return op;
+	}
+
+	public Expression getLeft() {
+		return lhs;
+	}
+
+	public Expression getRight() {
+		return rhs;
+	}
+
 	@Override
 	public Value evaluate(Cursor[] cursor) throws ExpressionEvaluationException {
+		if (op == Expression.EQ || op == Expression.NE) {
+			Boolean equal = equalsColumnBytes(cursor);
+			if (equal != null) {
+				return new BooleanValue((op == Expression.EQ) == equal);
+			}
+		}
+		
 		Value lValue = lhs.evaluate(cursor);
 		Value rValue = rhs.evaluate(cursor);
 		
@@ -78,4 +99,34 @@ public class RelationalExpression implements Expression {
 		
 		throw new ExpressionEvaluationException("The type of operands is required to be String, Null, Boolean type.");
 	}
+
+	//a string column compared with a string constant is compared on the bytes of its record, without decoding the column
+	private Boolean equalsColumnBytes(Cursor[] cursor) {
+		if (!(lhs instanceof AtomicExpression) || !(rhs instanceof AtomicExpression)) {
+			return null;
+		}
+		
+		Value left = ((AtomicExpression)lhs).getValue();
+		Value right = ((AtomicExpression)rhs).getValue();
+		if (left.getType() != Value.Type.ID) {
+			Value swapped = left;
+			left = right;
+			right = swapped;
+		}
+		if (left.getType() != Value.Type.ID || right.getType() != Value.Type.STRING) {
+			return null;
+		}
+		
+		IdValue id = (IdValue)left;
+		Cursor selectCursor = id.getCursor(cursor);
+		if (selectCursor == null) {
+			return null;
+		}
+		
+		TypeConstants type = selectCursor.getColumnType(id.getColumnName()).getType().getTypeConstant();
+		if (type != TypeConstants.CHAR && type != TypeConstants.VARCHAR) {
+			return null;
+		}
+		return selectCursor.columnEquals(id.getColumnName(), ((StringValue)right).getValue());
+	}
 }
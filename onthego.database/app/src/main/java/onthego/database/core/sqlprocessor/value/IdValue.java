@@ -17,34 +17,47 @@ public final class IdValue extends Value {
 		this.columnName = columnName;
 	}
 	
-	public Value getValue(Cursor[] tables) throws ParseException {
-		Cursor selectCursor = null;
-		String columnValue = null; 
-		ColumnMeta columnType = null;
-		
+	public String getTableName() {
+		return tableName;
+	}
+	
+	public String getColumnName() {
+		return columnName;
+	}
+	
+	//the cursor of the table the id names, or the first one for a bare column name
+	public Cursor getCursor(Cursor[] tables) {
 		if (tableName == null) {
-			selectCursor = tables[0];
-		} else {
-			for (Cursor cursor : tables) {
-				if (tableName.equalsIgnoreCase(cursor.getTableName())) {
-					selectCursor = cursor;
-					break;
-				}
+			return tables[0];
+		}
+		
+		for (Cursor cursor : tables) {
+			if (tableName.equalsIgnoreCase(cursor.getTableName())) {
+				return cursor;
 			}
 		}
+		return null;
+	}
+	
+	public Value getValue(Cursor[] tables) throws ParseException {
+		Cursor selectCursor = getCursor(tables);
+		ColumnMeta columnType = null;
 		
-		columnValue = selectCursor.getColumn(columnName);
 		columnType = selectCursor.getColumnType(columnName);
 		
+		//numbers and booleans are read in their native encodings, and a number without a value is null
 		switch (columnType.getType().getTypeConstant()) {
 		case CHAR:
 		case VARCHAR:
-			return new StringValue(columnValue);
+			return new StringValue(selectCursor.getColumn(columnName));
 		case INTEGER:
 		case NUMERIC:
-			return new NumberValue(columnValue);
+			if (selectCursor.isNull(columnName)) {
+				return new NullValue();
+			}
+			return new NumberValue(selectCursor.getDouble(columnName));
 		case BOOL:
-			return new BooleanValue(columnValue);
+			return new BooleanValue(selectCursor.getBoolean(columnName));
 		}
 		
 		return new NullValue();
@@ -0,0 +1,436 @@
+package onthego.database.core.table;
+
+import onthego.database.core.index.BTreeIndex;
+import onthego.database.core.index.HashIndex;
+import onthego.database.core.index.NodeCache;
+import onthego.database.core.serializer.FrontCodingSerializer;
+import onthego.database.core.serializer.Serializer;
+import onthego.database.core.table.Table.IndexType;
+import onthego.database.core.table.meta.ColumnMeta;
+import onthego.database.core.table.meta.TypeConstants;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import onthego.database.core.tablespace.meta.TableMetaInfo;
+import onthego.database.core.tablespace.meta.TablespaceHeader;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.function.LongFunction;
+
+import static onthego.database.util.IOUtils.*;
+
+/*
+ * ColumnIndex - a secondary index on a column of a table, kept in a tablespace of its own.
+ * A key pairs a value of the column with the position of its record, so the records sharing
+ * a value are ordered by their positions. The header of the tablespace names the index and
+ * its column, which lets a table find its indexes again by their file names. The flags of
+ * the column tell whether the index backs a PRIMARY KEY or UNIQUE constraint.
+ * A hash index keeps the values alone, each of which maps to the positions of its records,
+ * and tells itself from a btree by its root block.
+ */
+
+final class ColumnIndex {
+
+	static final String FILE_EXTENSION = ".idx";
+
+	private static final int BTREE_THRESHOLD = 64;
+
+	//the bytes of a value assumed by the node size estimation of the btree
+	private static final int ESTIMATED_VALUE_SIZE = 16;
+
+	static final class Key implements Comparable<Key> {
+
+		final String value;
+
+		final long recordPos;
+
+		//the value of a numeric column is parsed once for the comparisons in a node
+		private double number;
+
+		private boolean parsed;
+
+		Key(String value, long recordPos) {
+			this.value = value;
+			this.recordPos = recordPos;
+		}
+
+		double getNumber() {
+			if (!parsed) {
+				number = toNumber(value);
+				parsed = true;
+			}
+			return number;
+		}
+
+		@Override
+		public int compareTo(Key other) {
+			int result = value.compareTo(other.value);
+			return result != 0 ? result : Long.compare(recordPos, other.recordPos);
+		}
+
+		@Override
+		public String toString() {
+			return value + "@" + recordPos;
+		}
+	}
+
+	//the value leads the front coded form of a key, followed by the varint of the record position and its length
+	private static final class KeySerializer implements FrontCodingSerializer<Key> {
+
+		@Override
+		public void write(DataOutputStream out, Key key) throws IOException {
+			out.writeUTF(key.value);
+			writeVarLong(out, key.recordPos);
+		}
+
+		@Override
+		public Key read(DataInputStream in) throws IOException {
+			String value = in.readUTF();
+			return new Key(value, readVarLong(in));
+		}
+
+		@Override
+		public long estimateSize(Key key) {
+			int valueSize = (key == null) ? ESTIMATED_VALUE_SIZE : StandardTableUtil.getUTFSize(key.value);
+			return Short.BYTES + valueSize + Long.BYTES;
+		}
+
+		@Override
+		public void writeFrontCoded(DataOutputStream out, Key key) throws IOException {
+			ByteBuffer value = ByteBuffer.allocate(Short.BYTES + StandardTableUtil.getUTFSize(key.value));
+			StandardTableUtil.writeUTF(value, key.value);
+			out.write(value.array(), Short.BYTES, value.capacity() - Short.BYTES);
+
+			int start = out.size();
+			writeVarLong(out, key.recordPos);
+			out.writeByte(out.size() - start);
+		}
+
+		@Override
+		public Key readFrontCoded(byte[] form, int offset, int length) {
+			int recordPosLength = form[offset + length - 1];
+			int valueLength = length - 1 - recordPosLength;
+			ByteBuffer value = ByteBuffer.allocate(Short.BYTES + valueLength);
+			StandardTableUtil.writeUnsignedShort(value, valueLength);
+			value.put(form, offset, valueLength);
+			long recordPos = getVarLong(ByteBuffer.wrap(form, offset + valueLength, recordPosLength));
+			return new Key(StandardTableUtil.readUTF(value.array(), 0), recordPos);
+		}
+	}
+
+	private static final class ValueSerializer implements Serializer<String> {
+
+		@Override
+		public void write(DataOutputStream out, String value) throws IOException {
+			out.writeUTF(value);
+		}
+
+		@Override
+		public String read(DataInputStream in) throws IOException {
+			return in.readUTF();
+		}
+
+		@Override
+		public long estimateSize(String value) {
+			return Short.BYTES + ((value == null) ? ESTIMATED_VALUE_SIZE : StandardTableUtil.getUTFSize(value));
+		}
+	}
+
+	private static final Comparator<Key> NUMERIC_ORDER = (lhs, rhs) -> {
+		int result = Double.compare(lhs.getNumber(), rhs.getNumber());
+		return result != 0 ? result : Long.compare(lhs.recordPos, rhs.recordPos);
+	};
+
+	private final String name;
+
+	private final ColumnMeta column;
+
+	//the index of the column in a record
+	private final int columnIndex;
+
+	private final Path path;
+
+	private final TablespaceManager tsManager;
+
+	private final IndexType indexType;
+
+	//either of them holds the keys by the type of the index
+	private final BTreeIndex<Key> btree;
+
+	private final HashIndex<String> hash;
+
+	private final Comparator<Key> comparator;
+
+	private ColumnIndex(Path path, TablespaceManager tsManager, int columnIndex, IndexType indexType, NodeCache nodeCache) {
+		TableMetaInfo indexMetaInfo = tsManager.getHeader().getTableMetaInfo();
+		this.name = indexMetaInfo.getTableName();
+		this.column = indexMetaInfo.getColumnList().get(0);
+		this.columnIndex = columnIndex;
+		this.path = path;
+		this.tsManager = tsManager;
+		this.indexType = indexType;
+		this.comparator = comparatorOf(column);
+		if (indexType == IndexType.HASH) {
+			this.btree = null;
+			this.hash = new HashIndex<>(new ValueSerializer(), tsManager);
+		} else {
+			this.btree = new BTreeIndex<>(BTREE_THRESHOLD, new KeySerializer(), comparator, tsManager, nodeCache);
+			this.hash = null;
+		}
+	}
+
+	static Path getPath(Path directory, String tableName, String indexName) {
+		return directory.resolve(tableName + "." + indexName + FILE_EXTENSION);
+	}
+
+	static ColumnIndex create(Path directory, String tableName, String indexName, ColumnMeta column, int columnIndex,
+							  IndexType indexType, TablespaceConfig config, NodeCache nodeCache) throws IOException {
+		return create(directory, tableName, indexName, column, columnIndex, indexType, false, false, config, nodeCache);
+	}
+
+	static ColumnIndex create(Path directory, String tableName, String indexName, ColumnMeta column, int columnIndex,
+							  boolean primaryKey, boolean unique, TablespaceConfig config, NodeCache nodeCache) throws IOException {
+		return create(directory, tableName, indexName, column, columnIndex, IndexType.BTREE, primaryKey, unique, config, nodeCache);
+	}
+
+	private static ColumnIndex create(Path directory, String tableName, String indexName, ColumnMeta column, int columnIndex, IndexType indexType,
+									  boolean primaryKey, boolean unique, TablespaceConfig config, NodeCache nodeCache) throws IOException {
+		Path path = getPath(directory, tableName, indexName);
+		if (Files.exists(path)) {
+			throw new StandardTableException("'" + indexName + "' index already exists.");
+		}
+
+		ColumnMeta indexColumn = new ColumnMeta(column.getName(), column.getType(), primaryKey, false);
+		indexColumn.setUnique(unique);
+		TablespaceHeader tsHeader = new StandardTablespaceHeader.Builder()
+										.chunkSize(16)
+										.tableMetaInfo(new TableMetaInfo(indexName, Collections.singletonList(indexColumn)))
+										.build();
+		return new ColumnIndex(path, StandardTablespaceManager.create(path, tsHeader, config), columnIndex, indexType, nodeCache);
+	}
+
+	static ColumnIndex load(Path path, TableMetaInfo tableMetaInfo, TablespaceConfig config, NodeCache nodeCache) throws IOException {
+		TablespaceManager tsManager = StandardTablespaceManager.load(path, config);
+		String columnName = tsManager.getHeader().getTableMetaInfo().getColumnList().get(0).getName();
+		IndexType indexType = HashIndex.isHashIndex(tsManager) ? IndexType.HASH : IndexType.BTREE;
+		return new ColumnIndex(path, tsManager, tableMetaInfo.getColumnIndex(columnName), indexType, nodeCache);
+	}
+
+	private static Comparator<Key> comparatorOf(ColumnMeta column) {
+		TypeConstants type = column.getType().getTypeConstant();
+		if (type == TypeConstants.INTEGER || type == TypeConstants.NUMERIC) {
+			return NUMERIC_ORDER;
+		}
+		return Comparator.naturalOrder();
+	}
+
+	//a value which is not a number is placed after all the numbers
+	private static double toNumber(String value) {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	//the numbers equal to each other have to share a hash, such as 5 and 5.0
+	private String hashValueOf(String value) {
+		if (comparator != NUMERIC_ORDER) {
+			return value;
+		}
+		double number = toNumber(value);
+		return Double.isNaN(number) ? value : String.valueOf(number);
+	}
+
+	String getName() {
+		return name;
+	}
+
+	ColumnMeta getColumn() {
+		return column;
+	}
+
+	int getColumnIndex() {
+		return columnIndex;
+	}
+
+	IndexType getIndexType() {
+		return indexType;
+	}
+
+	//a hash index has no order of the values to scan a range in
+	boolean supports(ColumnRange range) {
+		return indexType != IndexType.HASH || range.isEquality();
+	}
+
+	boolean isPrimaryKey() {
+		return column.isKey();
+	}
+
+	//a primary key is unique as well
+	boolean isUnique() {
+		return column.isKey() || column.isUnique();
+	}
+
+	boolean contains(String value) {
+		if (hash != null) {
+			return hash.contains(hashValueOf(value));
+		}
+		try (BTreeIndex<Key>.BTreeIterator keys = btree.seek(new Key(value, Long.MIN_VALUE))) {
+			return keys.hasNext() && comparator.compare(keys.next(), new Key(value, Long.MAX_VALUE)) < 0;
+		}
+	}
+
+	private Key keyOf(byte[] record, long recordPos) {
+		return new Key(StandardTableUtil.readColumnData(record, columnIndex), recordPos);
+	}
+
+	void insert(byte[] record, long recordPos) {
+		insert(keyOf(record, recordPos));
+	}
+
+	private void insert(Key key) {
+		if (hash != null) {
+			hash.insert(hashValueOf(key.value), key.recordPos);
+		} else {
+			btree.insert(key, key.recordPos);
+		}
+	}
+
+	void delete(byte[] record, long recordPos) {
+		delete(keyOf(record, recordPos));
+	}
+
+	private void delete(Key key) {
+		if (hash != null) {
+			hash.delete(hashValueOf(key.value), key.recordPos);
+		} else {
+			btree.delete(key);
+		}
+	}
+
+	void update(byte[] oldRecord, byte[] newRecord, long recordPos) {
+		Key oldKey = keyOf(oldRecord, recordPos);
+		Key newKey = keyOf(newRecord, recordPos);
+		if (!oldKey.value.equals(newKey.value)) {
+			delete(oldKey);
+			insert(newKey);
+		}
+	}
+
+	//fills the empty index with the keys of all the records at once
+	void build(PrimitiveIterator.OfLong recordPositions, LongFunction<byte[]> records) {
+		if (hash != null) {
+			while (recordPositions.hasNext()) {
+				long recordPos = recordPositions.nextLong();
+				insert(keyOf(records.apply(recordPos), recordPos));
+			}
+			return;
+		}
+
+		Key[] keys = new Key[16];
+		int count = 0;
+		while (recordPositions.hasNext()) {
+			long recordPos = recordPositions.nextLong();
+			if (count == keys.length) {
+				keys = Arrays.copyOf(keys, 2 * count);
+			}
+			keys[count++] = keyOf(records.apply(recordPos), recordPos);
+		}
+		Arrays.sort(keys, 0, count, comparator);
+
+		Iterator<Map.Entry<Key,Long>> entries = Arrays.stream(keys, 0, count)
+				.map(key -> (Map.Entry<Key,Long>)new AbstractMap.SimpleImmutableEntry<>(key, key.recordPos))
+				.iterator();
+		btree.bulkLoad(entries);
+	}
+
+	//the positions of the records whose values fall in the range, in the order of the positions
+	PrimitiveIterator.OfLong scan(ColumnRange range) {
+		if (hash != null) {
+			long[] recordPositions = hash.search(hashValueOf(range.getLower()));
+			Arrays.sort(recordPositions);
+			return Arrays.stream(recordPositions).iterator();
+		}
+
+		long[] recordPositions = searchRange(range);
+		Arrays.sort(recordPositions);
+		return Arrays.stream(recordPositions).iterator();
+	}
+
+	//the positions of the records whose values fall in the range, in the order of the values
+	PrimitiveIterator.OfLong scanInOrder(ColumnRange range, boolean descending) {
+		long[] recordPositions = searchRange(range);
+		if (descending) {
+			for (int i = 0, j = recordPositions.length - 1; i < j; ++i, --j) {
+				long recordPos = recordPositions[i];
+				recordPositions[i] = recordPositions[j];
+				recordPositions[j] = recordPos;
+			}
+		}
+		return Arrays.stream(recordPositions).iterator();
+	}
+
+	private long[] searchRange(ColumnRange range) {
+		Key upper = (range.getUpper() == null) ? null
+				  : new Key(range.getUpper(), range.isUpperInclusive() ? Long.MAX_VALUE : Long.MIN_VALUE);
+
+		long[] recordPositions = new long[16];
+		int count = 0;
+		try (BTreeIndex<Key>.BTreeIterator keys = (range.getLower() == null) ? btree.iterator()
+				: btree.seek(new Key(range.getLower(), range.isLowerInclusive() ? Long.MIN_VALUE : Long.MAX_VALUE))) {
+			while (keys.hasNext()) {
+				Key key = keys.next();
+				if (upper != null && comparator.compare(key, upper) > 0) {
+					break;
+				}
+
+				if (count == recordPositions.length) {
+					recordPositions = Arrays.copyOf(recordPositions, 2 * count);
+				}
+				recordPositions[count++] = key.recordPos;
+			}
+		}
+		return Arrays.copyOf(recordPositions, count);
+	}
+
+	void flush() {
+		if (hash != null) {
+			hash.flush();
+		} else {
+			btree.flush();
+		}
+	}
+
+	void commit() {
+		flush();
+		tsManager.sync();
+	}
+
+	void close() {
+		if (hash != null) {
+			hash.close();
+		} else {
+			btree.close();
+		}
+		tsManager.close();
+	}
+
+	void drop() throws IOException {
+		close();
+		Files.deleteIfExists(path);
+	}
+}
@@ -0,0 +1,61 @@
+package onthego.database.core.table;
+
+/*
+ * ColumnRange - the values of a column which a filtration accepts at most.
+ * A null bound leaves its side of the range open, and equal bounds make an equality.
+ */
+
+public final class ColumnRange {
+
+	private final String columnName;
+
+	private final String lower;
+
+	private final boolean lowerInclusive;
+
+	private final String upper;
+
+	private final boolean upperInclusive;
+
+	public ColumnRange(String columnName, String lower, boolean lowerInclusive, String upper, boolean upperInclusive) {
+		this.columnName = columnName;
+		this.lower = lower;
+		this.lowerInclusive = lowerInclusive;
+		this.upper = upper;
+		this.upperInclusive = upperInclusive;
+	}
+
+	public static ColumnRange equalTo(String columnName, String value) {
+		return new ColumnRange(columnName, value, true, value, true);
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	public String getLower() {
+		return lower;
+	}
+
+	public boolean isLowerInclusive() {
+		return lowerInclusive;
+	}
+
+	public String getUpper() {
+		return upper;
+	}
+
+	public boolean isUpperInclusive() {
+		return upperInclusive;
+	}
+
+	public boolean isEquality() {
+		return lower != null && lowerInclusive && upperInclusive && lower.equals(upper);
+	}
+
+	@Override
+	public String toString() {
+		return (lower == null ? "(" : (lowerInclusive ? "[" : "(") + lower) + ", "
+			 + (upper == null ? ")" : upper + (upperInclusive ? "]" : ")")) + " of " + columnName;
+	}
+}
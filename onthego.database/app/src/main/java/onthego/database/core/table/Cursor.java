@@ -16,6 +16,26 @@ public interface Cursor {
 	
 	String getColumn(String columnName);
 	
+	//the typed accessors read a numeric or boolean column without going through its text
+	long getLong(int columnIdx);
+	
+	long getLong(String columnName);
+	
+	double getDouble(int columnIdx);
+	
+	double getDouble(String columnName);
+	
+	boolean getBoolean(int columnIdx);
+	
+	boolean getBoolean(String columnName);
+	
+	boolean isNull(int columnIdx);
+	
+	boolean isNull(String columnName);
+	
+	//compares a string column with the value on the bytes of the record
+	boolean columnEquals(String columnName, String value);
+	
 	ColumnMeta getColumnType(int columnIdx);
 	
 	ColumnMeta getColumnType(String columnName);
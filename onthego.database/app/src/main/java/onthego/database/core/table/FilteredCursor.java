@@ -0,0 +1,202 @@
+package onthego.database.core.table;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import onthego.database.core.database.DatabaseException;
+import onthego.database.core.table.meta.ColumnMeta;
+
+/*
+ * FilteredCursor - the rows of a select pulled one at a time from a cursor of its table.
+ * A row is filtered when the cursor moves onto it, and only the selected columns are
+ * visible, read from the row of the source cursor, so nothing is copied or kept
+ * behind the current row. The filter sees every column of the table.
+ * The rows before the offset are passed over, and once the limit is reached the source
+ * is not read any further.
+ */
+
+final class FilteredCursor implements Cursor {
+
+	private final Cursor source;
+
+	private final Filtration filtration;
+
+	private final List<ColumnMeta> selectColumn;
+
+	private final Cursor[] sourceCursors;
+
+	private final long offset;
+
+	private final long limit;
+
+	//the rows passing the filter so far, including the ones before the offset
+	private long rowCount = 0;
+
+	private boolean limitReached = false;
+
+	FilteredCursor(Cursor source, Filtration filtration, List<ColumnMeta> selectColumn, long offset, long limit) {
+		this.source = source;
+		this.filtration = filtration;
+		this.selectColumn = selectColumn;
+		this.sourceCursors = new Cursor[]{source};
+		this.offset = offset;
+		this.limit = limit;
+	}
+
+	@Override
+	public String getTableName() {
+		return source.getTableName();
+	}
+
+	//a filter failing to evaluate a row stops the cursor, as there is no checked exception to throw here
+	@Override
+	public boolean next() {
+		//the source is let go as soon as the limit is reached, as it is not read any further
+		if (limit != Table.NO_LIMIT && rowCount - offset >= limit) {
+			if (!limitReached) {
+				limitReached = true;
+				source.close();
+			}
+			return false;
+		}
+
+		try {
+			while (source.next()) {
+				if (filtration.filter(sourceCursors) && ++rowCount > offset) {
+					return true;
+				}
+			}
+			return false;
+		} catch (DatabaseException e) {
+			throw new StandardTableException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	public int getColumnCount() {
+		return selectColumn.size();
+	}
+
+	@Override
+	public ColumnMeta getColumnType(int columnIdx) {
+		return selectColumn.get(columnIdx);
+	}
+
+	@Override
+	public ColumnMeta getColumnType(String columnName) {
+		return source.getColumnType(getSelectColumnName(columnName));
+	}
+
+	@Override
+	public String getColumn(int columnIdx) {
+		return source.getColumn(getSelectColumnName(columnIdx));
+	}
+
+	@Override
+	public String getColumn(String columnName) {
+		return source.getColumn(getSelectColumnName(columnName));
+	}
+
+	@Override
+	public long getLong(int columnIdx) {
+		return source.getLong(getSelectColumnName(columnIdx));
+	}
+
+	@Override
+	public long getLong(String columnName) {
+		return source.getLong(getSelectColumnName(columnName));
+	}
+
+	@Override
+	public double getDouble(int columnIdx) {
+		return source.getDouble(getSelectColumnName(columnIdx));
+	}
+
+	@Override
+	public double getDouble(String columnName) {
+		return source.getDouble(getSelectColumnName(columnName));
+	}
+
+	@Override
+	public boolean getBoolean(int columnIdx) {
+		return source.getBoolean(getSelectColumnName(columnIdx));
+	}
+
+	@Override
+	public boolean getBoolean(String columnName) {
+		return source.getBoolean(getSelectColumnName(columnName));
+	}
+
+	@Override
+	public boolean isNull(int columnIdx) {
+		return source.isNull(getSelectColumnName(columnIdx));
+	}
+
+	@Override
+	public boolean isNull(String columnName) {
+		return source.isNull(getSelectColumnName(columnName));
+	}
+
+	@Override
+	public boolean columnEquals(String columnName, String value) {
+		return source.columnEquals(getSelectColumnName(columnName), value);
+	}
+
+	private String getSelectColumnName(int columnIdx) {
+		if (columnIdx < 0 || columnIdx >= selectColumn.size()) {
+			throw new IllegalArgumentException(columnIdx + " is not a valid column index.");
+		}
+		return selectColumn.get(columnIdx).getName();
+	}
+
+	private String getSelectColumnName(String columnName) {
+		for (ColumnMeta column : selectColumn) {
+			if (column.getName().equalsIgnoreCase(columnName)) {
+				return column.getName();
+			}
+		}
+		throw new IllegalArgumentException(columnName + " is not a valid column name");
+	}
+
+	//the whole record of the table, as the raw record of a materialized result holds it
+	@Override
+	public byte[] getRawRecord() {
+		return source.getRawRecord();
+	}
+
+	@Override
+	public Iterator<String> getRecord() {
+		return new Iterator<String>() {
+			private int columnIdx = 0;
+
+			@Override
+			public boolean hasNext() {
+				return columnIdx < selectColumn.size();
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return getColumn(columnIdx++);
+			}
+		};
+	}
+
+	@Override
+	public String update(String columnName, String newValue) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void delete() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		source.close();
+	}
+}
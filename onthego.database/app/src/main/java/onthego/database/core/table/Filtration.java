@@ -1,5 +1,8 @@
 package onthego.database.core.table;
 
+import java.util.Collections;
+import java.util.List;
+
 import onthego.database.core.database.DatabaseException;
 
 public interface Filtration {
@@ -7,6 +10,11 @@ public interface Filtration {
 	boolean filter(Cursor[] cursor) throws DatabaseException;
 	
 	void update(Cursor cursor) throws DatabaseException;
+	
+	//the ranges of columns every record passing the filter falls in, which an index on one of the columns can scan instead of the table
+	default List<ColumnRange> getColumnRanges() {
+		return Collections.emptyList();
+	}
 
 	class DefaultFilter implements Filtration {
 		@Override
@@ -0,0 +1,296 @@
+package onthego.database.core.table;
+
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/*
+ * HeapFile - the records of a table packed into slotted pages allocated from its tablespace.
+ * A record id is <heap_flag><page_pos><slot>, so ordering record ids orders records by page
+ * and a scan in the order of the clustered index reads pages sequentially.
+ * A record too large for a page gets a page of its own. Records written before the heap
+ * format keep a block of their own, whose position is their record id.
+ * A physical scan walks the blocks of the tablespace in the file order and reads the
+ * file ahead of itself, skipping every block which is not a page.
+ * The pages with free space are not stored, so they are found by the same walk on loading.
+ */
+
+public class HeapFile {
+
+	//a page and the header and footer of its block take exactly 4096 bytes
+	public static final int DEFAULT_PAGE_SIZE = 4096 - StandardTablespaceManager.BLOCK_OVERHEAD_SIZE;
+
+	public static final int READ_AHEAD_SIZE = 64 * 1024;
+
+	private static final long HEAP_RECORD_FLAG = 1L << 62;
+
+	private static final int SLOT_BITS = 16;
+
+	private static final long SLOT_MASK = (1L << SLOT_BITS) - 1;
+
+	private final TablespaceManager tsManager;
+
+	private final int pageSize;
+
+	private long currentPagePos = -1;
+
+	//pages known to have room for more records, with their free space
+	private final Map<Long,Integer> freeSpaceMap = new LinkedHashMap<>();
+
+	//the last page read, so that a scan does not read a page once per record
+	private long cachedPagePos = -1;
+
+	private SlottedPage cachedPage;
+
+	public HeapFile(TablespaceManager tsManager) {
+		this(tsManager, DEFAULT_PAGE_SIZE);
+	}
+
+	public HeapFile(TablespaceManager tsManager, int pageSize) {
+		this.tsManager = tsManager;
+		this.pageSize = pageSize;
+	}
+
+	public static boolean isHeapRecord(long recordId) {
+		return (recordId & HEAP_RECORD_FLAG) != 0;
+	}
+
+	public static long getPagePos(long recordId) {
+		return (recordId & ~HEAP_RECORD_FLAG) >>> SLOT_BITS;
+	}
+
+	public static int getSlot(long recordId) {
+		return (int)(recordId & SLOT_MASK);
+	}
+
+	private static long toRecordId(long pagePos, int slot) {
+		return HEAP_RECORD_FLAG | (pagePos << SLOT_BITS) | slot;
+	}
+
+	//continue filling the page of the last record inserted before the table was loaded
+	public void setInsertionPage(long lastRecordId) {
+		if (isHeapRecord(lastRecordId)) {
+			currentPagePos = getPagePos(lastRecordId);
+		}
+	}
+
+	private SlottedPage readPage(long pagePos) {
+		if (pagePos != cachedPagePos) {
+			cachedPage = SlottedPage.wrap(tsManager.readBlock(pagePos));
+			cachedPagePos = pagePos;
+		}
+		return cachedPage;
+	}
+
+	private void writePage(long pagePos, SlottedPage page) {
+		tsManager.writeBlock(pagePos, page.getBytes());
+		cachedPagePos = pagePos;
+		cachedPage = page;
+		trackFreeSpace(pagePos, page.getFreeSpace());
+	}
+
+	//a page is worth trying for insertions again once a quarter of it is free
+	private void trackFreeSpace(long pagePos, int freeSpace) {
+		if (pagePos != currentPagePos && freeSpace >= pageSize / 4) {
+			freeSpaceMap.put(pagePos, freeSpace);
+		} else {
+			freeSpaceMap.remove(pagePos);
+		}
+	}
+
+	//rebuild the pages with room for more records of a table being loaded, after its insertion page is set
+	public void loadFreeSpaceMap() {
+		freeSpaceMap.clear();
+
+		long readAheadEndPos = 0;
+		for (long blockPos = tsManager.getNextAllocatedBlockPos(0); blockPos > 0; blockPos = tsManager.getNextAllocatedBlockPos(blockPos)) {
+			if (blockPos + pageSize > readAheadEndPos) {
+				tsManager.readAhead(blockPos, READ_AHEAD_SIZE);
+				readAheadEndPos = blockPos + READ_AHEAD_SIZE;
+			}
+
+			if (SlottedPage.isSlottedPage(tsManager.readBlock(blockPos, SlottedPage.HEADER_SIZE))) {
+				trackFreeSpace(blockPos, readPage(blockPos).getFreeSpace());
+			}
+		}
+	}
+
+	public long insert(byte[] record) {
+		if (record.length > SlottedPage.getMaxRecordSize(pageSize)) {
+			return insertLargeRecord(record);
+		}
+
+		long pagePos = findPage(record.length);
+		SlottedPage page = pagePos < 0 ? null : readPage(pagePos);
+		if (page == null) {
+			pagePos = tsManager.allocate(pageSize);
+			page = SlottedPage.create(pageSize);
+			currentPagePos = pagePos;
+		}
+
+		int slot = page.insert(record);
+		writePage(pagePos, page);
+		return toRecordId(pagePos, slot);
+	}
+
+	private long insertLargeRecord(byte[] record) {
+		if (record.length > SlottedPage.getMaxRecordSize(SlottedPage.MAX_PAGE_SIZE)) {
+			long recordPos = tsManager.allocate(record.length);
+			tsManager.writeBlock(recordPos, record);
+			return recordPos;
+		}
+
+		int largePageSize = record.length + SlottedPage.HEADER_SIZE + SlottedPage.SLOT_SIZE;
+		long pagePos = tsManager.allocate(largePageSize);
+		SlottedPage page = SlottedPage.create(largePageSize);
+		int slot = page.insert(record);
+		writePage(pagePos, page);
+		return toRecordId(pagePos, slot);
+	}
+
+	//the current page first, so that rows inserted together stay together
+	private long findPage(int length) {
+		if (currentPagePos >= 0 && readPage(currentPagePos).canInsert(length)) {
+			return currentPagePos;
+		}
+
+		for (Map.Entry<Long,Integer> entry : freeSpaceMap.entrySet()) {
+			if (entry.getValue() >= length + SlottedPage.SLOT_SIZE) {
+				currentPagePos = entry.getKey();
+				freeSpaceMap.remove(currentPagePos);
+				return currentPagePos;
+			}
+		}
+		return -1;
+	}
+
+	public byte[] read(long recordId) {
+		if (!isHeapRecord(recordId)) {
+			return tsManager.readBlock(recordId);
+		}
+		return readPage(getPagePos(recordId)).read(getSlot(recordId));
+	}
+
+	//a record of a page is read in place, so the view stays valid only until the heap file changes
+	public void read(long recordId, RecordView view) {
+		if (!isHeapRecord(recordId)) {
+			byte[] record = tsManager.readBlock(recordId);
+			view.reset(record, 0, record.length);
+			return;
+		}
+		readPage(getPagePos(recordId)).read(getSlot(recordId), view);
+	}
+
+	//returns false if the record does not fit in its page anymore and has to be moved
+	public boolean update(long recordId, byte[] record) {
+		if (!isHeapRecord(recordId)) {
+			if (tsManager.readBlock(recordId).length < record.length) {
+				return false;
+			}
+			tsManager.writeBlock(recordId, record);
+			return true;
+		}
+
+		long pagePos = getPagePos(recordId);
+		SlottedPage page = readPage(pagePos);
+		if (!page.update(getSlot(recordId), record)) {
+			return false;
+		}
+
+		writePage(pagePos, page);
+		return true;
+	}
+
+	public void delete(long recordId) {
+		if (!isHeapRecord(recordId)) {
+			tsManager.free(recordId);
+			return;
+		}
+
+		long pagePos = getPagePos(recordId);
+		SlottedPage page = readPage(pagePos);
+		page.delete(getSlot(recordId));
+		if (!page.isEmpty()) {
+			writePage(pagePos, page);
+			return;
+		}
+
+		//an empty page goes back to the tablespace
+		tsManager.free(pagePos);
+		freeSpaceMap.remove(pagePos);
+		if (pagePos == currentPagePos) {
+			currentPagePos = -1;
+		}
+		cachedPagePos = -1;
+		cachedPage = null;
+	}
+
+	public PrimitiveIterator.OfLong scan() {
+		return new PhysicalScanIterator();
+	}
+
+	private final class PhysicalScanIterator implements PrimitiveIterator.OfLong {
+
+		//the record ids of the current page, reused for every page
+		private long[] recordIds = new long[16];
+
+		private int recordIdCount = 0;
+
+		private int recordIdIndex = 0;
+
+		//the next block is found before the records of a page are handed out, as they may free the page
+		private long nextBlockPos = tsManager.getNextAllocatedBlockPos(0);
+
+		private long readAheadEndPos = 0;
+
+		@Override
+		public boolean hasNext() {
+			while (recordIdIndex == recordIdCount && nextBlockPos > 0) {
+				loadNextBlock();
+			}
+			return recordIdIndex < recordIdCount;
+		}
+
+		@Override
+		public long nextLong() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			return recordIds[recordIdIndex++];
+		}
+
+		private void loadNextBlock() {
+			long blockPos = nextBlockPos;
+			if (blockPos + pageSize > readAheadEndPos) {
+				tsManager.readAhead(blockPos, READ_AHEAD_SIZE);
+				readAheadEndPos = blockPos + READ_AHEAD_SIZE;
+			}
+
+			nextBlockPos = tsManager.getNextAllocatedBlockPos(blockPos);
+			if (!SlottedPage.isSlottedPage(tsManager.readBlock(blockPos, SlottedPage.HEADER_SIZE))) {
+				return;
+			}
+
+			SlottedPage page = readPage(blockPos);
+			if (recordIds.length < page.getSlotCount()) {
+				recordIds = new long[page.getSlotCount()];
+			}
+
+			recordIdCount = 0;
+			recordIdIndex = 0;
+			for (int slot = 0; slot < page.getSlotCount(); ++slot) {
+				if (page.isUsed(slot)) {
+					recordIds[recordIdCount++] = toRecordId(blockPos, slot);
+				}
+			}
+		}
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+}
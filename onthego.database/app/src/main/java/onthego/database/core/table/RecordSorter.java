@@ -0,0 +1,251 @@
+package onthego.database.core.table;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import onthego.database.core.table.meta.ColumnMeta;
+import onthego.database.core.table.meta.TypeConstants;
+
+/*
+ * RecordSorter - an external merge sort of records.
+ * The records are sorted in memory until they outgrow its size, then each sorted run is
+ * spilled to a temporary file of the directory, and the runs are merged at once by a heap
+ * holding the head record of every run. The records equal to each other keep the order
+ * they were added in. The order of a column is the same as its btree index keeps.
+ */
+
+final class RecordSorter implements Closeable {
+
+	//the bytes a record takes in memory beyond its data, for the array header and the reference to it
+	private static final int RECORD_OVERHEAD = 32;
+
+	private static final String RUN_EXTENSION = ".sort";
+
+	private final Comparator<byte[]> comparator;
+
+	private final long memorySize;
+
+	private final Path directory;
+
+	private final String prefix;
+
+	private final List<byte[]> records = new ArrayList<>();
+
+	private long recordBytes = 0;
+
+	private final List<Path> runs = new ArrayList<>();
+
+	private final List<Run> openRuns = new ArrayList<>();
+
+	RecordSorter(Comparator<byte[]> comparator, long memorySize, Path directory, String prefix) {
+		this.comparator = comparator;
+		this.memorySize = memorySize;
+		this.directory = directory;
+		this.prefix = prefix;
+	}
+
+	//the files of runs left behind by a sort which did not finish
+	static String getRunPattern(String prefix) {
+		return prefix + ".*" + RUN_EXTENSION;
+	}
+
+	static Comparator<byte[]> comparatorOf(List<ColumnMeta> columns, List<SortKey> keys) {
+		Comparator<byte[]> comparator = null;
+		for (SortKey key : keys) {
+			Comparator<byte[]> keyComparator = comparatorOf(columns, key);
+			comparator = (comparator == null) ? keyComparator : comparator.thenComparing(keyComparator);
+		}
+		return comparator;
+	}
+
+	private static Comparator<byte[]> comparatorOf(List<ColumnMeta> columns, SortKey key) {
+		int n = -1;
+		for (int i = 0; i < columns.size(); ++i) {
+			if (columns.get(i).getName().equalsIgnoreCase(key.getColumnName())) {
+				n = i;
+				break;
+			}
+		}
+		if (n < 0) {
+			throw new StandardTableException(key.getColumnName() + " is not a valid column name");
+		}
+
+		final int columnIdx = n;
+		TypeConstants type = columns.get(n).getType().getTypeConstant();
+		Comparator<byte[]> comparator = (type == TypeConstants.INTEGER || type == TypeConstants.NUMERIC)
+				? (lhs, rhs) -> Double.compare(getNumber(lhs, columnIdx), getNumber(rhs, columnIdx))
+				: (lhs, rhs) -> StandardTableUtil.readColumnData(lhs, columnIdx).compareTo(StandardTableUtil.readColumnData(rhs, columnIdx));
+		return key.isDescending() ? comparator.reversed() : comparator;
+	}
+
+	//a null or a value which is not a number is placed after all the numbers
+	private static double getNumber(byte[] record, int n) {
+		if (StandardTableUtil.isNullColumnData(record, 0, n)) {
+			return Double.NaN;
+		}
+
+		if (StandardRecordFormat.isTyped(record, 0) && StandardRecordFormat.getColumnType(record, 0, n) != StandardRecordFormat.STRING_TYPE) {
+			return StandardRecordFormat.readDouble(record, 0, n);
+		}
+
+		try {
+			return Double.parseDouble(StandardTableUtil.readColumnData(record, n));
+		} catch (NumberFormatException e) {
+			return Double.NaN;
+		}
+	}
+
+	void add(byte[] record) throws IOException {
+		records.add(record);
+		recordBytes += record.length + RECORD_OVERHEAD;
+		if (recordBytes > memorySize) {
+			spill();
+		}
+	}
+
+	//<record_count><(record_length,record),...>
+	private void spill() throws IOException {
+		records.sort(comparator);
+
+		Path run = Files.createTempFile(directory, prefix + ".", RUN_EXTENSION);
+		runs.add(run);
+		try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)))) {
+			out.writeInt(records.size());
+			for (byte[] record : records) {
+				out.writeInt(record.length);
+				out.write(record);
+			}
+		}
+
+		records.clear();
+		recordBytes = 0;
+	}
+
+	int getRunCount() {
+		return runs.size();
+	}
+
+	//the records added so far in the sorted order
+	Iterator<byte[]> sort() throws IOException {
+		if (runs.isEmpty()) {
+			records.sort(comparator);
+			return records.iterator();
+		}
+
+		if (!records.isEmpty()) {
+			spill();
+		}
+		return new MergeIterator();
+	}
+
+	//the runs are deleted as the sort is over
+	@Override
+	public void close() {
+		for (Run run : openRuns) {
+			run.close();
+		}
+		openRuns.clear();
+
+		for (Path run : runs) {
+			try {
+				Files.deleteIfExists(run);
+			} catch (IOException e) {
+				run.toFile().deleteOnExit();
+			}
+		}
+		runs.clear();
+		records.clear();
+	}
+
+	private final class Run implements Closeable {
+
+		private final int number;
+
+		private final DataInputStream in;
+
+		private int remaining;
+
+		private byte[] head;
+
+		Run(int number, Path path) throws IOException {
+			this.number = number;
+			this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)));
+			this.remaining = in.readInt();
+		}
+
+		boolean advance() throws IOException {
+			if (remaining == 0) {
+				head = null;
+				return false;
+			}
+
+			head = new byte[in.readInt()];
+			in.readFully(head);
+			--remaining;
+			return true;
+		}
+
+		@Override
+		public void close() {
+			try {
+				in.close();
+			} catch (IOException e) {
+				//the file of the run is deleted anyway
+			}
+		}
+	}
+
+	private final class MergeIterator implements Iterator<byte[]> {
+
+		//the runs ordered by their heads, and an earlier run first among the equal heads
+		private final PriorityQueue<Run> heads = new PriorityQueue<>(Math.max(1, runs.size()), (lhs, rhs) -> {
+			int result = comparator.compare(lhs.head, rhs.head);
+			return result != 0 ? result : Integer.compare(lhs.number, rhs.number);
+		});
+
+		MergeIterator() throws IOException {
+			for (int i = 0; i < runs.size(); ++i) {
+				Run run = new Run(i, runs.get(i));
+				openRuns.add(run);
+				if (run.advance()) {
+					heads.add(run);
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+			return !heads.isEmpty();
+		}
+
+		@Override
+		public byte[] next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+
+			Run run = heads.poll();
+			byte[] record = run.head;
+			try {
+				if (run.advance()) {
+					heads.add(run);
+				}
+			} catch (IOException e) {
+				throw new StandardTableException("A sorted run cannot be read.", e);
+			}
+			return record;
+		}
+	}
+}
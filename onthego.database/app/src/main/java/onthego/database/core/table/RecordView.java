@@ -0,0 +1,111 @@
+package onthego.database.core.table;
+
+import java.util.Arrays;
+
+/*
+ * RecordView - a record read where it lies, such as inside the page of a heap file.
+ * A column is decoded only when it is touched, and its string is kept until the view
+ * moves to another record, so reading a column twice in a row decodes it once.
+ * A string column is compared with a value on the bytes of the record, without decoding it.
+ */
+
+public final class RecordView {
+
+	private static final String[] NO_COLUMNS = new String[0];
+
+	private byte[] buffer;
+
+	private int base;
+
+	private int length;
+
+	private boolean typed;
+
+	//the decoded columns of the current record
+	private String[] columns = NO_COLUMNS;
+
+	private boolean hasDecodedColumns;
+
+	//the last value compared, which an expression passes for every record
+	private String comparedValue;
+
+	private byte[] comparedUTF;
+
+	public RecordView() {}
+
+	public RecordView(byte[] record) {
+		reset(record, 0, record.length);
+	}
+
+	public void reset(byte[] buffer, int base, int length) {
+		this.buffer = buffer;
+		this.base = base;
+		this.length = length;
+		this.typed = StandardRecordFormat.isTyped(buffer, base);
+
+		if (hasDecodedColumns) {
+			Arrays.fill(columns, null);
+			hasDecodedColumns = false;
+		}
+	}
+
+	public String getString(int n) {
+		if (n >= columns.length) {
+			columns = Arrays.copyOf(columns, Math.max(n + 1, getColumnCount()));
+		}
+
+		String column = columns[n];
+		if (column == null) {
+			column = StandardTableUtil.readColumnData(buffer, base, n);
+			columns[n] = column;
+			hasDecodedColumns = true;
+		}
+		return column;
+	}
+
+	private int getColumnCount() {
+		return typed ? StandardRecordFormat.getColumnCount(buffer, base) : StandardTableUtil.readUnsignedShort(buffer, base);
+	}
+
+	public long getLong(int n) {
+		return StandardTableUtil.readLongColumnData(buffer, base, n);
+	}
+
+	public double getDouble(int n) {
+		return StandardTableUtil.readDoubleColumnData(buffer, base, n);
+	}
+
+	public boolean getBoolean(int n) {
+		return StandardTableUtil.readBooleanColumnData(buffer, base, n);
+	}
+
+	public boolean isNull(int n) {
+		return StandardTableUtil.isNullColumnData(buffer, base, n);
+	}
+
+	//a column not stored as a string is compared on its text
+	public boolean equalsString(int n, String value) {
+		if (n < columns.length && columns[n] != null) {
+			return columns[n].equals(value);
+		}
+
+		int position;
+		if (!typed) {
+			position = StandardTableUtil.getColumnDataPosition(buffer, base, n);
+		} else if (StandardRecordFormat.getColumnType(buffer, base, n) == StandardRecordFormat.STRING_TYPE && !StandardRecordFormat.isNull(buffer, base, n)) {
+			position = StandardRecordFormat.getColumnPosition(buffer, base, n);
+		} else {
+			return getString(n).equals(value);
+		}
+
+		if (value != comparedValue) {
+			comparedUTF = StandardTableUtil.toUTF(value);
+			comparedValue = value;
+		}
+		return StandardTableUtil.equalsUTF(buffer, position, comparedUTF);
+	}
+
+	public byte[] toByteArray() {
+		return Arrays.copyOfRange(buffer, base, base + length);
+	}
+}
@@ -6,6 +6,7 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
@@ -24,14 +25,30 @@ public final class ResultTable implements Table {
 	
 	private final List<byte[]> records;
 	
+	//the rows of a result which is not materialized are pulled from a new cursor on every scan
+	private final Supplier<Cursor> cursorSupplier;
+	
 	public ResultTable(String tableName, List<ColumnMeta> columnList, List<Integer> columnRealIndexList, List<byte[]> records) {
 		this.tableName = tableName;
 		this.columnTypeList = columnList;
 		this.records = records;
 		this.columnRealIndexList = columnRealIndexList;
+		this.cursorSupplier = null;
 		
 		initColumnTypeIndexMap();
 	}
+	
+	public ResultTable(String tableName, List<ColumnMeta> columnList, Supplier<Cursor> cursorSupplier) {
+		this.tableName = tableName;
+		this.columnTypeList = columnList;
+		this.records = null;
+		this.columnRealIndexList = null;
+		this.cursorSupplier = cursorSupplier;
+	}
+	
+	public boolean isMaterialized() {
+		return records != null;
+	}
 
 	private void initColumnTypeIndexMap() {
 		for (int i = 0; i < this.columnTypeList.size(); ++i) {
@@ -59,7 +76,7 @@ public final class ResultTable implements Table {
 	}
 	
 	@Override
-	public Table select(List<ColumnMeta> selectColumn, Filtration filtration) {
+	public Table select(List<ColumnMeta> selectColumn, Filtration filtration, SortOrder sortOrder, long offset, long limit) {
 		throw new UnsupportedOperationException();
 	}
 
@@ -74,7 +91,7 @@ public final class ResultTable implements Table {
 
 	@Override
 	public Cursor getCursor() {
-		return new ResultTableCursor();
+		return isMaterialized() ? new ResultTableCursor() : cursorSupplier.get();
 	}
 
 	@Override
@@ -110,13 +127,30 @@ public final class ResultTable implements Table {
 	public int getColumnCount() {
 		return this.columnTypeList.size();
 	}
-	
+
+	@Override
+	public void createIndex(String indexName, String columnName, IndexType indexType) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public boolean dropIndex(String indexName) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public List<String> getIndexNames() {
+		return Collections.emptyList();
+	}
+
 	private class ResultTableCursor implements Cursor {
 		
 		private final Iterator<byte[]> iterator = records.iterator();
 		
 		private byte[] record;
 		
+		private final RecordView view = new RecordView();
+		
 		@Override
 		public String getTableName() {
 			return ResultTable.this.getTableName();
@@ -126,6 +160,7 @@ public final class ResultTable implements Table {
 		public boolean next() {
 			if (iterator.hasNext()) {
 				record = iterator.next();
+				view.reset(record, 0, record.length);
 				return true;
 			}
 			return false;
@@ -162,7 +197,59 @@ public final class ResultTable implements Table {
 			if (!isValidColumnName(columnName)) {
 				throw new IllegalArgumentException(columnName + " is not a valid column name");
 			}
-			return StandardTableUtil.readColumnData(record, getColumnIndex(columnName));
+			return view.getString(getColumnIndex(columnName));
+		}
+		
+		@Override
+		public long getLong(int columnIdx) {
+			return getLong(columnTypeList.get(columnIdx).getName());
+		}
+		
+		@Override
+		public long getLong(String columnName) {
+			return view.getLong(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public double getDouble(int columnIdx) {
+			return getDouble(columnTypeList.get(columnIdx).getName());
+		}
+		
+		@Override
+		public double getDouble(String columnName) {
+			return view.getDouble(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public boolean getBoolean(int columnIdx) {
+			return getBoolean(columnTypeList.get(columnIdx).getName());
+		}
+		
+		@Override
+		public boolean getBoolean(String columnName) {
+			return view.getBoolean(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public boolean isNull(int columnIdx) {
+			return isNull(columnTypeList.get(columnIdx).getName());
+		}
+		
+		@Override
+		public boolean isNull(String columnName) {
+			return view.isNull(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public boolean columnEquals(String columnName, String value) {
+			return view.equalsString(getRecordColumnIndex(columnName), value);
+		}
+		
+		private int getRecordColumnIndex(String columnName) {
+			if (!isValidColumnName(columnName)) {
+				throw new IllegalArgumentException(columnName + " is not a valid column name");
+			}
+			return getColumnIndex(columnName);
 		}
 		
 		private boolean isValidColumnName(String columnName) {
@@ -180,7 +267,7 @@ public final class ResultTable implements Table {
 
 		@Override
 		public Iterator<String> getRecord() {
-			return new StandardRecordIterator(record, columnRealIndexList);
+			return new StandardRecordIterator(view, columnRealIndexList);
 		} 
 
 		@Override
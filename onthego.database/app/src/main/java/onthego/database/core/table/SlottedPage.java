@@ -0,0 +1,251 @@
+package onthego.database.core.table;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/*
+ * SlottedPage - a fixed size page holding variable length records.
+ * <page_mark><slot_count><data_start>(<record_offset><record_length>)*<free space><records>
+ * The slot directory grows from the front and records grow from the end, so a record keeps
+ * its slot number while it moves inside the page. A slot of the offset 0 is empty.
+ */
+
+public class SlottedPage {
+
+	//tells a page apart from the other blocks of a tablespace in a physical scan
+	public static final int PAGE_MARK = 0x534C5450;
+
+	public static final int HEADER_SIZE = Integer.BYTES + 2 * Short.BYTES;
+
+	public static final int SLOT_SIZE = 2 * Short.BYTES;
+
+	public static final int MAX_PAGE_SIZE = 0xFFFF;
+
+	private static final int SLOT_COUNT_POS = Integer.BYTES;
+
+	private static final int DATA_START_POS = SLOT_COUNT_POS + Short.BYTES;
+
+	private final byte[] page;
+
+	private final ByteBuffer buffer;
+
+	//a page read back from a block larger than requested grows into the rest of the block
+	private final int pageSize;
+
+	private SlottedPage(byte[] page, int pageSize) {
+		this.page = page;
+		this.buffer = ByteBuffer.wrap(page);
+		this.pageSize = pageSize;
+	}
+
+	public static SlottedPage create(int pageSize) {
+		if (pageSize > MAX_PAGE_SIZE) {
+			throw new IllegalArgumentException("The page size(" + pageSize + ") must not be larger than " + MAX_PAGE_SIZE + ".");
+		}
+
+		SlottedPage slottedPage = new SlottedPage(new byte[pageSize], pageSize);
+		slottedPage.buffer.putInt(0, PAGE_MARK);
+		slottedPage.setSlotCount(0);
+		slottedPage.setDataStart(pageSize);
+		return slottedPage;
+	}
+
+	public static SlottedPage wrap(byte[] page) {
+		return new SlottedPage(page, Math.min(page.length, MAX_PAGE_SIZE));
+	}
+
+	public static boolean isSlottedPage(byte[] payload) {
+		return payload.length >= HEADER_SIZE && ByteBuffer.wrap(payload).getInt(0) == PAGE_MARK;
+	}
+
+	//the largest record a page of the size can hold
+	public static int getMaxRecordSize(int pageSize) {
+		return pageSize - HEADER_SIZE - SLOT_SIZE;
+	}
+
+	public byte[] getBytes() {
+		return page;
+	}
+
+	public int getSlotCount() {
+		return Short.toUnsignedInt(buffer.getShort(SLOT_COUNT_POS));
+	}
+
+	private void setSlotCount(int slotCount) {
+		buffer.putShort(SLOT_COUNT_POS, (short)slotCount);
+	}
+
+	private int getDataStart() {
+		return Short.toUnsignedInt(buffer.getShort(DATA_START_POS));
+	}
+
+	private void setDataStart(int dataStart) {
+		buffer.putShort(DATA_START_POS, (short)dataStart);
+	}
+
+	private int getSlotPos(int slot) {
+		return HEADER_SIZE + slot * SLOT_SIZE;
+	}
+
+	private int getRecordOffset(int slot) {
+		return Short.toUnsignedInt(buffer.getShort(getSlotPos(slot)));
+	}
+
+	private int getRecordLength(int slot) {
+		return Short.toUnsignedInt(buffer.getShort(getSlotPos(slot) + Short.BYTES));
+	}
+
+	private void setSlot(int slot, int offset, int length) {
+		buffer.putShort(getSlotPos(slot), (short)offset);
+		buffer.putShort(getSlotPos(slot) + Short.BYTES, (short)length);
+	}
+
+	public boolean isUsed(int slot) {
+		return slot < getSlotCount() && getRecordOffset(slot) != 0;
+	}
+
+	public boolean isEmpty() {
+		for (int slot = 0; slot < getSlotCount(); ++slot) {
+			if (isUsed(slot)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private int getContiguousFreeSpace() {
+		return getDataStart() - getSlotPos(getSlotCount());
+	}
+
+	//the free space including the holes left by deleted and shrunk records
+	public int getFreeSpace() {
+		int usedSpace = HEADER_SIZE + getSlotCount() * SLOT_SIZE;
+		for (int slot = 0; slot < getSlotCount(); ++slot) {
+			if (isUsed(slot)) {
+				usedSpace += getRecordLength(slot);
+			}
+		}
+		return pageSize - usedSpace;
+	}
+
+	private int findEmptySlot() {
+		for (int slot = 0; slot < getSlotCount(); ++slot) {
+			if (!isUsed(slot)) {
+				return slot;
+			}
+		}
+		return -1;
+	}
+
+	public boolean canInsert(int length) {
+		return getFreeSpace() >= length + (findEmptySlot() < 0 ? SLOT_SIZE : 0);
+	}
+
+	//returns the slot of the inserted record or -1 if the page does not have enough space
+	public int insert(byte[] record) {
+		int slot = findEmptySlot();
+		int requiredSpace = record.length + (slot < 0 ? SLOT_SIZE : 0);
+		if (getFreeSpace() < requiredSpace) {
+			return -1;
+		}
+
+		if (getContiguousFreeSpace() < requiredSpace) {
+			compact();
+		}
+
+		if (slot < 0) {
+			slot = getSlotCount();
+			setSlotCount(slot + 1);
+		}
+
+		int offset = getDataStart() - record.length;
+		System.arraycopy(record, 0, page, offset, record.length);
+		setDataStart(offset);
+		setSlot(slot, offset, record.length);
+		return slot;
+	}
+
+	public byte[] read(int slot) {
+		if (!isUsed(slot)) {
+			throw new StandardTableException("The slot(" + slot + ") of the page is empty.");
+		}
+
+		int offset = getRecordOffset(slot);
+		return Arrays.copyOfRange(page, offset, offset + getRecordLength(slot));
+	}
+
+	//points the view at the record inside the page without copying it, until the page changes
+	public void read(int slot, RecordView view) {
+		if (!isUsed(slot)) {
+			throw new StandardTableException("The slot(" + slot + ") of the page is empty.");
+		}
+		view.reset(page, getRecordOffset(slot), getRecordLength(slot));
+	}
+
+	//a record is rewritten in place if it does not grow, otherwise moved inside the page if it fits
+	public boolean update(int slot, byte[] record) {
+		if (!isUsed(slot)) {
+			throw new StandardTableException("The slot(" + slot + ") of the page is empty.");
+		}
+
+		int length = getRecordLength(slot);
+		if (record.length <= length) {
+			int offset = getRecordOffset(slot);
+			System.arraycopy(record, 0, page, offset, record.length);
+			setSlot(slot, offset, record.length);
+			return true;
+		}
+
+		if (getFreeSpace() < record.length - length) {
+			return false;
+		}
+
+		setSlot(slot, 0, 0);
+		if (getContiguousFreeSpace() < record.length) {
+			compact();
+		}
+
+		int offset = getDataStart() - record.length;
+		System.arraycopy(record, 0, page, offset, record.length);
+		setDataStart(offset);
+		setSlot(slot, offset, record.length);
+		return true;
+	}
+
+	public void delete(int slot) {
+		if (!isUsed(slot)) {
+			throw new StandardTableException("The slot(" + slot + ") of the page is empty.");
+		}
+
+		setSlot(slot, 0, 0);
+		//trailing empty slots are given back to the free space
+		int slotCount = getSlotCount();
+		while (slotCount > 0 && getRecordOffset(slotCount - 1) == 0) {
+			--slotCount;
+		}
+		setSlotCount(slotCount);
+
+		if (slotCount == 0) {
+			setDataStart(pageSize);
+		}
+	}
+
+	//move every record to the end of the page to merge the holes into the free space
+	private void compact() {
+		byte[] compacted = new byte[pageSize];
+		int dataStart = pageSize;
+		for (int slot = 0; slot < getSlotCount(); ++slot) {
+			if (!isUsed(slot)) {
+				continue;
+			}
+
+			int length = getRecordLength(slot);
+			dataStart -= length;
+			System.arraycopy(page, getRecordOffset(slot), compacted, dataStart, length);
+			setSlot(slot, dataStart, length);
+		}
+
+		System.arraycopy(compacted, dataStart, page, dataStart, pageSize - dataStart);
+		setDataStart(dataStart);
+	}
+}
@@ -0,0 +1,38 @@
+package onthego.database.core.table;
+
+/*
+ * SortKey - a column which the rows of a select are ordered by, and the direction of the order.
+ */
+
+public final class SortKey {
+
+	private final String columnName;
+
+	private final boolean descending;
+
+	public SortKey(String columnName, boolean descending) {
+		this.columnName = columnName;
+		this.descending = descending;
+	}
+
+	public static SortKey asc(String columnName) {
+		return new SortKey(columnName, false);
+	}
+
+	public static SortKey desc(String columnName) {
+		return new SortKey(columnName, true);
+	}
+
+	public String getColumnName() {
+		return columnName;
+	}
+
+	public boolean isDescending() {
+		return descending;
+	}
+
+	@Override
+	public String toString() {
+		return columnName + (descending ? " DESC" : " ASC");
+	}
+}
@@ -0,0 +1,41 @@
+package onthego.database.core.table;
+
+import java.util.Collections;
+import java.util.List;
+
+/*
+ * SortOrder - the sort keys of a select, and the bytes of records it may sort in memory.
+ * The records beyond the memory are sorted in runs spilled to the directory of the table.
+ */
+
+public final class SortOrder {
+
+	public static final long DEFAULT_MEMORY_SIZE = 16 * 1024 * 1024;
+
+	public static final SortOrder NONE = new SortOrder(Collections.emptyList(), DEFAULT_MEMORY_SIZE);
+
+	private final List<SortKey> keys;
+
+	private final long memorySize;
+
+	public SortOrder(List<SortKey> keys, long memorySize) {
+		if (memorySize < 1) {
+			throw new IllegalArgumentException("The sort memory size(" + memorySize + ") must be positive.");
+		}
+
+		this.keys = keys;
+		this.memorySize = memorySize;
+	}
+
+	public List<SortKey> getKeys() {
+		return keys;
+	}
+
+	public long getMemorySize() {
+		return memorySize;
+	}
+
+	public boolean isEmpty() {
+		return keys.isEmpty();
+	}
+}
@@ -0,0 +1,199 @@
+package onthego.database.core.table;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import onthego.database.core.table.meta.ColumnMeta;
+
+/*
+ * SortedCursor - the records of a cursor in the order of a sorter.
+ * The records are drawn from the source and sorted when the cursor first moves, then read
+ * in place one at a time, with all the columns of the table visible. The sorter is closed
+ * as the cursor runs out of records, which deletes the runs it spilled.
+ */
+
+final class SortedCursor implements Cursor {
+
+	private final Cursor source;
+
+	private final List<ColumnMeta> columns;
+
+	private final RecordSorter sorter;
+
+	private Iterator<byte[]> records;
+
+	private byte[] record;
+
+	private final RecordView view = new RecordView();
+
+	SortedCursor(Cursor source, List<ColumnMeta> columns, RecordSorter sorter) {
+		this.source = source;
+		this.columns = columns;
+		this.sorter = sorter;
+	}
+
+	@Override
+	public String getTableName() {
+		return source.getTableName();
+	}
+
+	@Override
+	public boolean next() {
+		if (records == null) {
+			records = sort();
+		}
+
+		if (records.hasNext()) {
+			record = records.next();
+			view.reset(record, 0, record.length);
+			return true;
+		}
+
+		record = null;
+		sorter.close();
+		return false;
+	}
+
+	private Iterator<byte[]> sort() {
+		try {
+			while (source.next()) {
+				sorter.add(source.getRawRecord());
+			}
+			return sorter.sort();
+		} catch (IOException e) {
+			sorter.close();
+			throw new StandardTableException("The records cannot be sorted.", e);
+		} finally {
+			source.close();
+		}
+	}
+
+	private int getColumnIndex(String columnName) {
+		for (int i = 0; i < columns.size(); ++i) {
+			if (columns.get(i).getName().equalsIgnoreCase(columnName)) {
+				return i;
+			}
+		}
+		throw new IllegalArgumentException(columnName + " is not a valid column name");
+	}
+
+	private int checkColumnIndex(int columnIdx) {
+		if (columnIdx < 0 || columnIdx >= columns.size()) {
+			throw new IllegalArgumentException(columnIdx + " is not a valid column index.");
+		}
+		return columnIdx;
+	}
+
+	@Override
+	public int getColumnCount() {
+		return columns.size();
+	}
+
+	@Override
+	public ColumnMeta getColumnType(int columnIdx) {
+		return columns.get(checkColumnIndex(columnIdx));
+	}
+
+	@Override
+	public ColumnMeta getColumnType(String columnName) {
+		return columns.get(getColumnIndex(columnName));
+	}
+
+	@Override
+	public String getColumn(int columnIdx) {
+		return view.getString(checkColumnIndex(columnIdx));
+	}
+
+	@Override
+	public String getColumn(String columnName) {
+		return view.getString(getColumnIndex(columnName));
+	}
+
+	@Override
+	public long getLong(int columnIdx) {
+		return view.getLong(checkColumnIndex(columnIdx));
+	}
+
+	@Override
+	public long getLong(String columnName) {
+		return view.getLong(getColumnIndex(columnName));
+	}
+
+	@Override
+	public double getDouble(int columnIdx) {
+		return view.getDouble(checkColumnIndex(columnIdx));
+	}
+
+	@Override
+	public double getDouble(String columnName) {
+		return view.getDouble(getColumnIndex(columnName));
+	}
+
+	@Override
+	public boolean getBoolean(int columnIdx) {
+		return view.getBoolean(checkColumnIndex(columnIdx));
+	}
+
+	@Override
+	public boolean getBoolean(String columnName) {
+		return view.getBoolean(getColumnIndex(columnName));
+	}
+
+	@Override
+	public boolean isNull(int columnIdx) {
+		return view.isNull(checkColumnIndex(columnIdx));
+	}
+
+	@Override
+	public boolean isNull(String columnName) {
+		return view.isNull(getColumnIndex(columnName));
+	}
+
+	@Override
+	public boolean columnEquals(String columnName, String value) {
+		return view.equalsString(getColumnIndex(columnName), value);
+	}
+
+	@Override
+	public byte[] getRawRecord() {
+		return record;
+	}
+
+	@Override
+	public Iterator<String> getRecord() {
+		return new Iterator<String>() {
+			private int columnIdx = 0;
+
+			@Override
+			public boolean hasNext() {
+				return columnIdx < columns.size();
+			}
+
+			@Override
+			public String next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return getColumn(columnIdx++);
+			}
+		};
+	}
+
+	@Override
+	public String update(String columnName, String newValue) {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void delete() {
+		throw new UnsupportedOperationException();
+	}
+
+	@Override
+	public void close() {
+		source.close();
+		sorter.close();
+	}
+}
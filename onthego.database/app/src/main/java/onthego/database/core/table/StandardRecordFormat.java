@@ -0,0 +1,329 @@
+package onthego.database.core.table;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import onthego.database.core.table.meta.ColumnMeta;
+
+/*
+ * StandardRecordFormat - the typed format of a record.
+ * INTEGER, NUMERIC and BOOL values are kept in their native fixed width encodings, so a
+ * numeric predicate reads a column without parsing text, and the columns without values
+ * are marked in a null bitmap. Every column carries the tag of its encoding, which lets a
+ * record be read without the table meta, and a value which does not fit the type of its
+ * column falls back to text, as does a NUMERIC value a double cannot hold exactly. A typed record starts with a format mark whose high bit
+ * is never set by the column count that starts a record of the older text format.
+ */
+
+public final class StandardRecordFormat {
+
+	//<record_format><column_count><null_bitmap><(column_type,offset_of_columndata),...><columndata1><...>
+	public static final byte TYPED_RECORD_FORMAT = (byte)0x81;
+
+	public static final byte STRING_TYPE = 'S';
+
+	public static final byte LONG_TYPE = 'L';
+
+	public static final byte DOUBLE_TYPE = 'D';
+
+	public static final byte BOOLEAN_TYPE = 'B';
+
+	private static final int COLUMN_COUNT_OFFSET = 1;
+
+	private static final int NULL_BITMAP_OFFSET = COLUMN_COUNT_OFFSET + Short.BYTES;
+
+	private static final int COLUMN_ENTRY_SIZE = 1 + Short.BYTES;
+
+	private StandardRecordFormat() {}
+
+	//a missing value is a null, and so is an empty value of a column which is not a string
+	public static byte[] encode(List<ColumnMeta> columns, List<String> values) {
+		int columnCount = columns.size();
+		byte[] types = new byte[columnCount];
+		boolean[] nulls = new boolean[columnCount];
+		int recordSize = getHeaderSize(columnCount);
+		for (int i = 0; i < columnCount; ++i) {
+			String value = values.get(i);
+			types[i] = typeOf(columns.get(i), value);
+			nulls[i] = value == null || (value.isEmpty() && types[i] != STRING_TYPE);
+			recordSize += getDataSize(types[i], nulls[i] ? "" : value);
+		}
+
+		ByteBuffer record = ByteBuffer.allocate(recordSize);
+		record.put(TYPED_RECORD_FORMAT);
+		StandardTableUtil.writeUnsignedShort(record, columnCount);
+
+		int offset = getHeaderSize(columnCount);
+		for (int i = 0; i < columnCount; ++i) {
+			if (nulls[i]) {
+				int bitmapPos = NULL_BITMAP_OFFSET + i / Byte.SIZE;
+				record.put(bitmapPos, (byte)(record.get(bitmapPos) | (1 << (i % Byte.SIZE))));
+			}
+
+			String value = nulls[i] ? "" : values.get(i);
+			record.position(getColumnEntryOffset(columnCount, i));
+			record.put(types[i]);
+			StandardTableUtil.writeUnsignedShort(record, offset);
+			writeData(record, offset, types[i], value);
+			offset += getDataSize(types[i], value);
+		}
+		return record.array();
+	}
+
+	private static byte typeOf(ColumnMeta column, String value) {
+		switch (column.getType().getTypeConstant()) {
+		case INTEGER:
+			return (value == null || value.isEmpty() || parseLong(value) != null) ? LONG_TYPE : STRING_TYPE;
+		case NUMERIC:
+			return (value == null || value.isEmpty() || isExactDouble(value)) ? DOUBLE_TYPE : STRING_TYPE;
+		case BOOL:
+			return (value == null || value.isEmpty() || isBoolean(value)) ? BOOLEAN_TYPE : STRING_TYPE;
+		default:
+			return STRING_TYPE;
+		}
+	}
+
+	private static Long parseLong(String value) {
+		try {
+			return Long.parseLong(value);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	private static Double parseDouble(String value) {
+		try {
+			return Double.parseDouble(value);
+		} catch (NumberFormatException e) {
+			return null;
+		}
+	}
+
+	//the shortest form of the double has to be the same number, or digits of the value would be lost
+	private static boolean isExactDouble(String value) {
+		Double number = parseDouble(value);
+		if (number == null || number.isNaN() || number.isInfinite()) {
+			return false;
+		}
+
+		try {
+			return new BigDecimal(value.trim()).compareTo(new BigDecimal(Double.toString(number))) == 0;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static boolean isBoolean(String value) {
+		return value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false");
+	}
+
+	private static int getHeaderSize(int columnCount) {
+		return NULL_BITMAP_OFFSET + getNullBitmapSize(columnCount) + columnCount * COLUMN_ENTRY_SIZE;
+	}
+
+	private static int getNullBitmapSize(int columnCount) {
+		return (columnCount + Byte.SIZE - 1) / Byte.SIZE;
+	}
+
+	private static int getColumnEntryOffset(int columnCount, int n) {
+		return NULL_BITMAP_OFFSET + getNullBitmapSize(columnCount) + n * COLUMN_ENTRY_SIZE;
+	}
+
+	private static int getDataSize(byte type, String value) {
+		switch (type) {
+		case LONG_TYPE:
+			return Long.BYTES;
+		case DOUBLE_TYPE:
+			return Double.BYTES;
+		case BOOLEAN_TYPE:
+			return 1;
+		default:
+			return Short.BYTES + StandardTableUtil.getUTFSize(value);
+		}
+	}
+
+	//an empty value writes the zero of the type, which a null column keeps
+	private static void writeData(ByteBuffer record, int offset, byte type, String value) {
+		switch (type) {
+		case LONG_TYPE:
+			record.putLong(offset, value.isEmpty() ? 0 : Long.parseLong(value));
+			break;
+		case DOUBLE_TYPE:
+			record.putDouble(offset, value.isEmpty() ? 0 : Double.parseDouble(value));
+			break;
+		case BOOLEAN_TYPE:
+			record.put(offset, (byte)(Boolean.parseBoolean(value) ? 1 : 0));
+			break;
+		default:
+			StandardTableUtil.writeUTF(record, offset, value);
+		}
+	}
+
+	//a record may be read where it lies inside a larger buffer, such as the page holding it
+	public static boolean isTyped(byte[] buffer, int base) {
+		return buffer.length > base && buffer[base] == TYPED_RECORD_FORMAT;
+	}
+
+	public static int getColumnCount(byte[] buffer, int base) {
+		return StandardTableUtil.readUnsignedShort(buffer, base + COLUMN_COUNT_OFFSET);
+	}
+
+	public static boolean isNull(byte[] buffer, int base, int n) {
+		return (buffer[base + NULL_BITMAP_OFFSET + n / Byte.SIZE] & (1 << (n % Byte.SIZE))) != 0;
+	}
+
+	public static byte getColumnType(byte[] buffer, int base, int n) {
+		return buffer[base + getColumnEntryOffset(getColumnCount(buffer, base), n)];
+	}
+
+	//the position of the data of a column in the buffer
+	public static int getColumnPosition(byte[] buffer, int base, int n) {
+		return base + StandardTableUtil.readUnsignedShort(buffer, base + getColumnEntryOffset(getColumnCount(buffer, base), n) + 1);
+	}
+
+	//the room of a column lasts until the data of the next column
+	private static int getColumnCapacity(byte[] record, int n) {
+		int columnCount = getColumnCount(record, 0);
+		int end = (n + 1 < columnCount) ? getColumnPosition(record, 0, n + 1) : record.length;
+		return end - getColumnPosition(record, 0, n);
+	}
+
+	//a null reads as an empty string as the text format stored it
+	public static String readString(byte[] buffer, int base, int n) {
+		if (isNull(buffer, base, n)) {
+			return "";
+		}
+
+		int position = getColumnPosition(buffer, base, n);
+		switch (getColumnType(buffer, base, n)) {
+		case LONG_TYPE:
+			return String.valueOf(readLongData(buffer, position));
+		case DOUBLE_TYPE:
+			return formatDouble(Double.longBitsToDouble(readLongData(buffer, position)));
+		case BOOLEAN_TYPE:
+			return String.valueOf(buffer[position] != 0);
+		default:
+			return StandardTableUtil.readUTF(buffer, position);
+		}
+	}
+
+	private static long readLongData(byte[] buffer, int position) {
+		long value = 0;
+		for (int i = 0; i < Long.BYTES; ++i) {
+			value = (value << Byte.SIZE) | (buffer[position + i] & 0xFF);
+		}
+		return value;
+	}
+
+	//the same form as a number value of an expression takes, except that an integral value beyond a long is not clamped
+	static String formatDouble(double value) {
+		if (Math.abs(value - Math.floor(value)) < 1.0E-20) {
+			if (value >= Long.MIN_VALUE && value < Long.MAX_VALUE) {
+				return String.valueOf((long)value);
+			}
+			return BigDecimal.valueOf(value).toPlainString();
+		} else {
+			return String.valueOf(value);
+		}
+	}
+
+	public static long readLong(byte[] buffer, int base, int n) {
+		if (isNull(buffer, base, n)) {
+			return 0;
+		}
+
+		int position = getColumnPosition(buffer, base, n);
+		switch (getColumnType(buffer, base, n)) {
+		case LONG_TYPE:
+			return readLongData(buffer, position);
+		case DOUBLE_TYPE:
+			return (long)Double.longBitsToDouble(readLongData(buffer, position));
+		case BOOLEAN_TYPE:
+			return buffer[position];
+		default:
+			return StandardTableUtil.parseLong(StandardTableUtil.readUTF(buffer, position));
+		}
+	}
+
+	public static double readDouble(byte[] buffer, int base, int n) {
+		if (isNull(buffer, base, n)) {
+			return 0;
+		}
+
+		int position = getColumnPosition(buffer, base, n);
+		switch (getColumnType(buffer, base, n)) {
+		case LONG_TYPE:
+			return readLongData(buffer, position);
+		case DOUBLE_TYPE:
+			return Double.longBitsToDouble(readLongData(buffer, position));
+		case BOOLEAN_TYPE:
+			return buffer[position];
+		default:
+			return StandardTableUtil.parseDouble(StandardTableUtil.readUTF(buffer, position));
+		}
+	}
+
+	public static boolean readBoolean(byte[] buffer, int base, int n) {
+		if (isNull(buffer, base, n)) {
+			return false;
+		}
+
+		int position = getColumnPosition(buffer, base, n);
+		switch (getColumnType(buffer, base, n)) {
+		case LONG_TYPE:
+			return readLongData(buffer, position) != 0;
+		case DOUBLE_TYPE:
+			return Double.longBitsToDouble(readLongData(buffer, position)) != 0;
+		case BOOLEAN_TYPE:
+			return buffer[position] != 0;
+		default:
+			return Boolean.parseBoolean(StandardTableUtil.readUTF(buffer, position));
+		}
+	}
+
+	//a value fitting the room of its column is written in place, otherwise the record is encoded again
+	public static byte[] writeColumn(byte[] record, int n, String value) {
+		byte type = getColumnType(record, 0, n);
+		boolean isNull = value.isEmpty() && type != STRING_TYPE;
+		boolean fits = (type == LONG_TYPE && (isNull || parseLong(value) != null))
+					|| (type == DOUBLE_TYPE && (isNull || isExactDouble(value)))
+					|| (type == BOOLEAN_TYPE && (isNull || isBoolean(value)))
+					|| (type == STRING_TYPE && getDataSize(type, value) <= getColumnCapacity(record, n));
+		if (fits) {
+			int bitmapPos = NULL_BITMAP_OFFSET + n / Byte.SIZE;
+			int bit = 1 << (n % Byte.SIZE);
+			record[bitmapPos] = (byte)(isNull ? (record[bitmapPos] | bit) : (record[bitmapPos] & ~bit));
+			writeData(ByteBuffer.wrap(record), getColumnPosition(record, 0, n), type, isNull ? "" : value);
+			return record;
+		}
+
+		//the column falls back to text, which holds any value
+		int columnCount = getColumnCount(record, 0);
+		byte[] types = new byte[columnCount];
+		String[] values = new String[columnCount];
+		int recordSize = getHeaderSize(columnCount);
+		for (int i = 0; i < columnCount; ++i) {
+			types[i] = (i == n) ? STRING_TYPE : getColumnType(record, 0, i);
+			values[i] = (i == n) ? value : (isNull(record, 0, i) ? null : readString(record, 0, i));
+			recordSize += getDataSize(types[i], values[i] == null ? "" : values[i]);
+		}
+
+		ByteBuffer newRecord = ByteBuffer.allocate(recordSize);
+		newRecord.put(TYPED_RECORD_FORMAT);
+		StandardTableUtil.writeUnsignedShort(newRecord, columnCount);
+		System.arraycopy(record, NULL_BITMAP_OFFSET, newRecord.array(), NULL_BITMAP_OFFSET, getNullBitmapSize(columnCount));
+		newRecord.array()[NULL_BITMAP_OFFSET + n / Byte.SIZE] &= (byte)~(1 << (n % Byte.SIZE));
+
+		int offset = getHeaderSize(columnCount);
+		for (int i = 0; i < columnCount; ++i) {
+			String data = values[i] == null ? "" : values[i];
+			newRecord.position(getColumnEntryOffset(columnCount, i));
+			newRecord.put(types[i]);
+			StandardTableUtil.writeUnsignedShort(newRecord, offset);
+			writeData(newRecord, offset, types[i], data);
+			offset += getDataSize(types[i], data);
+		}
+		return newRecord.array();
+	}
+}
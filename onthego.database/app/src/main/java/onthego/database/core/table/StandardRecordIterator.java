@@ -6,7 +6,7 @@ import java.util.Objects;
 
 public class StandardRecordIterator implements Iterator<String> {
 	
-	private final byte[] record;
+	private final RecordView view;
 	
 	private final List<Integer> columnRealIndexList;
 	
@@ -15,10 +15,15 @@ public class StandardRecordIterator implements Iterator<String> {
 	private int columnIndex;
 
 	public StandardRecordIterator(byte[] record, List<Integer> columnRealIndexList) {
-		Objects.requireNonNull(record);
+		this(new RecordView(Objects.requireNonNull(record)), columnRealIndexList);
+	}
+
+	//the columns are decoded from the view of a cursor, which keeps them for the row
+	public StandardRecordIterator(RecordView view, List<Integer> columnRealIndexList) {
+		Objects.requireNonNull(view);
 		Objects.requireNonNull(columnRealIndexList);
 		
-		this.record = record;
+		this.view = view;
 		this.columnRealIndexList = columnRealIndexList;
 		this.columnCount = columnRealIndexList.size();
 		this.columnIndex = 0;
@@ -34,7 +39,7 @@ public class StandardRecordIterator implements Iterator<String> {
 		if (!hasNext()) {
 			throw new IndexOutOfBoundsException();
 		}
-		return StandardTableUtil.readColumnData(record, mapToColumnRealIndex(columnIndex++));
+		return view.getString(mapToColumnRealIndex(columnIndex++));
 	}
 
 	private Integer mapToColumnRealIndex(int columnIndex) {
@@ -1,29 +1,39 @@
 package onthego.database.core.table;
 
 import onthego.database.core.database.DatabaseException;
-import onthego.database.core.index.BTreeIndex;
-import onthego.database.core.serializer.LongSerializer;
+import onthego.database.core.index.LongBTreeIndex;
+import onthego.database.core.index.NodeCache;
 import onthego.database.core.table.meta.ColumnMeta;
 import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
 import onthego.database.core.tablespace.manager.TablespaceManager;
 import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
 import onthego.database.core.tablespace.meta.TableMetaInfo;
 import onthego.database.core.tablespace.meta.TablespaceHeader;
+import onthego.database.core.tablespace.wal.WriteAheadLog;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.OptionalLong;
+import java.util.PrimitiveIterator;
+import java.util.Set;
 import java.util.Stack;
 import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import java.util.stream.IntStream;
 
 public class StandardTable implements Table {
 	
@@ -33,40 +43,181 @@ public class StandardTable implements Table {
 	
 	private final TablespaceManager tsManager;
 	
-	private final BTreeIndex<Long> clusteredIndex;
+	private final LongBTreeIndex clusteredIndex;
+
+	private final HeapFile heapFile;
+	
+	//the secondary indexes of the columns by their names, each of which lives in a tablespace of its own
+	private final Map<String, ColumnIndex> columnIndexMap = new LinkedHashMap<>();
+	
+	private final Path directory;
 	
-	private Map<ColumnMeta, BTreeIndex<String>> columnIndexMap;
+	private final TablespaceConfig config;
+	
+	private final NodeCache nodeCache;
 	
 	private Stack<List<RecordTrackableUndo>> transactionStack;
 	
 	// To create a standard table
-	private StandardTable(String path, String tableName, TableMetaInfo tableMetaInfo) throws IOException {
+	private StandardTable(String path, String tableName, TableMetaInfo tableMetaInfo, TablespaceConfig config, NodeCache nodeCache) throws IOException {
 		TablespaceHeader tsHeader = new StandardTablespaceHeader.Builder()
 										.chunkSize(16)
 										.tableMetaInfo(tableMetaInfo)
 										.build();
-		this.tsManager = StandardTablespaceManager.create(path + File.separator + tableName + ".db", tsHeader);
-		this.clusteredIndex = new BTreeIndex<>(128, new LongSerializer(), tsManager);
+		this.tsManager = StandardTablespaceManager.create(Path.of(path + File.separator + tableName + ".db"), tsHeader, config);
+		this.clusteredIndex = new LongBTreeIndex(128, tsManager, nodeCache);
+		this.heapFile = new HeapFile(tsManager);
 		this.tableName = tableName;
 		this.transactionStack = new Stack<>();
+		this.directory = Path.of(path);
+		this.config = config;
+		this.nodeCache = nodeCache;
+		createConstraintIndexes(tableMetaInfo.getColumnList());
+	}
+	
+	//every PRIMARY KEY or UNIQUE column gets an index checking the values of the column
+	private void createConstraintIndexes(List<ColumnMeta> columns) throws IOException {
+		for (int i = 0; i < columns.size(); ++i) {
+			ColumnMeta column = columns.get(i);
+			if (!column.isKey() && !column.isUnique()) {
+				continue;
+			}
+			
+			String indexName = column.isKey() ? tableName + "_pkey" : tableName + "_" + column.getName() + "_key";
+			ColumnIndex columnIndex = ColumnIndex.create(directory, tableName, indexName, column, i, column.isKey(), column.isUnique(), config, nodeCache);
+			columnIndex.commit();
+			columnIndexMap.put(indexName, columnIndex);
+		}
 	}
 	
 	// To load a standard table
-	private StandardTable(String path, String tableName) throws IOException {
-		this.tsManager = StandardTablespaceManager.load(path + File.separator + tableName + ".db");
-		this.clusteredIndex = new BTreeIndex<>(128, new LongSerializer(), tsManager);
+	private StandardTable(String path, String tableName, TablespaceConfig config, NodeCache nodeCache) throws IOException {
+		this.tsManager = StandardTablespaceManager.load(Path.of(path + File.separator + tableName + ".db"), config);
+		this.clusteredIndex = new LongBTreeIndex(128, tsManager, nodeCache);
+		this.heapFile = new HeapFile(tsManager);
+		clusteredIndex.last().ifPresent(heapFile::setInsertionPage);
+		heapFile.loadFreeSpaceMap();
 		this.tableName = tableName;
 		this.transactionStack = new Stack<>();
+		this.directory = Path.of(path);
+		this.config = config;
+		this.nodeCache = nodeCache;
+		loadColumnIndexes();
+		deleteSortRuns();
+	}
+	
+	//the runs of a sort which was cut off by a crash are of no use
+	private void deleteSortRuns() throws IOException {
+		try (DirectoryStream<Path> runPaths = Files.newDirectoryStream(directory, RecordSorter.getRunPattern(tableName))) {
+			for (Path runPath : runPaths) {
+				Files.deleteIfExists(runPath);
+			}
+		}
+	}
+	
+	private void loadColumnIndexes() throws IOException {
+		try (DirectoryStream<Path> indexPaths = Files.newDirectoryStream(directory, tableName + ".*" + ColumnIndex.FILE_EXTENSION)) {
+			for (Path indexPath : indexPaths) {
+				ColumnIndex columnIndex = ColumnIndex.load(indexPath, tsManager.getHeader().getTableMetaInfo(), config, nodeCache);
+				columnIndexMap.put(columnIndex.getName(), columnIndex);
+			}
+		}
 	}
 	
 	public static Table create(String path, String tableName, TableMetaInfo tableMetaInfo) throws IOException {
-		return new StandardTable(path, tableName, tableMetaInfo);
+		return create(path, tableName, tableMetaInfo, TablespaceConfig.DEFAULT);
+	}
+
+	public static Table create(String path, String tableName, TableMetaInfo tableMetaInfo, TablespaceConfig config) throws IOException {
+		return create(path, tableName, tableMetaInfo, config, new NodeCache());
+	}
+
+	public static Table create(String path, String tableName, TableMetaInfo tableMetaInfo, TablespaceConfig config, NodeCache nodeCache) throws IOException {
+		return new StandardTable(path, tableName, tableMetaInfo, config, nodeCache);
 	}
 	
 	public static Table load(String path, String tableName) throws IOException {
-		return new StandardTable(path, tableName);
+		return load(path, tableName, TablespaceConfig.DEFAULT);
+	}
+
+	public static Table load(String path, String tableName, TablespaceConfig config) throws IOException {
+		return load(path, tableName, config, new NodeCache());
+	}
+
+	public static Table load(String path, String tableName, TablespaceConfig config, NodeCache nodeCache) throws IOException {
+		return new StandardTable(path, tableName, config, nodeCache);
+	}
+	
+	//a table of heap records only is scanned in the file order without touching the clustered index
+	private PrimitiveIterator.OfLong getRecordIterator() {
+		//records outside of the heap have the smallest record ids
+		OptionalLong firstRecordPos = clusteredIndex.first();
+		if (!firstRecordPos.isPresent() || HeapFile.isHeapRecord(firstRecordPos.getAsLong())) {
+			return heapFile.scan();
+		}
+		return clusteredIndex.iterator();
 	}
 	
+	//an equality on a unique column finds one record at most, then an equality and a range on an indexed column narrow the records
+	private PrimitiveIterator.OfLong getRecordIterator(Filtration filtration) {
+		ColumnIndex selectedIndex = null;
+		ColumnRange selectedRange = null;
+		int selectedRank = 0;
+		for (ColumnRange range : filtration.getColumnRanges()) {
+			ColumnIndex columnIndex = findColumnIndex(range);
+			if (columnIndex == null) {
+				continue;
+			}
+			
+			int rank = !range.isEquality() ? 1 : (columnIndex.isUnique() ? 3 : 2);
+			if (rank > selectedRank) {
+				selectedIndex = columnIndex;
+				selectedRange = range;
+				selectedRank = rank;
+			}
+		}
+		
+		if (selectedIndex == null) {
+			return getRecordIterator();
+		}
+		return selectedIndex.scan(selectedRange);
+	}
+	
+	//among the indexes of the column able to scan the range, a unique index is preferred and then a hash index
+	private ColumnIndex findColumnIndex(ColumnRange range) {
+		ColumnIndex found = null;
+		int foundRank = -1;
+		for (ColumnIndex columnIndex : columnIndexMap.values()) {
+			if (!columnIndex.getColumn().getName().equalsIgnoreCase(range.getColumnName()) || !columnIndex.supports(range)) {
+				continue;
+			}
+			
+			int rank = columnIndex.isUnique() ? 2 : (columnIndex.getIndexType() == IndexType.HASH ? 1 : 0);
+			if (rank > foundRank) {
+				found = columnIndex;
+				foundRank = rank;
+			}
+		}
+		return found;
+	}
+	
+	private void checkConstraints(int columnIndex, String value) {
+		for (ColumnIndex index : columnIndexMap.values()) {
+			if (!index.isUnique() || index.getColumnIndex() != columnIndex) {
+				continue;
+			}
+			
+			//missing values are not equal to each other, but a primary key cannot miss its value
+			if (value.isEmpty()) {
+				if (index.isPrimaryKey()) {
+					throw new StandardTableException("'" + index.getColumn().getName() + "' primary key requires a value.");
+				}
+			} else if (index.contains(value)) {
+				throw new StandardTableException("'" + value + "' is a duplicate value of '" + index.getColumn().getName() + "' column.");
+			}
+		}
+	}
+
 	private void addToTransactionStack(RecordTrackableUndo undo) {
 		if (!transactionStack.isEmpty()) {
 			List<RecordTrackableUndo> transactionList = transactionStack.peek();
@@ -76,6 +227,8 @@ public class StandardTable implements Table {
 	
 	@Override
 	public void close() {
+		columnIndexMap.values().forEach(ColumnIndex::close);
+		clusteredIndex.close();
 		tsManager.close();
 	}
 	
@@ -115,78 +268,147 @@ public class StandardTable implements Table {
 				higherTransactionList.addAll(0, transactionList);
 			}
 		}
+
+		//the changes of the outermost transaction are written into the tablespaces of the table and its indexes at once
+		if (transactionStack.isEmpty()) {
+			WriteAheadLog.commitAtomically(() -> {
+				columnIndexMap.values().forEach(ColumnIndex::commit);
+				clusteredIndex.flush();
+				tsManager.sync();
+			});
+		}
 	}
 
+	//the column indexes follow every change of a record, including the ones made by undoing
 	private long insertRecord(byte[] payload) {
-		long recordPos = tsManager.allocate(payload.length);
-		tsManager.writeBlock(recordPos, payload);
+		return indexRecord(heapFile.insert(payload), payload);
+	}
+	
+	//a record is counted once every index took it, a failing index leaves no trace of the record behind
+	private long indexRecord(long recordPos, byte[] payload) {
+		boolean clustered = false;
+		List<ColumnIndex> indexedList = new ArrayList<>();
+		try {
+			clusteredIndex.insert(recordPos, recordPos);
+			clustered = true;
+			for (ColumnIndex columnIndex : columnIndexMap.values()) {
+				columnIndex.insert(payload, recordPos);
+				indexedList.add(columnIndex);
+			}
+		} catch (RuntimeException e) {
+			indexedList.forEach(columnIndex -> columnIndex.delete(payload, recordPos));
+			if (clustered) {
+				clusteredIndex.delete(recordPos);
+			}
+			heapFile.delete(recordPos);
+			throw e;
+		}
 		tsManager.increaseRecordCount();
-		clusteredIndex.insert(recordPos, recordPos);
 		return recordPos;
 	}
 	
-	private void updateRecord(long recordPos, byte[] newRecord) {
-		tsManager.writeBlock(recordPos, newRecord);
+	private boolean updateRecord(long recordPos, byte[] newRecord) {
+		if (columnIndexMap.isEmpty()) {
+			return heapFile.update(recordPos, newRecord);
+		}
+		
+		byte[] oldRecord = heapFile.read(recordPos);
+		if (!heapFile.update(recordPos, newRecord)) {
+			return false;
+		}
+		for (ColumnIndex columnIndex : columnIndexMap.values()) {
+			columnIndex.update(oldRecord, newRecord, recordPos);
+		}
+		return true;
 	}
 
 	private void deleteRecord(long recordPos) {
-		tsManager.free(recordPos);
+		deleteFromColumnIndexes(recordPos, null);
+		heapFile.delete(recordPos);
 		tsManager.decreaseRecordCount();
 		clusteredIndex.delete(recordPos);
 	}
 	
+	private void deleteFromColumnIndexes(long recordPos, byte[] record) {
+		if (columnIndexMap.isEmpty()) {
+			return;
+		}
+		
+		if (record == null) {
+			record = heapFile.read(recordPos);
+		}
+		for (ColumnIndex columnIndex : columnIndexMap.values()) {
+			columnIndex.delete(record, recordPos);
+		}
+	}
+	
+	//the result is not materialized, every scan of it pulls the filtered records from the table
 	@Override
-	public Table select(List<ColumnMeta> selectColumns, Filtration filtration) throws DatabaseException {
-		List<byte[]> filteredRecords = new ArrayList<>();
-	 	Cursor cursor = getCursor();
-		while (cursor.next()) {
-			if (filtration.filter(new Cursor[]{cursor})) {
-				filteredRecords.add(cursor.getRawRecord());
-			}
+	public Table select(List<ColumnMeta> selectColumns, Filtration filtration, SortOrder sortOrder, long offset, long limit) throws DatabaseException {
+		List<ColumnMeta> resultColumns = selectColumns.isEmpty() ? getColumnList() : selectColumns;
+		Comparator<byte[]> comparator = sortOrder.isEmpty() ? null : RecordSorter.comparatorOf(getColumnList(), sortOrder.getKeys());
+		return new ResultTable(getTableName(), resultColumns, () -> getCursor(resultColumns, filtration, sortOrder, comparator, offset, limit));
+	}
+	
+	//a pull-based cursor over the records passing the filtration, showing the selected columns only
+	private Cursor getCursor(List<ColumnMeta> selectColumns, Filtration filtration, SortOrder sortOrder, Comparator<byte[]> comparator, long offset, long limit) {
+		if (sortOrder.isEmpty()) {
+			return new FilteredCursor(getCursor(filtration), filtration, selectColumns, offset, limit);
 		}
-		return new ResultTable(getTableName(), selectColumns, getColumnRealIndexList(selectColumns), filteredRecords);
+		
+		PrimitiveIterator.OfLong orderedRecords = getOrderedRecordIterator(filtration, sortOrder);
+		if (orderedRecords != null) {
+			return new FilteredCursor(new StandardTableCursor(getColumnList(), orderedRecords), filtration, selectColumns, offset, limit);
+		}
+		
+		//the records passing the filtration are sorted whole, before the offset and the limit are taken
+		Cursor filtered = new FilteredCursor(getCursor(filtration), filtration, getColumnList(), 0, NO_LIMIT);
+		RecordSorter sorter = new RecordSorter(comparator, sortOrder.getMemorySize(), directory, tableName);
+		return new FilteredCursor(new SortedCursor(filtered, getColumnList(), sorter), Filtration.ALL, selectColumns, offset, limit);
 	}
 	
-	private List<Integer> getColumnRealIndexList(List<ColumnMeta> selectColumns) {
-		if (selectColumns.size() == 0) {
-			return IntStream.range(0, getColumnList().size())
-							.boxed().collect(Collectors.toList());
-		} else {
-			List<Integer> selectColumnRealIndexList = new ArrayList<>();
-			for (ColumnMeta column : selectColumns) {
-				selectColumnRealIndexList.add(getColumnIndex(column.getName()));
+	//a btree index on the first sort column yields the records in order, unless an equality narrows them down to a few
+	private PrimitiveIterator.OfLong getOrderedRecordIterator(Filtration filtration, SortOrder sortOrder) {
+		SortKey firstKey = sortOrder.getKeys().get(0);
+		ColumnIndex orderedIndex = null;
+		for (ColumnIndex columnIndex : columnIndexMap.values()) {
+			if (columnIndex.getIndexType() != IndexType.BTREE || !columnIndex.getColumn().getName().equalsIgnoreCase(firstKey.getColumnName())) {
+				continue;
+			}
+			
+			//the later sort keys only order the records equal on the first, which a unique column has none of
+			if (sortOrder.getKeys().size() == 1 || columnIndex.isUnique()) {
+				orderedIndex = columnIndex;
+				break;
+			}
+		}
+		if (orderedIndex == null) {
+			return null;
+		}
+		
+		ColumnRange orderedRange = new ColumnRange(firstKey.getColumnName(), null, false, null, false);
+		for (ColumnRange range : filtration.getColumnRanges()) {
+			if (range.getColumnName().equalsIgnoreCase(firstKey.getColumnName())) {
+				orderedRange = range;
+			} else if (range.isEquality() && findColumnIndex(range) != null) {
+				return null;
 			}
-			return selectColumnRealIndexList;
 		}
+		return orderedIndex.scanInOrder(orderedRange, firstKey.isDescending());
 	}
-
-    //<column_count><offset_of_payloads><length_of_columndata><...><columndata1><...>
+	
+	//the values are stored in the typed record format, and the columns without values are null
 	@Override
 	public long insert(Map<ColumnMeta,String> values) {
-		int recordSize = Short.BYTES * (1 + values.size());
-		for (String value : values.values()) {
-			recordSize += Short.BYTES + StandardTableUtil.getUTFSize(value);
+		List<ColumnMeta> columns = getColumnList();
+		List<String> columnValues = new ArrayList<>(columns.size());
+		for (int i = 0; i < columns.size(); ++i) {
+			String value = values.get(columns.get(i));
+			checkConstraints(i, (value != null) ? value : "");
+			columnValues.add(value);
 		}
 		
-		ByteBuffer byteBuffer = ByteBuffer.allocate(recordSize);
-		StandardTableUtil.writeUnsignedShort(byteBuffer, getColumnCount());
-		
-		int offset = Short.BYTES * (1 + getColumnCount());
-		for (ColumnMeta column : getColumnList()) {
-			StandardTableUtil.writeUnsignedShort(byteBuffer, offset);
-			
-			byteBuffer.mark();
-			byteBuffer.position(offset);
-			
-			String value = (values.get(column) != null) ? values.get(column) : "";
-			//System.out.println("value = " + value);
-			StandardTableUtil.writeUTF(byteBuffer, value);
-			
-			byteBuffer.reset();
-			offset += Short.BYTES + StandardTableUtil.getUTFSize(value);
-		}
-		
-		long recordPos = insertRecord(byteBuffer.array());
+		long recordPos = insertRecord(StandardRecordFormat.encode(columns, columnValues));
 		addToTransactionStack(new UndoInsert(recordPos));
 		return recordPos;
 	}
@@ -201,24 +423,33 @@ public class StandardTable implements Table {
 		return getCursor(getColumnList());
 	}
 	
+	//the records are read through a column index if the filtration allows it, but every record still has to pass the filter
+	private Cursor getCursor(Filtration filtration) {
+		return new StandardTableCursor(getColumnList(), getRecordIterator(filtration));
+	}
+	
 	@Override
 	public int update(Filtration filtration) throws DatabaseException {
 		int updated = 0;
-		Cursor cursor = getCursor();
-		while (cursor.next()) {
-			if (filtration.filter(new Cursor[]{cursor})) {
-				filtration.update(cursor);
-				++updated;
+		Cursor cursor = getCursor(filtration);
+		//a violated constraint stops the update, but the records already moved still have to be settled
+		try {
+			while (cursor.next()) {
+				if (filtration.filter(new Cursor[]{cursor})) {
+					filtration.update(cursor);
+					++updated;
+				}
 			}
+		} finally {
+			cursor.close();
 		}
-        cursor.close();
 		return updated;
 	}
 	
 	@Override
 	public int delete(Filtration filtration) throws DatabaseException {
 		int deleted = 0;
-		Cursor cursor = getCursor();
+		Cursor cursor = getCursor(filtration);
 		while (cursor.next()) {
 			if (filtration.filter(new Cursor[]{cursor})) {
 				cursor.delete();
@@ -253,6 +484,50 @@ public class StandardTable implements Table {
 		return tsManager.getHeader().getTableMetaInfo().getColumnIndex(name);
 	}
 	
+	@Override
+	public void createIndex(String indexName, String columnName, IndexType indexType) {
+		if (columnIndexMap.containsKey(indexName)) {
+			throw new StandardTableException("'" + indexName + "' index already exists.");
+		}
+		
+		int columnIndex = getColumnIndex(columnName);
+		if (columnIndex < 0) {
+			throw new StandardTableException("'" + columnName + "' column is not in '" + tableName + "' table.");
+		}
+		
+		try {
+			ColumnIndex index = ColumnIndex.create(directory, tableName, indexName, getColumnList().get(columnIndex), columnIndex, indexType, config, nodeCache);
+			index.build(getRecordIterator(), heapFile::read);
+			index.commit();
+			columnIndexMap.put(indexName, index);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	@Override
+	public boolean dropIndex(String indexName) {
+		ColumnIndex dropped = columnIndexMap.get(indexName);
+		if (dropped == null) {
+			return false;
+		} else if (dropped.isUnique()) {
+			throw new StandardTableException("'" + indexName + "' index backs a constraint of '" + tableName + "' table.");
+		}
+		columnIndexMap.remove(indexName);
+		
+		try {
+			dropped.drop();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		return true;
+	}
+	
+	@Override
+	public List<String> getIndexNames() {
+		return new ArrayList<>(columnIndexMap.keySet());
+	}
+	
 	private final class UndoInsert implements RecordTrackableUndo {
 		private final long recordPos;
         private RecordTracker<Long> recordTracker;
@@ -307,10 +582,11 @@ public class StandardTable implements Table {
                 throw new RecordTrackerException("RecordTracker must be set before executing undo.");
             }
 
-			StandardTableUtil.writeColumnData(record, columnIndex, oldValue);
+			byte[] oldRecord = StandardTableUtil.writeColumnData(record, columnIndex, oldValue);
 
-            recordTracker.getNewPosition(recordPos).ifPresentOrElse( newPosition -> tsManager.writeBlock(newPosition, record),
-                    () -> tsManager.writeBlock(recordPos, record)
+            //the old record was smaller than or as large as the new one, so it fits where the new one is
+            recordTracker.getNewPosition(recordPos).ifPresentOrElse( newPosition -> updateRecord(newPosition, oldRecord),
+                    () -> updateRecord(recordPos, oldRecord)
             );
 		}
 	}
@@ -343,18 +619,33 @@ public class StandardTable implements Table {
 	
 	private final class StandardTableCursor implements Cursor {
 		
-		private final Iterator<Long> tableIndexIterator = clusteredIndex.iterator();
+		private final PrimitiveIterator.OfLong recordIterator;
 		
 		private final List<ColumnMeta> selectColumn;
 		
 		private long recordPos;
 		
+		//the current record read in place, which is copied out only to be changed
+		private final RecordView view = new RecordView();
+		
 		private byte[] record;
+		
+		//the record indexes of the column names asked for, and -1 for the names not selected
+		private final Map<String,Integer> columnIndexCache = new HashMap<>();
+		
+		private List<Integer> columnRealIndexList;
+
+        private final Set<Long> deletedRecordPosSet = new HashSet<>();
 
-        private final List<Long> deletedRecordPosList = new ArrayList<>();
+		private final Set<Long> movedRecordPosSet = new HashSet<>();
 		
 		public StandardTableCursor(List<ColumnMeta> selectColumn) {
+			this(selectColumn, getRecordIterator());
+		}
+		
+		public StandardTableCursor(List<ColumnMeta> selectColumn, PrimitiveIterator.OfLong recordIterator) {
 			this.selectColumn = selectColumn;
+			this.recordIterator = recordIterator;
 		}
 
 		@Override
@@ -364,14 +655,29 @@ public class StandardTable implements Table {
 
 		@Override
 		public boolean next() {
-			if (tableIndexIterator.hasNext()) {
-				this.recordPos = tableIndexIterator.next();
-				this.record = tsManager.readBlock(recordPos);
+			while (recordIterator.hasNext()) {
+				this.recordPos = recordIterator.nextLong();
+				//a record moved ahead of the cursor by an update is not visited again
+				if (!movedRecordPosSet.isEmpty() && movedRecordPosSet.remove(recordPos)) {
+					continue;
+				}
+
+				heapFile.read(recordPos, view);
+				this.record = null;
 				return true;
 			}
 			return false;
 		}
 		
+		//the page under the view changes with the record, so the record is copied out first
+		private byte[] getRecordBytes() {
+			if (record == null) {
+				record = view.toByteArray();
+				view.reset(record, 0, record.length);
+			}
+			return record;
+		}
+		
 		@Override
 		public int getColumnCount() {
 			return selectColumn.size();
@@ -384,28 +690,82 @@ public class StandardTable implements Table {
 		
 		@Override
 		public ColumnMeta getColumnType(String columnName) {
-			if (!isValidColumnName(columnName)) {
-				throw new IllegalArgumentException(columnName + " is not a valid column name");
-			}
-			return getColumnList().get(getColumnIndex(columnName));
+			return getColumnList().get(getRecordColumnIndex(columnName));
 		}
 		
 		@Override
 		public String getColumn(int columnIdx) {
-			if (!isValidColumnIndex(columnIdx)) {
-				throw new IllegalArgumentException(columnIdx + " is not a valid column index.");
-			}
-			
-			String columnName = selectColumn.get(columnIdx).getName();
-			return StandardTableUtil.readColumnData(record, getColumnIndex(columnName));
+			return getColumn(getSelectColumnName(columnIdx));
 		}
 
 		@Override
 		public String getColumn(String columnName) {
-			if (!isValidColumnName(columnName)) {
+			return view.getString(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public long getLong(int columnIdx) {
+			return getLong(getSelectColumnName(columnIdx));
+		}
+		
+		@Override
+		public long getLong(String columnName) {
+			return view.getLong(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public double getDouble(int columnIdx) {
+			return getDouble(getSelectColumnName(columnIdx));
+		}
+		
+		@Override
+		public double getDouble(String columnName) {
+			return view.getDouble(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public boolean getBoolean(int columnIdx) {
+			return getBoolean(getSelectColumnName(columnIdx));
+		}
+		
+		@Override
+		public boolean getBoolean(String columnName) {
+			return view.getBoolean(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public boolean isNull(int columnIdx) {
+			return isNull(getSelectColumnName(columnIdx));
+		}
+		
+		@Override
+		public boolean isNull(String columnName) {
+			return view.isNull(getRecordColumnIndex(columnName));
+		}
+		
+		@Override
+		public boolean columnEquals(String columnName, String value) {
+			return view.equalsString(getRecordColumnIndex(columnName), value);
+		}
+		
+		private String getSelectColumnName(int columnIdx) {
+			if (!isValidColumnIndex(columnIdx)) {
+				throw new IllegalArgumentException(columnIdx + " is not a valid column index.");
+			}
+			return selectColumn.get(columnIdx).getName();
+		}
+		
+		private int getRecordColumnIndex(String columnName) {
+			Integer columnIndex = columnIndexCache.get(columnName);
+			if (columnIndex == null) {
+				columnIndex = isValidColumnName(columnName) ? getColumnIndex(columnName) : -1;
+				columnIndexCache.put(columnName, columnIndex);
+			}
+			
+			if (columnIndex < 0) {
 				throw new IllegalArgumentException(columnName + " is not a valid column name");
 			}
-			return StandardTableUtil.readColumnData(record, getColumnIndex(columnName));
+			return columnIndex;
 		}
 		
 		private boolean isValidColumnName(String columnName) {
@@ -418,60 +778,81 @@ public class StandardTable implements Table {
 		
 		@Override
 		public byte[] getRawRecord() {
-			return Arrays.copyOf(record, record.length);
+			return (record != null) ? Arrays.copyOf(record, record.length) : view.toByteArray();
 		}
 
 		@Override
 		public Iterator<String> getRecord() {
-			return new StandardRecordIterator(record, mapToColumnRealIndex());
+			return new StandardRecordIterator(view, mapToColumnRealIndex());
 		}
 
 		private List<Integer> mapToColumnRealIndex() {
-			return selectColumn.stream()
-							   .map(column -> getColumnIndex(column.getName()))
-							   .collect(Collectors.toList());
+			if (columnRealIndexList == null) {
+				columnRealIndexList = selectColumn.stream()
+												  .map(column -> getColumnIndex(column.getName()))
+												  .collect(Collectors.toList());
+			}
+			return columnRealIndexList;
 		}
 
 		@Override
 		public String update(String columnName, String newValue) {
 			int columnIndex = getColumnIndex(columnName);
 			
-			String oldValue = StandardTableUtil.readColumnData(record, columnIndex);
+			String oldValue = view.getString(columnIndex);
 			if (oldValue == newValue) {
 				return oldValue;
 			}
 			
+			if (!oldValue.equals(newValue)) {
+				checkConstraints(columnIndex, newValue);
+			}
+			
+			byte[] record = getRecordBytes();
 			byte[] newRecord = StandardTableUtil.writeColumnData(record, columnIndex, newValue);
-			if (newRecord.length != record.length) {
+			if (newRecord.length != record.length && updateRecord(this.recordPos, newRecord)) {
+				//the record grew inside its page
+				this.record = newRecord;
+			} else if (newRecord.length != record.length) {
 				deleteRecord(this.recordPos);
 				addToTransactionStack(new UndoDelete(this.recordPos, record));
 				
-				this.recordPos = insertRecord(newRecord);
+				long newRecordPos = heapFile.insert(newRecord);
+				//a slot freed by this cursor can be handed out again before its clustered index entry is deleted
+				if (deletedRecordPosSet.remove(newRecordPos)) {
+					clusteredIndex.delete(newRecordPos);
+				}
+				this.recordPos = indexRecord(newRecordPos, newRecord);
 				this.record = newRecord;
+				movedRecordPosSet.add(recordPos);
 				addToTransactionStack(new UndoInsert(recordPos));
 			} else {
 				updateRecord(this.recordPos, newRecord);
 			}
+			//the columns decoded before the change are dropped
+			view.reset(this.record, 0, this.record.length);
 			
-			addToTransactionStack(new UndoUpdate(recordPos, record, columnIndex, oldValue));
+			addToTransactionStack(new UndoUpdate(recordPos, this.record, columnIndex, oldValue));
 			return oldValue;
 		}
 		
 		@Override
 		public void delete() {
+			byte[] record = getRecordBytes();
 			deleteRecord(this.recordPos);
             addToTransactionStack(new UndoDelete(this.recordPos, record));
 		}
 
         @Override
         public void close() {
-            deletedRecordPosList.forEach(recordPos -> clusteredIndex.delete(recordPos));
+            deletedRecordPosSet.forEach(recordPos -> clusteredIndex.delete(recordPos));
         }
 
         private void deleteRecord(long recordPos) {
-            tsManager.free(recordPos);
+            deleteFromColumnIndexes(recordPos, getRecordBytes());
+            heapFile.delete(recordPos);
             tsManager.decreaseRecordCount();
-            deletedRecordPosList.add(recordPos);
+            deletedRecordPosSet.add(recordPos);
         }
     }
 }
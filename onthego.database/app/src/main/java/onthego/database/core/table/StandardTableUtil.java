@@ -1,14 +1,15 @@
 package onthego.database.core.table;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 public class StandardTableUtil {
 
 	private StandardTableUtil() {}
 	
 	public static int readUnsignedShort(ByteBuffer byteBuffer) {
-        int high = byteBuffer.get();
-        int low = byteBuffer.get();
+        int high = byteBuffer.get() & 0xFF;
+        int low = byteBuffer.get() & 0xFF;
         return (high << 8) + (low << 0);
     }
 	
@@ -18,7 +19,7 @@ public class StandardTableUtil {
     }
 	
 	public static int readUnsignedShort(byte[] record, int position) {
-		return readUnsignedShort(ByteBuffer.wrap(record), position);
+		return ((record[position] & 0xFF) << 8) + (record[position + 1] & 0xFF);
     }
 	
 	public static void writeUnsignedShort(ByteBuffer byteBuffer, int value) {
@@ -124,10 +125,44 @@ public class StandardTableUtil {
 		return readUTF(byteBuffer);
 	}
 	
+	//decodes in place, without wrapping the record into a buffer
 	public static String readUTF(byte[] record, int position) {
-        return readUTF(ByteBuffer.wrap(record), position);
+		int utflen = readUnsignedShort(record, position);
+		char[] chararr = new char[utflen];
+		int chararr_count = 0;
+		
+		int index = position + Short.BYTES;
+		final int endIndex = index + utflen;
+		while (index < endIndex) {
+			int c = record[index] & 0xff;
+			if (c < 0x80) {
+				chararr[chararr_count++] = (char)c;
+				index += 1;
+			} else if ((c >> 5) == 0x06 && index + 2 <= endIndex && (record[index + 1] & 0xC0) == 0x80) {
+				chararr[chararr_count++] = (char)(((c & 0x1F) << 6) | (record[index + 1] & 0x3F));
+				index += 2;
+			} else if ((c >> 4) == 0x0E && index + 3 <= endIndex && (record[index + 1] & 0xC0) == 0x80 && (record[index + 2] & 0xC0) == 0x80) {
+				chararr[chararr_count++] = (char)(((c & 0x0F) << 12) | ((record[index + 1] & 0x3F) << 6) | (record[index + 2] & 0x3F));
+				index += 3;
+			} else {
+				throw new IllegalArgumentException("malformed input around byte " + index);
+			}
+		}
+		return new String(chararr, 0, chararr_count);
     }
 	
+	public static byte[] toUTF(String str) {
+		byte[] utf = new byte[Short.BYTES + getUTFSize(str)];
+		writeUTF(utf, 0, str);
+		return utf;
+	}
+	
+	//compares the length and the bytes of a string written at the position with the ones of toUTF
+	public static boolean equalsUTF(byte[] record, int position, byte[] utf) {
+		return position + utf.length <= record.length 
+			&& Arrays.equals(record, position, position + utf.length, utf, 0, utf.length);
+	}
+	
 	public static void writeUTF(ByteBuffer byteBuffer, String str) {
         int utflen = getUTFSize(str);
         writeUnsignedShort(byteBuffer, utflen);
@@ -166,10 +201,72 @@ public class StandardTableUtil {
     }
 	
 	public static String readColumnData(byte[] record, int n) {
-		return readUTF(record, readUnsignedShort(record, (n + 1) * Short.BYTES));
+		return readColumnData(record, 0, n);
+	}
+	
+	//reads a column of the record which starts at the base of the buffer
+	public static String readColumnData(byte[] buffer, int base, int n) {
+		if (StandardRecordFormat.isTyped(buffer, base)) {
+			return StandardRecordFormat.readString(buffer, base, n);
+		}
+		return readUTF(buffer, getColumnDataPosition(buffer, base, n));
+	}
+	
+	//the position of a column of the text format in the buffer
+	public static int getColumnDataPosition(byte[] buffer, int base, int n) {
+		return base + readUnsignedShort(buffer, base + (n + 1) * Short.BYTES);
+	}
+	
+	//the records of the text format are parsed, and a missing value reads as zero
+	public static long readLongColumnData(byte[] buffer, int base, int n) {
+		if (StandardRecordFormat.isTyped(buffer, base)) {
+			return StandardRecordFormat.readLong(buffer, base, n);
+		}
+		return parseLong(readColumnData(buffer, base, n));
+	}
+	
+	public static double readDoubleColumnData(byte[] buffer, int base, int n) {
+		if (StandardRecordFormat.isTyped(buffer, base)) {
+			return StandardRecordFormat.readDouble(buffer, base, n);
+		}
+		return parseDouble(readColumnData(buffer, base, n));
+	}
+	
+	public static boolean readBooleanColumnData(byte[] buffer, int base, int n) {
+		if (StandardRecordFormat.isTyped(buffer, base)) {
+			return StandardRecordFormat.readBoolean(buffer, base, n);
+		}
+		return Boolean.parseBoolean(readColumnData(buffer, base, n));
+	}
+	
+	public static boolean isNullColumnData(byte[] buffer, int base, int n) {
+		if (StandardRecordFormat.isTyped(buffer, base)) {
+			return StandardRecordFormat.isNull(buffer, base, n);
+		}
+		return readUnsignedShort(buffer, getColumnDataPosition(buffer, base, n)) == 0;
+	}
+	
+	static long parseLong(String data) {
+		if (data.isEmpty()) {
+			return 0;
+		}
+		
+		try {
+			return Long.parseLong(data);
+		} catch (NumberFormatException e) {
+			return (long)Double.parseDouble(data);
+		}
+	}
+	
+	static double parseDouble(String data) {
+		return data.isEmpty() ? 0 : Double.parseDouble(data);
 	}
 	
 	public static byte[] writeColumnData(byte[] record, int n, String data) {
+		if (StandardRecordFormat.isTyped(record, 0)) {
+			return StandardRecordFormat.writeColumn(record, n, data);
+		}
+		
 		int prevColumnDataOffset = readUnsignedShort(record, (n + 1) * 2);
 		int prevColumnDataLength = readUnsignedShort(record, prevColumnDataOffset);
 		int columnDataLength = getUTFSize(data);
@@ -9,13 +9,27 @@ import onthego.database.core.tablespace.manager.TablespaceManager;
 
 public interface Table {
 
+	//an ordered btree serves ranges as well as equalities, a hash index serves equalities only
+	enum IndexType { BTREE, HASH }
+
+	//the row limit of a select without one
+	long NO_LIMIT = -1;
+
 	void begin();
 
 	void rollback(boolean all);
 
 	void commit(boolean all);
 	
-	Table select(List<ColumnMeta> selectColumn, Filtration filtration) throws DatabaseException;
+	default Table select(List<ColumnMeta> selectColumn, Filtration filtration) throws DatabaseException {
+		return select(selectColumn, filtration, 0, NO_LIMIT);
+	}
+
+	default Table select(List<ColumnMeta> selectColumn, Filtration filtration, long offset, long limit) throws DatabaseException {
+		return select(selectColumn, filtration, SortOrder.NONE, offset, limit);
+	}
+
+	Table select(List<ColumnMeta> selectColumn, Filtration filtration, SortOrder sortOrder, long offset, long limit) throws DatabaseException;
 	
 //	Table select(Filtration filtration);
 
@@ -37,5 +51,15 @@ public interface Table {
 
 	int getColumnCount();
 
+	default void createIndex(String indexName, String columnName) {
+		createIndex(indexName, columnName, IndexType.BTREE);
+	}
+
+	void createIndex(String indexName, String columnName, IndexType indexType);
+
+	boolean dropIndex(String indexName);
+
+	List<String> getIndexNames();
+
 	void close();
 }
\ No newline at end of file
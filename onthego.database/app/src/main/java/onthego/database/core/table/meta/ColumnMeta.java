@@ -10,6 +10,8 @@ public class ColumnMeta {
 	
 	private boolean isNullable;
 	
+	private boolean isUnique;
+	
 	public ColumnMeta(String name, Type type, boolean isKey, boolean isNullable) {
 		this.name = name;
 		this.type = type;
@@ -57,6 +59,14 @@ public class ColumnMeta {
 		this.isNullable = isNullable;
 	}
 
+	public boolean isUnique() {
+		return isUnique;
+	}
+
+	public void setUnique(boolean isUnique) {
+		this.isUnique = isUnique;
+	}
+
 	@Override
 	public int hashCode() {
 		final int prime = 31;
@@ -0,0 +1,558 @@
+package onthego.database.core.tablespace.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * BufferPool - a fixed number of page frames cached in front of a tablespace file.
+ * Frames are replaced with the clock algorithm, pinned frames are never evicted and
+ * dirty frames are written back when they are evicted, flushed or closed.
+ * The page table is guarded by the pool monitor and page contents are copied
+ * outside of it, so readers only contend while pinning and unpinning pages.
+ * A no-steal pool never writes back a dirty frame on eviction; it grows instead
+ * until the dirty frames are flushed, so a write-ahead log can hold them back.
+ * The growth is bounded, and a page which would take a frame beyond the bound fails.
+ */
+
+public class BufferPool implements TablespaceIO {
+
+	public static final int DEFAULT_PAGE_SIZE = 4096;
+
+	public static final int DEFAULT_CAPACITY = 256;
+
+	//the frames a no-steal pool may grow to, which is 64MB of pages of the default size
+	public static final int DEFAULT_MAX_FRAME_COUNT = 16384;
+
+	public static final long PIN_WAIT_MILLIS = 200;
+
+	public static final class Page {
+		private long pageNo = -1;
+
+		private final byte[] data;
+
+		private final ByteBuffer buffer;
+
+		private int pinCount;
+
+		private boolean dirty;
+
+		private boolean referenced;
+
+		private Page(int pageSize) {
+			this.data = new byte[pageSize];
+			this.buffer = ByteBuffer.wrap(data);
+		}
+
+		public long getPageNo() {
+			return pageNo;
+		}
+
+		public ByteBuffer getBuffer() {
+			return buffer;
+		}
+	}
+
+	@FunctionalInterface
+	public interface DirtyPageConsumer {
+		void accept(long pageNo, byte[] data);
+	}
+
+	private final FileChannel channel;
+
+	private final int pageSize;
+
+	private final List<Page> frames;
+
+	private final Map<Long,Page> pageTable;
+
+	private final int capacity;
+
+	private final boolean noSteal;
+
+	private final int maxFrameCount;
+
+	private int clockHand = 0;
+
+	private volatile long fileSize;
+
+	private long hitCount = 0;
+
+	private long missCount = 0;
+
+	private long evictionCount = 0;
+
+	private long writeBackCount = 0;
+
+	private long readAheadCount = 0;
+
+	//the number of times a page became unpinned, which tells waiting threads that others make progress
+	private long releaseCount = 0;
+
+	public BufferPool(FileChannel channel) {
+		this(channel, DEFAULT_CAPACITY, DEFAULT_PAGE_SIZE);
+	}
+
+	public BufferPool(FileChannel channel, int capacity, int pageSize) {
+		this(channel, capacity, pageSize, false);
+	}
+
+	public BufferPool(FileChannel channel, int capacity, int pageSize, boolean noSteal) {
+		this(channel, capacity, pageSize, noSteal, Math.max(capacity, DEFAULT_MAX_FRAME_COUNT));
+	}
+
+	public BufferPool(FileChannel channel, int capacity, int pageSize, boolean noSteal, int maxFrameCount) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The capacity(" + capacity + ") of a buffer pool must be positive.");
+		}
+
+		if (maxFrameCount < capacity) {
+			throw new IllegalArgumentException("The maximum frame count(" + maxFrameCount + ") of a buffer pool must not be less than its capacity(" + capacity + ").");
+		}
+
+		this.channel = channel;
+		this.pageSize = pageSize;
+		this.capacity = capacity;
+		this.noSteal = noSteal;
+		this.maxFrameCount = maxFrameCount;
+		this.frames = new ArrayList<>(capacity);
+		this.pageTable = new HashMap<>(capacity * 2);
+		for (int i = 0; i < capacity; ++i) {
+			frames.add(new Page(pageSize));
+		}
+
+		try {
+			this.fileSize = channel.size();
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	public synchronized Page pin(long pageNo) {
+		Page page = pageTable.get(pageNo);
+		if (page != null) {
+			++hitCount;
+		} else {
+			Page frame = evictOrWait();
+			//another thread may have loaded the page while this one waited for a frame, which is then left free
+			page = pageTable.get(pageNo);
+			if (page != null) {
+				frame.pageNo = -1;
+				++hitCount;
+			} else {
+				++missCount;
+				page = frame;
+				readPage(page, pageNo);
+				pageTable.put(pageNo, page);
+			}
+		}
+
+		page.pinCount++;
+		page.referenced = true;
+		return page;
+	}
+
+	public synchronized void unpin(Page page, boolean dirty) {
+		if (page.pinCount <= 0) {
+			throw new TablespaceIOException("The page(" + page.pageNo + ") is not pinned.");
+		}
+
+		page.pinCount--;
+		page.dirty |= dirty;
+		if (page.pinCount == 0) {
+			++releaseCount;
+			notifyAll();
+		}
+	}
+
+	//pages pinned by other threads are unpinned soon, so wait for them while they are released
+	private Page evictOrWait() {
+		long deadline = System.currentTimeMillis() + PIN_WAIT_MILLIS;
+		long lastReleaseCount = releaseCount;
+		while (true) {
+			Page page = evict();
+			if (page != null) {
+				return page;
+			}
+
+			//every unpinned frame holds an uncommitted page
+			if (noSteal) {
+				if (frames.size() >= maxFrameCount) {
+					throw new TablespaceIOException("The buffer pool cannot hold more than " + maxFrameCount + " uncommitted pages.");
+				}
+				page = new Page(pageSize);
+				frames.add(page);
+				return page;
+			}
+
+			//the released frames were taken by other threads, which is not a stall
+			if (releaseCount != lastReleaseCount) {
+				deadline = System.currentTimeMillis() + PIN_WAIT_MILLIS;
+				lastReleaseCount = releaseCount;
+			}
+
+			long remaining = deadline - System.currentTimeMillis();
+			if (remaining <= 0) {
+				throw new TablespaceIOException("There is no unpinned page to evict in the buffer pool.");
+			}
+
+			try {
+				wait(remaining);
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new TablespaceIOException(ie);
+			}
+		}
+	}
+
+	//returns null if every page is pinned
+	private Page evict() {
+		//two rounds of the clock hand are enough to clear every reference bit once
+		for (int i = 0; i < 2 * frames.size(); ++i) {
+			Page page = frames.get(clockHand);
+			clockHand = (clockHand + 1) % frames.size();
+
+			if (page.pinCount > 0 || (noSteal && page.dirty)) {
+				continue;
+			}
+
+			if (page.referenced) {
+				page.referenced = false;
+				continue;
+			}
+
+			if (page.pageNo != -1) {
+				writeBack(page);
+				pageTable.remove(page.pageNo);
+				++evictionCount;
+			}
+			return page;
+		}
+		return null;
+	}
+
+	private void readPage(Page page, long pageNo) {
+		try {
+			Arrays.fill(page.data, (byte)0);
+			page.buffer.clear();
+
+			long pagePos = pageNo * pageSize;
+			while (page.buffer.hasRemaining()) {
+				if (channel.read(page.buffer, pagePos + page.buffer.position()) < 0) {
+					break;
+				}
+			}
+
+			page.buffer.clear();
+			page.pageNo = pageNo;
+			page.dirty = false;
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	private void writeBack(Page page) {
+		if (!page.dirty) {
+			return;
+		}
+
+		try {
+			long pagePos = page.pageNo * pageSize;
+			//the tail of the last page is not a part of the tablespace yet
+			int length = (int)Math.min(pageSize, fileSize - pagePos);
+			if (length > 0) {
+				ByteBuffer src = ByteBuffer.wrap(page.data, 0, length);
+				while (src.hasRemaining()) {
+					channel.write(src, pagePos + src.position());
+				}
+			}
+
+			page.dirty = false;
+			++writeBackCount;
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	@Override
+	public void read(long position, byte[] dst, int offset, int length) {
+		while (length > 0) {
+			int pageOffset = (int)(position % pageSize);
+			int count = Math.min(length, pageSize - pageOffset);
+
+			Page page = pin(position / pageSize);
+			System.arraycopy(page.data, pageOffset, dst, offset, count);
+			unpin(page, false);
+
+			position += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	private synchronized void growFileSize(long endPos) {
+		fileSize = Math.max(fileSize, endPos);
+	}
+
+	@Override
+	public void write(long position, byte[] src, int offset, int length) {
+		growFileSize(position + length);
+
+		while (length > 0) {
+			int pageOffset = (int)(position % pageSize);
+			int count = Math.min(length, pageSize - pageOffset);
+
+			Page page = pin(position / pageSize);
+			System.arraycopy(src, offset, page.data, pageOffset, count);
+			unpin(page, true);
+
+			position += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public int readInt(long position) {
+		int pageOffset = (int)(position % pageSize);
+		if (pageOffset + Integer.BYTES > pageSize) {
+			byte[] bytes = new byte[Integer.BYTES];
+			read(position, bytes, 0, bytes.length);
+			return ByteBuffer.wrap(bytes).getInt();
+		}
+
+		Page page = pin(position / pageSize);
+		int value = page.buffer.getInt(pageOffset);
+		unpin(page, false);
+		return value;
+	}
+
+	@Override
+	public void writeInt(long position, int value) {
+		int pageOffset = (int)(position % pageSize);
+		if (pageOffset + Integer.BYTES > pageSize) {
+			write(position, ByteBuffer.allocate(Integer.BYTES).putInt(value).array(), 0, Integer.BYTES);
+			return;
+		}
+
+		growFileSize(position + Integer.BYTES);
+		Page page = pin(position / pageSize);
+		page.buffer.putInt(pageOffset, value);
+		unpin(page, true);
+	}
+
+	@Override
+	public long readLong(long position) {
+		int pageOffset = (int)(position % pageSize);
+		if (pageOffset + Long.BYTES > pageSize) {
+			byte[] bytes = new byte[Long.BYTES];
+			read(position, bytes, 0, bytes.length);
+			return ByteBuffer.wrap(bytes).getLong();
+		}
+
+		Page page = pin(position / pageSize);
+		long value = page.buffer.getLong(pageOffset);
+		unpin(page, false);
+		return value;
+	}
+
+	@Override
+	public void writeLong(long position, long value) {
+		int pageOffset = (int)(position % pageSize);
+		if (pageOffset + Long.BYTES > pageSize) {
+			write(position, ByteBuffer.allocate(Long.BYTES).putLong(value).array(), 0, Long.BYTES);
+			return;
+		}
+
+		growFileSize(position + Long.BYTES);
+		Page page = pin(position / pageSize);
+		page.buffer.putLong(pageOffset, value);
+		unpin(page, true);
+	}
+
+	@Override
+	public long size() {
+		return fileSize;
+	}
+
+	//load the pages of the range missing from the pool with one read, using at most half of the frames
+	@Override
+	public synchronized void readAhead(long position, long length) {
+		long firstPageNo = position / pageSize;
+		long lastPageNo = Math.min((position + length - 1) / pageSize, (fileSize - 1) / pageSize);
+		lastPageNo = Math.min(lastPageNo, firstPageNo + capacity / 2 - 1);
+
+		long pageNo = firstPageNo;
+		while (pageNo <= lastPageNo) {
+			if (pageTable.containsKey(pageNo)) {
+				++pageNo;
+				continue;
+			}
+
+			List<Page> run = new ArrayList<>();
+			while (pageNo + run.size() <= lastPageNo && !pageTable.containsKey(pageNo + run.size())) {
+				Page page = evict();
+				if (page == null) {
+					break;
+				}
+				//pinned so that the clock hand does not hand out the same frame twice
+				page.pinCount++;
+				run.add(page);
+			}
+
+			if (run.isEmpty()) {
+				return;
+			}
+			readPages(pageNo, run);
+			pageNo += run.size();
+		}
+	}
+
+	private void readPages(long firstPageNo, List<Page> run) {
+		try {
+			ByteBuffer dst = ByteBuffer.allocate(run.size() * pageSize);
+			long runPos = firstPageNo * pageSize;
+			while (dst.hasRemaining()) {
+				if (channel.read(dst, runPos + dst.position()) < 0) {
+					break;
+				}
+			}
+
+			for (int i = 0; i < run.size(); ++i) {
+				Page page = run.get(i);
+				System.arraycopy(dst.array(), i * pageSize, page.data, 0, pageSize);
+				page.buffer.clear();
+				page.pageNo = firstPageNo + i;
+				page.dirty = false;
+				//a page read ahead but never used is the first to go
+				page.referenced = false;
+				page.pinCount--;
+				pageTable.put(page.pageNo, page);
+			}
+			readAheadCount += run.size();
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	@Override
+	public synchronized void flush() {
+		//write dirty pages back in the file order
+		frames.stream()
+			  .filter(page -> page.pageNo != -1 && page.dirty)
+			  .sorted(Comparator.comparingLong(page -> page.pageNo))
+			  .forEach(this::writeBack);
+		trim();
+	}
+
+	//drop the frames a no-steal pool grew beyond its capacity
+	private void trim() {
+		for (int i = frames.size() - 1; i >= capacity; --i) {
+			Page page = frames.get(i);
+			if (page.pinCount > 0 || page.dirty) {
+				continue;
+			}
+
+			if (page.pageNo != -1) {
+				pageTable.remove(page.pageNo);
+			}
+			frames.remove(i);
+		}
+
+		if (clockHand >= frames.size()) {
+			clockHand = 0;
+		}
+	}
+
+	//hand the contents of every dirty page in the file order without writing them back
+	public synchronized void forEachDirtyPage(DirtyPageConsumer consumer) {
+		frames.stream()
+			  .filter(page -> page.pageNo != -1 && page.dirty)
+			  .sorted(Comparator.comparingLong(page -> page.pageNo))
+			  .forEach(page -> consumer.accept(page.pageNo, page.data));
+	}
+
+	//force the pages written back so far without writing back the dirty ones
+	public synchronized void forceWrittenPages() {
+		try {
+			channel.force(false);
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	@Override
+	public synchronized void force() {
+		try {
+			flush();
+			channel.force(false);
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	@Override
+	public synchronized void close() {
+		try {
+			flush();
+			channel.close();
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public int getMaxFrameCount() {
+		return maxFrameCount;
+	}
+
+	public synchronized int getFrameCount() {
+		return frames.size();
+	}
+
+	public synchronized int getDirtyPageCount() {
+		return (int)frames.stream().filter(page -> page.pageNo != -1 && page.dirty).count();
+	}
+
+	public boolean isNoSteal() {
+		return noSteal;
+	}
+
+	public int getPageSize() {
+		return pageSize;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	public synchronized long getWriteBackCount() {
+		return writeBackCount;
+	}
+
+	public synchronized long getReadAheadCount() {
+		return readAheadCount;
+	}
+
+	public synchronized double getHitRatio() {
+		long accessCount = hitCount + missCount;
+		return accessCount == 0 ? 0.0 : (double)hitCount / accessCount;
+	}
+}
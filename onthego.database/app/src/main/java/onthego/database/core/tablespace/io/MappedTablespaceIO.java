@@ -0,0 +1,228 @@
+package onthego.database.core.tablespace.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * MappedTablespaceIO - serves a tablespace file directly from memory mapped segments.
+ * Every segment but the last one is mapped with the full segment size, so growing the
+ * file only remaps the tail segment.
+ */
+
+public class MappedTablespaceIO implements TablespaceIO {
+
+	public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+	public enum ForcePolicy {
+		//leave writing dirty pages of the mappings to the operating system
+		NEVER,
+		//force the mappings on every flush() as well as on close()
+		ON_FLUSH,
+		//force the mappings only when the tablespace is closed
+		ON_CLOSE
+	}
+
+	private final FileChannel channel;
+
+	private final int segmentSize;
+
+	private final ForcePolicy forcePolicy;
+
+	private final List<MappedByteBuffer> segments = new ArrayList<>();
+
+	private long fileSize;
+
+	private long remapCount = 0;
+
+	public MappedTablespaceIO(FileChannel channel) {
+		this(channel, DEFAULT_SEGMENT_SIZE, ForcePolicy.ON_CLOSE);
+	}
+
+	public MappedTablespaceIO(FileChannel channel, int segmentSize, ForcePolicy forcePolicy) {
+		if (segmentSize < Long.BYTES) {
+			throw new IllegalArgumentException("The segment size(" + segmentSize + ") is too small.");
+		}
+
+		this.channel = channel;
+		this.segmentSize = segmentSize;
+		this.forcePolicy = forcePolicy;
+
+		try {
+			this.fileSize = channel.size();
+			map();
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	private void map() throws IOException {
+		//the tail segment shorter than a segment is remapped with the new file size
+		int lastIndex = segments.size() - 1;
+		if (lastIndex >= 0 && segments.get(lastIndex).capacity() < segmentSize) {
+			segments.remove(lastIndex);
+		}
+
+		for (long start = (long)segments.size() * segmentSize; start < fileSize; start += segmentSize) {
+			long length = Math.min(segmentSize, fileSize - start);
+			segments.add(channel.map(FileChannel.MapMode.READ_WRITE, start, length));
+		}
+		++remapCount;
+	}
+
+	private void ensureSize(long endPos) {
+		if (endPos <= fileSize) {
+			return;
+		}
+
+		try {
+			channel.write(ByteBuffer.wrap(new byte[]{0}), endPos - 1);
+			fileSize = endPos;
+			map();
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	private MappedByteBuffer getSegment(long position) {
+		return segments.get((int)(position / segmentSize));
+	}
+
+	private int getSegmentOffset(long position) {
+		return (int)(position % segmentSize);
+	}
+
+	//true if [position, position + length) lies within a single mapped segment
+	private boolean isMappedInOneSegment(long position, int length) {
+		return position + length <= fileSize && getSegmentOffset(position) + length <= segmentSize;
+	}
+
+	@Override
+	public void read(long position, byte[] dst, int offset, int length) {
+		while (length > 0) {
+			if (position >= fileSize) {
+				Arrays.fill(dst, offset, offset + length, (byte)0);
+				return;
+			}
+
+			int segmentOffset = getSegmentOffset(position);
+			int count = (int)Math.min(Math.min(length, segmentSize - segmentOffset), fileSize - position);
+			getSegment(position).get(segmentOffset, dst, offset, count);
+
+			position += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public void write(long position, byte[] src, int offset, int length) {
+		ensureSize(position + length);
+
+		while (length > 0) {
+			int segmentOffset = getSegmentOffset(position);
+			int count = Math.min(length, segmentSize - segmentOffset);
+			getSegment(position).put(segmentOffset, src, offset, count);
+
+			position += count;
+			offset += count;
+			length -= count;
+		}
+	}
+
+	@Override
+	public int readInt(long position) {
+		if (isMappedInOneSegment(position, Integer.BYTES)) {
+			return getSegment(position).getInt(getSegmentOffset(position));
+		}
+
+		byte[] bytes = new byte[Integer.BYTES];
+		read(position, bytes, 0, bytes.length);
+		return ByteBuffer.wrap(bytes).getInt();
+	}
+
+	@Override
+	public void writeInt(long position, int value) {
+		ensureSize(position + Integer.BYTES);
+		if (isMappedInOneSegment(position, Integer.BYTES)) {
+			getSegment(position).putInt(getSegmentOffset(position), value);
+		} else {
+			write(position, ByteBuffer.allocate(Integer.BYTES).putInt(value).array(), 0, Integer.BYTES);
+		}
+	}
+
+	@Override
+	public long readLong(long position) {
+		if (isMappedInOneSegment(position, Long.BYTES)) {
+			return getSegment(position).getLong(getSegmentOffset(position));
+		}
+
+		byte[] bytes = new byte[Long.BYTES];
+		read(position, bytes, 0, bytes.length);
+		return ByteBuffer.wrap(bytes).getLong();
+	}
+
+	@Override
+	public void writeLong(long position, long value) {
+		ensureSize(position + Long.BYTES);
+		if (isMappedInOneSegment(position, Long.BYTES)) {
+			getSegment(position).putLong(getSegmentOffset(position), value);
+		} else {
+			write(position, ByteBuffer.allocate(Long.BYTES).putLong(value).array(), 0, Long.BYTES);
+		}
+	}
+
+	@Override
+	public long size() {
+		return fileSize;
+	}
+
+	//the operating system reads ahead the pages of a mapping on its own
+	@Override
+	public void readAhead(long position, long length) {}
+
+	@Override
+	public void flush() {
+		if (forcePolicy == ForcePolicy.ON_FLUSH) {
+			force();
+		}
+	}
+
+	@Override
+	public void force() {
+		segments.forEach(MappedByteBuffer::force);
+	}
+
+	@Override
+	public void close() {
+		try {
+			if (forcePolicy != ForcePolicy.NEVER) {
+				force();
+			}
+			segments.clear();
+			channel.close();
+		} catch (IOException ioe) {
+			throw new TablespaceIOException(ioe);
+		}
+	}
+
+	public int getSegmentSize() {
+		return segmentSize;
+	}
+
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	public ForcePolicy getForcePolicy() {
+		return forcePolicy;
+	}
+
+	public long getRemapCount() {
+		return remapCount;
+	}
+}
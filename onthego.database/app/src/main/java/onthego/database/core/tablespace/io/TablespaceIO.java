@@ -0,0 +1,30 @@
+package onthego.database.core.tablespace.io;
+
+//reads may run concurrently with each other, but a write must not run concurrently with any other access
+public interface TablespaceIO {
+
+	void read(long position, byte[] dst, int offset, int length);
+
+	void write(long position, byte[] src, int offset, int length);
+
+	int readInt(long position);
+
+	void writeInt(long position, int value);
+
+	long readLong(long position);
+
+	void writeLong(long position, long value);
+
+	long size();
+
+	//a hint that the range is about to be read sequentially
+	void readAhead(long position, long length);
+
+	void flush();
+
+	//flush and force the written data to the storage device
+	void force();
+
+	void close();
+
+}
@@ -0,0 +1,24 @@
+package onthego.database.core.tablespace.io;
+
+public class TablespaceIOException extends RuntimeException {
+
+	public TablespaceIOException() {}
+
+	public TablespaceIOException(String message) {
+		super(message);
+	}
+
+	public TablespaceIOException(Throwable cause) {
+		super(cause);
+	}
+
+	public TablespaceIOException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public TablespaceIOException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+}
@@ -0,0 +1,52 @@
+package onthego.database.core.tablespace.manager;
+
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/*
+ * FreeSpaceIndex - the free blocks of a tablespace ordered by their block size.
+ * It is rebuilt from the free lists whenever a tablespace is loaded, so finding
+ * the best fit is a ceiling lookup instead of a scan over the free lists on disk.
+ */
+
+class FreeSpaceIndex {
+
+	private final TreeMap<Integer,Set<Long>> sizeMap = new TreeMap<>();
+
+	private int freeBlockCount = 0;
+
+	private long totalFreeBytes = 0;
+
+	void add(int blockSize, long blockPos) {
+		if (sizeMap.computeIfAbsent(blockSize, size -> new LinkedHashSet<>()).add(blockPos)) {
+			++freeBlockCount;
+			totalFreeBytes += blockSize;
+		}
+	}
+
+	void remove(int blockSize, long blockPos) {
+		Set<Long> blockPosSet = sizeMap.get(blockSize);
+		if (blockPosSet == null || !blockPosSet.remove(blockPos)) {
+			throw new TablespaceManagerException("The free block(" + blockPos + ") of the size(" + blockSize + ") is not indexed.");
+		}
+
+		if (blockPosSet.isEmpty()) {
+			sizeMap.remove(blockSize);
+		}
+		--freeBlockCount;
+		totalFreeBytes -= blockSize;
+	}
+
+	//returns 0 if there is no free block larger than or equal to the size
+	long findBestFit(int blockSize) {
+		Map.Entry<Integer,Set<Long>> entry = sizeMap.ceilingEntry(blockSize);
+		return entry == null ? 0 : entry.getValue().iterator().next();
+	}
+
+	FreeSpaceStats getStats() {
+		int largestFreeBlockSize = sizeMap.isEmpty() ? 0 : sizeMap.lastKey();
+		return new FreeSpaceStats(freeBlockCount, totalFreeBytes, largestFreeBlockSize);
+	}
+}
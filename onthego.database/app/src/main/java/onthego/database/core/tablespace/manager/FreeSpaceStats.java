@@ -0,0 +1,40 @@
+package onthego.database.core.tablespace.manager;
+
+public class FreeSpaceStats {
+
+	private final int freeBlockCount;
+
+	//the sum of the free block sizes including their block header and footer
+	private final long totalFreeBytes;
+
+	private final int largestFreeBlockSize;
+
+	public FreeSpaceStats(int freeBlockCount, long totalFreeBytes, int largestFreeBlockSize) {
+		this.freeBlockCount = freeBlockCount;
+		this.totalFreeBytes = totalFreeBytes;
+		this.largestFreeBlockSize = largestFreeBlockSize;
+	}
+
+	public int getFreeBlockCount() {
+		return freeBlockCount;
+	}
+
+	public long getTotalFreeBytes() {
+		return totalFreeBytes;
+	}
+
+	public int getLargestFreeBlockSize() {
+		return largestFreeBlockSize;
+	}
+
+	//0 if the free space is a single block, close to 1 if it is scattered over many small blocks
+	public double getFragmentation() {
+		return totalFreeBytes == 0 ? 0.0 : 1.0 - (double)largestFreeBlockSize / totalFreeBytes;
+	}
+
+	@Override
+	public String toString() {
+		return "FreeSpaceStats [freeBlockCount=" + freeBlockCount + ", totalFreeBytes=" + totalFreeBytes
+				+ ", largestFreeBlockSize=" + largestFreeBlockSize + "]";
+	}
+}
@@ -524,7 +524,36 @@ public class SingleTablespaceManager implements TablespaceManager {
 		}
 	}
 	
-	public void writeBlock(long blockPos, byte[] payload) throws InsufficientPayloadSpaceException {
+	public byte[] readBlock(long blockPos, int length) {
+		int size = Math.min(length, getBlockSize(blockPos) - BLOCK_OVERHEAD_SIZE);
+		byte[] payload = new byte[size];
+
+		try {
+			io.seek(blockPos);
+			io.read(payload);
+			return payload;
+		} catch (IOException ioe) {
+			throw new TablespaceManagerException(ioe);
+		}
+	}
+
+	@Override
+	public long getNextAllocatedBlockPos(long blockPos) {
+		long payloadPos = blockPos == 0 ? StandardTablespaceHeader.HEADER_SIZE + BLOCK_HEADER_SIZE : getNextBlockPos(blockPos);
+		while (getBlockSize(payloadPos) != 0) {
+			if (getBlockAllocationStatus(payloadPos)) {
+				return payloadPos;
+			}
+			payloadPos = getNextBlockPos(payloadPos);
+		}
+		return -1;
+	}
+
+	//every read goes to the file directly
+	@Override
+	public void readAhead(long blockPos, long length) {}
+
+		public void writeBlock(long blockPos, byte[] payload) throws InsufficientPayloadSpaceException {
 		int size = getBlockSize(blockPos) - BLOCK_OVERHEAD_SIZE;
 		if (size < payload.length) {
 			throw new InsufficientPayloadSpaceException("The size(" + payload.length + ") of the payload to be written is larger than that(" +  size + ") of the target block.");
@@ -546,6 +575,10 @@ public class SingleTablespaceManager implements TablespaceManager {
 		}
 	}
 
+	//every write already reaches the storage device in the "rws" mode
+	@Override
+	public void sync() {}
+
 	@Override
 	public void printFreeListBlock() {
 		long firstFreeBlockPos = tsHeader.getFirstFreeBlockPos();
@@ -4,9 +4,14 @@ import onthego.database.core.exception.InsufficientPayloadSpaceException;
 import onthego.database.core.table.meta.ColumnMeta;
 import onthego.database.core.table.meta.TypeConstants;
 import onthego.database.core.table.meta.Types;
+import onthego.database.core.tablespace.io.BufferPool;
+import onthego.database.core.tablespace.io.MappedTablespaceIO;
+import onthego.database.core.tablespace.io.TablespaceIO;
+import onthego.database.core.tablespace.manager.TablespaceConfig.Durability;
 import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
 import onthego.database.core.tablespace.meta.TableMetaInfo;
 import onthego.database.core.tablespace.meta.TablespaceHeader;
+import onthego.database.core.tablespace.wal.WriteAheadLog;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -18,7 +23,9 @@ import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static onthego.database.util.IOUtils.*;
 
@@ -36,10 +43,57 @@ public class StandardTablespaceManager implements TablespaceManager {
 
     public static final int DEFAULT_BLOCK_SIZE = 4096;
 
-    private final FileChannel channel;
+	public static final int SIZE_CLASS_COUNT = 32;
+
+	//size classes below it hold blocks of a single chunk count, the others a power-of-two range of chunk counts
+	public static final int EXACT_SIZE_CLASS_COUNT = 16;
+
+	//the prolog block right after the header starts with <free_list_mark><size_class_count><free_list_directory_pos>
+	public static final long PROLOG_POS = StandardTablespaceHeader.HEADER_SIZE + BLOCK_HEADER_SIZE;
+
+	public static final int FREE_LIST_MARK = 0x53454752;
+
+	public static final int FREE_LIST_PREAMBLE_SIZE = 2 * Integer.BYTES + Long.BYTES;
+
+	//<first_free_block_pos> of every size class
+	public static final int FREE_LIST_DIRECTORY_SIZE = SIZE_CLASS_COUNT * Long.BYTES;
+
+	//the constraints of a column in the table meta info entry
+	public static final int COLUMN_KEY_FLAG = 0x01;
+
+	public static final int COLUMN_UNIQUE_FLAG = 0x02;
+
+    private final TablespaceIO io;
+
+	private final Path tsPath;
+
+	//commits go through the log of the tablespace directory if the tablespace is logged
+	private final WriteAheadLog wal;
 
 	private TablespaceHeader tsHeader;
 
+	private final Durability durability;
+
+	//the header changed in memory but not yet written into the tablespace
+	private boolean headerDirty = false;
+
+	//readers of blocks and the header run concurrently, every mutation is exclusive
+	private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+	private final long[] freeListHeads = new long[SIZE_CLASS_COUNT];
+
+	//a bit per size class which has at least one free block
+	private int nonEmptySizeClasses = 0;
+
+	private long freeListDirectoryPos;
+
+	private final FreeSpaceIndex freeSpaceIndex;
+
+	@FunctionalInterface
+	interface FreeBlockConsumer {
+		void accept(int blockSize, long blockPos);
+	}
+
 	static class FreeListNode {
 		long prev;
 		long next;
@@ -56,7 +110,11 @@ public class StandardTablespaceManager implements TablespaceManager {
     }
 
     public static TablespaceManager create(Path tsPath, TablespaceHeader tsHeader) throws IOException {
-		return new StandardTablespaceManager(tsPath, tsHeader);
+		return create(tsPath, tsHeader, TablespaceConfig.DEFAULT);
+	}
+
+	public static TablespaceManager create(Path tsPath, TablespaceHeader tsHeader, TablespaceConfig config) throws IOException {
+		return new StandardTablespaceManager(tsPath, tsHeader, config);
 	}
 
     public static TablespaceManager load(String tsPath) throws IOException {
@@ -64,47 +122,73 @@ public class StandardTablespaceManager implements TablespaceManager {
     }
 
 	public static TablespaceManager load(Path tsPath) throws IOException {
-		return new StandardTablespaceManager(tsPath);
+		return load(tsPath, TablespaceConfig.DEFAULT);
 	}
 
-	private StandardTablespaceManager(Path tsPath, TablespaceHeader tsHeader) throws IOException {
-		this.channel = FileChannel.open(tsPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	public static TablespaceManager load(Path tsPath, TablespaceConfig config) throws IOException {
+		return new StandardTablespaceManager(tsPath, config);
+	}
+
+	private StandardTablespaceManager(Path tsPath, TablespaceHeader tsHeader, TablespaceConfig config) throws IOException {
+		this.tsPath = tsPath;
+		this.wal = openWriteAheadLog(tsPath, config);
+		this.io = openTablespaceIO(tsPath, config);
+		if (wal != null) {
+			wal.register(tsPath, (BufferPool)io);
+		}
+		this.freeSpaceIndex = config.isFreeSpaceIndexed() ? new FreeSpaceIndex() : null;
+		this.durability = config.getDurability();
 		this.tsHeader = tsHeader;
 		initialize();
 
 		if (tsHeader.getTableMetaInfo() != null) {
 			createTableInfoEntry(tsHeader.getTableMetaInfo());
 		}
+		saveHeader();
 	}
 
-	private StandardTablespaceManager(Path tsPath) throws IOException {
-		this.channel = FileChannel.open(tsPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	private StandardTablespaceManager(Path tsPath, TablespaceConfig config) throws IOException {
+		this.tsPath = tsPath;
+		this.wal = openWriteAheadLog(tsPath, config);
+		this.io = openTablespaceIO(tsPath, config);
+		if (wal != null) {
+			wal.register(tsPath, (BufferPool)io);
+		}
+		this.freeSpaceIndex = config.isFreeSpaceIndexed() ? new FreeSpaceIndex() : null;
+		this.durability = config.getDurability();
 		loadHeader();
+		loadFreeLists();
 		loadTableInfoEntry();
 	}
 
+	//the log is replayed before the tablespace is opened
+	private static WriteAheadLog openWriteAheadLog(Path tsPath, TablespaceConfig config) {
+		return config.isWriteAheadLogged() ? WriteAheadLog.acquire(tsPath, config.getGroupCommitWindowMicros(), config.getGroupCommitSize()) : null;
+	}
+
+	private static TablespaceIO openTablespaceIO(Path tsPath, TablespaceConfig config) throws IOException {
+		FileChannel channel = FileChannel.open(tsPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		if (config.isMemoryMapped()) {
+			return new MappedTablespaceIO(channel, config.getMappedSegmentSize(), config.getForcePolicy());
+		}
+		return new BufferPool(channel, config.getBufferPoolSize(), DEFAULT_BLOCK_SIZE, config.isWriteAheadLogged(), config.getMaxBufferPoolSize());
+	}
+
     private void read(long position, ByteBuffer buffer) {
-        try {
-            channel.position(position);
-            channel.read(buffer);
-        } catch (IOException ioe) {
-            throw new TablespaceManagerException(ioe);
-        }
+        io.read(position, buffer.array(), buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
     }
 
     private void write(long position, ByteBuffer buffer) {
-        try {
-            channel.position(position);
-            channel.write(buffer);
-        } catch (IOException ioe) {
-            throw new TablespaceManagerException(ioe);
-        }
+        io.write(position, buffer.array(), buffer.position(), buffer.remaining());
+        buffer.position(buffer.limit());
     }
 		
 	@Override
 	public void loadHeader() {
+		lock.writeLock().lock();
 		try {
-            ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf -> read(0, buf));
+            ByteBuffer buffer = getByteBuffer(StandardTablespaceHeader.HEADER_SIZE, true, buf -> read(0, buf));
 
             byte[] magic = new byte[StandardTablespaceHeader.MAGIC_NUMBER_SIZE];
 			buffer.get(magic);
@@ -119,16 +203,42 @@ public class StandardTablespaceManager implements TablespaceManager {
 							.tableMetaInfoPos(buffer.getLong())
 							.recordCount(buffer.getInt())
 							.build();
+			headerDirty = false;
 			
 		} catch(Exception ioe) {
 			throw new TablespaceManagerException(ioe);
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 	
+	//a header saved explicitly is flushed into the tablespace file with every dirty page
 	@Override
 	public void saveHeader() {
+		lock.writeLock().lock();
+		try {
+			writeHeader();
+			if (wal != null) {
+				wal.commit(tsPath, (BufferPool)io);
+			} else {
+				io.flush();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void markHeaderDirty() {
+		if (durability == Durability.IMMEDIATE) {
+			saveHeader();
+		} else {
+			headerDirty = true;
+		}
+	}
+
+	private void writeHeader() {
 		try {
-            ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf -> {
+            ByteBuffer buffer = getByteBuffer(StandardTablespaceHeader.HEADER_SIZE, true, buf -> {
                 buf.put(tsHeader.getMagic());
                 buf.putInt(tsHeader.getChunkSize());
                 buf.putInt(tsHeader.getCrc());
@@ -140,6 +250,7 @@ public class StandardTablespaceManager implements TablespaceManager {
             });
 
             write(0, buffer);
+            headerDirty = false;
 		} catch(Exception ioe) {
 			throw new TablespaceManagerException(ioe);
 		}
@@ -148,24 +259,96 @@ public class StandardTablespaceManager implements TablespaceManager {
 	private void initialize() {
 		try {
 			//write the header into a tablespace first
-			saveHeader();
+			writeHeader();
 			//mark a sentinel(dummy) area between tablespace header and data blocks
 //            ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BLOCK_SIZE);
 //            buffer.putInt(2);
 //            buffer.flip();
 
-            ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf -> buf.putInt(2));
-            channel.write(buffer);
-			//set the prolog block which is never freed for coalescing free blocks 
-			allocate(0);
+            io.writeInt(StandardTablespaceHeader.HEADER_SIZE, 2);
+			//set the prolog block which is never freed for coalescing free blocks.
+			//it also keeps the free list directory of the tablespace.
+			long prologPos = appendBlock(getChunkAlignedSize(FREE_LIST_PREAMBLE_SIZE + FREE_LIST_DIRECTORY_SIZE + BLOCK_OVERHEAD_SIZE));
+			initializeFreeLists(prologPos + FREE_LIST_PREAMBLE_SIZE);
 		} catch(Exception ioe) {
 			throw new TablespaceManagerException(ioe);
 		}
 	}
 
+	private void initializeFreeLists(long directoryPos) {
+		io.writeInt(PROLOG_POS, FREE_LIST_MARK);
+		io.writeInt(PROLOG_POS + Integer.BYTES, SIZE_CLASS_COUNT);
+		io.writeLong(PROLOG_POS + 2 * Integer.BYTES, directoryPos);
+		io.write(directoryPos, new byte[FREE_LIST_DIRECTORY_SIZE], 0, FREE_LIST_DIRECTORY_SIZE);
+
+		this.freeListDirectoryPos = directoryPos;
+		Arrays.fill(freeListHeads, 0);
+		nonEmptySizeClasses = 0;
+		tsHeader.setFirstFreeBlockPos(0);
+		markHeaderDirty();
+	}
+
+	private void loadFreeLists() {
+		if (io.readInt(PROLOG_POS) != FREE_LIST_MARK) {
+			migrateFreeList();
+			return;
+		}
+
+		int sizeClassCount = io.readInt(PROLOG_POS + Integer.BYTES);
+		if (sizeClassCount != SIZE_CLASS_COUNT) {
+			throw new TablespaceManagerException("The number(" + sizeClassCount + ") of size classes is not supported.");
+		}
+
+		freeListDirectoryPos = io.readLong(PROLOG_POS + 2 * Integer.BYTES);
+		for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; ++sizeClass) {
+			freeListHeads[sizeClass] = io.readLong(freeListDirectoryPos + (long)sizeClass * Long.BYTES);
+			if (freeListHeads[sizeClass] != 0) {
+				nonEmptySizeClasses |= 1 << sizeClass;
+			}
+		}
+
+		if (freeSpaceIndex != null) {
+			forEachFreeBlock(freeSpaceIndex::add);
+		}
+	}
+
+	private void forEachFreeBlock(FreeBlockConsumer consumer) {
+		for (long firstFreeBlockPos : freeListHeads) {
+			if (firstFreeBlockPos == 0) {
+				continue;
+			}
+
+			long freeBlockPos = firstFreeBlockPos;
+			do {
+				consumer.accept(getBlockSize(freeBlockPos), freeBlockPos);
+				freeBlockPos = getNextFreeBlockPos(freeBlockPos);
+			} while (freeBlockPos != firstFreeBlockPos);
+		}
+	}
+
+	//a tablespace written with a single free list has no room for the directory in its prolog block,
+	//so the directory is appended as a block and the legacy free blocks are redistributed into size classes
+	private void migrateFreeList() {
+		List<Long> freeBlockList = new ArrayList<>();
+		long firstFreeBlockPos = tsHeader.getFirstFreeBlockPos();
+		if (firstFreeBlockPos != 0) {
+			long freeBlockPos = firstFreeBlockPos;
+			do {
+				freeBlockList.add(freeBlockPos);
+				freeBlockPos = getNextFreeBlockPos(freeBlockPos);
+			} while (freeBlockPos != firstFreeBlockPos);
+		}
+
+		initializeFreeLists(appendBlock(getChunkAlignedSize(FREE_LIST_DIRECTORY_SIZE + BLOCK_OVERHEAD_SIZE)));
+		freeBlockList.forEach(this::insertFreeBlock);
+		saveHeader();
+	}
+
 	//<table_name><column_count>
 	//<(row_id,type_id,length,decimal_len),(column_name,type_id,length,decimal_len),...>
+	//<column_flags,...>
 	public void createTableInfoEntry(TableMetaInfo tableMetaInfo) {
+		lock.writeLock().lock();
 		try (ByteArrayOutputStream baout = new ByteArrayOutputStream();
 			 DataOutputStream out = new DataOutputStream(baout)) {
 			
@@ -177,6 +360,9 @@ public class StandardTablespaceManager implements TablespaceManager {
 				out.writeInt(column.getType().getLength());  //<column_type_length>
 				out.writeInt(column.getType().getDecimalLength());  //<column_decimal_length>
 			}
+			for (ColumnMeta column : tableMetaInfo.getColumnList()) {
+				out.writeByte(getColumnFlags(column));  //<column_flags>
+			}
 			
 			out.flush();
 			byte[] tableMetaInfoEntry = baout.toByteArray();
@@ -187,35 +373,60 @@ public class StandardTablespaceManager implements TablespaceManager {
 			saveHeader();
 		} catch (Exception e) {
 			throw new TablespaceManagerException(e);
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
     public void loadTableInfoEntry() {
-        DataInputStream dataBuffer = null;
+		lock.writeLock().lock();
 		try {
-            ByteBuffer buffer = ByteBuffer.allocate(DEFAULT_BLOCK_SIZE);
-            read(tsHeader.getTableMetaInfoPos(), buffer);
-
-            dataBuffer = new DataInputStream(new ByteArrayInputStream(buffer.array()));
-
-			String tableName = dataBuffer.readUTF();
-			int columnCount = dataBuffer.readInt();
-			List<ColumnMeta> columnList = new ArrayList<>();
-			for (int i = 0; i < columnCount; ++i) { 
-				String name = dataBuffer.readUTF();
-				TypeConstants typeConstants = TypeConstants.valueOf(dataBuffer.readUTF());
-				int length = dataBuffer.readInt();
-				int decimalLength = dataBuffer.readInt();
-				
-				columnList.add(new ColumnMeta(name, Types.of(typeConstants, length, decimalLength)));
+			//a tablespace such as an index tablespace may have no table meta info
+			if (tsHeader.getTableMetaInfoPos() == 0) {
+				return;
 			}
+
+	        DataInputStream dataBuffer = null;
+			try {
+	            dataBuffer = new DataInputStream(new ByteArrayInputStream(readBlock(tsHeader.getTableMetaInfoPos())));
+
+				String tableName = dataBuffer.readUTF();
+				int columnCount = dataBuffer.readInt();
+				List<ColumnMeta> columnList = new ArrayList<>();
+				for (int i = 0; i < columnCount; ++i) { 
+					String name = dataBuffer.readUTF();
+					TypeConstants typeConstants = TypeConstants.valueOf(dataBuffer.readUTF());
+					int length = dataBuffer.readInt();
+					int decimalLength = dataBuffer.readInt();
+				
+					columnList.add(new ColumnMeta(name, Types.of(typeConstants, length, decimalLength)));
+				}
+				
+				//an entry written before the flags were added ends with the zero padding of its block
+				if (dataBuffer.available() >= columnCount) {
+					for (ColumnMeta column : columnList) {
+						setColumnFlags(column, dataBuffer.readByte());
+					}
+				}
 			
-			tsHeader.setTableMetaInfo(new TableMetaInfo(tableName, columnList));
-		} catch(IOException ioe) {
-			throw new TablespaceManagerException(ioe);
+				tsHeader.setTableMetaInfo(new TableMetaInfo(tableName, columnList));
+			} catch(IOException ioe) {
+				throw new TablespaceManagerException(ioe);
+			}
+		} finally {
+			lock.writeLock().unlock();
 		}
 	}
 
+	private static int getColumnFlags(ColumnMeta column) {
+		return (column.isKey() ? COLUMN_KEY_FLAG : 0) | (column.isUnique() ? COLUMN_UNIQUE_FLAG : 0);
+	}
+
+	private static void setColumnFlags(ColumnMeta column, int flags) {
+		column.setKey((flags & COLUMN_KEY_FLAG) != 0);
+		column.setUnique((flags & COLUMN_UNIQUE_FLAG) != 0);
+	}
+
     // The aligned size is multiplication of chunksize
 	private int getChunkAlignedSize(int size) {
 		return (size + (tsHeader.getChunkSize() - 1)) & ~(tsHeader.getChunkSize() - 1);
@@ -226,13 +437,7 @@ public class StandardTablespaceManager implements TablespaceManager {
 	}
 
 	private int getBlockHeader(long payloadPos) {
-		try {
-            ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf -> read(getBlockHeaderPos(payloadPos), buf));
-            return buffer.getInt();
-		} catch(Exception ie) {
-            ie.printStackTrace();
-			throw new TablespaceManagerException(ie);
-		}
+		return io.readInt(getBlockHeaderPos(payloadPos));
 	}
 
 	private int getBlockSize(long payloadPos) {
@@ -250,8 +455,7 @@ public class StandardTablespaceManager implements TablespaceManager {
 	}
 
 	private void putBlockHeader(long payloadPos, int blockHeader) {
-        ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf -> buf.putInt(blockHeader));
-        write(getBlockHeaderPos(payloadPos), buffer);
+        io.writeInt(getBlockHeaderPos(payloadPos), blockHeader);
 	}
 	
 	private long getNextBlockPos(long payloadPos) {
@@ -259,8 +463,7 @@ public class StandardTablespaceManager implements TablespaceManager {
 	}
 
 	private void putBlockFooter(long payloadPos, int blockFooter) {
-        ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf -> buf.putInt(blockFooter));
-        write(getNextBlockPos(payloadPos) - BLOCK_OVERHEAD_SIZE, buffer);
+        io.writeInt(getNextBlockPos(payloadPos) - BLOCK_OVERHEAD_SIZE, blockFooter);
 	}
 
 	private long getPrevBlockPos(long payloadPos) {
@@ -268,59 +471,66 @@ public class StandardTablespaceManager implements TablespaceManager {
 	}
 	
 	private FreeListNode getFreeBlock(long payloadPos) {
-		try {
-            ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf ->
-                    read(payloadPos, buf));
-            return new FreeListNode(buffer.getLong(), buffer.getLong());
-		} catch(Exception ie) {
-			throw new TablespaceManagerException(ie);
-		}
+		return new FreeListNode(io.readLong(payloadPos), io.readLong(payloadPos + Long.BYTES));
 	}
 
     private void putFreeBlock(long payloadPos, FreeListNode node) {
-        ByteBuffer buffer = getByteBuffer(DEFAULT_BLOCK_SIZE, true, buf -> {
-            buf.putLong(node.prev);
-            buf.putLong(node.next);
-        });
-        write(payloadPos, buffer);
+        io.writeLong(payloadPos, node.prev);
+        io.writeLong(payloadPos + Long.BYTES, node.next);
 	}
 
 	private long getPrevFreeBlockPos(long payloadPos) {
-		return getFreeBlock(payloadPos).prev;
+		return io.readLong(payloadPos);
 	}
 
 	private long getNextFreeBlockPos(long payloadPos) {
-		return getFreeBlock(payloadPos).next;
+		return io.readLong(payloadPos + Long.BYTES);
+	}
+
+	private void putPrevFreeBlockPos(long payloadPos, long prevFreeBlockPos) {
+		io.writeLong(payloadPos, prevFreeBlockPos);
+	}
+
+	private void putNextFreeBlockPos(long payloadPos, long nextFreeBlockPos) {
+		io.writeLong(payloadPos + Long.BYTES, nextFreeBlockPos);
 	}
 	
 	private long increaseFileSize(long size) {   //like sbrk()
-		try {
-            long oldSize = channel.size();
-			if (size == 0) return oldSize;
-            write(oldSize + size - 1, ByteBuffer.wrap(new byte[]{0}));
-			return oldSize;
-		} catch(Exception ioe) {
-			throw new TablespaceManagerException(ioe);
-		}
+        long oldSize = io.size();
+		if (size == 0) return oldSize;
+        io.write(oldSize + size - 1, new byte[]{0}, 0, 1);
+		return oldSize;
 	}
 
 	private void initializeBlock(long payloadPos, int size) {
-		int remainder = getBlockSize(payloadPos) - size;
+		int blockSize = getBlockSize(payloadPos);
+		int remainder = blockSize - size;
+
+		//a free block leaves the list of its size class before its size changes
+		deleteFreeBlock(payloadPos);
 		if (remainder >= getChunkAlignedSize(BLOCK_OVERHEAD_WITH_FREELIST_SIZE)) {
 			putBlockHeader(payloadPos, pack(size, 1));
 			putBlockFooter(payloadPos, pack(size, 1));
-			deleteFreeBlock(payloadPos);
 
 			putBlockHeader(getNextBlockPos(payloadPos), pack(remainder, 0));
 			putBlockFooter(getNextBlockPos(payloadPos), pack(remainder, 0));
 			insertFreeBlock(getNextBlockPos(payloadPos));
 		} else {
-			putBlockHeader(payloadPos, pack(getBlockSize(payloadPos), 1));
-			putBlockFooter(payloadPos, pack(getBlockSize(payloadPos), 1));
-			deleteFreeBlock(payloadPos);
+			putBlockHeader(payloadPos, pack(blockSize, 1));
+			putBlockFooter(payloadPos, pack(blockSize, 1));
 		}
 	}
 
+	//append an allocated block bypassing the free lists
+	private long appendBlock(int alignedSize) {
+		long payloadPos = increaseFileSize(alignedSize);
+		putBlockHeader(payloadPos, pack(alignedSize, 1));
+		putBlockFooter(payloadPos, pack(alignedSize, 1));
+
+		putBlockHeader(getNextBlockPos(payloadPos), pack(0, 1));
+		return payloadPos;
+	}
+
 	private void extend(int increase) {
 		long payloadPos = increaseFileSize(increase);
 		putBlockHeader(payloadPos, pack(increase, 0));
@@ -330,116 +540,185 @@ public class StandardTablespaceManager implements TablespaceManager {
 		putBlockHeader(getNextBlockPos(payloadPos), pack(0,1));
 	}
 
-	//This code will be rewrited using dummy node.
+	private int getSizeClass(int blockSize) {
+		int chunkCount = blockSize / tsHeader.getChunkSize();
+		if (chunkCount < EXACT_SIZE_CLASS_COUNT) {
+			return chunkCount;
+		}
+
+		int sizeClass = EXACT_SIZE_CLASS_COUNT + (31 - Integer.numberOfLeadingZeros(chunkCount)) - Integer.numberOfTrailingZeros(EXACT_SIZE_CLASS_COUNT);
+		return Math.min(sizeClass, SIZE_CLASS_COUNT - 1);
+	}
+
+	//the smallest block size belonging to the size class
+	private long getSizeClassLowerBound(int sizeClass) {
+		if (sizeClass < EXACT_SIZE_CLASS_COUNT) {
+			return (long)sizeClass * tsHeader.getChunkSize();
+		}
+		return ((long)EXACT_SIZE_CLASS_COUNT << (sizeClass - EXACT_SIZE_CLASS_COUNT)) * tsHeader.getChunkSize();
+	}
+
+	private void setFreeListHead(int sizeClass, long freeBlockPos) {
+		freeListHeads[sizeClass] = freeBlockPos;
+		io.writeLong(freeListDirectoryPos + (long)sizeClass * Long.BYTES, freeBlockPos);
+
+		if (freeBlockPos == 0) {
+			nonEmptySizeClasses &= ~(1 << sizeClass);
+		} else {
+			nonEmptySizeClasses |= 1 << sizeClass;
+		}
+
+		//the header keeps the first free block of the smallest non-empty size class
+		long firstFreeBlockPos = nonEmptySizeClasses == 0 ? 0 : freeListHeads[Integer.numberOfTrailingZeros(nonEmptySizeClasses)];
+		if (tsHeader.getFirstFreeBlockPos() != firstFreeBlockPos) {
+			tsHeader.setFirstFreeBlockPos(firstFreeBlockPos);
+			markHeaderDirty();
+		}
+	}
+
 	private void insertFreeBlock(long newFreeBlockPos) {
-		long firstFreeBlockPos = tsHeader.getFirstFreeBlockPos();
-		
-		//in case that there is no free block in free block list
-		if (firstFreeBlockPos == 0) {  
-			FreeListNode newFreeNode = new FreeListNode(newFreeBlockPos, newFreeBlockPos);
-			putFreeBlock(newFreeBlockPos, newFreeNode);
-			
-			tsHeader.setFirstFreeBlockPos(newFreeBlockPos);
-			saveHeader();
-			return;
+		int blockSize = getBlockSize(newFreeBlockPos);
+		int sizeClass = getSizeClass(blockSize);
+		if (freeSpaceIndex != null) {
+			freeSpaceIndex.add(blockSize, newFreeBlockPos);
 		}
+		long firstFreeBlockPos = freeListHeads[sizeClass];
 
-		FreeListNode firstFreeNode = getFreeBlock(firstFreeBlockPos);
-		
-		//set links of a new free node
-		FreeListNode newFreeNode = new FreeListNode(firstFreeNode.prev, firstFreeBlockPos);
-		putFreeBlock(newFreeBlockPos, newFreeNode);
-		
-		//update links of the first free node and its previous free node
-		if (firstFreeBlockPos != firstFreeNode.prev) {
-			FreeListNode prevFreeNode = getFreeBlock(firstFreeNode.prev);
-			prevFreeNode.next = newFreeBlockPos;
-			putFreeBlock(firstFreeNode.prev, prevFreeNode);
-			
-			firstFreeNode.prev = newFreeBlockPos;
-			putFreeBlock(firstFreeBlockPos, firstFreeNode);
+		//in case that there is no free block in the free list of the size class
+		if (firstFreeBlockPos == 0) {
+			putFreeBlock(newFreeBlockPos, new FreeListNode(newFreeBlockPos, newFreeBlockPos));
 		} else {
-			firstFreeNode.next = newFreeBlockPos;
-			firstFreeNode.prev = newFreeBlockPos;
-			putFreeBlock(firstFreeBlockPos, firstFreeNode);
+			long lastFreeBlockPos = getPrevFreeBlockPos(firstFreeBlockPos);
+			putFreeBlock(newFreeBlockPos, new FreeListNode(lastFreeBlockPos, firstFreeBlockPos));
+			putNextFreeBlockPos(lastFreeBlockPos, newFreeBlockPos);
+			putPrevFreeBlockPos(firstFreeBlockPos, newFreeBlockPos);
 		}
-		
-		//update tablespace header ()
-//		tsHeader.setFirstFreeBlockPos(newFreeBlockPos);
-//		saveHeader();
+
+		//the most recently freed block is reused first
+		setFreeListHead(sizeClass, newFreeBlockPos);
 	}
 
 	private void deleteFreeBlock(long freeBlockPos) {
+		int blockSize = getBlockSize(freeBlockPos);
+		int sizeClass = getSizeClass(blockSize);
+		if (freeSpaceIndex != null) {
+			freeSpaceIndex.remove(blockSize, freeBlockPos);
+		}
 		FreeListNode freeNode = getFreeBlock(freeBlockPos);
 
-		 //in case that there is the only one header node. that is, size(list) = 1.
-		if (freeNode.prev == freeBlockPos && freeNode.next == freeBlockPos) { 
-//			freeNode.prev = 0;
-//			freeNode.next = 0;
-//			putFreeBlock(freeBlockPos, freeNode);
-
-			tsHeader.setFirstFreeBlockPos(0);
-			saveHeader();
+		//in case that it is the only free block of the size class
+		if (freeNode.next == freeBlockPos) {
+			setFreeListHead(sizeClass, 0);
 			return;
 		}
 
-		FreeListNode prevFreeNode = getFreeBlock(freeNode.prev);
-		//remove the header node from free list when size(list) >= 2.
-		if (freeNode.prev == freeNode.next) {  //size(list) == 2
-			prevFreeNode.prev = freeNode.prev;
-			prevFreeNode.next = freeNode.prev;
-			putFreeBlock(freeNode.prev, prevFreeNode);
-		} else { //size(list) > 2
-			FreeListNode nextFreeNode = getFreeBlock(freeNode.next);
-			prevFreeNode.next = freeNode.next;
-			nextFreeNode.prev = freeNode.prev;
-			putFreeBlock(freeNode.prev, prevFreeNode);
-			putFreeBlock(freeNode.next, nextFreeNode);
+		putNextFreeBlockPos(freeNode.prev, freeNode.next);
+		putPrevFreeBlockPos(freeNode.next, freeNode.prev);
+
+		if (freeListHeads[sizeClass] == freeBlockPos) {
+			setFreeListHead(sizeClass, freeNode.next);
 		}
+	}
 
-		//in case that the removed free node is the first free node
-		if (tsHeader.getFirstFreeBlockPos() == freeBlockPos) {
-			tsHeader.setFirstFreeBlockPos(freeNode.next);
-			saveHeader();
+	private long findFreeBlock(int alignedSize) {
+		int sizeClass = getSizeClass(alignedSize);
+
+		//every block of the size class fits if the requested size is the lower bound of the class
+		int fitSizeClass = alignedSize == getSizeClassLowerBound(sizeClass) ? sizeClass : sizeClass + 1;
+		int fitSizeClasses = fitSizeClass < SIZE_CLASS_COUNT ? nonEmptySizeClasses & (-1 << fitSizeClass) : 0;
+		if (fitSizeClasses != 0) {
+			return freeListHeads[Integer.numberOfTrailingZeros(fitSizeClasses)];
+		}
+
+		//otherwise the first fit in the size class of the requested size
+		long firstFreeBlockPos = freeListHeads[sizeClass];
+		if (fitSizeClass != sizeClass && firstFreeBlockPos != 0) {
+			long freeBlockPos = firstFreeBlockPos;
+			do {
+				if (getBlockSize(freeBlockPos) >= alignedSize) {
+					return freeBlockPos;
+				}
+				freeBlockPos = getNextFreeBlockPos(freeBlockPos);
+			} while (freeBlockPos != firstFreeBlockPos);
 		}
+		return 0;
 	}
 	
 	@Override
 	public TablespaceHeader getHeader() {
-		return new StandardTablespaceHeader(this.tsHeader);
+		lock.readLock().lock();
+		try {
+			return new StandardTablespaceHeader(this.tsHeader);
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public long getRootPos() {
-		return tsHeader.getTableRootPos();
+		lock.readLock().lock();
+		try {
+			return tsHeader.getTableRootPos();
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public void saveRootPos(long rootPos) {
-		tsHeader.setTableRootPos(rootPos);
-		saveHeader();
+		lock.writeLock().lock();
+		try {
+			tsHeader.setTableRootPos(rootPos);
+			markHeaderDirty();
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	@Override
 	public int getRecordCount() {
-		return tsHeader.getRecordCount();
+		lock.readLock().lock();
+		try {
+			return tsHeader.getRecordCount();
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 
 	@Override
 	public int increaseRecordCount() {
-		tsHeader.setRecordCount(tsHeader.getRecordCount() + 1);
-		saveHeader();
-		return tsHeader.getRecordCount();
+		lock.writeLock().lock();
+		try {
+			tsHeader.setRecordCount(tsHeader.getRecordCount() + 1);
+			markHeaderDirty();
+			return tsHeader.getRecordCount();
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 	
 	@Override
 	public void decreaseRecordCount() {
-		tsHeader.setRecordCount(tsHeader.getRecordCount() - 1);
-		saveHeader();
+		lock.writeLock().lock();
+		try {
+			tsHeader.setRecordCount(tsHeader.getRecordCount() - 1);
+			markHeaderDirty();
+		} finally {
+			lock.writeLock().unlock();
+		}
 	}
 
 	@Override
-	public long allocate(int size)  {
+	public long allocate(int size) {
+		lock.writeLock().lock();
+		try {
+			return allocateBlock(size);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private long allocateBlock(int size) {
 		int alignedSize = 0;
 		if (size >= FREE_LIST_NODE_SIZE) {
 			alignedSize = getChunkAlignedSize(size + BLOCK_OVERHEAD_SIZE);
@@ -447,36 +726,29 @@ public class StandardTablespaceManager implements TablespaceManager {
 			alignedSize = getChunkAlignedSize(BLOCK_OVERHEAD_WITH_FREELIST_SIZE);
 		}
 		
-		long bestfitBlockPos = -1;
-		long freeBlockPos = tsHeader.getFirstFreeBlockPos();
-		long prevFreeBlockPos = 0;
-		while(prevFreeBlockPos != freeBlockPos) {
-			if (getBlockSize(freeBlockPos) >= alignedSize) {
-				if (bestfitBlockPos == -1 || getBlockSize(bestfitBlockPos) > getBlockSize(freeBlockPos)) {
-					bestfitBlockPos = freeBlockPos;
-				}
-			}
-			
-			prevFreeBlockPos = freeBlockPos;
-			freeBlockPos = getNextFreeBlockPos(freeBlockPos);
-			
-			//in case that the searching returns to the first free node
-			if (freeBlockPos == tsHeader.getFirstFreeBlockPos())
-				break;
-		}
+		long freeBlockPos = freeSpaceIndex != null ? freeSpaceIndex.findBestFit(alignedSize) : findFreeBlock(alignedSize);
 
-		//  There is no free blocks to use or no a free block larger than the requested size
-		if (tsHeader.getFirstFreeBlockPos() == 0 || bestfitBlockPos == -1) {
-			bestfitBlockPos = increaseFileSize(0);
+		//there is no free block larger than the requested size
+		if (freeBlockPos == 0) {
+			freeBlockPos = increaseFileSize(0);
 			extend(alignedSize);
 		}
 
-		initializeBlock(bestfitBlockPos, alignedSize);
-		return bestfitBlockPos;
+		initializeBlock(freeBlockPos, alignedSize);
+		return freeBlockPos;
 	}
 
 	@Override
 	public void free(long blockPos) {
+		lock.writeLock().lock();
+		try {
+			freeBlock(blockPos);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	private void freeBlock(long blockPos) {
 		int size = getBlockSize(blockPos);
 		boolean prevBlockAllocationStatus = getBlockAllocationStatus(getPrevBlockPos(blockPos));
 		boolean nextBlockAllocationStatus = getBlockAllocationStatus(getNextBlockPos(blockPos));
@@ -501,8 +773,11 @@ public class StandardTablespaceManager implements TablespaceManager {
 //			System.out.println("prevBlockSize = " + prevBlockSize);
 //			System.out.println("newSize = " + newSize);
 
+			//the coalesced block may belong to another size class
+			deleteFreeBlock(prevBlockPos);
 			putBlockHeader(prevBlockPos, pack(newSize, 0));
 			putBlockFooter(prevBlockPos, pack(newSize, 0));
+			insertFreeBlock(prevBlockPos);
 		} else if (prevBlockAllocationStatus && !nextBlockAllocationStatus) {
 			long nextBlockPos = getNextBlockPos(blockPos);
 			int nextBlockSize = getBlockSize(nextBlockPos);
@@ -512,10 +787,9 @@ public class StandardTablespaceManager implements TablespaceManager {
 //			System.out.println("nextBlockSize = " + nextBlockSize);
 //			System.out.println("newSize = " + newSize);
 
+			deleteFreeBlock(nextBlockPos);
 			putBlockHeader(blockPos, pack(newSize, 0));
 			putBlockFooter(blockPos, pack(newSize, 0));
-
-			deleteFreeBlock(nextBlockPos);
 			insertFreeBlock(blockPos);
 		} else { //!prevBlockAllocationStatus && !nextBlockAllocationStatus
 			long prevBlockPos = getPrevBlockPos(blockPos);
@@ -530,63 +804,169 @@ public class StandardTablespaceManager implements TablespaceManager {
 //			System.out.println("nextBlockSize = " + nextBlockSize);
 //			System.out.println("newSize = " + newSize);
 
+			deleteFreeBlock(prevBlockPos);
+			deleteFreeBlock(nextBlockPos);
 			putBlockHeader(prevBlockPos, pack(newSize, 0));
 			putBlockFooter(prevBlockPos, pack(newSize, 0));
-
-			deleteFreeBlock(nextBlockPos);
+			insertFreeBlock(prevBlockPos);
 		}
 		
 //		System.out.println("=======================");
 	}
 	
 	public byte[] readBlock(long blockPos) {
-		int size = getBlockSize(blockPos) - BLOCK_OVERHEAD_SIZE;
-		byte[] payload = new byte[size];
-
-        ByteBuffer buffer = getByteBuffer(size, true, buf -> read(blockPos, buf));
-        buffer.get(payload);
-        return payload;
+		lock.readLock().lock();
+		try {
+			int size = getBlockSize(blockPos) - BLOCK_OVERHEAD_SIZE;
+			byte[] payload = new byte[size];
+	        io.read(blockPos, payload, 0, size);
+	        return payload;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 	
-	public void writeBlock(long blockPos, byte[] payload) throws InsufficientPayloadSpaceException {
-		int size = getBlockSize(blockPos) - BLOCK_OVERHEAD_SIZE;
-		if (size < payload.length) {
-			throw new InsufficientPayloadSpaceException("The size(" + payload.length + ") of the payload to be written is larger than that(" +  size + ") of the target block.");
+	public byte[] readBlock(long blockPos, int length) {
+		lock.readLock().lock();
+		try {
+			int size = Math.min(length, getBlockSize(blockPos) - BLOCK_OVERHEAD_SIZE);
+			byte[] payload = new byte[size];
+	        io.read(blockPos, payload, 0, size);
+	        return payload;
+		} finally {
+			lock.readLock().unlock();
 		}
+	}
 
-        write(blockPos, ByteBuffer.wrap(payload));
+	//free blocks are skipped by the sizes in their headers without reading their payloads
+	@Override
+	public long getNextAllocatedBlockPos(long blockPos) {
+		lock.readLock().lock();
+		try {
+			long payloadPos = blockPos == 0 ? PROLOG_POS : getNextBlockPos(blockPos);
+			while (getBlockSize(payloadPos) != 0) {
+				if (getBlockAllocationStatus(payloadPos)) {
+					return payloadPos;
+				}
+				payloadPos = getNextBlockPos(payloadPos);
+			}
+			return -1;
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
-	
-	public void close() {
+
+	@Override
+	public void readAhead(long blockPos, long length) {
+		lock.readLock().lock();
 		try {
-			channel.close();
-		} catch (IOException ioe) {
-			throw new TablespaceManagerException(ioe);
+			io.readAhead(getBlockHeaderPos(blockPos), length);
+		} finally {
+			lock.readLock().unlock();
 		}
 	}
 
+	public void writeBlock(long blockPos, byte[] payload) throws InsufficientPayloadSpaceException {
+		lock.writeLock().lock();
+		try {
+			int size = getBlockSize(blockPos) - BLOCK_OVERHEAD_SIZE;
+			if (size < payload.length) {
+				throw new InsufficientPayloadSpaceException("The size(" + payload.length + ") of the payload to be written is larger than that(" +  size + ") of the target block.");
+			}
+
+			io.write(blockPos, payload, 0, payload.length);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+	
 	@Override
-	public void printFreeListBlock() {
-		long firstFreeBlockPos = tsHeader.getFirstFreeBlockPos();
-		long freeBlockPos = firstFreeBlockPos;
-		long prevFreeBlockPos = 0;
+	public void sync() {
+		lock.writeLock().lock();
+		try {
+			if (headerDirty) {
+				writeHeader();
+			}
 
-		while (freeBlockPos != prevFreeBlockPos) {
-			System.out.printf("(offset= %d, size= %d)", freeBlockPos, getBlockSize(freeBlockPos));
+			//only the log is forced, the tablespace is forced at the next checkpoint
+			if (wal != null) {
+				wal.commit(tsPath, (BufferPool)io);
+			} else {
+				io.force();
+			}
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
 
-			prevFreeBlockPos = freeBlockPos;
-			freeBlockPos = getNextFreeBlockPos(freeBlockPos);
-//			if (freeBlockPos == -1) {
-//				System.out.println("could not read the next free block.");
-//				return;
-//			}
+	public void close() {
+		lock.writeLock().lock();
+		try {
+			if (headerDirty) {
+				writeHeader();
+			}
 
-			if (freeBlockPos == firstFreeBlockPos)
-				break;
+			if (wal != null) {
+				wal.commit(tsPath, (BufferPool)io);
+				wal.release(tsPath);
+			}
+			io.close();
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
 
-			System.out.print("->");
+	public boolean isHeaderDirty() {
+		lock.readLock().lock();
+		try {
+			return headerDirty;
+		} finally {
+			lock.readLock().unlock();
 		}
+	}
 
-		System.out.println();
+	public FreeSpaceStats getFreeSpaceStats() {
+		lock.readLock().lock();
+		try {
+			if (freeSpaceIndex != null) {
+				return freeSpaceIndex.getStats();
+			}
+
+			FreeSpaceIndex scannedIndex = new FreeSpaceIndex();
+			forEachFreeBlock(scannedIndex::add);
+			return scannedIndex.getStats();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	public TablespaceIO getTablespaceIO() {
+		return io;
+	}
+
+	@Override
+	public void printFreeListBlock() {
+		lock.readLock().lock();
+		try {
+			for (int sizeClass = 0; sizeClass < SIZE_CLASS_COUNT; ++sizeClass) {
+				long firstFreeBlockPos = freeListHeads[sizeClass];
+				if (firstFreeBlockPos == 0) {
+					continue;
+				}
+
+				System.out.printf("[size class %d] ", sizeClass);
+				long freeBlockPos = firstFreeBlockPos;
+				do {
+					System.out.printf("(offset= %d, size= %d)", freeBlockPos, getBlockSize(freeBlockPos));
+					freeBlockPos = getNextFreeBlockPos(freeBlockPos);
+					if (freeBlockPos != firstFreeBlockPos) {
+						System.out.print("->");
+					}
+				} while (freeBlockPos != firstFreeBlockPos);
+				System.out.println();
+			}
+		} finally {
+			lock.readLock().unlock();
+		}
 	}
 }
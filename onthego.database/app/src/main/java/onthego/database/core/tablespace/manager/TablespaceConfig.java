@@ -0,0 +1,197 @@
+package onthego.database.core.tablespace.manager;
+
+import onthego.database.core.tablespace.io.BufferPool;
+import onthego.database.core.tablespace.io.MappedTablespaceIO;
+import onthego.database.core.tablespace.io.MappedTablespaceIO.ForcePolicy;
+
+public class TablespaceConfig {
+
+	public static final TablespaceConfig DEFAULT = new Builder().build();
+
+	public enum Durability {
+		//write and flush the header on every mutation of it
+		IMMEDIATE,
+		//keep the header dirty in memory until commit, sync() or close()
+		DEFERRED
+	}
+
+	//the number of pages cached by the buffer pool of a tablespace
+	private final int bufferPoolSize;
+
+	//the number of pages the buffer pool may grow to while a write-ahead log holds back its uncommitted pages
+	private final int maxBufferPoolSize;
+
+	//serve the tablespace from memory mapped segments instead of the buffer pool
+	private final boolean memoryMapped;
+
+	private final int mappedSegmentSize;
+
+	private final ForcePolicy forcePolicy;
+
+	//keep the free blocks ordered by size in memory so that allocation is a best-fit lookup
+	private final boolean freeSpaceIndexed;
+
+	private final Durability durability;
+
+	//commit dirty pages through the write-ahead log of the tablespace directory
+	private final boolean writeAheadLogged;
+
+	//commits within the window share a force of the log unless they log more than the size first
+	private final long groupCommitWindowMicros;
+
+	private final long groupCommitSize;
+
+	public static class Builder {
+
+		private int bufferPoolSize = BufferPool.DEFAULT_CAPACITY;
+
+		//unless it is given, a pool may grow to the default or to its own size if that is larger
+		private Integer maxBufferPoolSize = null;
+
+		private boolean memoryMapped = false;
+
+		private int mappedSegmentSize = MappedTablespaceIO.DEFAULT_SEGMENT_SIZE;
+
+		private ForcePolicy forcePolicy = ForcePolicy.ON_CLOSE;
+
+		private boolean freeSpaceIndexed = true;
+
+		private Durability durability = Durability.DEFERRED;
+
+		private boolean writeAheadLogged = false;
+
+		private long groupCommitWindowMicros = 0;
+
+		private long groupCommitSize = 1024 * 1024;
+
+		public Builder() {}
+
+		public Builder bufferPoolSize(int bufferPoolSize) {
+			this.bufferPoolSize = bufferPoolSize;
+			return this;
+		}
+
+		public Builder maxBufferPoolSize(int maxBufferPoolSize) {
+			this.maxBufferPoolSize = maxBufferPoolSize;
+			return this;
+		}
+
+		public Builder memoryMapped(boolean memoryMapped) {
+			this.memoryMapped = memoryMapped;
+			return this;
+		}
+
+		public Builder mappedSegmentSize(int mappedSegmentSize) {
+			this.mappedSegmentSize = mappedSegmentSize;
+			return this;
+		}
+
+		public Builder forcePolicy(ForcePolicy forcePolicy) {
+			this.forcePolicy = forcePolicy;
+			return this;
+		}
+
+		public Builder freeSpaceIndexed(boolean freeSpaceIndexed) {
+			this.freeSpaceIndexed = freeSpaceIndexed;
+			return this;
+		}
+
+		public Builder durability(Durability durability) {
+			this.durability = durability;
+			return this;
+		}
+
+		public Builder writeAheadLogged(boolean writeAheadLogged) {
+			this.writeAheadLogged = writeAheadLogged;
+			return this;
+		}
+
+		public Builder groupCommitWindowMicros(long groupCommitWindowMicros) {
+			this.groupCommitWindowMicros = groupCommitWindowMicros;
+			return this;
+		}
+
+		public Builder groupCommitSize(long groupCommitSize) {
+			this.groupCommitSize = groupCommitSize;
+			return this;
+		}
+
+		public TablespaceConfig build() {
+			return new TablespaceConfig(this);
+		}
+	}
+
+	public static Builder builder() {
+		return new Builder();
+	}
+
+	private TablespaceConfig(Builder builder) {
+		if (builder.bufferPoolSize < 1) {
+			throw new IllegalArgumentException("The buffer pool size(" + builder.bufferPoolSize + ") must be positive.");
+		}
+
+		int maxBufferPoolSize = (builder.maxBufferPoolSize != null) ? builder.maxBufferPoolSize : Math.max(builder.bufferPoolSize, BufferPool.DEFAULT_MAX_FRAME_COUNT);
+		if (maxBufferPoolSize < builder.bufferPoolSize) {
+			throw new IllegalArgumentException("The maximum buffer pool size(" + maxBufferPoolSize + ") must not be less than the buffer pool size(" + builder.bufferPoolSize + ").");
+		}
+
+		if (builder.writeAheadLogged && builder.memoryMapped) {
+			throw new IllegalArgumentException("A memory mapped tablespace cannot be write-ahead logged.");
+		}
+
+		if (builder.groupCommitWindowMicros < 0 || builder.groupCommitSize < 1) {
+			throw new IllegalArgumentException("The group commit window(" + builder.groupCommitWindowMicros + ") must not be negative and the group commit size(" + builder.groupCommitSize + ") must be positive.");
+		}
+
+		this.bufferPoolSize = builder.bufferPoolSize;
+		this.maxBufferPoolSize = maxBufferPoolSize;
+		this.memoryMapped = builder.memoryMapped;
+		this.mappedSegmentSize = builder.mappedSegmentSize;
+		this.forcePolicy = builder.forcePolicy;
+		this.freeSpaceIndexed = builder.freeSpaceIndexed;
+		this.durability = builder.durability;
+		this.writeAheadLogged = builder.writeAheadLogged;
+		this.groupCommitWindowMicros = builder.groupCommitWindowMicros;
+		this.groupCommitSize = builder.groupCommitSize;
+	}
+
+	public int getBufferPoolSize() {
+		return bufferPoolSize;
+	}
+
+	public int getMaxBufferPoolSize() {
+		return maxBufferPoolSize;
+	}
+
+	public boolean isMemoryMapped() {
+		return memoryMapped;
+	}
+
+	public int getMappedSegmentSize() {
+		return mappedSegmentSize;
+	}
+
+	public ForcePolicy getForcePolicy() {
+		return forcePolicy;
+	}
+
+	public boolean isFreeSpaceIndexed() {
+		return freeSpaceIndexed;
+	}
+
+	public Durability getDurability() {
+		return durability;
+	}
+
+	public boolean isWriteAheadLogged() {
+		return writeAheadLogged;
+	}
+
+	public long getGroupCommitWindowMicros() {
+		return groupCommitWindowMicros;
+	}
+
+	public long getGroupCommitSize() {
+		return groupCommitSize;
+	}
+}
@@ -33,9 +33,20 @@ public interface TablespaceManager {
 	void free(long blockPos);
 	
 	byte[] readBlock(long blockPos);
+
+	//read only the first bytes of the payload of a block
+	byte[] readBlock(long blockPos, int length);
 	
 	void writeBlock(long blockPos, byte[] payload) throws InsufficientPayloadSpaceException;
 	
+	//the next allocated block in the file order, the first one for 0 and -1 past the last one
+	long getNextAllocatedBlockPos(long blockPos);
+
+	//a hint that the blocks in the range are about to be read in the file order
+	void readAhead(long blockPos, long length);
+
+	void sync();
+
 	void close();
 
 	void printFreeListBlock();
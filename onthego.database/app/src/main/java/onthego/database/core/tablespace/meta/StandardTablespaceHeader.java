@@ -4,6 +4,9 @@ public class StandardTablespaceHeader implements TablespaceHeader {
 	
 	public static final int MAGIC_NUMBER_SIZE = 8;
 	
+	//<magic><chunk_size><crc><first_block_pos><first_free_block_pos><table_root_pos><table_meta_info_pos><record_count>
+	public static final int HEADER_SIZE = MAGIC_NUMBER_SIZE + 2 * Integer.BYTES + 4 * Long.BYTES + Integer.BYTES;
+	
 	private byte[] magic;
 	
 	private int chunkSize;
@@ -0,0 +1,509 @@
+package onthego.database.core.tablespace.wal;
+
+import onthego.database.core.tablespace.io.BufferPool;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/*
+ * WriteAheadLog - a redo log shared by the tablespaces of a directory.
+ * A commit appends the images of the dirty pages of a tablespace as a single record and
+ * forces only the log; the pages are written back into the tablespace afterwards without
+ * forcing it. The commits a thread makes within commitAtomically are gathered into one
+ * record covering all of their tablespaces, so a crash keeps either all of them or none.
+ * The buffer pool of a logged tablespace never writes back uncommitted pages,
+ * so replaying the committed records restores every tablespace to its last commit.
+ * Commits arriving together share a single force of the log: the first committer waits
+ * for the force in flight and the group commit window to gather more records, forces
+ * the log once and completes the future every committer of the group waits on.
+ */
+
+public class WriteAheadLog {
+
+	public static final String LOG_FILE_NAME = "onthego.wal";
+
+	//the log is truncated at a checkpoint once it grows beyond this size
+	public static final long DEFAULT_CHECKPOINT_SIZE = 16 * 1024 * 1024;
+
+	private static final Map<Path,WriteAheadLog> openLogs = new HashMap<>();
+
+	//the tablespaces committed by a thread within commitAtomically, which are logged as it returns
+	private static final ThreadLocal<Map<WriteAheadLog,Map<Path,BufferPool>>> atomicCommits = new ThreadLocal<>();
+
+	private final Path directory;
+
+	private final FileChannel channel;
+
+	private final Map<Path,BufferPool> tablespaces = new HashMap<>();
+
+	private int referenceCount = 0;
+
+	private long checkpointSize = DEFAULT_CHECKPOINT_SIZE;
+
+	//how long the first committer of a group waits for others before forcing the log
+	private long groupCommitWindowNanos = 0;
+
+	//a group is forced without waiting out the window once it has logged this many bytes
+	private long groupCommitSize = Long.MAX_VALUE;
+
+	//the bytes ever appended and forced, which keep growing across checkpoints
+	private long appendedBytes = 0;
+
+	private long forcedBytes = 0;
+
+	//the force of the group being gathered, null if no committer is waiting for one
+	private CompletableFuture<Void> pendingForce;
+
+	//a group gathers until the force of the group before it is done
+	private boolean forceInFlight = false;
+
+	//commits between appending their record and writing their pages back
+	private int inFlightCommitCount = 0;
+
+	private boolean checkpointPending = false;
+
+	private long commitCount = 0;
+
+	private long syncCount = 0;
+
+	private long checkpointCount = 0;
+
+	private WriteAheadLog(Path directory) throws IOException {
+		this.directory = directory;
+		this.channel = FileChannel.open(directory.resolve(LOG_FILE_NAME), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		channel.position(channel.size());
+	}
+
+	private static Path getDirectory(Path tsPath) {
+		return tsPath.toAbsolutePath().normalize().getParent();
+	}
+
+	public static WriteAheadLog acquire(Path tsPath) {
+		return acquire(tsPath, 0, Long.MAX_VALUE);
+	}
+
+	//the log of the directory of a tablespace, replaying the log first if it is not open yet
+	//the group commit is set by the tablespace opening the log, and the ones joining it later share it
+	public static synchronized WriteAheadLog acquire(Path tsPath, long groupCommitWindowMicros, long groupCommitSize) {
+		Path directory = getDirectory(tsPath);
+		WriteAheadLog wal = openLogs.get(directory);
+		if (wal == null) {
+			try {
+				recover(directory);
+				wal = new WriteAheadLog(directory);
+				wal.setGroupCommit(groupCommitWindowMicros, groupCommitSize);
+				openLogs.put(directory, wal);
+			} catch (IOException ioe) {
+				throw new WriteAheadLogException(ioe);
+			}
+		}
+
+		wal.referenceCount++;
+		return wal;
+	}
+
+	public synchronized void register(Path tsPath, BufferPool pool) {
+		if (!pool.isNoSteal()) {
+			throw new IllegalArgumentException("The buffer pool of a logged tablespace must not steal dirty pages.");
+		}
+		tablespaces.put(tsPath.toAbsolutePath().normalize(), pool);
+	}
+
+	//a released log is checkpointed, and closed and removed when no tablespace uses it anymore
+	public void release(Path tsPath) {
+		synchronized (WriteAheadLog.class) {
+			synchronized (this) {
+				checkpoint();
+				tablespaces.remove(tsPath.toAbsolutePath().normalize());
+				if (--referenceCount > 0) {
+					return;
+				}
+
+				openLogs.remove(directory);
+				try {
+					channel.close();
+					Files.deleteIfExists(directory.resolve(LOG_FILE_NAME));
+				} catch (IOException ioe) {
+					throw new WriteAheadLogException(ioe);
+				}
+			}
+		}
+	}
+
+	//run the commits of a transaction spanning several tablespaces, logging each log's share of them as one record
+	public static void commitAtomically(Runnable commits) {
+		if (atomicCommits.get() != null) {
+			commits.run();
+			return;
+		}
+
+		Map<WriteAheadLog,Map<Path,BufferPool>> deferredCommits = new LinkedHashMap<>();
+		atomicCommits.set(deferredCommits);
+		try {
+			commits.run();
+		} finally {
+			atomicCommits.remove();
+		}
+
+		deferredCommits.forEach(WriteAheadLog::commit);
+	}
+
+	public void commit(Path tsPath, BufferPool pool) {
+		Map<WriteAheadLog,Map<Path,BufferPool>> deferredCommits = atomicCommits.get();
+		if (deferredCommits != null) {
+			deferredCommits.computeIfAbsent(this, wal -> new LinkedHashMap<>()).put(tsPath.toAbsolutePath().normalize(), pool);
+			return;
+		}
+
+		commit(Collections.singletonMap(tsPath, pool));
+	}
+
+	//<record_length><crc><tablespace_count>(<file_name><file_size><page_size><page_count>(<page_no><page_image>)*)*
+	private void commit(Map<Path,BufferPool> pools) {
+		Map<Path,BufferPool> dirtyPools = new LinkedHashMap<>();
+		pools.forEach((tsPath, pool) -> {
+			if (pool.getDirtyPageCount() > 0) {
+				dirtyPools.put(tsPath, pool);
+			}
+		});
+		if (dirtyPools.isEmpty()) {
+			return;
+		}
+
+		byte[] record = toRecord(dirtyPools);
+		long commitBytes;
+		synchronized (this) {
+			awaitCheckpoint();
+			try {
+				append(record);
+			} catch (IOException ioe) {
+				throw new WriteAheadLogException(ioe);
+			}
+			commitBytes = appendedBytes;
+			++inFlightCommitCount;
+			++commitCount;
+			if (appendedBytes - forcedBytes >= groupCommitSize) {
+				notifyAll();
+			}
+		}
+
+		try {
+			awaitForce(commitBytes);
+			//the committed pages are safe in the log, so they may reach the tablespaces lazily
+			dirtyPools.values().forEach(BufferPool::flush);
+		} finally {
+			synchronized (this) {
+				--inFlightCommitCount;
+				notifyAll();
+			}
+		}
+
+		checkpointIfFull();
+	}
+
+	private synchronized void checkpointIfFull() {
+		awaitCheckpoint();
+		if (getLogSize() >= checkpointSize) {
+			checkpoint();
+		}
+	}
+
+	private byte[] toRecord(Map<Path,BufferPool> pools) {
+		try (ByteArrayOutputStream bout = new ByteArrayOutputStream();
+			 DataOutputStream out = new DataOutputStream(bout)) {
+			out.writeInt(pools.size());
+			for (Map.Entry<Path,BufferPool> entry : pools.entrySet()) {
+				BufferPool pool = entry.getValue();
+				out.writeUTF(entry.getKey().getFileName().toString());
+				out.writeLong(pool.size());
+				out.writeInt(pool.getPageSize());
+				out.writeInt(pool.getDirtyPageCount());
+				pool.forEachDirtyPage((pageNo, data) -> {
+					try {
+						out.writeLong(pageNo);
+						out.write(data);
+					} catch (IOException ioe) {
+						throw new WriteAheadLogException(ioe);
+					}
+				});
+			}
+			out.flush();
+
+			byte[] payload = bout.toByteArray();
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+
+			return ByteBuffer.allocate(2 * Integer.BYTES + payload.length)
+							 .putInt(payload.length)
+							 .putInt((int)crc.getValue())
+							 .put(payload)
+							 .array();
+		} catch (IOException ioe) {
+			throw new WriteAheadLogException(ioe);
+		}
+	}
+
+	private void append(byte[] record) throws IOException {
+		ByteBuffer src = ByteBuffer.wrap(record);
+		while (src.hasRemaining()) {
+			channel.write(src);
+		}
+		appendedBytes += record.length;
+	}
+
+	//returns once the log is forced up to the given bytes, forcing it as the leader of a group if nobody else does
+	private void awaitForce(long commitBytes) {
+		CompletableFuture<Void> groupForce;
+		boolean leader = false;
+		synchronized (this) {
+			if (forcedBytes >= commitBytes) {
+				return;
+			}
+
+			if (pendingForce == null) {
+				pendingForce = new CompletableFuture<>();
+				leader = true;
+			}
+			groupForce = pendingForce;
+		}
+
+		if (leader) {
+			forceGroup(groupForce);
+		}
+
+		try {
+			groupForce.get();
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new WriteAheadLogException(ie);
+		} catch (ExecutionException ee) {
+			throw new WriteAheadLogException(ee.getCause());
+		}
+	}
+
+	private void forceGroup(CompletableFuture<Void> groupForce) {
+		long groupBytes;
+		synchronized (this) {
+			try {
+				while (forceInFlight) {
+					wait();
+				}
+
+				long deadline = System.nanoTime() + groupCommitWindowNanos;
+				long remaining;
+				while (appendedBytes - forcedBytes < groupCommitSize && (remaining = deadline - System.nanoTime()) > 0) {
+					TimeUnit.NANOSECONDS.timedWait(this, remaining);
+				}
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+			}
+
+			//committers arriving from now on gather the next group
+			pendingForce = null;
+			forceInFlight = true;
+			groupBytes = appendedBytes;
+		}
+
+		try {
+			//forced outside of the monitor so that the next group keeps appending meanwhile
+			channel.force(false);
+			synchronized (this) {
+				forcedBytes = Math.max(forcedBytes, groupBytes);
+				++syncCount;
+			}
+			groupForce.complete(null);
+		} catch (IOException ioe) {
+			groupForce.completeExceptionally(ioe);
+		} finally {
+			synchronized (this) {
+				forceInFlight = false;
+				notifyAll();
+			}
+		}
+	}
+
+	//every committed page has been written back, so forcing the tablespaces makes the log unnecessary
+	public synchronized void checkpoint() {
+		awaitCheckpoint();
+		checkpointPending = true;
+		try {
+			//the pages of a commit in flight may not have been written back yet
+			while (inFlightCommitCount > 0) {
+				wait();
+			}
+
+			tablespaces.values().forEach(BufferPool::forceWrittenPages);
+			channel.truncate(0);
+			channel.position(0);
+			++checkpointCount;
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new WriteAheadLogException(ie);
+		} catch (IOException ioe) {
+			throw new WriteAheadLogException(ioe);
+		} finally {
+			checkpointPending = false;
+			notifyAll();
+		}
+	}
+
+	private void awaitCheckpoint() {
+		try {
+			while (checkpointPending) {
+				wait();
+			}
+		} catch (InterruptedException ie) {
+			Thread.currentThread().interrupt();
+			throw new WriteAheadLogException(ie);
+		}
+	}
+
+	//replay the committed records of the log in a directory which is not open in this process
+	public static synchronized void recover(Path directory) {
+		Path logPath = directory.toAbsolutePath().normalize().resolve(LOG_FILE_NAME);
+		if (openLogs.containsKey(logPath.getParent()) || !Files.exists(logPath)) {
+			return;
+		}
+
+		Map<Path,FileChannel> recoveredFiles = new HashMap<>();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(logPath)))) {
+			byte[] payload;
+			while ((payload = readRecord(in)) != null) {
+				replay(logPath.getParent(), payload, recoveredFiles);
+			}
+
+			for (FileChannel fileChannel : recoveredFiles.values()) {
+				fileChannel.force(true);
+			}
+			Files.delete(logPath);
+		} catch (IOException ioe) {
+			throw new WriteAheadLogException(ioe);
+		} finally {
+			for (FileChannel fileChannel : recoveredFiles.values()) {
+				try {
+					fileChannel.close();
+				} catch (IOException ioe) {
+					//nothing to do for a channel failed to close
+				}
+			}
+		}
+	}
+
+	//returns null at the end of the log or at a record torn by a crash
+	private static byte[] readRecord(DataInputStream in) throws IOException {
+		try {
+			int length = in.readInt();
+			int crcValue = in.readInt();
+			if (length < 0) {
+				return null;
+			}
+
+			byte[] payload = new byte[length];
+			in.readFully(payload);
+
+			CRC32 crc = new CRC32();
+			crc.update(payload);
+			return (int)crc.getValue() == crcValue ? payload : null;
+		} catch (EOFException eofe) {
+			return null;
+		}
+	}
+
+	//a record is replayed only as a whole, since its checksum covers every tablespace of it
+	private static void replay(Path directory, byte[] payload, Map<Path,FileChannel> recoveredFiles) throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+		int tablespaceCount = in.readInt();
+		for (int i = 0; i < tablespaceCount; ++i) {
+			replayTablespace(directory, in, recoveredFiles);
+		}
+	}
+
+	private static void replayTablespace(Path directory, DataInputStream in, Map<Path,FileChannel> recoveredFiles) throws IOException {
+		Path tsPath = directory.resolve(in.readUTF());
+		long fileSize = in.readLong();
+		int pageSize = in.readInt();
+		int pageCount = in.readInt();
+
+		//a tablespace dropped after the commit is not brought back, but its pages are still read past
+		FileChannel fileChannel = recoveredFiles.get(tsPath);
+		if (fileChannel == null && Files.exists(tsPath)) {
+			fileChannel = FileChannel.open(tsPath, StandardOpenOption.WRITE);
+			recoveredFiles.put(tsPath, fileChannel);
+		}
+
+		byte[] page = new byte[pageSize];
+		for (int i = 0; i < pageCount; ++i) {
+			long pagePos = in.readLong() * pageSize;
+			in.readFully(page);
+			if (fileChannel == null) {
+				continue;
+			}
+
+			int length = (int)Math.min(pageSize, fileSize - pagePos);
+			ByteBuffer src = ByteBuffer.wrap(page, 0, Math.max(length, 0));
+			while (src.hasRemaining()) {
+				fileChannel.write(src, pagePos + src.position());
+			}
+		}
+	}
+
+	public synchronized long getLogSize() {
+		try {
+			return channel.size();
+		} catch (IOException ioe) {
+			throw new WriteAheadLogException(ioe);
+		}
+	}
+
+	public synchronized void setCheckpointSize(long checkpointSize) {
+		this.checkpointSize = checkpointSize;
+	}
+
+	//a window of zero forces the log as soon as a group has a committer
+	public synchronized void setGroupCommit(long windowMicros, long size) {
+		this.groupCommitWindowNanos = TimeUnit.MICROSECONDS.toNanos(windowMicros);
+		this.groupCommitSize = size;
+	}
+
+	public synchronized long getGroupCommitWindowMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(groupCommitWindowNanos);
+	}
+
+	public synchronized long getGroupCommitSize() {
+		return groupCommitSize;
+	}
+
+	public Path getDirectory() {
+		return directory;
+	}
+
+	public synchronized long getCommitCount() {
+		return commitCount;
+	}
+
+	public synchronized long getSyncCount() {
+		return syncCount;
+	}
+
+	public synchronized long getCheckpointCount() {
+		return checkpointCount;
+	}
+}
@@ -0,0 +1,24 @@
+package onthego.database.core.tablespace.wal;
+
+public class WriteAheadLogException extends RuntimeException {
+
+	public WriteAheadLogException() {}
+
+	public WriteAheadLogException(String message) {
+		super(message);
+	}
+
+	public WriteAheadLogException(Throwable cause) {
+		super(cause);
+	}
+
+	public WriteAheadLogException(String message, Throwable cause) {
+		super(message, cause);
+	}
+
+	public WriteAheadLogException(String message, Throwable cause, boolean enableSuppression,
+			boolean writableStackTrace) {
+		super(message, cause, enableSuppression, writableStackTrace);
+	}
+
+}
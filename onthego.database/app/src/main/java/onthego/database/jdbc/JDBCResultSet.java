@@ -4,6 +4,7 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
 import onthego.database.core.table.Cursor;
+import onthego.database.core.table.StandardTableException;
 
 public class JDBCResultSet extends ResultSetAdapter {
 	
@@ -16,9 +17,19 @@ public class JDBCResultSet extends ResultSetAdapter {
 		this.metaData = new JDBCResultSetMetaData(cursor);
 	}
 	
+	//the rows are pulled from the table as the result set moves, so a row failing its filter surfaces here
 	@Override
 	public boolean next() throws SQLException {
-		return cursor.next();
+		try {
+			return cursor.next();
+		} catch (StandardTableException e) {
+			throw new SQLException(e.getMessage(), e);
+		}
+	}
+	
+	@Override
+	public void close() throws SQLException {
+		cursor.close();
 	}
 	
 	@Override
@@ -33,32 +44,42 @@ public class JDBCResultSet extends ResultSetAdapter {
 	
 	@Override
 	public int getInt(int columnIndex) throws SQLException {
-		return Integer.parseInt(cursor.getColumn(columnIndex));
+		return (int)cursor.getLong(columnIndex);
 	}
 
 	@Override
 	public int getInt(String columnLabel) throws SQLException {
-		return Integer.parseInt(cursor.getColumn(columnLabel));
+		return (int)cursor.getLong(columnLabel);
 	}
 	
 	@Override
 	public long getLong(int columnIndex) throws SQLException {
-		return Long.parseLong(cursor.getColumn(columnIndex));
+		return cursor.getLong(columnIndex);
 	}
 
 	@Override
 	public long getLong(String columnLabel) throws SQLException {
-		return Long.parseLong(cursor.getColumn(columnLabel));
+		return cursor.getLong(columnLabel);
 	}
 	
 	@Override
 	public double getDouble(int columnIndex) throws SQLException {
-		return Double.parseDouble(cursor.getColumn(columnIndex));
+		return cursor.getDouble(columnIndex);
 	}
 
 	@Override
 	public double getDouble(String columnLabel) throws SQLException {
-		return Double.parseDouble(cursor.getColumn(columnLabel));
+		return cursor.getDouble(columnLabel);
+	}
+	
+	@Override
+	public boolean getBoolean(int columnIndex) throws SQLException {
+		return cursor.getBoolean(columnIndex);
+	}
+
+	@Override
+	public boolean getBoolean(String columnLabel) throws SQLException {
+		return cursor.getBoolean(columnLabel);
 	}
 
 	@Override
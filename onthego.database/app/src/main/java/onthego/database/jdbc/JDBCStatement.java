@@ -11,6 +11,9 @@ public class JDBCStatement extends StatementAdapter {
 	
 	private final Database database;
 	
+	//zero stands for no limit as jdbc defines it
+	private int maxRows = 0;
+	
 	public JDBCStatement(Database database) {
 		this.database = database;
 	}
@@ -19,7 +22,7 @@ public class JDBCStatement extends StatementAdapter {
 	public ResultSet executeQuery(String sql) throws SQLException {
 		Table resultTable;
 		try {
-			resultTable = database.execute(sql);
+			resultTable = database.execute(sql, (maxRows == 0) ? Table.NO_LIMIT : maxRows);
 		} catch (DatabaseException e) {
 			throw new SQLException(e.getMessage());
 		}
@@ -35,4 +38,17 @@ public class JDBCStatement extends StatementAdapter {
 		}
 		return database.getAffectedRowCount();
 	}
+
+	@Override
+	public int getMaxRows() throws SQLException {
+		return maxRows;
+	}
+
+	@Override
+	public void setMaxRows(int max) throws SQLException {
+		if (max < 0) {
+			throw new SQLException(max + " is not a valid row count.");
+		}
+		this.maxRows = max;
+	}
 }
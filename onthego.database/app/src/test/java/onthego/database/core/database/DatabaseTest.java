@@ -9,19 +9,26 @@ import onthego.database.core.table.StandardTable;
 import onthego.database.core.table.Table;
 import onthego.database.core.table.meta.ColumnMeta;
 import onthego.database.core.table.meta.TypeConstants;
+import onthego.database.core.tablespace.wal.WriteAheadLog;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import java.io.IOException;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -45,6 +52,11 @@ public class DatabaseTest {
 	public void tearDown() throws Exception {
 		database.close();
 		Files.deleteIfExists(tablePath);
+		try (DirectoryStream<Path> indexPaths = Files.newDirectoryStream(databasePath, "*.idx")) {
+			for (Path indexPath : indexPaths) {
+				Files.delete(indexPath);
+			}
+		}
 		Files.deleteIfExists(databasePath);
 	}
 
@@ -371,6 +383,199 @@ public class DatabaseTest {
 		assertFalse(cursor.next());
 	}
 
+	//a statement outside of a transaction is committed through the log, so the files left by a crash right after it hold its record
+	@Test
+	public void testAutoCommit() throws DatabaseException, IOException {
+		database.execute("create table product(serial_no integer(10), name char(30), price numeric(10,3))");
+		for (int i = 1; i <= 100; ++i) {
+			database.execute("insert into product(serial_no, name, price) values(" + i + ", 'item" + i + "', " + i + ".5)");
+		}
+		database.execute("delete from product where serial_no > 90");
+		database.execute("update product set price = 0 where serial_no = 5");
+		
+		Path crashedPath = Paths.get(".", "onthego-crashed");
+		Files.createDirectory(crashedPath);
+		try {
+			try (DirectoryStream<Path> paths = Files.newDirectoryStream(databasePath)) {
+				for (Path path : paths) {
+					Files.copy(path, crashedPath.resolve(path.getFileName()));
+				}
+			}
+			
+			database.close();
+			database = new Database(crashedPath.toString());
+			assertSerialNumbers("select * from product where serial_no > 85", 86, 87, 88, 89, 90);
+			assertSerialNumbers("select * from product where price = 0", 5);
+			database.close();
+		} finally {
+			try (DirectoryStream<Path> paths = Files.newDirectoryStream(crashedPath)) {
+				for (Path path : paths) {
+					Files.delete(path);
+				}
+			}
+			Files.delete(crashedPath);
+			database = new Database(databasePath.toString());
+		}
+	}
+	
+	@Test
+	public void testGroupCommit() throws DatabaseException {
+		database.close();
+		database = new Database(databasePath.toString(), DatabaseConfig.builder().groupCommitWindowMicros(500).groupCommitSize(4096).build());
+		createTable();
+		
+		WriteAheadLog wal = WriteAheadLog.acquire(tablePath);
+		assertEquals(500, wal.getGroupCommitWindowMicros());
+		assertEquals(4096, wal.getGroupCommitSize());
+		wal.release(tablePath);
+	}
+	
+	//the records deleted and restored by a rollback move to the end of the table, so the order is not compared
+	private void assertSerialNumbers(String query, int... expected) throws DatabaseException {
+		Cursor cursor = database.execute(query).getCursor();
+		List<Integer> serialNumbers = new ArrayList<>();
+		while (cursor.next()) {
+			serialNumbers.add(Integer.parseInt(cursor.getColumn("serial_no")));
+		}
+		Collections.sort(serialNumbers);
+		assertEquals(Arrays.stream(expected).boxed().collect(Collectors.toList()), serialNumbers);
+	}
+
+	@Test
+	public void testIndex() throws DatabaseException {
+		createTable();
+		for (int i = 1; i <= 50; ++i) {
+			database.execute("insert into product(serial_no, name, price) values(" + i + ", 'item" + (i % 5) + "', " + i + ".5)");
+		}
+		
+		database.execute("create index product_serial_no on product(serial_no)");
+		database.execute("create index product_name on product(name)");
+		assertTrue(Files.exists(databasePath.resolve("product.product_name.idx")));
+		
+		database.begin();
+		database.execute("insert into product(serial_no, name, price) values(51, 'item1', 51.5)");
+		database.execute("update product set serial_no = 100 where serial_no = 10");
+		database.execute("delete from product where name = 'item2'");
+		
+		assertSerialNumbers("select * from product where serial_no >= 8 and 14 > serial_no", 8, 9, 11, 13);
+		assertSerialNumbers("select * from product where serial_no = 100", 100);
+		assertSerialNumbers("select * from product where serial_no = 10");
+		assertSerialNumbers("select * from product where name = 'item1' and serial_no > 40", 41, 46, 51);
+		assertSerialNumbers("select * from product where name = 'item2' or serial_no < 3", 1);
+		
+		database.rollback();
+		assertSerialNumbers("select * from product where serial_no > 8.5 and serial_no <= 12", 9, 10, 11, 12);
+		assertSerialNumbers("select * from product where name = 'item1' and serial_no > 40", 41, 46);
+		
+		database.close();
+		database = new Database(databasePath.toString());
+		assertSerialNumbers("select * from product where name = 'item2' and serial_no < 20", 2, 7, 12, 17);
+		
+		database.execute("drop index product_name");
+		database.execute("drop index product_serial_no on product");
+		assertFalse(Files.exists(databasePath.resolve("product.product_name.idx")));
+		assertFalse(Files.exists(databasePath.resolve("product.product_serial_no.idx")));
+		assertSerialNumbers("select * from product where serial_no = 50", 50);
+	}
+	
+	@Test
+	public void testHashIndex() throws DatabaseException {
+		createTable();
+		for (int i = 1; i <= 50; ++i) {
+			database.execute("insert into product(serial_no, name, price) values(" + i + ", 'item" + (i % 5) + "', " + i + ".5)");
+		}
+		
+		database.execute("create index product_serial_no on product using hash (serial_no)");
+		database.execute("create index product_name on product(name) using hash");
+		
+		database.begin();
+		database.execute("update product set serial_no = 100 where serial_no = 10");
+		database.execute("delete from product where name = 'item2'");
+		
+		assertSerialNumbers("select * from product where serial_no = 100.0", 100);
+		assertSerialNumbers("select * from product where serial_no = 10");
+		assertSerialNumbers("select * from product where serial_no = 12");
+		assertSerialNumbers("select * from product where name = 'item1' and serial_no > 35", 36, 41, 46);
+		assertSerialNumbers("select * from product where serial_no >= 8 and serial_no < 12", 8, 9, 11);
+		
+		database.rollback();
+		database.close();
+		database = new Database(databasePath.toString());
+		assertSerialNumbers("select * from product where serial_no = 10", 10);
+		assertSerialNumbers("select * from product where name = 'item2' and serial_no < 20", 2, 7, 12, 17);
+		
+		database.dropTable(tableName);
+	}
+	
+	@Test
+	public void testConstraints() throws DatabaseException {
+		database.execute("create table product(serial_no integer(10) primary key, name char(30) unique, price numeric(10,3))");
+		assertTrue(Files.exists(databasePath.resolve("product.product_pkey.idx")));
+		assertTrue(Files.exists(databasePath.resolve("product.product_name_key.idx")));
+		
+		for (int i = 1; i <= 20; ++i) {
+			database.execute("insert into product(serial_no, name, price) values(" + i + ", 'item" + i + "', " + i + ".5)");
+		}
+		database.execute("insert into product(serial_no, price) values(21, 21.5)");
+		database.execute("insert into product(serial_no, price) values(22, 22.5)");
+		
+		assertThrows(DatabaseException.class, () -> database.execute("insert into product(serial_no, name, price) values(5, 'item100', 1.5)"));
+		assertThrows(DatabaseException.class, () -> database.execute("insert into product(serial_no, name, price) values(100, 'item5', 1.5)"));
+		assertThrows(DatabaseException.class, () -> database.execute("insert into product(name, price) values('item100', 1.5)"));
+		assertThrows(DatabaseException.class, () -> database.execute("update product set serial_no = 3 where serial_no = 4"));
+		assertThrows(DatabaseException.class, () -> database.execute("drop index product_pkey"));
+		
+		database.execute("update product set serial_no = 40 where serial_no = 4");
+		database.execute("update product set name = 'item4' where serial_no = 40");
+		assertSerialNumbers("select * from product where serial_no = 40", 40);
+		assertSerialNumbers("select * from product where serial_no = 4");
+		assertSerialNumbers("select * from product where name = 'item7'", 7);
+		
+		database.close();
+		database = new Database(databasePath.toString());
+		assertThrows(DatabaseException.class, () -> database.execute("insert into product(serial_no, name, price) values(40, 'item100', 1.5)"));
+		database.execute("delete from product where serial_no = 40");
+		database.execute("insert into product(serial_no, name, price) values(40, 'item100', 1.5)");
+		assertSerialNumbers("select * from product where serial_no >= 19 and serial_no < 50", 19, 20, 21, 22, 40);
+		
+		database.dropTable(tableName);
+		assertFalse(Files.exists(databasePath.resolve("product.product_pkey.idx")));
+	}
+	
+	@Test
+	public void testOrderBy() throws DatabaseException, IOException {
+		database.close();
+		database = new Database(databasePath.toString(), DatabaseConfig.builder().sortMemorySize(512).build());
+		createTable();
+		for (int i = 0; i < 200; ++i) {
+			int serialNo = i * 37 % 200;
+			database.execute("insert into product(serial_no, name, price) values(" + serialNo + ", 'item" + (serialNo % 3) + "', " + serialNo + ".5)");
+		}
+		
+		assertOrderedSerialNumbers("select serial_no from product order by serial_no desc limit 5", 199, 198, 197, 196, 195);
+		assertOrderedSerialNumbers("select * from product where serial_no < 10 order by name, serial_no desc", 9, 6, 3, 0, 7, 4, 1, 8, 5, 2);
+		assertOrderedSerialNumbers("select * from product where price > 180 order by price limit 3 offset 2", 182, 183, 184);
+		try (DirectoryStream<Path> runPaths = Files.newDirectoryStream(databasePath, "*.sort")) {
+			assertFalse(runPaths.iterator().hasNext());
+		}
+		
+		database.execute("create index product_serial_no on product(serial_no)");
+		assertOrderedSerialNumbers("select * from product where serial_no >= 100 order by serial_no limit 3 offset 2", 102, 103, 104);
+		assertOrderedSerialNumbers("select * from product where serial_no < 190 order by serial_no desc limit 3", 189, 188, 187);
+		assertOrderedSerialNumbers("select * from product where serial_no < 10 order by name, serial_no desc", 9, 6, 3, 0, 7, 4, 1, 8, 5, 2);
+		
+		assertThrows(DatabaseException.class, () -> database.execute("select * from product order by weight"));
+	}
+	
+	private void assertOrderedSerialNumbers(String query, int... expected) throws DatabaseException {
+		Cursor cursor = database.execute(query).getCursor();
+		List<Integer> serialNumbers = new ArrayList<>();
+		while (cursor.next()) {
+			serialNumbers.add(Integer.parseInt(cursor.getColumn("serial_no")));
+		}
+		assertEquals(Arrays.stream(expected).boxed().collect(Collectors.toList()), serialNumbers);
+	}
+
 	@Test
 	public void testExecute() throws DatabaseException {
 		String query = "create table product("
@@ -444,17 +649,18 @@ public class DatabaseTest {
         assertEquals("smartphone", it.next());
         assertEquals("200.1", it.next());
 
-        assertTrue(cursor.next());
-        it = cursor.getRecord();
-        assertEquals("300", it.next());
-        assertEquals("notebook", it.next());
-        assertEquals("800.3", it.next());
-		
+		//the grown record stays in its page, so the records keep their order
 		assertTrue(cursor.next());
 		it = cursor.getRecord();
 		assertEquals("200", it.next());
 		assertEquals("the-state-of-art tablet/pad", it.next());
 		assertEquals("400.2", it.next());
+
+        assertTrue(cursor.next());
+        it = cursor.getRecord();
+        assertEquals("300", it.next());
+        assertEquals("notebook", it.next());
+        assertEquals("800.3", it.next());
 		
 		query = "delete from product where serial_no = 200";
 		database.execute(query);
@@ -0,0 +1,161 @@
+package onthego.database.core.index;
+
+import onthego.database.core.serializer.LongSerializer;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BPlusTreeIndexTest {
+
+	private static final int BTREE_THRESHOLD = 3;
+
+	private static final int KEY_COUNT = 3000;
+
+	private final Path tsPath = Paths.get("./bplus_tree_index.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	private TablespaceManager createTablespace() throws IOException {
+		return StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+	}
+
+	private void checkRange(BPlusTreeIndex<Long> btree, TreeMap<Long,Long> expected, Long from, Long to) {
+		NavigableMap<Long,Long> subMap = expected;
+		if (from != null) {
+			subMap = subMap.tailMap(from, true);
+		}
+		if (to != null) {
+			subMap = subMap.headMap(to, false);
+		}
+
+		BPlusTreeIndex<Long>.RangeIterator it = btree.range(from, to);
+		for (Map.Entry<Long,Long> entry : subMap.entrySet()) {
+			assertTrue(it.hasNext());
+			assertEquals(entry.getKey(), it.next());
+			assertEquals((long)entry.getValue(), it.getRecordPos());
+		}
+		assertFalse(it.hasNext());
+	}
+
+	private void checkKeys(BPlusTreeIndex<Long> btree, TreeMap<Long,Long> expected) {
+		checkRange(btree, expected, null, null);
+		for (Map.Entry<Long,Long> entry : expected.entrySet()) {
+			assertEquals((long)entry.getValue(), btree.search(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void testRandomInsertAndDelete() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		BPlusTreeIndex<Long> btree = new BPlusTreeIndex<>(BTREE_THRESHOLD, new LongSerializer(), tsManager, new NodeCache(4096));
+
+		Random random = new Random(11);
+		TreeMap<Long,Long> expected = new TreeMap<>();
+		while (expected.size() < KEY_COUNT) {
+			long key = random.nextInt(100000) - 50000;
+			if (!expected.containsKey(key)) {
+				btree.insert(key, key + 100000);
+				expected.put(key, key + 100000);
+			}
+		}
+		checkKeys(btree, expected);
+		assertThrows(BTreeIndexException.class, () -> btree.insert(expected.firstKey(), 0L));
+
+		Long[] keys = expected.keySet().toArray(new Long[0]);
+		for (int i = 0; i < keys.length; i += 3) {
+			assertTrue(btree.delete(keys[i]));
+			expected.remove(keys[i]);
+		}
+		assertFalse(btree.delete(keys[0]));
+		assertEquals(-1, btree.search(keys[0]));
+		checkKeys(btree, expected);
+		assertEquals(expected.firstKey(), btree.first());
+		assertEquals(expected.lastKey(), btree.last());
+
+		btree.close();
+		tsManager.close();
+
+		tsManager = StandardTablespaceManager.load(tsPath);
+		BPlusTreeIndex<Long> reloaded = new BPlusTreeIndex<>(BTREE_THRESHOLD, new LongSerializer(), tsManager);
+		checkKeys(reloaded, expected);
+
+		for (long key : expected.keySet()) {
+			assertTrue(reloaded.delete(key));
+		}
+		assertFalse(reloaded.iterator().hasNext());
+		assertNull(reloaded.first());
+		reloaded.close();
+		tsManager.close();
+	}
+
+	@Test
+	public void testSeekAndRange() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		BPlusTreeIndex<Long> btree = new BPlusTreeIndex<>(BTREE_THRESHOLD, new LongSerializer(), tsManager);
+
+		TreeMap<Long,Long> expected = new TreeMap<>();
+		for (long key = 0; key < KEY_COUNT; ++key) {
+			btree.insert(key * 10, key);
+			expected.put(key * 10, key);
+		}
+
+		BPlusTreeIndex<Long>.RangeIterator it = btree.seek(15L);
+		assertEquals((Long)20L, it.next());
+		assertEquals(2L, it.getRecordPos());
+		it.close();
+		assertFalse(it.hasNext());
+		assertThrows(NoSuchElementException.class, it::next);
+
+		assertFalse(btree.seek(KEY_COUNT * 10L).hasNext());
+		assertFalse(btree.range(500L, 500L).hasNext());
+		checkRange(btree, expected, 500L, 12345L);
+		checkRange(btree, expected, -10L, 35L);
+		checkRange(btree, expected, null, 95L);
+		checkRange(btree, expected, 29985L, null);
+
+		btree.close();
+		tsManager.close();
+	}
+
+	@Test
+	public void testEmptyIndex() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		BPlusTreeIndex<Long> btree = new BPlusTreeIndex<>(BTREE_THRESHOLD, new LongSerializer(), tsManager);
+
+		assertFalse(btree.iterator().hasNext());
+		assertFalse(btree.seek(0L).hasNext());
+		assertNull(btree.first());
+		assertNull(btree.last());
+		assertFalse(btree.contains(0L));
+		assertFalse(btree.delete(0L));
+		btree.close();
+		tsManager.close();
+	}
+}
@@ -1,6 +1,8 @@
 package onthego.database.core.index;
 
+import onthego.database.core.serializer.FrontCodingSerializer;
 import onthego.database.core.serializer.IntegerSerializer;
+import onthego.database.core.serializer.Serializer;
 import onthego.database.core.tablespace.manager.StandardTablespaceManager;
 import onthego.database.core.tablespace.manager.TablespaceManager;
 import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
@@ -8,13 +10,24 @@ import onthego.database.core.tablespace.meta.TablespaceHeader;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.TreeMap;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -176,6 +189,60 @@ public class BTreeIndexTest {
 		}
 	}
 
+	@Test
+	public void testCompactNodeFormat() {
+		createBTreeIndexWithData();
+		btree.flush();
+		
+		//a full node of the fixed format holds 2t-1 keys and record positions and 2t child positions
+		int fixedNodeSize = 1 + Integer.BYTES + (2*BTREE_THRESHOLD - 1) * (Integer.BYTES + Long.BYTES) + 2*BTREE_THRESHOLD * Long.BYTES;
+		assertTrue(tsManager.readBlock(tsManager.getRootPos()).length < fixedNodeSize / 2);
+		
+		btree = new BTreeIndex<>(BTREE_THRESHOLD, new IntegerSerializer(), tsManager, new NodeCache());
+		int key = MIN_KEY_VALUE;
+		Iterator<Integer> it = btree.iterator();
+		while (it.hasNext()) {
+			assertEquals(key++, (int) it.next());
+		}
+		assertEquals(MAX_KEY_VALUE + 1, key);
+	}
+	
+	@Test
+	public void testReadFixedFormatNode() throws IOException {
+		createSingleTablespace();
+		
+		int keyCount = 3;
+		ByteBuffer payload = ByteBuffer.allocate(1 + Integer.BYTES + (2*BTREE_THRESHOLD - 1) * (Integer.BYTES + Long.BYTES) + 2*BTREE_THRESHOLD * Long.BYTES);
+		payload.put((byte)1).putInt(keyCount);
+		for (int i = 0; i < 2*BTREE_THRESHOLD - 1; ++i) {
+			payload.putInt(i < keyCount ? (i + 1) * 10 : 0);
+		}
+		for (int i = 0; i < 2*BTREE_THRESHOLD - 1; ++i) {
+			payload.putLong(i < keyCount ? (i + 1) * 100 : 0);
+		}
+		
+		long rootPos = tsManager.allocate(payload.capacity());
+		tsManager.writeBlock(rootPos, payload.array());
+		tsManager.saveRootPos(rootPos);
+		
+		btree = new BTreeIndex<>(BTREE_THRESHOLD, new IntegerSerializer(), tsManager);
+		assertTrue(btree.contains(10));
+		assertTrue(btree.contains(30));
+		assertFalse(btree.contains(0));
+		
+		//the node is rewritten in the compact format into its block
+		btree.insert(20 + 5, 250);
+		btree.close();
+		assertEquals(rootPos, tsManager.getRootPos());
+		
+		btree = new BTreeIndex<>(BTREE_THRESHOLD, new IntegerSerializer(), tsManager);
+		Iterator<Integer> it = btree.iterator();
+		for (int key : new int[]{10, 20, 25, 30}) {
+			assertEquals(key, (int) it.next());
+		}
+		assertFalse(it.hasNext());
+	}
+
 	@Test
 	public void testIterator() {
 		createBTreeIndexWithData();
@@ -187,6 +254,131 @@ public class BTreeIndexTest {
 		}
 	}
 
+	@Test
+	public void testBulkLoad() throws IOException {
+		int threshold = 3;
+		for (int keyCount : new int[]{0, 1, 5, 6, 7, 29, 30, 31, MAX_KEY_VALUE}) {
+			createSingleTablespace();
+			btree = new BTreeIndex<>(threshold, new IntegerSerializer(), tsManager);
+
+			Map<Integer,Long> entries = new TreeMap<>();
+			for (int key = 1; key <= keyCount; ++key) {
+				entries.put(key * 2, (long)key + 1);
+			}
+			btree.bulkLoad(entries.entrySet().iterator());
+			btree.close();
+
+			btree = new BTreeIndex<>(threshold, new IntegerSerializer(), tsManager);
+			Iterator<Integer> it = btree.iterator();
+			for (int key : entries.keySet()) {
+				assertEquals(key, (int)it.next());
+			}
+			assertFalse(it.hasNext());
+
+			//every node holds enough keys for insertions and deletions to keep the tree balanced
+			btree.insert(3, 3);
+			assertTrue(btree.contains(3));
+			assertTrue(btree.delete(3));
+
+			Random random = new Random(keyCount);
+			List<Integer> keys = new ArrayList<>(entries.keySet());
+			Collections.shuffle(keys, random);
+			for (int key : keys) {
+				assertTrue(btree.delete(key));
+				assertFalse(btree.contains(key));
+			}
+			assertFalse(btree.iterator().hasNext());
+		}
+	}
+
+	@Test
+	public void testBulkLoadUnsortedEntries() {
+		createBTreeIndex();
+
+		Map<Integer,Long> entries = new LinkedHashMap<>();
+		entries.put(2, 2L);
+		entries.put(1, 1L);
+		assertThrows(BTreeIndexException.class, () -> btree.bulkLoad(entries.entrySet().iterator()));
+
+		btree.insert(1, 1);
+		assertThrows(BTreeIndexException.class, () -> btree.bulkLoad(Collections.singletonMap(2, 2L).entrySet().iterator()));
+	}
+
+	private static class StringSerializer implements Serializer<String> {
+		@Override
+		public void write(DataOutputStream out, String obj) throws IOException {
+			out.writeUTF(obj);
+		}
+
+		@Override
+		public String read(DataInputStream in) throws IOException {
+			return in.readUTF();
+		}
+
+		@Override
+		public long estimateSize(String obj) {
+			return 32;
+		}
+	}
+
+	private static class FrontCodedStringSerializer extends StringSerializer implements FrontCodingSerializer<String> {
+		@Override
+		public void writeFrontCoded(DataOutputStream out, String obj) throws IOException {
+			out.write(obj.getBytes(StandardCharsets.UTF_8));
+		}
+
+		@Override
+		public String readFrontCoded(byte[] form, int offset, int length) {
+			return new String(form, offset, length, StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	public void testFrontCodedKeys() throws IOException {
+		List<String> keys = new ArrayList<>();
+		for (int i = 0; i < MAX_KEY_VALUE; ++i) {
+			keys.add(String.format("https://example.com/products/category/%05d", i));
+		}
+		keys.add("");
+		keys.add("https://example.com/");
+		Collections.shuffle(keys, new Random(20));
+
+		long[] tablespaceSizes = new long[2];
+		Serializer<?>[] serializers = {new StringSerializer(), new FrontCodedStringSerializer()};
+		for (int s = 0; s < serializers.length; ++s) {
+			@SuppressWarnings("unchecked")
+			Serializer<String> serializer = (Serializer<String>)serializers[s];
+			createSingleTablespace();
+			BTreeIndex<String> index = new BTreeIndex<>(BTREE_THRESHOLD, serializer, tsManager);
+			for (int i = 0; i < keys.size(); ++i) {
+				index.insert(keys.get(i), i);
+			}
+			index.close();
+			tsManager.close();
+			tablespaceSizes[s] = new File(TABLESPACE_PATH).length();
+			tsManager = StandardTablespaceManager.load(TABLESPACE_PATH);
+
+			index = new BTreeIndex<>(BTREE_THRESHOLD, serializer, tsManager);
+			List<String> sorted = new ArrayList<>(keys);
+			Collections.sort(sorted);
+			Iterator<String> it = index.iterator();
+			for (String key : sorted) {
+				assertEquals(key, it.next());
+			}
+			assertFalse(it.hasNext());
+
+			for (int i = 0; i < keys.size(); i += 2) {
+				assertTrue(index.delete(keys.get(i)));
+			}
+			for (int i = 0; i < keys.size(); ++i) {
+				assertEquals(i % 2 == 1, index.contains(keys.get(i)));
+			}
+		}
+
+		//the nodes store the url prefix once
+		assertTrue(tablespaceSizes[1] < tablespaceSizes[0] * 3 / 4);
+	}
+
 	private void printLevelOrder() {
 		System.out.println("Print Level Order => ");
 		btree.printLevelOrder();
@@ -0,0 +1,107 @@
+package onthego.database.core.index;
+
+import onthego.database.core.serializer.LongSerializer;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HashIndexTest {
+
+	private static final int BUCKET_CAPACITY = 4;
+
+	private static final int KEY_COUNT = 3000;
+
+	private final Path tsPath = Paths.get("./hash_index.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	private TablespaceManager createTablespace() throws IOException {
+		return StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+	}
+
+	private void checkKeys(HashIndex<Long> index, Map<Long,List<Long>> expected) {
+		for (Map.Entry<Long,List<Long>> entry : expected.entrySet()) {
+			long[] recordPositions = index.search(entry.getKey());
+			Arrays.sort(recordPositions);
+			assertArrayEquals(entry.getValue().stream().sorted().mapToLong(Long::longValue).toArray(), recordPositions);
+			assertEquals(!entry.getValue().isEmpty(), index.contains(entry.getKey()));
+		}
+	}
+
+	@Test
+	public void testRandomInsertAndDelete() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		HashIndex<Long> index = new HashIndex<>(BUCKET_CAPACITY, new LongSerializer(), tsManager);
+
+		Random random = new Random(19);
+		Map<Long,List<Long>> expected = new HashMap<>();
+		for (long recordPos = 1; recordPos <= KEY_COUNT; ++recordPos) {
+			long key = random.nextInt(KEY_COUNT / 2);
+			index.insert(key, recordPos);
+			expected.computeIfAbsent(key, k -> new ArrayList<>()).add(recordPos);
+		}
+		assertTrue(index.getGlobalDepth() > 0);
+		checkKeys(index, expected);
+
+		for (Map.Entry<Long,List<Long>> entry : expected.entrySet()) {
+			List<Long> recordPositions = entry.getValue();
+			for (int i = recordPositions.size() - 1; i >= 0; i -= 2) {
+				assertTrue(index.delete(entry.getKey(), recordPositions.remove(i)));
+			}
+		}
+		assertFalse(index.delete(-1L, 1));
+		checkKeys(index, expected);
+
+		index.close();
+		tsManager.close();
+
+		tsManager = StandardTablespaceManager.load(tsPath);
+		assertTrue(HashIndex.isHashIndex(tsManager));
+		index = new HashIndex<>(BUCKET_CAPACITY, new LongSerializer(), tsManager);
+		checkKeys(index, expected);
+		tsManager.close();
+	}
+
+	@Test
+	public void testManyRecordsOfOneKey() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		HashIndex<Long> index = new HashIndex<>(BUCKET_CAPACITY, new LongSerializer(), tsManager);
+
+		//the bucket of a single key cannot split, so it grows into larger blocks
+		for (long recordPos = 1; recordPos <= 500; ++recordPos) {
+			index.insert(7L, recordPos);
+		}
+		index.insert(8L, 501);
+		assertEquals(500, index.search(7L).length);
+		assertArrayEquals(new long[]{501}, index.search(8L));
+		assertFalse(index.contains(9L));
+		tsManager.close();
+	}
+}
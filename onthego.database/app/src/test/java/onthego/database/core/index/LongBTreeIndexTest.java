@@ -0,0 +1,142 @@
+package onthego.database.core.index;
+
+import onthego.database.core.serializer.LongSerializer;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LongBTreeIndexTest {
+
+	private static final int BTREE_THRESHOLD = 4;
+
+	private static final int KEY_COUNT = 3000;
+
+	private final Path tsPath = Paths.get("./long_btree_index.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	private TablespaceManager createTablespace() throws IOException {
+		return StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+	}
+
+	private void checkKeys(LongBTreeIndex btree, TreeMap<Long,Long> expected) {
+		PrimitiveIterator.OfLong it = btree.iterator();
+		for (long key : expected.keySet()) {
+			assertTrue(it.hasNext());
+			assertEquals(key, it.nextLong());
+			assertEquals((long)expected.get(key), btree.search(key));
+		}
+		assertFalse(it.hasNext());
+	}
+
+	@Test
+	public void testRandomInsertAndDelete() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		LongBTreeIndex btree = new LongBTreeIndex(BTREE_THRESHOLD, tsManager, new NodeCache(4096));
+
+		Random random = new Random(7);
+		TreeMap<Long,Long> expected = new TreeMap<>();
+		while (expected.size() < KEY_COUNT) {
+			//negative keys and large gaps exercise the zigzag deltas
+			long key = random.nextLong() >> random.nextInt(64);
+			if (!expected.containsKey(key)) {
+				btree.insert(key, key ^ 0x5555L);
+				expected.put(key, key ^ 0x5555L);
+			}
+		}
+		checkKeys(btree, expected);
+		assertThrows(BTreeIndexException.class, () -> btree.insert(expected.firstKey(), 0));
+
+		Long[] keys = expected.keySet().toArray(new Long[0]);
+		for (int i = 0; i < keys.length; i += 2) {
+			assertTrue(btree.delete(keys[i]));
+			expected.remove(keys[i]);
+		}
+		assertFalse(btree.delete(keys[0]));
+		checkKeys(btree, expected);
+		assertEquals((long)expected.firstKey(), btree.first().getAsLong());
+		assertEquals((long)expected.lastKey(), btree.last().getAsLong());
+
+		btree.close();
+		tsManager.close();
+
+		tsManager = StandardTablespaceManager.load(tsPath);
+		LongBTreeIndex reloaded = new LongBTreeIndex(BTREE_THRESHOLD, tsManager);
+		checkKeys(reloaded, expected);
+
+		for (long key : expected.keySet()) {
+			assertTrue(reloaded.delete(key));
+		}
+		assertFalse(reloaded.iterator().hasNext());
+		assertFalse(reloaded.first().isPresent());
+		reloaded.close();
+		tsManager.close();
+	}
+
+	@Test
+	public void testReadBTreeIndexOfLongKeys() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		BTreeIndex<Long> generic = new BTreeIndex<>(BTREE_THRESHOLD, new LongSerializer(), tsManager);
+		for (long key = 1; key <= KEY_COUNT; ++key) {
+			generic.insert(key * 3, key);
+		}
+		generic.close();
+
+		//the nodes written by the generic index are rewritten in the delta format as they change
+		LongBTreeIndex btree = new LongBTreeIndex(BTREE_THRESHOLD, tsManager);
+		for (long key = 1; key <= KEY_COUNT; key += 2) {
+			assertTrue(btree.delete(key * 3));
+		}
+		btree.close();
+
+		btree = new LongBTreeIndex(BTREE_THRESHOLD, tsManager);
+		PrimitiveIterator.OfLong it = btree.iterator();
+		for (long key = 2; key <= KEY_COUNT; key += 2) {
+			assertEquals(key * 3, it.nextLong());
+			assertEquals(key, btree.search(key * 3));
+		}
+		assertFalse(it.hasNext());
+		assertEquals(-1, btree.search(3));
+		btree.close();
+		tsManager.close();
+	}
+
+	@Test
+	public void testEmptyIndex() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		LongBTreeIndex btree = new LongBTreeIndex(BTREE_THRESHOLD, tsManager);
+
+		Iterator<Long> it = btree.iterator();
+		assertFalse(it.hasNext());
+		assertFalse(btree.first().isPresent());
+		assertFalse(btree.last().isPresent());
+		assertFalse(btree.contains(0));
+		btree.close();
+		tsManager.close();
+	}
+}
@@ -0,0 +1,138 @@
+package onthego.database.core.index;
+
+import onthego.database.core.serializer.IntegerSerializer;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NodeCacheTest {
+
+	private static final int BTREE_THRESHOLD = 4;
+
+	private static final int KEY_COUNT = 2000;
+
+	private final Path tsPath = Paths.get("./node_cache.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	private TablespaceManager createTablespace() throws IOException {
+		return StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+	}
+
+	//a budget of a few nodes forces the nodes of a large tree to be evicted and reloaded
+	private NodeCache createSmallCache() {
+		return new NodeCache(512);
+	}
+
+	@Test
+	public void testEvictWithinBudget() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		NodeCache nodeCache = createSmallCache();
+		BTreeIndex<Integer> btree = new BTreeIndex<>(BTREE_THRESHOLD, new IntegerSerializer(), tsManager, nodeCache);
+
+		for (int key = 1; key <= KEY_COUNT; ++key) {
+			btree.insert(key, key * 10L);
+		}
+
+		assertTrue(nodeCache.getEvictionCount() > 0);
+		assertTrue(nodeCache.getSize() <= nodeCache.getCapacity());
+
+		for (int key = 1; key <= KEY_COUNT; ++key) {
+			assertTrue(btree.contains(key));
+		}
+
+		for (int key = 1; key <= KEY_COUNT; key += 2) {
+			assertTrue(btree.delete(key));
+		}
+
+		int expected = 2;
+		Iterator<Integer> it = btree.iterator();
+		while (it.hasNext()) {
+			assertEquals(expected, (int)it.next());
+			expected += 2;
+		}
+		assertEquals(KEY_COUNT + 2, expected);
+		assertTrue(nodeCache.getSize() <= nodeCache.getCapacity());
+
+		btree.close();
+		tsManager.close();
+	}
+
+	@Test
+	public void testWriteBackDirtyNodesOnClose() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		NodeCache nodeCache = new NodeCache();
+		BTreeIndex<Integer> btree = new BTreeIndex<>(BTREE_THRESHOLD, new IntegerSerializer(), tsManager, nodeCache);
+		for (int key = KEY_COUNT; key >= 1; --key) {
+			btree.insert(key, key * 10L);
+		}
+
+		//every node fits into the default budget, so nothing has been written back yet
+		assertEquals(0, nodeCache.getEvictionCount());
+		btree.close();
+		assertEquals(0, nodeCache.getNodeCount());
+		tsManager.close();
+
+		tsManager = StandardTablespaceManager.load(tsPath);
+		btree = new BTreeIndex<>(BTREE_THRESHOLD, new IntegerSerializer(), tsManager, createSmallCache());
+		assertEquals(1, (int)btree.first());
+		assertEquals(KEY_COUNT, (int)btree.last());
+		for (int key = 1; key <= KEY_COUNT; ++key) {
+			assertTrue(btree.contains(key));
+		}
+		assertFalse(btree.contains(KEY_COUNT + 1));
+		btree.close();
+		tsManager.close();
+	}
+
+	@Test
+	public void testIterationKeepsNodesPinned() throws IOException {
+		TablespaceManager tsManager = createTablespace();
+		NodeCache nodeCache = createSmallCache();
+		BTreeIndex<Integer> btree = new BTreeIndex<>(BTREE_THRESHOLD, new IntegerSerializer(), tsManager, nodeCache);
+		for (int key = 1; key <= KEY_COUNT; ++key) {
+			btree.insert(key, key * 10L);
+		}
+
+		//the other iterations and lookups evict every node except for the pinned path of the first iterator
+		Iterator<Integer> first = btree.iterator();
+		for (int key = 1; key <= KEY_COUNT / 2; ++key) {
+			assertEquals(key, (int)first.next());
+		}
+
+		Iterator<Integer> second = btree.iterator();
+		for (int key = 1; key <= KEY_COUNT; ++key) {
+			assertEquals(key, (int)second.next());
+		}
+
+		for (int key = KEY_COUNT / 2 + 1; key <= KEY_COUNT; ++key) {
+			assertEquals(key, (int)first.next());
+		}
+		assertFalse(first.hasNext());
+		assertTrue(nodeCache.getSize() <= nodeCache.getCapacity());
+
+		btree.close();
+		tsManager.close();
+	}
+}
@@ -4,14 +4,20 @@ package onthego.database.core.sqlprocessor;
 
 import onthego.database.core.sqlprocessor.expression.Expression;
 import onthego.database.core.sqlprocessor.expression.ExpressionEvaluationException;
+import onthego.database.core.table.SortKey;
+import onthego.database.core.table.Table;
 import onthego.database.core.table.meta.ColumnMeta;
 import onthego.database.core.table.meta.TypeConstants;
 import org.junit.jupiter.api.Test;
 
 import java.util.List;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class SQLProcessorTest {
 
@@ -82,6 +88,74 @@ public class SQLProcessorTest {
 		assertEquals("product", result.getTable());
 	}
 	
+	@Test
+	public void testCreateTableWithConstraints() throws SQLProcessorException {
+		String sql = "create table product(serial_no integer(10) primary key, name char(30) unique, price numeric(10,3))";
+		
+		SQLResult result = new SQLProcessor(sql).process();
+		List<ColumnMeta> columns = result.getColumns();
+		assertTrue(columns.get(0).isKey());
+		assertFalse(columns.get(0).isUnique());
+		assertFalse(columns.get(1).isKey());
+		assertTrue(columns.get(1).isUnique());
+		assertFalse(columns.get(2).isKey() || columns.get(2).isUnique());
+		
+		assertThrows(SQLProcessorException.class, () -> new SQLProcessor("create table product(a integer(10) primary key, b integer(10) primary key)").process());
+		
+		//unique is not reserved, so it still names a column
+		columns = new SQLProcessor("create table product(unique char(10) unique)").process().getColumns();
+		assertEquals("unique", columns.get(0).getName());
+		assertTrue(columns.get(0).isUnique());
+	}
+	
+	@Test
+	public void testCreateAndDropIndex() throws SQLProcessorException {
+		SQLResult result = new SQLProcessor("create index product_name on product(name)").process();
+		assertEquals(SQLResult.CommandType.CREATE_INDEX, result.getCommand());
+		assertEquals("product_name", result.getIndex());
+		assertEquals("product", result.getTable());
+		assertEquals("name", result.getColumns().get(0).getName());
+		assertEquals(Table.IndexType.BTREE, result.getIndexType());
+		
+		result = new SQLProcessor("create index product_name on product using hash (name)").process();
+		assertEquals(Table.IndexType.HASH, result.getIndexType());
+		
+		result = new SQLProcessor("create index product_name on product(name) using hash").process();
+		assertEquals(Table.IndexType.HASH, result.getIndexType());
+		assertEquals("name", result.getColumns().get(0).getName());
+		
+		result = new SQLProcessor("drop index product_name on product").process();
+		assertEquals(SQLResult.CommandType.DROP_INDEX, result.getCommand());
+		assertEquals("product_name", result.getIndex());
+		assertEquals("product", result.getTable());
+		
+		result = new SQLProcessor("drop index product_name").process();
+		assertEquals(SQLResult.CommandType.DROP_INDEX, result.getCommand());
+		assertEquals(null, result.getTable());
+	}
+	
+	//the keywords of indexes are not reserved, so they still name tables, columns and indexes
+	@Test
+	public void testIndexKeywordsAsNames() throws SQLProcessorException {
+		SQLResult result = new SQLProcessor("create table index(on integer(10), using char(10), hash char(10))").process();
+		assertEquals("index", result.getTable());
+		assertEquals(List.of("on", "using", "hash"), result.getColumns().stream().map(ColumnMeta::getName).collect(Collectors.toList()));
+		
+		result = new SQLProcessor("create index btree on index using hash (hash)").process();
+		assertEquals("btree", result.getIndex());
+		assertEquals("index", result.getTable());
+		assertEquals("hash", result.getColumns().get(0).getName());
+		assertEquals(Table.IndexType.HASH, result.getIndexType());
+		
+		result = new SQLProcessor("select on, using from index where hash = 'a'").process();
+		assertEquals("index", result.getTable());
+		assertEquals("using", result.getColumns().get(1).getName());
+		
+		result = new SQLProcessor("drop index btree on index").process();
+		assertEquals("btree", result.getIndex());
+		assertEquals("index", result.getTable());
+	}
+	
 	@Test
 	public void testBegin() throws SQLProcessorException {
 		String sql = " begin ";
@@ -159,6 +233,64 @@ public class SQLProcessorTest {
 		assertNotEquals(Expression.NULL_EXPRESSION, result.getWhere());
 	}
 	
+	@Test
+	public void testSelectWithLimit() throws SQLProcessorException {
+		SQLResult result = new SQLProcessor("select * from product where price > 100 limit 10 offset 20").process();
+		
+		assertEquals(SQLResult.CommandType.SELECT, result.getCommand());
+		assertNotEquals(Expression.NULL_EXPRESSION, result.getWhere());
+		assertEquals(10, result.getLimit());
+		assertEquals(20, result.getOffset());
+		
+		result = new SQLProcessor("select * from product limit 5").process();
+		assertEquals(5, result.getLimit());
+		assertEquals(0, result.getOffset());
+		
+		result = new SQLProcessor("select * from product").process();
+		assertEquals(Table.NO_LIMIT, result.getLimit());
+		
+		assertThrows(SQLProcessorException.class, () -> new SQLProcessor("select * from product limit 1.5").process());
+		assertThrows(SQLProcessorException.class, () -> new SQLProcessor("select * from product limit name").process());
+		
+		//limit and offset are not reserved, so they still name columns
+		result = new SQLProcessor("select limit, offset from product where offset > limit limit 3 offset 1").process();
+		assertEquals("limit", result.getColumns().get(0).getName());
+		assertEquals("offset", result.getColumns().get(1).getName());
+		assertEquals(3, result.getLimit());
+		assertEquals(1, result.getOffset());
+	}
+	
+	@Test
+	public void testSelectWithOrderBy() throws SQLProcessorException {
+		SQLResult result = new SQLProcessor("select * from product where price > 100 order by name, price desc, serial_no asc limit 10").process();
+		
+		List<SortKey> orderBy = result.getOrderBy();
+		assertEquals(3, orderBy.size());
+		assertEquals("name", orderBy.get(0).getColumnName());
+		assertFalse(orderBy.get(0).isDescending());
+		assertEquals("price", orderBy.get(1).getColumnName());
+		assertTrue(orderBy.get(1).isDescending());
+		assertEquals("serial_no", orderBy.get(2).getColumnName());
+		assertFalse(orderBy.get(2).isDescending());
+		assertEquals(10, result.getLimit());
+		
+		assertTrue(new SQLProcessor("select * from product").process().getOrderBy().isEmpty());
+		assertThrows(SQLProcessorException.class, () -> new SQLProcessor("select * from product order name").process());
+		assertThrows(SQLProcessorException.class, () -> new SQLProcessor("select * from product order by 1").process());
+		
+		//the keywords of an order are not reserved, so they still name columns
+		result = new SQLProcessor("select order, desc from product where by = 1 order by desc desc, order, asc asc").process();
+		assertEquals("order", result.getColumns().get(0).getName());
+		orderBy = result.getOrderBy();
+		assertEquals(3, orderBy.size());
+		assertEquals("desc", orderBy.get(0).getColumnName());
+		assertTrue(orderBy.get(0).isDescending());
+		assertEquals("order", orderBy.get(1).getColumnName());
+		assertFalse(orderBy.get(1).isDescending());
+		assertEquals("asc", orderBy.get(2).getColumnName());
+		assertFalse(orderBy.get(2).isDescending());
+	}
+	
 	@Test
 	public void testInsertWithSpecificColumns() throws SQLProcessorException, ExpressionEvaluationException {
 		String sql = "insert into product(serial_no, name, price) "
@@ -0,0 +1,190 @@
+package onthego.database.core.table;
+
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeapFileTest {
+
+	private final Path tsPath = Paths.get("./heap_file.db");
+
+	private TablespaceManager tsManager;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+		tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		tsManager.close();
+		Files.deleteIfExists(tsPath);
+	}
+
+	private byte[] getRecord(int i, int length) {
+		byte[] record = new byte[length];
+		Arrays.fill(record, (byte)i);
+		return record;
+	}
+
+	@Test
+	public void testPackSmallRecords() {
+		HeapFile heapFile = new HeapFile(tsManager);
+		List<Long> recordIds = new ArrayList<>();
+		for (int i = 0; i < 200; ++i) {
+			recordIds.add(heapFile.insert(getRecord(i, 20)));
+		}
+
+		//24 bytes with the slot, so a page holds 170 records
+		assertEquals(2, recordIds.stream().map(HeapFile::getPagePos).distinct().count());
+		for (int i = 1; i < recordIds.size(); ++i) {
+			assertTrue(recordIds.get(i - 1) < recordIds.get(i));
+		}
+
+		for (int i = 0; i < 200; ++i) {
+			assertArrayEquals(getRecord(i, 20), heapFile.read(recordIds.get(i)));
+		}
+	}
+
+	@Test
+	public void testGrowInPlace() {
+		HeapFile heapFile = new HeapFile(tsManager);
+		long firstId = heapFile.insert(getRecord(1, 100));
+		long secondId = heapFile.insert(getRecord(2, 100));
+
+		assertTrue(heapFile.update(firstId, getRecord(3, 1000)));
+		assertArrayEquals(getRecord(3, 1000), heapFile.read(firstId));
+		assertArrayEquals(getRecord(2, 100), heapFile.read(secondId));
+
+		//the page cannot hold the record anymore, so it has to move
+		assertFalse(heapFile.update(secondId, getRecord(4, 3500)));
+		assertArrayEquals(getRecord(2, 100), heapFile.read(secondId));
+	}
+
+	@Test
+	public void testReuseDeletedSpace() {
+		HeapFile heapFile = new HeapFile(tsManager);
+		List<Long> recordIds = new ArrayList<>();
+		for (int i = 0; i < 30; ++i) {
+			recordIds.add(heapFile.insert(getRecord(i, 100)));
+		}
+
+		long pagePos = HeapFile.getPagePos(recordIds.get(0));
+		for (int i = 0; i < 30; i += 2) {
+			heapFile.delete(recordIds.get(i));
+		}
+
+		//the holes are compacted to make room for a larger record in the same page
+		long recordId = heapFile.insert(getRecord(99, 1400));
+		assertEquals(pagePos, HeapFile.getPagePos(recordId));
+		assertArrayEquals(getRecord(99, 1400), heapFile.read(recordId));
+		for (int i = 1; i < 30; i += 2) {
+			assertArrayEquals(getRecord(i, 100), heapFile.read(recordIds.get(i)));
+		}
+	}
+
+	@Test
+	public void testFreeEmptyPage() {
+		HeapFile heapFile = new HeapFile(tsManager);
+		long recordId = heapFile.insert(getRecord(1, 100));
+		heapFile.delete(recordId);
+
+		long pagePos = HeapFile.getPagePos(recordId);
+		assertEquals(pagePos, tsManager.allocate(HeapFile.DEFAULT_PAGE_SIZE));
+	}
+
+	@Test
+	public void testLargeRecordGetsOwnPage() {
+		HeapFile heapFile = new HeapFile(tsManager);
+		long smallId = heapFile.insert(getRecord(4, 100));
+		long largeId = heapFile.insert(getRecord(5, 5000));
+
+		assertTrue(HeapFile.isHeapRecord(largeId));
+		assertTrue(HeapFile.getPagePos(smallId) != HeapFile.getPagePos(largeId));
+		assertArrayEquals(getRecord(5, 5000), heapFile.read(largeId));
+
+		//the rest of the large page is not used by small records
+		assertEquals(HeapFile.getPagePos(smallId), HeapFile.getPagePos(heapFile.insert(getRecord(6, 100))));
+		heapFile.delete(largeId);
+	}
+
+	@Test
+	public void testPhysicalScan() {
+		HeapFile heapFile = new HeapFile(tsManager);
+		List<Long> recordIds = new ArrayList<>();
+		for (int i = 0; i < 500; ++i) {
+			recordIds.add(heapFile.insert(getRecord(i, 30 + i % 50)));
+			//blocks which are not pages are skipped by the scan
+			if (i % 100 == 0) {
+				tsManager.writeBlock(tsManager.allocate(200), getRecord(i, 200));
+			}
+		}
+
+		for (int i = 0; i < 500; i += 3) {
+			heapFile.delete(recordIds.get(i));
+		}
+
+		List<Long> scannedIds = new ArrayList<>();
+		heapFile.scan().forEachRemaining((LongConsumer)scannedIds::add);
+
+		List<Long> expectedIds = new ArrayList<>();
+		for (int i = 0; i < 500; ++i) {
+			if (i % 3 != 0) {
+				expectedIds.add(recordIds.get(i));
+			}
+		}
+		assertEquals(expectedIds, scannedIds);
+	}
+
+	@Test
+	public void testContinueInsertionPage() {
+		HeapFile heapFile = new HeapFile(tsManager);
+		long recordId = heapFile.insert(getRecord(1, 100));
+
+		HeapFile reloadedHeapFile = new HeapFile(tsManager);
+		reloadedHeapFile.setInsertionPage(recordId);
+		assertEquals(HeapFile.getPagePos(recordId), HeapFile.getPagePos(reloadedHeapFile.insert(getRecord(2, 100))));
+	}
+
+	@Test
+	public void testLoadFreeSpaceMap() throws IOException {
+		HeapFile heapFile = new HeapFile(tsManager);
+		List<Long> recordIds = new ArrayList<>();
+		for (int i = 0; i < 120; ++i) {
+			recordIds.add(heapFile.insert(getRecord(i, 100)));
+		}
+
+		long pagePos = HeapFile.getPagePos(recordIds.get(0));
+		for (int i = 1; i < 30; ++i) {
+			heapFile.delete(recordIds.get(i));
+		}
+		tsManager.close();
+
+		//the space freed before the tablespace was closed is used again after it is loaded
+		tsManager = StandardTablespaceManager.load(tsPath);
+		HeapFile reloadedHeapFile = new HeapFile(tsManager);
+		reloadedHeapFile.loadFreeSpaceMap();
+		long recordId = reloadedHeapFile.insert(getRecord(99, 1000));
+		assertEquals(pagePos, HeapFile.getPagePos(recordId));
+		assertArrayEquals(getRecord(0, 100), reloadedHeapFile.read(recordIds.get(0)));
+		assertArrayEquals(getRecord(99, 1000), reloadedHeapFile.read(recordId));
+	}
+}
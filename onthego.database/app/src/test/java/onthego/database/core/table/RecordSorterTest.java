@@ -0,0 +1,111 @@
+package onthego.database.core.table;
+
+import onthego.database.core.table.meta.ColumnMeta;
+import onthego.database.core.table.meta.TypeConstants;
+import onthego.database.core.table.meta.Types;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class RecordSorterTest {
+
+	private final Path directory = Paths.get(".");
+
+	private final List<ColumnMeta> columns = List.of(
+			new ColumnMeta("serial_no", Types.of(TypeConstants.INTEGER, 10, 0)),
+			new ColumnMeta("name", Types.of(TypeConstants.VARCHAR, 20, 0)));
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		try (DirectoryStream<Path> runPaths = Files.newDirectoryStream(directory, RecordSorter.getRunPattern("sorter"))) {
+			for (Path runPath : runPaths) {
+				Files.delete(runPath);
+			}
+		}
+	}
+
+	private byte[] record(String serialNo, String name) {
+		return StandardRecordFormat.encode(columns, Arrays.asList(serialNo, name));
+	}
+
+	private List<String> sort(RecordSorter sorter) throws IOException {
+		List<String> sorted = new ArrayList<>();
+		Iterator<byte[]> records = sorter.sort();
+		while (records.hasNext()) {
+			byte[] record = records.next();
+			sorted.add(StandardTableUtil.readColumnData(record, 0) + ":" + StandardTableUtil.readColumnData(record, 1));
+		}
+		return sorted;
+	}
+
+	private boolean hasRuns() throws IOException {
+		try (DirectoryStream<Path> runPaths = Files.newDirectoryStream(directory, RecordSorter.getRunPattern("sorter"))) {
+			return runPaths.iterator().hasNext();
+		}
+	}
+
+	@Test
+	public void testSortInMemory() throws IOException {
+		RecordSorter sorter = new RecordSorter(RecordSorter.comparatorOf(columns, List.of(SortKey.desc("serial_no"))), 1024 * 1024, directory, "sorter");
+		sorter.add(record("5", "a"));
+		sorter.add(record(null, "b"));
+		sorter.add(record("40", "c"));
+		sorter.add(record("5", "d"));
+
+		//a null is placed after all the numbers, which puts it first in a descending order
+		assertEquals(List.of(":b", "40:c", "5:a", "5:d"), sort(sorter));
+		assertEquals(0, sorter.getRunCount());
+		sorter.close();
+	}
+
+	@Test
+	public void testSortInRuns() throws IOException {
+		RecordSorter sorter = new RecordSorter(RecordSorter.comparatorOf(columns, List.of(SortKey.asc("name"), SortKey.asc("serial_no"))), 512, directory, "sorter");
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; ++i) {
+			int serialNo = i * 37 % 1000;
+			sorter.add(record(String.valueOf(serialNo), "item" + serialNo % 10));
+		}
+		for (int name = 0; name < 10; ++name) {
+			for (int serialNo = name; serialNo < 1000; serialNo += 10) {
+				expected.add(serialNo + ":item" + name);
+			}
+		}
+
+		assertTrue(sorter.getRunCount() > 1);
+		assertEquals(expected, sort(sorter));
+		assertTrue(hasRuns());
+
+		sorter.close();
+		assertFalse(hasRuns());
+	}
+
+	@Test
+	public void testStableSort() throws IOException {
+		RecordSorter sorter = new RecordSorter(RecordSorter.comparatorOf(columns, List.of(SortKey.asc("name"))), 256, directory, "sorter");
+		for (int i = 0; i < 100; ++i) {
+			sorter.add(record(String.valueOf(i), "item" + i % 2));
+		}
+
+		List<String> sorted = sort(sorter);
+		assertTrue(sorter.getRunCount() > 1);
+		for (int i = 0; i < 50; ++i) {
+			assertEquals((2 * i) + ":item0", sorted.get(i));
+			assertEquals((2 * i + 1) + ":item1", sorted.get(50 + i));
+		}
+		sorter.close();
+	}
+}
@@ -9,19 +9,27 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 
 import static onthego.database.core.table.StandardTableUtil.readUTF;
 import static onthego.database.core.table.StandardTableUtil.readUnsignedShort;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class StandardTableTest {
@@ -94,15 +102,17 @@ public class StandardTableTest {
 		cursor.next();
 		
 		ByteBuffer recordBuffer = ByteBuffer.wrap(cursor.getRawRecord());
+		assertEquals(StandardRecordFormat.TYPED_RECORD_FORMAT, recordBuffer.get());
 		assertEquals(4, readUnsignedShort(recordBuffer));
-		assertEquals(10, readUnsignedShort(recordBuffer));
-		assertEquals(15, readUnsignedShort(recordBuffer));
-		assertEquals(27, readUnsignedShort(recordBuffer));
-		assertEquals(34, readUnsignedShort(recordBuffer));
-		assertEquals("100", readUTF(recordBuffer));
+		assertEquals(0, recordBuffer.get());
+		assertColumnEntry(recordBuffer, StandardRecordFormat.LONG_TYPE, 16);
+		assertColumnEntry(recordBuffer, StandardRecordFormat.STRING_TYPE, 24);
+		assertColumnEntry(recordBuffer, StandardRecordFormat.DOUBLE_TYPE, 36);
+		assertColumnEntry(recordBuffer, StandardRecordFormat.BOOLEAN_TYPE, 44);
+		assertEquals(100L, recordBuffer.getLong());
 		assertEquals("smartphone", readUTF(recordBuffer));
-		assertEquals("123.4", readUTF(recordBuffer));
-		assertEquals("true", readUTF(recordBuffer));
+		assertEquals(123.4, recordBuffer.getDouble(), 0);
+		assertEquals(1, recordBuffer.get());
 		
 		Iterator<String> iterator = cursor.getRecord();
 		assertEquals("100", iterator.next());
@@ -131,15 +141,17 @@ public class StandardTableTest {
 		cursor.next();
 		
 		ByteBuffer recordBuffer = ByteBuffer.wrap(cursor.getRawRecord());
+		assertEquals(StandardRecordFormat.TYPED_RECORD_FORMAT, recordBuffer.get());
 		assertEquals(4, readUnsignedShort(recordBuffer));
-		assertEquals(10, readUnsignedShort(recordBuffer));
-		assertEquals(15, readUnsignedShort(recordBuffer));
-		assertEquals(44, readUnsignedShort(recordBuffer));
-		assertEquals(51, readUnsignedShort(recordBuffer));
-		assertEquals("100", readUTF(recordBuffer));
+		assertEquals(0, recordBuffer.get());
+		assertColumnEntry(recordBuffer, StandardRecordFormat.LONG_TYPE, 16);
+		assertColumnEntry(recordBuffer, StandardRecordFormat.STRING_TYPE, 24);
+		assertColumnEntry(recordBuffer, StandardRecordFormat.DOUBLE_TYPE, 53);
+		assertColumnEntry(recordBuffer, StandardRecordFormat.BOOLEAN_TYPE, 61);
+		assertEquals(100L, recordBuffer.getLong());
 		assertEquals("the state of art smartphone", readUTF(recordBuffer));
-		assertEquals("123.4", readUTF(recordBuffer));
-		assertEquals("true", readUTF(recordBuffer));
+		assertEquals(123.4, recordBuffer.getDouble(), 0);
+		assertEquals(1, recordBuffer.get());
 		
 		Iterator<String> iterator = cursor.getRecord();
 		assertEquals("100", iterator.next());
@@ -148,6 +160,306 @@ public class StandardTableTest {
 		assertEquals("true", iterator.next());
 	}
 	
+	private static void assertColumnEntry(ByteBuffer recordBuffer, byte type, int offset) {
+		assertEquals(type, recordBuffer.get());
+		assertEquals(offset, readUnsignedShort(recordBuffer));
+	}
+	
+	private Cursor selectBySerialNo(long serialNo) throws DatabaseException {
+		Table resultTable = table.select(table.getColumnList(), new Filtration.DefaultFilter() {
+			@Override
+			public boolean filter(Cursor[] cursor) {
+				return cursor[0].getLong("serial_no") == serialNo;
+			}
+		});
+		Cursor cursor = resultTable.getCursor();
+		assertTrue(cursor.next());
+		return cursor;
+	}
+	
+	@Test
+	public void testTypedColumns() throws DatabaseException {
+		List<ColumnMeta> columnList = table.getColumnList();
+		table.insert(Map.of(columnList.get(0), "200", columnList.get(1), "tablet"));
+		
+		Cursor cursor = selectBySerialNo(200);
+		assertEquals(200L, cursor.getLong(0));
+		assertEquals(200.0, cursor.getDouble("serial_no"), 0);
+		assertFalse(cursor.isNull("name"));
+		assertTrue(cursor.isNull("price"));
+		assertEquals("", cursor.getColumn("price"));
+		assertEquals(0.0, cursor.getDouble("price"), 0);
+		assertFalse(cursor.getBoolean("on_sale"));
+		assertFalse(cursor.next());
+		
+		//a value which is not a number is kept as text, and a number goes back in place
+		table.update(new Filtration() {
+			@Override
+			public boolean filter(Cursor[] cursor) {
+				return cursor[0].getLong("serial_no") == 100;
+			}
+
+			@Override
+			public void update(Cursor cursor) {
+				assertEquals(123.4, cursor.getDouble("price"), 0);
+				assertTrue(cursor.getBoolean("on_sale"));
+				cursor.update("price", "unknown");
+				cursor.update("on_sale", "false");
+			}
+		});
+		
+		cursor = selectBySerialNo(100);
+		assertEquals("unknown", cursor.getColumn("price"));
+		assertFalse(cursor.getBoolean("on_sale"));
+		assertEquals("false", cursor.getColumn("on_sale"));
+		
+		table.update(new Filtration() {
+			@Override
+			public boolean filter(Cursor[] cursor) {
+				return cursor[0].getLong("serial_no") == 100;
+			}
+
+			@Override
+			public void update(Cursor cursor) {
+				cursor.update("price", "99.5");
+			}
+		});
+		
+		cursor = selectBySerialNo(100);
+		assertEquals(99.5, cursor.getDouble("price"), 0);
+		assertEquals("99.5", cursor.getColumn("price"));
+	}
+	
+	@Test
+	public void testLargeNumeric() throws DatabaseException {
+		List<ColumnMeta> columnList = table.getColumnList();
+		table.insert(Map.of(columnList.get(0), "400", columnList.get(1), "large", columnList.get(2), "12345678901234567890123", columnList.get(3), "true"));
+		table.insert(Map.of(columnList.get(0), "500", columnList.get(1), "integral", columnList.get(2), "1e30", columnList.get(3), "true"));
+		
+		//a value beyond the precision of a double is kept as text, and an integral double beyond a long is not clamped
+		assertEquals("12345678901234567890123", selectBySerialNo(400).getColumn("price"));
+		assertEquals("1000000000000000000000000000000", selectBySerialNo(500).getColumn("price"));
+		
+		//the other columns are encoded again when the name outgrows its room
+		table.update(new Filtration() {
+			@Override
+			public boolean filter(Cursor[] cursor) {
+				return cursor[0].getLong("serial_no") >= 400;
+			}
+
+			@Override
+			public void update(Cursor cursor) {
+				cursor.update("name", "x".repeat(50));
+			}
+		});
+		
+		assertEquals("12345678901234567890123", selectBySerialNo(400).getColumn("price"));
+		Cursor cursor = selectBySerialNo(500);
+		assertEquals("1000000000000000000000000000000", cursor.getColumn("price"));
+		assertEquals(1e30, cursor.getDouble("price"), 0);
+		assertEquals("x".repeat(50), cursor.getColumn("name"));
+	}
+	
+	@Test
+	public void testLongRecord() throws DatabaseException {
+		List<ColumnMeta> columnList = table.getColumnList();
+		String name = "x".repeat(200);
+		table.insert(Map.of(columnList.get(0), "300", columnList.get(1), name, columnList.get(2), "0.5", columnList.get(3), "false"));
+		
+		//the offsets of the columns behind the name are beyond a signed byte
+		Cursor cursor = selectBySerialNo(300);
+		assertEquals(name, cursor.getColumn("name"));
+		assertEquals(0.5, cursor.getDouble("price"), 0);
+		assertFalse(cursor.getBoolean("on_sale"));
+	}
+	
+	//rows growing out of their pages are moved while the slots freed by the same update are handed out again
+	@Test
+	public void testUpdateMovingRecords() throws DatabaseException {
+		List<ColumnMeta> columnList = table.getColumnList();
+		Random random = new Random(7);
+		Map<Long,String> names = new HashMap<>();
+		for (long serialNo = 1000; serialNo < 1300; serialNo++) {
+			String name = "n".repeat(768 + random.nextInt(100));
+			table.insert(Map.of(columnList.get(0), String.valueOf(serialNo), columnList.get(1), name, columnList.get(2), "1.5", columnList.get(3), "false"));
+			names.put(serialNo, name);
+		}
+		
+		for (int round = 0; round < 4; round++) {
+			table.update(new Filtration() {
+				@Override
+				public boolean filter(Cursor[] cursor) {
+					return Long.parseLong(cursor[0].getColumn("serial_no")) % 2 == 1;
+				}
+
+				@Override
+				public void update(Cursor cursor) {
+					String name = "m".repeat(1024 + random.nextInt(100));
+					cursor.update("name", name);
+					names.put(Long.parseLong(cursor.getColumn("serial_no")), name);
+				}
+			});
+		}
+		
+		Cursor cursor = table.getCursor();
+		int count = 0;
+		while (cursor.next()) {
+			long serialNo = Long.parseLong(cursor.getColumn("serial_no"));
+			assertEquals(serialNo == 100 ? "smartphone" : names.get(serialNo), cursor.getColumn("name"));
+			count++;
+		}
+		assertEquals(301, count);
+	}
+	
+	@Test
+	public void testRecordView() {
+		List<ColumnMeta> columnList = table.getColumnList();
+		byte[] record = StandardRecordFormat.encode(columnList, Arrays.asList("7", "caf\u00e9", null, "true"));
+		
+		//the record is read where it lies in a larger buffer
+		byte[] page = new byte[record.length + 10];
+		System.arraycopy(record, 0, page, 5, record.length);
+		RecordView view = new RecordView();
+		view.reset(page, 5, record.length);
+		
+		assertTrue(view.equalsString(1, "caf\u00e9"));
+		assertFalse(view.equalsString(1, "cafe"));
+		assertFalse(view.equalsString(1, "caf"));
+		assertSame(view.getString(1), view.getString(1));
+		assertEquals(7L, view.getLong(0));
+		assertTrue(view.equalsString(0, "7"));
+		assertTrue(view.isNull(2));
+		assertEquals("", view.getString(2));
+		assertTrue(view.getBoolean(3));
+		assertArrayEquals(record, view.toByteArray());
+		
+		//a record of the text format
+		byte[] textRecord = new byte[Short.BYTES * 3 + Short.BYTES * 2 + 5];
+		StandardTableUtil.writeUnsignedShort(textRecord, 0, 2);
+		StandardTableUtil.writeUnsignedShort(textRecord, 2, 6);
+		StandardTableUtil.writeUTF(textRecord, 6, "12");
+		StandardTableUtil.writeUnsignedShort(textRecord, 4, 10);
+		StandardTableUtil.writeUTF(textRecord, 10, "abc");
+		view.reset(textRecord, 0, textRecord.length);
+		assertEquals(12L, view.getLong(0));
+		assertTrue(view.equalsString(1, "abc"));
+		assertFalse(view.equalsString(1, "abd"));
+		assertEquals("abc", view.getString(1));
+	}
+	
+	@Test
+	public void testStreamingSelect() throws DatabaseException {
+		List<ColumnMeta> columnList = table.getColumnList();
+		for (int serialNo = 1; serialNo <= 1000; ++serialNo) {
+			table.insert(Map.of(columnList.get(0), String.valueOf(serialNo), columnList.get(1), "item" + serialNo));
+		}
+		
+		int[] filtered = new int[1];
+		Table resultTable = table.select(List.of(columnList.get(1)), new Filtration.DefaultFilter() {
+			@Override
+			public boolean filter(Cursor[] cursor) {
+				++filtered[0];
+				return cursor[0].getLong("serial_no") % 2 == 0;
+			}
+		});
+		assertFalse(((ResultTable)resultTable).isMaterialized());
+		assertEquals(0, filtered[0]);
+		
+		//the records are filtered as the cursor moves, and the columns not selected are not visible
+		Cursor cursor = resultTable.getCursor();
+		assertTrue(cursor.next());
+		assertTrue(filtered[0] <= 3);
+		assertEquals(1, cursor.getColumnCount());
+		assertFalse(cursor.getColumn(0).isEmpty());
+		assertThrows(IllegalArgumentException.class, () -> cursor.getColumn("serial_no"));
+		
+		int count = 1;
+		while (cursor.next()) {
+			++count;
+		}
+		assertEquals(501, count);
+	}
+	
+	@Test
+	public void testLimitedSelect() throws DatabaseException {
+		List<ColumnMeta> columnList = table.getColumnList();
+		for (int serialNo = 1; serialNo <= 1000; ++serialNo) {
+			table.insert(Map.of(columnList.get(0), String.valueOf(serialNo), columnList.get(1), "item" + serialNo));
+		}
+		
+		int[] filtered = new int[1];
+		Table resultTable = table.select(List.of(columnList.get(0)), new Filtration.DefaultFilter() {
+			@Override
+			public boolean filter(Cursor[] cursor) {
+				++filtered[0];
+				return cursor[0].getColumn("name").startsWith("item");
+			}
+		}, 10, 5);
+		
+		Cursor cursor = resultTable.getCursor();
+		List<Long> serialNos = new ArrayList<>();
+		while (cursor.next()) {
+			serialNos.add(cursor.getLong(0));
+		}
+		assertEquals(List.of(11L, 12L, 13L, 14L, 15L), serialNos);
+		
+		//the scan stops at the last row of the limit
+		assertEquals(16, filtered[0]);
+		assertFalse(cursor.next());
+		assertEquals(16, filtered[0]);
+		
+		assertFalse(table.select(columnList, Filtration.ALL, 0, 0).getCursor().next());
+	}
+	
+	@Test
+	public void testSortedSelect() throws DatabaseException, IOException {
+		List<ColumnMeta> columnList = table.getColumnList();
+		for (int i = 0; i < 100; ++i) {
+			table.insert(Map.of(columnList.get(0), String.valueOf(i * 37 % 100), columnList.get(1), "item" + i));
+		}
+		
+		int[] filtered = new int[1];
+		Filtration filtration = new Filtration.DefaultFilter() {
+			@Override
+			public boolean filter(Cursor[] cursor) {
+				++filtered[0];
+				return true;
+			}
+		};
+		SortOrder sortOrder = new SortOrder(List.of(SortKey.desc("serial_no")), 256);
+		
+		//the records are sorted whole in spilled runs, which are gone as the cursor runs out
+		Cursor cursor = table.select(List.of(columnList.get(0)), filtration, sortOrder, 0, 3).getCursor();
+		assertTrue(cursor.next());
+		assertEquals(101, filtered[0]);
+		assertEquals(100L, cursor.getLong("serial_no"));
+		assertTrue(cursor.next());
+		assertEquals(99L, cursor.getLong(0));
+		assertTrue(cursor.next());
+		assertEquals(98L, cursor.getLong(0));
+		assertFalse(cursor.next());
+		try (DirectoryStream<Path> runPaths = Files.newDirectoryStream(Paths.get("."), "test.*.sort")) {
+			assertFalse(runPaths.iterator().hasNext());
+		}
+		
+		//a btree index on the sort column yields the records in order without sorting them
+		table.createIndex("test_serial_no", "serial_no");
+		filtered[0] = 0;
+		cursor = table.select(List.of(columnList.get(0)), filtration, sortOrder, 0, 3).getCursor();
+		assertTrue(cursor.next());
+		assertEquals(1, filtered[0]);
+		assertEquals(100L, cursor.getLong(0));
+		assertTrue(cursor.next());
+		assertEquals(99L, cursor.getLong(0));
+		assertTrue(cursor.next());
+		assertEquals(98L, cursor.getLong(0));
+		assertFalse(cursor.next());
+		assertEquals(3, filtered[0]);
+		table.dropIndex("test_serial_no");
+		
+		assertThrows(StandardTableException.class, () -> table.select(columnList, filtration, new SortOrder(List.of(SortKey.asc("weight")), 256), 0, Table.NO_LIMIT));
+	}
+	
 	@Test
 	public void testDelete() throws DatabaseException {
 		table.delete(new Filtration.DefaultFilter() {
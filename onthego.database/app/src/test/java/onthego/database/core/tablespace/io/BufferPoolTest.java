@@ -0,0 +1,194 @@
+package onthego.database.core.tablespace.io;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BufferPoolTest {
+
+	private static final int PAGE_SIZE = 64;
+
+	private final Path poolPath = Paths.get("./buffer_pool.db");
+
+	private FileChannel channel;
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(poolPath);
+		channel = FileChannel.open(poolPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		if (channel.isOpen()) {
+			channel.close();
+		}
+		Files.deleteIfExists(poolPath);
+	}
+
+	private long readLongFromFile(long position) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(Long.BYTES);
+		channel.read(buffer, position);
+		buffer.flip();
+		return buffer.getLong();
+	}
+
+	@Test
+	public void testHitAndMissCount() {
+		BufferPool pool = new BufferPool(channel, 4, PAGE_SIZE);
+
+		pool.writeInt(0, 10);
+		pool.writeInt(4, 20);
+		pool.writeInt(PAGE_SIZE, 30);
+
+		assertEquals(10, pool.readInt(0));
+		assertEquals(20, pool.readInt(4));
+		assertEquals(30, pool.readInt(PAGE_SIZE));
+
+		assertEquals(2, pool.getMissCount());
+		assertEquals(4, pool.getHitCount());
+	}
+
+	@Test
+	public void testWriteBackOnEviction() throws IOException {
+		BufferPool pool = new BufferPool(channel, 2, PAGE_SIZE);
+
+		for (int pageNo = 0; pageNo < 8; ++pageNo) {
+			pool.writeLong(pageNo * PAGE_SIZE, pageNo + 100);
+		}
+
+		assertEquals(6, pool.getEvictionCount());
+		assertEquals(100, readLongFromFile(0));
+		assertEquals(105, readLongFromFile(5 * PAGE_SIZE));
+
+		for (int pageNo = 0; pageNo < 8; ++pageNo) {
+			assertEquals(pageNo + 100, pool.readLong(pageNo * PAGE_SIZE));
+		}
+	}
+
+	@Test
+	public void testFlushOnClose() throws IOException {
+		BufferPool pool = new BufferPool(channel, 4, PAGE_SIZE);
+		pool.writeLong(PAGE_SIZE + 8, Long.MAX_VALUE);
+		assertEquals(PAGE_SIZE + 16, pool.size());
+		assertEquals(0, channel.size());
+
+		pool.close();
+
+		channel = FileChannel.open(poolPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		assertEquals(PAGE_SIZE + 16, channel.size());
+		assertEquals(Long.MAX_VALUE, readLongFromFile(PAGE_SIZE + 8));
+	}
+
+	@Test
+	public void testNoStealGrowthIsBounded() {
+		BufferPool pool = new BufferPool(channel, 2, PAGE_SIZE, true, 4);
+
+		for (int pageNo = 0; pageNo < 4; ++pageNo) {
+			pool.writeLong(pageNo * PAGE_SIZE, pageNo + 100);
+		}
+		assertEquals(4, pool.getFrameCount());
+		assertThrows(TablespaceIOException.class, () -> pool.writeLong(4 * PAGE_SIZE, 104));
+
+		//the frames beyond the capacity are dropped once the pages are flushed
+		pool.flush();
+		assertEquals(2, pool.getFrameCount());
+		pool.writeLong(4 * PAGE_SIZE, 104);
+		assertEquals(104, pool.readLong(4 * PAGE_SIZE));
+		assertEquals(100, pool.readLong(0));
+	}
+
+	@Test
+	public void testPinnedPageIsNotEvicted() {
+		BufferPool pool = new BufferPool(channel, 1, PAGE_SIZE);
+
+		BufferPool.Page page = pool.pin(0);
+		assertThrows(TablespaceIOException.class, () -> pool.readInt(PAGE_SIZE));
+
+		pool.unpin(page, false);
+		assertEquals(0, pool.readInt(PAGE_SIZE));
+	}
+
+	//both threads waiting for a frame to load the same page end up with one frame holding it
+	@Test
+	public void testWaitingPinsShareThePage() throws InterruptedException {
+		BufferPool pool = new BufferPool(channel, 2, PAGE_SIZE);
+		BufferPool.Page first = pool.pin(0);
+		BufferPool.Page second = pool.pin(2);
+
+		BufferPool.Page[] pinned = new BufferPool.Page[2];
+		Thread[] threads = new Thread[2];
+		for (int i = 0; i < threads.length; ++i) {
+			int index = i;
+			threads[i] = new Thread(() -> pinned[index] = pool.pin(1));
+			threads[i].start();
+		}
+		for (Thread thread : threads) {
+			while (thread.getState() != Thread.State.TIMED_WAITING) {
+				Thread.sleep(1);
+			}
+		}
+
+		pool.unpin(first, false);
+		pool.unpin(second, false);
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertSame(pinned[0], pinned[1]);
+		assertEquals(3, pool.getMissCount());
+	}
+
+	@Test
+	public void testAccessAcrossPageBoundary() {
+		BufferPool pool = new BufferPool(channel, 2, PAGE_SIZE);
+
+		pool.writeLong(PAGE_SIZE - 4, 0x0102030405060708L);
+		assertEquals(0x0102030405060708L, pool.readLong(PAGE_SIZE - 4));
+
+		byte[] payload = new byte[3 * PAGE_SIZE];
+		for (int i = 0; i < payload.length; ++i) {
+			payload[i] = (byte)i;
+		}
+		pool.write(10, payload, 0, payload.length);
+
+		byte[] readPayload = new byte[payload.length];
+		pool.read(10, readPayload, 0, readPayload.length);
+		for (int i = 0; i < payload.length; ++i) {
+			assertEquals(payload[i], readPayload[i]);
+		}
+	}
+
+	@Test
+	public void testReadAhead() throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8 * PAGE_SIZE);
+		for (int i = 0; i < 8; ++i) {
+			buffer.putInt(i * PAGE_SIZE, i + 100);
+		}
+		channel.write(buffer, 0);
+
+		BufferPool pool = new BufferPool(channel, 8, PAGE_SIZE);
+		pool.readAhead(0, 8 * PAGE_SIZE);
+
+		//at most half of the frames are filled by a read ahead
+		assertEquals(4, pool.getReadAheadCount());
+		for (int i = 0; i < 4; ++i) {
+			assertEquals(i + 100, pool.readInt(i * PAGE_SIZE));
+		}
+		assertEquals(0, pool.getMissCount());
+		assertEquals(104, pool.readInt(4 * PAGE_SIZE));
+		assertEquals(1, pool.getMissCount());
+		pool.close();
+	}
+}
@@ -0,0 +1,117 @@
+package onthego.database.core.tablespace.io;
+
+import onthego.database.core.tablespace.io.MappedTablespaceIO.ForcePolicy;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MappedTablespaceIOTest {
+
+	private static final int SEGMENT_SIZE = 256;
+
+	private final Path mappedPath = Paths.get("./mapped_tablespace.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(mappedPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(mappedPath);
+	}
+
+	private MappedTablespaceIO open() throws IOException {
+		FileChannel channel = FileChannel.open(mappedPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		return new MappedTablespaceIO(channel, SEGMENT_SIZE, ForcePolicy.ON_CLOSE);
+	}
+
+	@Test
+	public void testGrowAcrossSegments() throws IOException {
+		MappedTablespaceIO io = open();
+
+		for (int i = 0; i < 200; ++i) {
+			io.writeLong(i * 12L, i);
+		}
+
+		assertEquals(199 * 12L + Long.BYTES, io.size());
+		assertEquals((int)((io.size() + SEGMENT_SIZE - 1) / SEGMENT_SIZE), io.getSegmentCount());
+
+		for (int i = 0; i < 200; ++i) {
+			assertEquals(i, io.readLong(i * 12L));
+		}
+		io.close();
+
+		io = open();
+		assertEquals(199 * 12L + Long.BYTES, io.size());
+		for (int i = 0; i < 200; ++i) {
+			assertEquals(i, io.readLong(i * 12L));
+		}
+		io.close();
+	}
+
+	@Test
+	public void testReadWriteAcrossSegmentBoundary() throws IOException {
+		MappedTablespaceIO io = open();
+
+		byte[] payload = new byte[SEGMENT_SIZE + 10];
+		for (int i = 0; i < payload.length; ++i) {
+			payload[i] = (byte)(i * 7);
+		}
+		io.write(SEGMENT_SIZE - 5, payload, 0, payload.length);
+		io.writeInt(3 * SEGMENT_SIZE - 2, 0x0A0B0C0D);
+
+		byte[] readPayload = new byte[payload.length];
+		io.read(SEGMENT_SIZE - 5, readPayload, 0, readPayload.length);
+		assertArrayEquals(payload, readPayload);
+		assertEquals(0x0A0B0C0D, io.readInt(3 * SEGMENT_SIZE - 2));
+		io.close();
+	}
+
+	@Test
+	public void testMappedTablespaceManager() throws IOException {
+		TablespaceConfig config = TablespaceConfig.builder()
+											.memoryMapped(true)
+											.mappedSegmentSize(SEGMENT_SIZE)
+											.build();
+
+		TablespaceManager tsManager = StandardTablespaceManager.create(mappedPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+		List<Long> blockPosList = new ArrayList<>();
+		for (int i = 0; i < 50; ++i) {
+			long blockPos = tsManager.allocate(40);
+			tsManager.writeBlock(blockPos, new byte[]{(byte)i, (byte)(i + 1), (byte)(i + 2)});
+			blockPosList.add(blockPos);
+			tsManager.increaseRecordCount();
+		}
+
+		for (int i = 0; i < 50; i += 2) {
+			tsManager.free(blockPosList.get(i));
+		}
+		tsManager.close();
+
+		tsManager = StandardTablespaceManager.load(mappedPath, config);
+		assertEquals(50, tsManager.getRecordCount());
+		for (int i = 1; i < 50; i += 2) {
+			byte[] payload = tsManager.readBlock(blockPosList.get(i));
+			assertEquals(i, payload[0]);
+			assertEquals(i + 2, payload[2]);
+		}
+		tsManager.close();
+	}
+}
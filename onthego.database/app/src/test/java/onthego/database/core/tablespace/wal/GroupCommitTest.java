@@ -0,0 +1,157 @@
+package onthego.database.core.tablespace.wal;
+
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GroupCommitTest {
+
+	private static final int THREAD_COUNT = 8;
+
+	private static final int COMMIT_COUNT = 20;
+
+	private final Path directory = Paths.get("./group_commit_test");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		tearDown();
+		Files.createDirectory(directory);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		if (Files.exists(directory)) {
+			try (Stream<Path> files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>)files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private TablespaceManager create(Path tsPath, TablespaceConfig config) throws IOException {
+		return StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+	}
+
+	@Test
+	public void testConcurrentCommitsShareForce() throws Exception {
+		assertConcurrentCommitsShareForce(TablespaceConfig.builder()
+														 .writeAheadLogged(true)
+														 .groupCommitWindowMicros(2000)
+														 .build());
+	}
+
+	//without a window, the commits arriving while the log is forced share the next force
+	@Test
+	public void testConcurrentCommitsShareForceWithoutWindow() throws Exception {
+		assertConcurrentCommitsShareForce(TablespaceConfig.builder().writeAheadLogged(true).build());
+	}
+
+	private void assertConcurrentCommitsShareForce(TablespaceConfig config) throws Exception {
+		List<TablespaceManager> tsManagers = new ArrayList<>();
+		for (int i = 0; i < THREAD_COUNT; ++i) {
+			tsManagers.add(create(directory.resolve("table" + i + ".db"), config));
+		}
+
+		WriteAheadLog wal = WriteAheadLog.acquire(directory.resolve("table0.db"));
+		long commitCount = wal.getCommitCount();
+		long syncCount = wal.getSyncCount();
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		List<Future<List<Long>>> futures = new ArrayList<>();
+		for (TablespaceManager tsManager : tsManagers) {
+			futures.add(executor.submit(() -> {
+				List<Long> blockPosList = new ArrayList<>();
+				for (int i = 0; i < COMMIT_COUNT; ++i) {
+					long blockPos = tsManager.allocate(32);
+					tsManager.writeBlock(blockPos, new byte[]{(byte)i});
+					tsManager.sync();
+					blockPosList.add(blockPos);
+				}
+				return blockPosList;
+			}));
+		}
+
+		List<List<Long>> blockPosLists = new ArrayList<>();
+		for (Future<List<Long>> future : futures) {
+			blockPosLists.add(future.get());
+		}
+		executor.shutdown();
+
+		assertEquals(commitCount + THREAD_COUNT * COMMIT_COUNT, wal.getCommitCount());
+		//commits waiting in the same group are made durable by a single force
+		assertTrue(wal.getSyncCount() - syncCount < THREAD_COUNT * COMMIT_COUNT / 2);
+		wal.release(directory.resolve("table0.db"));
+
+		for (TablespaceManager tsManager : tsManagers) {
+			tsManager.close();
+		}
+
+		for (int t = 0; t < THREAD_COUNT; ++t) {
+			TablespaceManager tsManager = StandardTablespaceManager.load(directory.resolve("table" + t + ".db"), config);
+			for (int i = 0; i < COMMIT_COUNT; ++i) {
+				assertEquals((byte)i, tsManager.readBlock(blockPosLists.get(t).get(i))[0]);
+			}
+			tsManager.close();
+		}
+	}
+
+	@Test
+	public void testGroupCommitSetOncePerLog() throws IOException {
+		TablespaceConfig config = TablespaceConfig.builder()
+											.writeAheadLogged(true)
+											.groupCommitWindowMicros(500)
+											.groupCommitSize(4096)
+											.build();
+
+		TablespaceManager tsManager = create(directory.resolve("table0.db"), config);
+		//a tablespace joining an open log leaves its group commit as it is
+		TablespaceManager otherTsManager = create(directory.resolve("table1.db"), TablespaceConfig.builder().writeAheadLogged(true).build());
+
+		WriteAheadLog wal = WriteAheadLog.acquire(directory.resolve("table0.db"));
+		assertEquals(500, wal.getGroupCommitWindowMicros());
+		assertEquals(4096, wal.getGroupCommitSize());
+		wal.release(directory.resolve("table0.db"));
+
+		otherTsManager.close();
+		tsManager.close();
+	}
+
+	@Test
+	public void testGroupCommitSizeEndsWindow() throws IOException {
+		TablespaceConfig config = TablespaceConfig.builder()
+											.writeAheadLogged(true)
+											.groupCommitWindowMicros(60_000_000)
+											.groupCommitSize(1)
+											.build();
+
+		long startTime = System.currentTimeMillis();
+		TablespaceManager tsManager = create(directory.resolve("table.db"), config);
+		long blockPos = tsManager.allocate(32);
+		tsManager.writeBlock(blockPos, new byte[]{7});
+		tsManager.sync();
+		tsManager.close();
+
+		//a record larger than the group commit size is forced without waiting out the window
+		assertTrue(System.currentTimeMillis() - startTime < 30_000);
+	}
+}
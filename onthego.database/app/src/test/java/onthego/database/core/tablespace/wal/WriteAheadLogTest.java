@@ -0,0 +1,206 @@
+package onthego.database.core.tablespace.wal;
+
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadLogTest {
+
+	private static final int BLOCK_COUNT = 100;
+
+	private final Path directory = Paths.get("./wal_test");
+
+	private final Path tsPath = directory.resolve("wal_tablespace.db");
+
+	private final Path otherTsPath = directory.resolve("wal_other_tablespace.db");
+
+	private final Path logPath = directory.resolve(WriteAheadLog.LOG_FILE_NAME);
+
+	private final Path savedLogPath = directory.resolve("saved.wal");
+
+	private final TablespaceConfig config = TablespaceConfig.builder().writeAheadLogged(true).bufferPoolSize(4).build();
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		tearDown();
+		Files.createDirectory(directory);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		if (Files.exists(directory)) {
+			try (Stream<Path> files = Files.list(directory)) {
+				for (Path file : (Iterable<Path>)files::iterator) {
+					Files.delete(file);
+				}
+			}
+			Files.delete(directory);
+		}
+	}
+
+	private List<Long> writeBlocks(TablespaceManager tsManager) {
+		List<Long> blockPosList = new ArrayList<>();
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			long blockPos = tsManager.allocate(40);
+			tsManager.writeBlock(blockPos, new byte[]{(byte)i, (byte)(i * 7)});
+			tsManager.increaseRecordCount();
+			blockPosList.add(blockPos);
+		}
+		return blockPosList;
+	}
+
+	//commit, keep the log as it was at the commit and lose every write of the tablespace
+	private List<Long> commitAndCrash() throws IOException {
+		TablespaceManager tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+		List<Long> blockPosList = writeBlocks(tsManager);
+		tsManager.sync();
+		Files.copy(logPath, savedLogPath);
+		tsManager.close();
+
+		Files.write(tsPath, new byte[(int)Files.size(tsPath)]);
+		Files.move(savedLogPath, logPath, StandardCopyOption.REPLACE_EXISTING);
+		return blockPosList;
+	}
+
+	private void assertBlocks(List<Long> blockPosList) throws IOException {
+		assertBlocks(tsPath, blockPosList);
+	}
+
+	private void assertBlocks(Path tsPath, List<Long> blockPosList) throws IOException {
+		TablespaceManager tsManager = StandardTablespaceManager.load(tsPath, config);
+		assertEquals(BLOCK_COUNT, tsManager.getRecordCount());
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			byte[] payload = tsManager.readBlock(blockPosList.get(i));
+			assertEquals((byte)i, payload[0]);
+			assertEquals((byte)(i * 7), payload[1]);
+		}
+		tsManager.close();
+	}
+
+	private void assertRecordCount(Path tsPath, long recordCount) throws IOException {
+		TablespaceManager tsManager = StandardTablespaceManager.load(tsPath, config);
+		assertEquals(recordCount, tsManager.getRecordCount());
+		tsManager.close();
+	}
+
+	@Test
+	public void testCommitForcesOnlyLog() throws IOException {
+		TablespaceManager tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+		List<Long> blockPosList = writeBlocks(tsManager);
+
+		WriteAheadLog wal = WriteAheadLog.acquire(tsPath);
+		long syncCount = wal.getSyncCount();
+		tsManager.sync();
+		assertEquals(syncCount + 1, wal.getSyncCount());
+		assertTrue(wal.getLogSize() > 0);
+		wal.release(tsPath);
+
+		tsManager.close();
+		assertFalse(Files.exists(logPath));
+		assertBlocks(blockPosList);
+	}
+
+	@Test
+	public void testRecoverCommittedPages() throws IOException {
+		List<Long> blockPosList = commitAndCrash();
+
+		WriteAheadLog.recover(directory);
+		assertFalse(Files.exists(logPath));
+		assertBlocks(blockPosList);
+	}
+
+	@Test
+	public void testRecoverOnOpen() throws IOException {
+		List<Long> blockPosList = commitAndCrash();
+
+		//a logged tablespace replays the log of its directory before it is opened
+		assertBlocks(blockPosList);
+		assertFalse(Files.exists(logPath));
+	}
+
+	@Test
+	public void testIgnoreTornRecord() throws IOException {
+		List<Long> blockPosList = commitAndCrash();
+
+		//a record cut off by a crash in the middle of appending it
+		Files.write(logPath, new byte[]{0, 0, 0x10, 0, 0x12, 0x34, 0x56, 0x78, 1, 2, 3}, StandardOpenOption.APPEND);
+
+		WriteAheadLog.recover(directory);
+		assertBlocks(blockPosList);
+	}
+
+	@Test
+	public void testCommitAtomically() throws IOException {
+		TablespaceManager tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+		TablespaceManager otherTsManager = StandardTablespaceManager.create(otherTsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+		List<Long> blockPosList = writeBlocks(tsManager);
+		List<Long> otherBlockPosList = writeBlocks(otherTsManager);
+
+		//both tablespaces go into one record forced once
+		WriteAheadLog wal = WriteAheadLog.acquire(tsPath);
+		long commitCount = wal.getCommitCount();
+		long syncCount = wal.getSyncCount();
+		WriteAheadLog.commitAtomically(() -> {
+			tsManager.sync();
+			otherTsManager.sync();
+		});
+		assertEquals(commitCount + 1, wal.getCommitCount());
+		assertEquals(syncCount + 1, wal.getSyncCount());
+
+		Files.copy(logPath, savedLogPath);
+		wal.release(tsPath);
+		tsManager.close();
+		otherTsManager.close();
+		Files.write(tsPath, new byte[(int)Files.size(tsPath)]);
+		Files.write(otherTsPath, new byte[(int)Files.size(otherTsPath)]);
+
+		//a record cut off in the middle restores neither of the tablespaces beyond their creation
+		byte[] log = Files.readAllBytes(savedLogPath);
+		Files.write(logPath, Arrays.copyOf(log, log.length - 1));
+		WriteAheadLog.recover(directory);
+		assertRecordCount(tsPath, 0);
+		assertRecordCount(otherTsPath, 0);
+
+		Files.write(tsPath, new byte[(int)Files.size(tsPath)]);
+		Files.write(otherTsPath, new byte[(int)Files.size(otherTsPath)]);
+		Files.move(savedLogPath, logPath);
+		WriteAheadLog.recover(directory);
+		assertBlocks(blockPosList);
+		assertBlocks(otherTsPath, otherBlockPosList);
+	}
+
+	@Test
+	public void testSkipDroppedTablespace() throws IOException {
+		commitAndCrash();
+		Files.delete(tsPath);
+
+		WriteAheadLog.recover(directory);
+		assertFalse(Files.exists(tsPath));
+		assertFalse(Files.exists(logPath));
+	}
+
+	@Test
+	public void testRejectMemoryMappedTablespace() {
+		assertThrows(IllegalArgumentException.class, () -> TablespaceConfig.builder().writeAheadLogged(true).memoryMapped(true).build());
+	}
+}
@@ -15,6 +15,7 @@ import java.sql.Statement;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 public class JDBCTest {
@@ -111,6 +112,39 @@ public class JDBCTest {
 		}
 	}
 	
+	@Test
+	public void testMaxRows() throws Exception {
+		String query = "select serial_no from product limit 10 offset 3";
+		
+		try (Connection conn = DriverManager.getConnection(JDBC_URL);
+			 Statement stmt = conn.createStatement()) {
+			assertEquals(0, stmt.getMaxRows());
+			
+			stmt.setMaxRows(4);
+			int count = 0;
+			try (ResultSet rset = stmt.executeQuery(query)) {
+				while (rset.next()) {
+					++count;
+				}
+			}
+			assertEquals(4, count);
+			
+			//the limit of the query holds when it is under the max rows
+			stmt.setMaxRows(20);
+			count = 0;
+			try (ResultSet rset = stmt.executeQuery(query)) {
+				while (rset.next()) {
+					++count;
+				}
+			}
+			assertEquals(10, count);
+			
+			assertThrows(SQLException.class, () -> stmt.setMaxRows(-1));
+		} catch (SQLException e) {
+			throw e;
+		}
+	}
+	
 	@Test
 	public void testUpdate() throws Exception {
 		String updateQuery = "update product "
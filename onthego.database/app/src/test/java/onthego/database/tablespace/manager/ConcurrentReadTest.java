@@ -0,0 +1,83 @@
+package onthego.database.tablespace.manager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ConcurrentReadTest {
+
+	private static final int BLOCK_COUNT = 2000;
+
+	private static final int THREAD_COUNT = 8;
+
+	private final Path tsPath = Paths.get("./concurrent_read.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@Test
+	public void testConcurrentReaders() throws Exception {
+		//a small buffer pool makes the readers evict pages of each other
+		TablespaceConfig config = TablespaceConfig.builder().bufferPoolSize(4).build();
+		TablespaceManager tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+
+		List<Long> blockPosList = new ArrayList<>();
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			long blockPos = tsManager.allocate(2 * Long.BYTES);
+			tsManager.writeBlock(blockPos, ByteBuffer.allocate(2 * Long.BYTES).putLong(i).putLong(-i).array());
+			blockPosList.add(blockPos);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(THREAD_COUNT);
+		try {
+			List<Future<Integer>> futures = new ArrayList<>();
+			for (int t = 0; t < THREAD_COUNT; ++t) {
+				long seed = t;
+				futures.add(executor.submit(() -> {
+					Random random = new Random(seed);
+					int mismatchCount = 0;
+					for (int i = 0; i < 5 * BLOCK_COUNT; ++i) {
+						int index = random.nextInt(BLOCK_COUNT);
+						ByteBuffer payload = ByteBuffer.wrap(tsManager.readBlock(blockPosList.get(index)));
+						if (payload.getLong() != index || payload.getLong() != -index) {
+							++mismatchCount;
+						}
+					}
+					return mismatchCount;
+				}));
+			}
+
+			for (Future<Integer> future : futures) {
+				assertEquals(0, (int)future.get());
+			}
+		} finally {
+			executor.shutdown();
+			tsManager.close();
+		}
+	}
+}
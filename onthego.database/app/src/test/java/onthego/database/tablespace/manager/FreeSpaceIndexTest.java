@@ -0,0 +1,89 @@
+package onthego.database.tablespace.manager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import onthego.database.core.tablespace.manager.FreeSpaceStats;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class FreeSpaceIndexTest {
+
+	private final Path tsPath = Paths.get("./free_space_index.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	private StandardTablespaceManager create(TablespaceConfig config) throws IOException {
+		return (StandardTablespaceManager)StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+	}
+
+	@Test
+	public void testBestFit() throws IOException {
+		StandardTablespaceManager tsManager = create(TablespaceConfig.DEFAULT);
+
+		long smallBlockPos = tsManager.allocate(3000);
+		tsManager.allocate(100);
+		long largeBlockPos = tsManager.allocate(5000);
+		tsManager.allocate(100);
+
+		tsManager.free(largeBlockPos);
+		tsManager.free(smallBlockPos);
+
+		assertEquals(smallBlockPos, tsManager.allocate(2500));
+		assertEquals(largeBlockPos, tsManager.allocate(2500));
+		tsManager.close();
+	}
+
+	@Test
+	public void testFreeSpaceStats() throws IOException {
+		StandardTablespaceManager tsManager = create(TablespaceConfig.DEFAULT);
+
+		long[] blockPos = new long[6];
+		for (int i = 0; i < blockPos.length; ++i) {
+			blockPos[i] = tsManager.allocate(120 * (i + 1));
+		}
+
+		//freeing blocks 0, 2, 4 leaves three separate free blocks of 128, 368 and 608 bytes
+		tsManager.free(blockPos[0]);
+		tsManager.free(blockPos[2]);
+		tsManager.free(blockPos[4]);
+
+		FreeSpaceStats stats = tsManager.getFreeSpaceStats();
+		assertEquals(3, stats.getFreeBlockCount());
+		assertEquals(128 + 368 + 608, stats.getTotalFreeBytes());
+		assertEquals(608, stats.getLargestFreeBlockSize());
+
+		//freeing block 3 coalesces it with its neighbours 2 and 4
+		tsManager.free(blockPos[3]);
+		stats = tsManager.getFreeSpaceStats();
+		assertEquals(2, stats.getFreeBlockCount());
+		assertEquals(128 + 368 + 496 + 608, stats.getTotalFreeBytes());
+		assertEquals(368 + 496 + 608, stats.getLargestFreeBlockSize());
+		tsManager.close();
+
+		//the index is rebuilt from the free lists on load and agrees with a scan of the lists
+		tsManager = (StandardTablespaceManager)StandardTablespaceManager.load(tsPath);
+		assertEquals(stats.toString(), tsManager.getFreeSpaceStats().toString());
+		tsManager.close();
+
+		tsManager = (StandardTablespaceManager)StandardTablespaceManager.load(tsPath, TablespaceConfig.builder().freeSpaceIndexed(false).build());
+		assertEquals(stats.toString(), tsManager.getFreeSpaceStats().toString());
+		tsManager.close();
+	}
+}
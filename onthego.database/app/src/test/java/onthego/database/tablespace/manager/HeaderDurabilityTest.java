@@ -0,0 +1,84 @@
+package onthego.database.tablespace.manager;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.manager.TablespaceConfig.Durability;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class HeaderDurabilityTest {
+
+	private final Path tsPath = Paths.get("./header_durability.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	private TablespaceManager create(Durability durability) throws IOException {
+		TablespaceConfig config = TablespaceConfig.builder().durability(durability).build();
+		return StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().build(), config);
+	}
+
+	//<magic><chunk_size><crc><first_block_pos><first_free_block_pos><table_root_pos><table_meta_info_pos><record_count>
+	private int readRecordCountFromFile() throws IOException {
+		try (RandomAccessFile file = new RandomAccessFile(tsPath.toFile(), "r")) {
+			file.seek(StandardTablespaceHeader.HEADER_SIZE - Integer.BYTES);
+			return file.readInt();
+		}
+	}
+
+	@Test
+	public void testDeferredHeader() throws IOException {
+		StandardTablespaceManager tsManager = (StandardTablespaceManager)create(Durability.DEFERRED);
+
+		for (int i = 0; i < 10; ++i) {
+			tsManager.increaseRecordCount();
+		}
+		assertTrue(tsManager.isHeaderDirty());
+		assertEquals(0, readRecordCountFromFile());
+
+		tsManager.sync();
+		assertFalse(tsManager.isHeaderDirty());
+		assertEquals(10, readRecordCountFromFile());
+
+		tsManager.decreaseRecordCount();
+		tsManager.close();
+		assertEquals(9, readRecordCountFromFile());
+	}
+
+	@Test
+	public void testImmediateHeader() throws IOException {
+		StandardTablespaceManager tsManager = (StandardTablespaceManager)create(Durability.IMMEDIATE);
+
+		tsManager.increaseRecordCount();
+		assertFalse(tsManager.isHeaderDirty());
+		assertEquals(1, readRecordCountFromFile());
+
+		tsManager.saveRootPos(4096);
+		tsManager.close();
+
+		TablespaceManager loaded = StandardTablespaceManager.load(tsPath);
+		assertEquals(4096, loaded.getRootPos());
+		assertEquals(1, loaded.getRecordCount());
+		loaded.close();
+	}
+}
@@ -0,0 +1,134 @@
+package onthego.database.tablespace.manager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import onthego.database.core.tablespace.manager.SingleTablespaceManager;
+import onthego.database.core.tablespace.manager.StandardTablespaceManager;
+import onthego.database.core.tablespace.manager.TablespaceConfig;
+import onthego.database.core.tablespace.manager.TablespaceManager;
+import onthego.database.core.tablespace.meta.StandardTablespaceHeader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SegregatedFreeListTest {
+
+	private static final int BLOCK_COUNT = 40;
+
+	private final Path tsPath = Paths.get("./segregated_freelist.db");
+
+	@BeforeEach
+	public void setUp() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	@AfterEach
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(tsPath);
+	}
+
+	//every size belongs to a size class of a single block size with the chunk size 16
+	private int getBlockSize(int i) {
+		return 8 + (i % 10) * 24;
+	}
+
+	private long getFileSize(TablespaceManager tsManager) {
+		return ((StandardTablespaceManager)tsManager).getTablespaceIO().size();
+	}
+
+	@Test
+	public void testReuseFreedBlocks() throws IOException {
+		TablespaceManager tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build());
+
+		List<Long> blockPosList = new ArrayList<>();
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			blockPosList.add(tsManager.allocate(getBlockSize(i)));
+		}
+		long fileSize = getFileSize(tsManager);
+
+		//free every other block so that no free blocks are coalesced
+		Set<Long> freedBlockPosSet = new HashSet<>();
+		for (int i = 0; i < BLOCK_COUNT; i += 2) {
+			tsManager.free(blockPosList.get(i));
+			freedBlockPosSet.add(blockPosList.get(i));
+		}
+		tsManager.close();
+
+		tsManager = StandardTablespaceManager.load(tsPath);
+		for (int i = 0; i < BLOCK_COUNT; i += 2) {
+			assertTrue(freedBlockPosSet.remove(tsManager.allocate(getBlockSize(i))));
+		}
+
+		assertEquals(0, tsManager.getHeader().getFirstFreeBlockPos());
+		assertEquals(fileSize, getFileSize(tsManager));
+		tsManager.close();
+	}
+
+	@Test
+	public void testAllocateFromPowerOfTwoSizeClass() throws IOException {
+		//without the free space index, allocation is served by the size class lists
+		TablespaceConfig config = TablespaceConfig.builder().freeSpaceIndexed(false).build();
+		TablespaceManager tsManager = StandardTablespaceManager.create(tsPath, new StandardTablespaceHeader.Builder().chunkSize(16).build(), config);
+
+		long firstBlockPos = tsManager.allocate(3000);
+		tsManager.allocate(100);
+		long secondBlockPos = tsManager.allocate(5000);
+		tsManager.allocate(100);
+		long fileSize = getFileSize(tsManager);
+
+		tsManager.free(firstBlockPos);
+		tsManager.free(secondBlockPos);
+
+		//a block of a larger size class is taken without searching the list of the requested size class
+		assertEquals(secondBlockPos, tsManager.allocate(2500));
+		//the remainder of the split block is too small, so the first fit of the size class is taken
+		assertEquals(firstBlockPos, tsManager.allocate(2900));
+		assertEquals(fileSize, getFileSize(tsManager));
+		tsManager.close();
+	}
+
+	@Test
+	public void testMigrateSingleFreeList() throws IOException {
+		TablespaceManager legacyManager = SingleTablespaceManager.create(tsPath.toString(), new StandardTablespaceHeader.Builder().chunkSize(16).build());
+
+		List<Long> blockPosList = new ArrayList<>();
+		for (int i = 0; i < BLOCK_COUNT; ++i) {
+			long blockPos = legacyManager.allocate(getBlockSize(i));
+			legacyManager.writeBlock(blockPos, new byte[]{(byte)i, (byte)(i * 3)});
+			blockPosList.add(blockPos);
+		}
+
+		Set<Long> freedBlockPosSet = new HashSet<>();
+		for (int i = 1; i < BLOCK_COUNT; i += 2) {
+			legacyManager.free(blockPosList.get(i));
+			freedBlockPosSet.add(blockPosList.get(i));
+		}
+		legacyManager.close();
+
+		TablespaceManager tsManager = StandardTablespaceManager.load(tsPath);
+		for (int i = 0; i < BLOCK_COUNT; i += 2) {
+			byte[] payload = tsManager.readBlock(blockPosList.get(i));
+			assertEquals((byte)i, payload[0]);
+			assertEquals((byte)(i * 3), payload[1]);
+		}
+		tsManager.close();
+
+		//the migrated free lists are persisted, so the freed blocks are reused after reloading
+		tsManager = StandardTablespaceManager.load(tsPath);
+		for (int i = 1; i < BLOCK_COUNT; i += 2) {
+			assertTrue(freedBlockPosSet.remove(tsManager.allocate(getBlockSize(i))));
+		}
+		assertTrue(freedBlockPosSet.isEmpty());
+		tsManager.close();
+	}
+}
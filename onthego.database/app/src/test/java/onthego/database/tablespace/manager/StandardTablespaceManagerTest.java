@@ -128,7 +128,7 @@ public class StandardTablespaceManagerTest {
 		assertEquals(100, tsHeader.getFirstBlockPos());
 		assertEquals(0, tsHeader.getFirstFreeBlockPos());
 		assertEquals(200, tsHeader.getTableRootPos());
-		assertEquals(80, tsHeader.getTableMetaInfoPos());
+		assertEquals(336, tsHeader.getTableMetaInfoPos());
 		assertEquals(0, tsHeader.getRecordCount());
 	}
 	